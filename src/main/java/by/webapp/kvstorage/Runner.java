@@ -1,22 +1,47 @@
 package by.webapp.kvstorage;
 
+import by.webapp.kvstorage.model.LoadReport;
+import by.webapp.kvstorage.service.BulkLoadService;
 import by.webapp.kvstorage.util.NodeLoader;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
 @SpringBootApplication
 public class Runner {
 
     private static final Logger logger = LogManager.getLogger(Runner.class);
+    private static final String LOAD_COMMAND = "load";
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         NodeLoader.setNode(System.getProperty("nodeName"));
+        if (args.length == 3 && LOAD_COMMAND.equals(args[0])) {
+            System.exit(load(args[1], args[2]));
+        }
         SpringApplication.run(Runner.class, Arrays.toString(args));
         logger.debug("Application started.");
     }
 
-}
\ No newline at end of file
+    private static int load(String collectionName, String fileName) throws IOException {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Runner.class)
+                .web(WebApplicationType.NONE).run();
+             InputStream input = Files.newInputStream(Paths.get(fileName))) {
+            LoadReport report = context.getBean(BulkLoadService.class).load(
+                    collectionName, input, progress -> System.out.println(progress));
+            System.out.println(report);
+            report.getRejections().forEach(System.out::println);
+            return report.getState() == LoadReport.State.DONE ? 0 : 1;
+        }
+    }
+
+}
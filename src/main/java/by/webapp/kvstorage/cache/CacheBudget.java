@@ -0,0 +1,41 @@
+package by.webapp.kvstorage.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CacheBudget {
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+
+    public CacheBudget(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(
+                    "Wrong input data: 'limit' is illegal");
+        }
+        this.limit = limit;
+    }
+
+    public boolean tryAcquire(long bytes) {
+        long current;
+        do {
+            current = used.get();
+            if (current + bytes > limit) {
+                return false;
+            }
+        } while (!used.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    public long getUsed() {
+        return used.get();
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+}
@@ -2,17 +2,38 @@ package by.webapp.kvstorage.cache;
 
 import by.webapp.kvstorage.exception.BadRequestException;
 
+import java.util.Arrays;
+
 public class CacheFactory<T> {
 
     public ICache<String, T> create(String algorithmName, int cacheLimit) {
-        if (!algorithmName.equalsIgnoreCase("LFU") &&
-                !algorithmName.equalsIgnoreCase("LRU")) {
-            throw new BadRequestException(
-                    "Error: algorithm might be either LFU or LRU.");
-        } else {
-            Cache cache = Cache.valueOf(algorithmName.toUpperCase());
-            return cache.getCache(cacheLimit);
+        return getAlgorithm(algorithmName).getCache(cacheLimit);
+    }
+
+    public ICache<String, T> create(String algorithmName, int cacheLimit, long maxWeight,
+                                    Weigher<String, T> weigher, CacheBudget budget) {
+        return getAlgorithm(algorithmName).getCache(cacheLimit, maxWeight, weigher, budget);
+    }
+
+    public static Cache getAlgorithm(String algorithmName) {
+        if (algorithmName != null) {
+            for (Cache cache : Cache.values()) {
+                if (cache.name().equalsIgnoreCase(algorithmName)) {
+                    return cache;
+                }
+            }
         }
+        throw new BadRequestException("Error: algorithm might be one of " +
+                Arrays.toString(Cache.values()) + '.');
+    }
+
+    public static Cache getAlgorithm(String algorithmName, Long cacheBytes) {
+        Cache cache = getAlgorithm(algorithmName);
+        if (cacheBytes != null && !cache.isWeighted()) {
+            throw new BadRequestException("Error: algorithm " + cache +
+                    " does not support a cache byte limit.");
+        }
+        return cache;
     }
 
     public enum Cache {
@@ -22,16 +43,87 @@ public class CacheFactory<T> {
             public ICache getCache(int size) {
                 return new LFUCache(size);
             }
+
+            @Override
+            public boolean isWeighted() {
+                return true;
+            }
+
+            @Override
+            public ICache getCache(int size, long maxWeight, Weigher weigher, CacheBudget budget) {
+                return new LFUCache(size, maxWeight, weigher, budget);
+            }
         },
         LRU {
             @Override
             public ICache getCache(int size) {
                 return new LRUCache(size);
             }
+
+            @Override
+            public boolean isWeighted() {
+                return true;
+            }
+
+            @Override
+            public ICache getCache(int size, long maxWeight, Weigher weigher, CacheBudget budget) {
+                return new LRUCache(size, maxWeight, weigher, budget);
+            }
+        },
+        CLRU {
+            @Override
+            public ICache getCache(int size) {
+                return new ConcurrentLRUCache(size);
+            }
+
+            @Override
+            public boolean isWeighted() {
+                return true;
+            }
+
+            @Override
+            public ICache getCache(int size, long maxWeight, Weigher weigher, CacheBudget budget) {
+                return new ConcurrentLRUCache(size, maxWeight, weigher, budget);
+            }
+        },
+        WTLFU {
+            @Override
+            public ICache getCache(int size) {
+                return new WTinyLFUCache(size);
+            }
+        },
+        OFFHEAP {
+            @Override
+            public boolean isWeighted() {
+                return true;
+            }
+
+            @Override
+            public ICache getCache(int size) {
+                return new OffHeapCache(size);
+            }
+
+            @Override
+            public ICache getCache(int size, long maxWeight, Weigher weigher, CacheBudget budget) {
+                return new OffHeapCache(size, maxWeight == Long.MAX_VALUE ?
+                        size * OffHeapCache.DEFAULT_ENTRY_BYTES : maxWeight, budget);
+            }
         };
 
         public abstract ICache getCache(int size);
 
+        public ICache getCache(int size, long maxWeight, Weigher weigher, CacheBudget budget) {
+            if (maxWeight != Long.MAX_VALUE) {
+                throw new BadRequestException("Error: algorithm " + this +
+                        " does not support a cache byte limit.");
+            }
+            return getCache(size);
+        }
+
+        public boolean isWeighted() {
+            return false;
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package by.webapp.kvstorage.cache;
+
+import by.webapp.kvstorage.model.Collection;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CacheRegistry<T> {
+
+    private final Map<String, CacheHolder<T>> caches = new ConcurrentHashMap<>();
+    private final CacheFactory<T> cacheFactory = new CacheFactory<>();
+    private final Weigher<String, T> weigher;
+    private final CacheBudget budget;
+
+    public CacheRegistry() {
+        this(null, null);
+    }
+
+    public CacheRegistry(Weigher<String, T> weigher, CacheBudget budget) {
+        this.weigher = weigher;
+        this.budget = budget;
+    }
+
+    public ICache<String, T> getCache(Collection collection) {
+        final String collectionName = collection.getName().toLowerCase(Locale.ROOT);
+        CacheHolder<T> holder = caches.get(collectionName);
+        if (holder == null || !holder.matches(collection)) {
+            holder = caches.compute(collectionName, (name, current) -> {
+                if (current != null && current.matches(collection)) {
+                    return current;
+                }
+                if (current != null) {
+                    current.cache.close();
+                }
+                return new CacheHolder<>(collection, this);
+            });
+        }
+        return holder.cache;
+    }
+
+    public void evict(String collectionName) {
+        CacheHolder<T> holder = caches.remove(collectionName.toLowerCase(Locale.ROOT));
+        if (holder != null) {
+            holder.cache.close();
+        }
+    }
+
+    public void clear() {
+        caches.keySet().forEach(this::evict);
+    }
+
+    public CacheBudget getBudget() {
+        return budget;
+    }
+
+    private ICache<String, T> createCache(Collection collection) {
+        final String algorithm = collection.getAlgorithm();
+        final Long cacheBytes = collection.getCacheBytes();
+        if (weigher == null || !CacheFactory.getAlgorithm(algorithm).isWeighted()) {
+            return cacheFactory.create(algorithm, collection.getCacheLimit());
+        }
+        return cacheFactory.create(algorithm, collection.getCacheLimit(),
+                cacheBytes == null ? Long.MAX_VALUE : cacheBytes, weigher, budget);
+    }
+
+    private static class CacheHolder<T> {
+
+        private final String algorithm;
+        private final int cacheLimit;
+        private final Long cacheBytes;
+        private final ICache<String, T> cache;
+
+        CacheHolder(Collection collection, CacheRegistry<T> registry) {
+            this.algorithm = collection.getAlgorithm();
+            this.cacheLimit = collection.getCacheLimit();
+            this.cacheBytes = collection.getCacheBytes();
+            this.cache = registry.createCache(collection);
+        }
+
+        boolean matches(Collection collection) {
+            return algorithm.equalsIgnoreCase(collection.getAlgorithm()) &&
+                    cacheLimit == collection.getCacheLimit() &&
+                    Objects.equals(cacheBytes, collection.getCacheBytes());
+        }
+
+    }
+
+}
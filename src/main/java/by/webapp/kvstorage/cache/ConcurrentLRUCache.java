@@ -0,0 +1,105 @@
+package by.webapp.kvstorage.cache;
+
+public class ConcurrentLRUCache<K, V> implements ICache<K, V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 8;
+    private final LRUCache<K, V>[] segments;
+    private final int segmentMask;
+
+    public ConcurrentLRUCache() {
+        this(10);
+    }
+
+    public ConcurrentLRUCache(int capacity) {
+        this(capacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public ConcurrentLRUCache(int capacity, int concurrencyLevel) {
+        this(capacity, concurrencyLevel, Long.MAX_VALUE, null, null);
+    }
+
+    public ConcurrentLRUCache(int capacity, long maxWeight, Weigher<K, V> weigher,
+                              CacheBudget budget) {
+        this(capacity, DEFAULT_CONCURRENCY_LEVEL, maxWeight, weigher, budget);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache(int capacity, int concurrencyLevel, long maxWeight,
+                              Weigher<K, V> weigher, CacheBudget budget) {
+        if (capacity <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException(
+                    "Wrong input data: 'capacity' or 'concurrencyLevel' is illegal");
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel &&
+                (segmentCount << 1) * MIN_SEGMENT_CAPACITY <= capacity) {
+            segmentCount <<= 1;
+        }
+        this.segments = new LRUCache[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        int segmentCapacity = capacity / segmentCount;
+        int remainder = capacity % segmentCount;
+        long segmentWeight = maxWeight == Long.MAX_VALUE ?
+                maxWeight : Math.max(1, maxWeight / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new LRUCache<>(i < remainder ? segmentCapacity + 1 : segmentCapacity,
+                    segmentWeight, weigher, budget);
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return segmentFor(key).put(key, value);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return segmentFor(key).putIfAbsent(key, value);
+    }
+
+    @Override
+    public V remove(K key) {
+        return segmentFor(key).remove(key);
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return segmentFor(key).contains(key);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (LRUCache<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (LRUCache<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (LRUCache<K, V> segment : segments) {
+            segment.close();
+        }
+    }
+
+    private LRUCache<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+}
@@ -14,4 +14,10 @@ public interface ICache<K, V> {
 
     long size();
 
-}
\ No newline at end of file
+    void clear();
+
+    default void close() {
+        clear();
+    }
+
+}
@@ -11,8 +11,13 @@ public class LFUCache<K, V> implements ICache<K, V> {
     private final LinkedHashSet<CacheNode<K, V>>[] frequencyList;
     private final int capacity;
     private final float evictionFactor;
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final CacheBudget budget;
     private int minFrequency;
     private int maxFrequency;
+    private long totalWeight;
+    private boolean closed;
 
     public LFUCache() {
         this(10);
@@ -23,15 +28,27 @@ public class LFUCache<K, V> implements ICache<K, V> {
     }
 
     public LFUCache(int capacity, float evictionFactor) {
-        if (capacity <= 0 || evictionFactor <= 0 || evictionFactor >= 1) {
+        this(capacity, evictionFactor, Long.MAX_VALUE, null, null);
+    }
+
+    public LFUCache(int capacity, long maxWeight, Weigher<K, V> weigher, CacheBudget budget) {
+        this(capacity, 0.75f, maxWeight, weigher, budget);
+    }
+
+    public LFUCache(int capacity, float evictionFactor, long maxWeight,
+                    Weigher<K, V> weigher, CacheBudget budget) {
+        if (capacity <= 0 || evictionFactor <= 0 || evictionFactor >= 1 || maxWeight <= 0) {
             throw new IllegalArgumentException(
                     "Wrong input data: 'evictionFactor' out of range 0...1 or " +
-                            "'capacity' is illegal");
+                            "'capacity' or 'maxWeight' is illegal");
         }
         this.cacheMap = new HashMap<>(capacity);
         this.frequencyList = new LinkedHashSet[capacity];
         this.capacity = capacity;
         this.evictionFactor = evictionFactor;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.budget = budget;
         this.minFrequency = 0;
         this.maxFrequency = capacity - 1;
         for (int i = 0; i <= maxFrequency; i++) {
@@ -72,13 +89,33 @@ public class LFUCache<K, V> implements ICache<K, V> {
             if (cacheMap.size() == capacity) {
                 doEviction();
             }
+            final long weight = weigh(key, value);
+            if (!reserve(weight)) {
+                return null;
+            }
             LinkedHashSet<CacheNode<K, V>> nodes = frequencyList[0];
-            currentNode = new CacheNode<>(key, value, 0);
+            currentNode = new CacheNode<>(key, value, 0, weight);
             nodes.add(currentNode);
             cacheMap.put(key, currentNode);
             minFrequency = 0;
         } else {
             oldValue = currentNode.v;
+            final long weight = weigh(key, value);
+            if (weight != currentNode.weight) {
+                // take the node out while making room so it cannot evict itself:
+                LinkedHashSet<CacheNode<K, V>> nodes = frequencyList[currentNode.frequency];
+                nodes.remove(currentNode);
+                cacheMap.remove(key);
+                release(currentNode.weight);
+                if (!reserve(weight)) {
+                    findNextLowestFrequency();
+                    return oldValue;
+                }
+                currentNode.weight = weight;
+                nodes.add(currentNode);
+                cacheMap.put(key, currentNode);
+                minFrequency = Math.min(minFrequency, currentNode.frequency);
+            }
             currentNode.v = value;
         }
         return oldValue;
@@ -95,6 +132,7 @@ public class LFUCache<K, V> implements ICache<K, V> {
         if (currentNode != null) {
             LinkedHashSet<CacheNode<K, V>> nodes = frequencyList[currentNode.frequency];
             nodes.remove(currentNode);
+            release(currentNode.weight);
             if (minFrequency == currentNode.frequency) {
                 findNextLowestFrequency();
             }
@@ -114,6 +152,26 @@ public class LFUCache<K, V> implements ICache<K, V> {
         return cacheMap.size();
     }
 
+    @Override
+    public synchronized void clear() {
+        release(totalWeight);
+        cacheMap.clear();
+        for (LinkedHashSet<CacheNode<K, V>> nodes : frequencyList) {
+            nodes.clear();
+        }
+        minFrequency = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
     private void doEviction() {
         int currentlyDeleted = 0;
         float target = capacity * evictionFactor;
@@ -127,6 +185,7 @@ public class LFUCache<K, V> implements ICache<K, V> {
                     CacheNode<K, V> node = it.next();
                     it.remove();
                     cacheMap.remove(node.k);
+                    release(node.weight);
                 }
                 if (!it.hasNext()) {
                     findNextLowestFrequency();
@@ -135,6 +194,48 @@ public class LFUCache<K, V> implements ICache<K, V> {
         }
     }
 
+    private long weigh(K key, V value) {
+        return weigher == null ? 0 : weigher.weigh(key, value);
+    }
+
+    private boolean reserve(long weight) {
+        if (closed || weight > maxWeight) {
+            return false;
+        }
+        while (totalWeight + weight > maxWeight) {
+            evictLeastFrequent();
+        }
+        while (budget != null && !budget.tryAcquire(weight)) {
+            if (cacheMap.isEmpty()) {
+                return false;
+            }
+            evictLeastFrequent();
+        }
+        totalWeight += weight;
+        return true;
+    }
+
+    private void release(long weight) {
+        totalWeight -= weight;
+        if (budget != null) {
+            budget.release(weight);
+        }
+    }
+
+    private void evictLeastFrequent() {
+        if (frequencyList[minFrequency].isEmpty()) {
+            findNextLowestFrequency();
+        }
+        Iterator<CacheNode<K, V>> it = frequencyList[minFrequency].iterator();
+        CacheNode<K, V> node = it.next();
+        it.remove();
+        cacheMap.remove(node.k);
+        release(node.weight);
+        if (frequencyList[minFrequency].isEmpty()) {
+            findNextLowestFrequency();
+        }
+    }
+
     private void moveToNextFrequency(
             CacheNode<K, V> currentNode, int nextFrequency,
             LinkedHashSet<CacheNode<K, V>> currentNodes,
@@ -158,11 +259,13 @@ public class LFUCache<K, V> implements ICache<K, V> {
         private final Key k;
         private Value v;
         private int frequency;
+        private long weight;
 
-        CacheNode(Key k, Value v, int frequency) {
+        CacheNode(Key k, Value v, int frequency, long weight) {
             this.k = k;
             this.v = v;
             this.frequency = frequency;
+            this.weight = weight;
         }
 
     }
@@ -8,16 +8,28 @@ public class LRUCache<K, V> implements ICache<K, V> {
     private final Map<K, CacheNode<K, V>> cacheMap;
     private CacheNode<K, V> head, tail;
     private final int capacity;
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final CacheBudget budget;
+    private long totalWeight;
+    private boolean closed;
 
     public LRUCache() {
         this(10);
     }
 
     public LRUCache(int capacity) {
-        if (capacity <= 0) throw new IllegalArgumentException(
-                "Wrong input data: 'capacity' is illegal");
+        this(capacity, Long.MAX_VALUE, null, null);
+    }
+
+    public LRUCache(int capacity, long maxWeight, Weigher<K, V> weigher, CacheBudget budget) {
+        if (capacity <= 0 || maxWeight <= 0) throw new IllegalArgumentException(
+                "Wrong input data: 'capacity' or 'maxWeight' is illegal");
         this.cacheMap = new HashMap<>();
         this.capacity = capacity;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.budget = budget;
     }
 
     @Override
@@ -45,7 +57,12 @@ public class LRUCache<K, V> implements ICache<K, V> {
     @Override
     public synchronized V remove(K key) {
         CacheNode<K, V> currentNode = cacheMap.remove(key);
-        return currentNode == null ? null : currentNode.v;
+        if (currentNode == null) {
+            return null;
+        }
+        removeNode(currentNode);
+        release(currentNode.weight);
+        return currentNode.v;
     }
 
     @Override
@@ -58,27 +75,79 @@ public class LRUCache<K, V> implements ICache<K, V> {
         return cacheMap.size();
     }
 
+    @Override
+    public synchronized void clear() {
+        release(totalWeight);
+        cacheMap.clear();
+        head = null;
+        tail = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
     private V doPut(K key, V value, boolean isAbsent) {
         V oldValue = null;
         CacheNode<K, V> currentNode = cacheMap.get(key);
         if (isAbsent) {
             if (cacheMap.containsKey(key)) throw new IllegalArgumentException("The item is present. Use put()");
-            currentNode = new CacheNode<>(key, value, null, null);
-            if (cacheMap.size() == capacity) {
-                cacheMap.remove(tail.k);
-                removeNode(tail);
-                setHead(currentNode);
-            } else setHead(currentNode);
+            final long weight = weigh(key, value);
+            if (cacheMap.size() == capacity) evictTail();
+            if (!reserve(weight)) return null;
+            currentNode = new CacheNode<>(key, value, weight, null, null);
+            setHead(currentNode);
             cacheMap.put(key, currentNode);
         } else {
             oldValue = currentNode.v;
+            final long weight = weigh(key, value);
+            if (weight != currentNode.weight) {
+                cacheMap.remove(key);
+                removeNode(currentNode);
+                release(currentNode.weight);
+                if (!reserve(weight)) return oldValue;
+                currentNode.weight = weight;
+                cacheMap.put(key, currentNode);
+            } else removeNode(currentNode);
             currentNode.v = value;
-            removeNode(currentNode);
             setHead(currentNode);
         }
         return oldValue;
     }
 
+    private long weigh(K key, V value) {
+        return weigher == null ? 0 : weigher.weigh(key, value);
+    }
+
+    private boolean reserve(long weight) {
+        if (closed || weight > maxWeight) return false;
+        while (totalWeight + weight > maxWeight) evictTail();
+        while (budget != null && !budget.tryAcquire(weight)) {
+            if (cacheMap.isEmpty()) return false;
+            evictTail();
+        }
+        totalWeight += weight;
+        return true;
+    }
+
+    private void release(long weight) {
+        totalWeight -= weight;
+        if (budget != null) budget.release(weight);
+    }
+
+    private void evictTail() {
+        CacheNode<K, V> node = tail;
+        cacheMap.remove(node.k);
+        removeNode(node);
+        release(node.weight);
+    }
+
     private void setHead(CacheNode<K, V> node) {
         node.next = head;
         node.previous = null;
@@ -98,17 +167,19 @@ public class LRUCache<K, V> implements ICache<K, V> {
 
         private Key k;
         private Value v;
+        private long weight;
         private CacheNode<Key, Value> previous;
         private CacheNode<Key, Value> next;
 
-        CacheNode(Key k, Value v, CacheNode<Key, Value> previous,
+        CacheNode(Key k, Value v, long weight, CacheNode<Key, Value> previous,
                   CacheNode<Key, Value> next) {
             this.k = k;
             this.v = v;
+            this.weight = weight;
             this.previous = previous;
             this.next = next;
         }
 
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,306 @@
+package by.webapp.kvstorage.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OffHeapCache implements ICache<String, String> {
+
+    private static final int SLAB_SIZE = 1 << 20;
+    private static final int MIN_CHUNK_SHIFT = 6;
+    private static final int SIZE_CLASSES = 20 - MIN_CHUNK_SHIFT + 1;
+    static final long DEFAULT_ENTRY_BYTES = 4096;
+    private final Map<String, CacheEntry> index = new HashMap<>();
+    private final LinkedHashMap<String, CacheEntry>[] classEntries;
+    // slabs of a size class that may still have a free chunk, checked lazily on allocation:
+    private final ArrayDeque<Integer>[] partialSlabs;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final ArrayDeque<Integer> freeSlabs = new ArrayDeque<>();
+    private final int[] classSlabCount = new int[SIZE_CLASSES];
+    // per-slab state; free chunks are chained through their own first four bytes and
+    // slabPartial holds the size class whose partial list the slab was last pushed to:
+    private int[] slabClass = new int[0];
+    private int[] slabUsage = new int[0];
+    private int[] slabFreeHead = new int[0];
+    private int[] slabCarved = new int[0];
+    private int[] slabPartial = new int[0];
+    private final int capacity;
+    private final int slabSize;
+    private final int maxSlabs;
+    private final CacheBudget budget;
+    private boolean closed;
+
+    public OffHeapCache() {
+        this(10);
+    }
+
+    public OffHeapCache(int capacity) {
+        this(capacity, capacity * DEFAULT_ENTRY_BYTES);
+    }
+
+    public OffHeapCache(int capacity, long maxBytes) {
+        this(capacity, maxBytes, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public OffHeapCache(int capacity, long maxBytes, CacheBudget budget) {
+        if (capacity <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException(
+                    "Wrong input data: 'capacity' or 'maxBytes' is illegal");
+        }
+        this.capacity = capacity;
+        // a budget under one slab gets a single smaller slab instead of being rounded up:
+        this.slabSize = maxBytes >= SLAB_SIZE ? SLAB_SIZE :
+                Math.max(1 << MIN_CHUNK_SHIFT, Integer.highestOneBit((int) maxBytes));
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, maxBytes / slabSize);
+        this.budget = budget;
+        this.classEntries = new LinkedHashMap[SIZE_CLASSES];
+        this.partialSlabs = new ArrayDeque[SIZE_CLASSES];
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            classEntries[i] = new LinkedHashMap<>(16, 0.75f, true);
+            partialSlabs[i] = new ArrayDeque<>();
+        }
+    }
+
+    @Override
+    public synchronized String get(String key) {
+        CacheEntry entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        classEntries[entry.sizeClass].get(key);
+        return decode(entry);
+    }
+
+    @Override
+    public synchronized String put(String key, String value) {
+        CacheEntry oldEntry = index.remove(key);
+        String oldValue = null;
+        if (oldEntry != null) {
+            oldValue = decode(oldEntry);
+            release(key, oldEntry);
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (closed || bytes.length > slabSize) {
+            return oldValue;
+        }
+        final int sizeClass = sizeClassOf(bytes.length);
+        if (index.size() >= capacity) {
+            evictFrom(classEntries[sizeClass].isEmpty() ? largestClass() : sizeClass);
+        }
+        final long address = allocate(sizeClass);
+        if (address < 0) {
+            return oldValue;
+        }
+        ByteBuffer slab = slabs.get(slabOf(address)).duplicate();
+        slab.position(offsetOf(address));
+        slab.put(bytes);
+        CacheEntry entry = new CacheEntry(address, bytes.length, sizeClass);
+        index.put(key, entry);
+        classEntries[sizeClass].put(key, entry);
+        return oldValue;
+    }
+
+    @Override
+    public synchronized String putIfAbsent(String key, String value) {
+        return contains(key) ? value : put(key, value);
+    }
+
+    @Override
+    public synchronized String remove(String key) {
+        CacheEntry entry = index.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        final String value = decode(entry);
+        release(key, entry);
+        return value;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public synchronized long size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        index.clear();
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            classEntries[i].clear();
+            partialSlabs[i].clear();
+            classSlabCount[i] = 0;
+        }
+        if (budget != null) {
+            budget.release(allocatedBytes());
+        }
+        slabs.clear();
+        freeSlabs.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+
+    public synchronized long allocatedBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    private String decode(CacheEntry entry) {
+        ByteBuffer slab = slabs.get(slabOf(entry.address)).duplicate();
+        slab.position(offsetOf(entry.address));
+        byte[] bytes = new byte[entry.length];
+        slab.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long allocate(int sizeClass) {
+        final int chunkSize = 1 << (sizeClass + MIN_CHUNK_SHIFT);
+        while (true) {
+            Integer partial;
+            while ((partial = partialSlabs[sizeClass].peek()) != null) {
+                if (slabClass[partial] == sizeClass && hasFreeChunk(partial, chunkSize)) {
+                    return take(partial, chunkSize);
+                }
+                partialSlabs[sizeClass].poll();
+                if (slabPartial[partial] == sizeClass) {
+                    slabPartial[partial] = -1;
+                }
+            }
+            Integer slab = freeSlabs.poll();
+            if (slab == null && slabs.size() < maxSlabs &&
+                    (budget == null || budget.tryAcquire(slabSize))) {
+                slab = addSlab();
+            }
+            if (slab != null) {
+                slabClass[slab] = sizeClass;
+                slabFreeHead[slab] = -1;
+                slabCarved[slab] = 0;
+                classSlabCount[sizeClass]++;
+                pushPartial(slab);
+            } else if (index.isEmpty()) {
+                return -1;
+            } else {
+                evictFrom(classEntries[sizeClass].isEmpty() ? largestClass() : sizeClass);
+            }
+        }
+    }
+
+    private int addSlab() {
+        final int slab = slabs.size();
+        slabs.add(ByteBuffer.allocateDirect(slabSize));
+        if (slab == slabClass.length) {
+            final int length = Math.max(4, slab * 2);
+            slabClass = Arrays.copyOf(slabClass, length);
+            slabUsage = Arrays.copyOf(slabUsage, length);
+            slabFreeHead = Arrays.copyOf(slabFreeHead, length);
+            slabCarved = Arrays.copyOf(slabCarved, length);
+            slabPartial = Arrays.copyOf(slabPartial, length);
+        }
+        slabUsage[slab] = 0;
+        slabPartial[slab] = -1;
+        return slab;
+    }
+
+    private boolean hasFreeChunk(int slab, int chunkSize) {
+        return slabFreeHead[slab] >= 0 || slabCarved[slab] + chunkSize <= slabSize;
+    }
+
+    private long take(int slab, int chunkSize) {
+        int offset = slabFreeHead[slab];
+        if (offset >= 0) {
+            slabFreeHead[slab] = slabs.get(slab).getInt(offset);
+        } else {
+            offset = slabCarved[slab];
+            slabCarved[slab] += chunkSize;
+        }
+        slabUsage[slab]++;
+        return ((long) slab << 32) | offset;
+    }
+
+    private void pushPartial(int slab) {
+        if (slabPartial[slab] != slabClass[slab]) {
+            slabPartial[slab] = slabClass[slab];
+            partialSlabs[slabClass[slab]].push(slab);
+        }
+    }
+
+    private void release(String key, CacheEntry entry) {
+        classEntries[entry.sizeClass].remove(key);
+        final int slab = slabOf(entry.address);
+        if (--slabUsage[slab] == 0) {
+            // hand the empty slab back so that other size classes can reuse it:
+            slabClass[slab] = -1;
+            classSlabCount[entry.sizeClass]--;
+            freeSlabs.add(slab);
+        } else {
+            slabs.get(slab).putInt(offsetOf(entry.address), slabFreeHead[slab]);
+            slabFreeHead[slab] = offsetOf(entry.address);
+            pushPartial(slab);
+        }
+    }
+
+    private void evictFrom(int sizeClass) {
+        Iterator<Map.Entry<String, CacheEntry>> it = classEntries[sizeClass].entrySet().iterator();
+        if (it.hasNext()) {
+            Map.Entry<String, CacheEntry> eldest = it.next();
+            index.remove(eldest.getKey());
+            release(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private int largestClass() {
+        int largest = -1;
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            if (!classEntries[i].isEmpty() &&
+                    (largest < 0 || classSlabCount[i] > classSlabCount[largest])) {
+                largest = i;
+            }
+        }
+        return Math.max(largest, 0);
+    }
+
+    private static int sizeClassOf(int length) {
+        int sizeClass = 0;
+        while ((1 << (sizeClass + MIN_CHUNK_SHIFT)) < length) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private static class CacheEntry {
+
+        private final long address;
+        private final int length;
+        private final int sizeClass;
+
+        CacheEntry(long address, int length, int sizeClass) {
+            this.address = address;
+            this.length = length;
+            this.sizeClass = sizeClass;
+        }
+
+    }
+
+}
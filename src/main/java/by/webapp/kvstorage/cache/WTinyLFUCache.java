@@ -0,0 +1,148 @@
+package by.webapp.kvstorage.cache;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class WTinyLFUCache<K, V> implements ICache<K, V> {
+
+    private static final float WINDOW_FACTOR = 0.01f;
+    private static final float PROTECTED_FACTOR = 0.8f;
+    private final LinkedHashMap<K, V> window = new LinkedHashMap<>();
+    private final LinkedHashMap<K, V> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, V> protectedRegion = new LinkedHashMap<>();
+    private final FrequencySketch<K> sketch;
+    private final int maxWindow;
+    private final int maxMain;
+    private final int maxProtected;
+
+    public WTinyLFUCache() {
+        this(10);
+    }
+
+    public WTinyLFUCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Wrong input data: 'capacity' is illegal");
+        }
+        this.maxWindow = Math.max(1, (int) (capacity * WINDOW_FACTOR));
+        this.maxMain = capacity - maxWindow;
+        this.maxProtected = (int) (maxMain * PROTECTED_FACTOR);
+        this.sketch = new FrequencySketch<>(capacity);
+    }
+
+    @Override
+    public synchronized V get(K key) {
+        V value = window.remove(key);
+        if (value != null) {
+            sketch.increment(key);
+            window.put(key, value);
+            return value;
+        }
+        value = probation.remove(key);
+        if (value != null) {
+            sketch.increment(key);
+            promote(key, value);
+            return value;
+        }
+        value = protectedRegion.remove(key);
+        if (value != null) {
+            sketch.increment(key);
+            protectedRegion.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        if (window.containsKey(key)) {
+            return window.put(key, value);
+        }
+        V oldValue = probation.remove(key);
+        if (oldValue != null) {
+            promote(key, value);
+            return oldValue;
+        }
+        if (protectedRegion.containsKey(key)) {
+            oldValue = protectedRegion.remove(key);
+            protectedRegion.put(key, value);
+            return oldValue;
+        }
+        sketch.increment(key);
+        window.put(key, value);
+        if (window.size() > maxWindow) {
+            Map.Entry<K, V> candidate = pollFirst(window);
+            admit(candidate.getKey(), candidate.getValue());
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized V putIfAbsent(K key, V value) {
+        return contains(key) ? value : put(key, value);
+    }
+
+    @Override
+    public synchronized V remove(K key) {
+        V value = window.remove(key);
+        if (value == null) {
+            value = probation.remove(key);
+        }
+        if (value == null) {
+            value = protectedRegion.remove(key);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized boolean contains(K key) {
+        return window.containsKey(key) || probation.containsKey(key) ||
+                protectedRegion.containsKey(key);
+    }
+
+    @Override
+    public synchronized long size() {
+        return window.size() + probation.size() + protectedRegion.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        window.clear();
+        probation.clear();
+        protectedRegion.clear();
+    }
+
+    private void admit(K candidateKey, V candidateValue) {
+        if (probation.size() + protectedRegion.size() < maxMain) {
+            probation.put(candidateKey, candidateValue);
+            return;
+        }
+        LinkedHashMap<K, V> victimRegion = probation.isEmpty() ? protectedRegion : probation;
+        if (victimRegion.isEmpty()) {
+            return;
+        }
+        K victimKey = victimRegion.keySet().iterator().next();
+        if (sketch.frequency(candidateKey) > sketch.frequency(victimKey)) {
+            victimRegion.remove(victimKey);
+            probation.put(candidateKey, candidateValue);
+        }
+    }
+
+    private void promote(K key, V value) {
+        protectedRegion.put(key, value);
+        if (protectedRegion.size() > maxProtected) {
+            Map.Entry<K, V> demoted = pollFirst(protectedRegion);
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private Map.Entry<K, V> pollFirst(LinkedHashMap<K, V> region) {
+        Iterator<Map.Entry<K, V>> it = region.entrySet().iterator();
+        Map.Entry<K, V> first = it.next();
+        Map.Entry<K, V> result = new AbstractMap.SimpleEntry<>(first);
+        it.remove();
+        return result;
+    }
+
+}
@@ -0,0 +1,13 @@
+package by.webapp.kvstorage.cache;
+
+public interface Weigher<K, V> {
+
+    long ENTRY_OVERHEAD = 96;
+
+    long weigh(K key, V value);
+
+    static Weigher<String, String> strings() {
+        return (key, value) -> ENTRY_OVERHEAD + 2L * (key.length() + value.length());
+    }
+
+}
@@ -0,0 +1,102 @@
+package by.webapp.kvstorage.controller;
+
+import by.webapp.kvstorage.model.LoadReport;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.RebalanceMove;
+import by.webapp.kvstorage.model.RebalancePlan;
+import by.webapp.kvstorage.service.BulkLoadService;
+import by.webapp.kvstorage.service.DistributedService;
+import by.webapp.kvstorage.service.RebalanceService;
+import by.webapp.kvstorage.service.ReplicationService;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.util.List;
+
+@RestController
+@RequestMapping(
+        value = "/admin", produces = MediaType.APPLICATION_JSON_VALUE)
+public class AdminController {
+
+    private static final Logger logger = LogManager.getLogger(AdminController.class);
+    private final BulkLoadService bulkLoadService;
+    private final RebalanceService rebalanceService;
+    private final ReplicationService replicationService;
+
+    @Autowired
+    public AdminController(BulkLoadService bulkLoadService,
+                           RebalanceService rebalanceService,
+                           ReplicationService replicationService) {
+        this.bulkLoadService = bulkLoadService;
+        this.rebalanceService = rebalanceService;
+        this.replicationService = replicationService;
+        logger.debug("AdminController initialized");
+    }
+
+    @PostMapping(value = "/collections/{collectionId}/load",
+            consumes = DistributedService.NDJSON_VALUE)
+    public LoadReport load(@PathVariable String collectionId, InputStream body) {
+        return bulkLoadService.load(collectionId, body, report ->
+                logger.info("Bulk load progress: " + report));
+    }
+
+    @GetMapping("/loads")
+    public List<LoadReport> getLoads() {
+        return bulkLoadService.getReports();
+    }
+
+    @PostMapping(value = "/rebalance", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<RebalanceMove> rebalance(@RequestBody String layout) {
+        return rebalanceService.start(layout);
+    }
+
+    @GetMapping("/rebalance")
+    public List<RebalanceMove> getRebalance() {
+        return rebalanceService.getStatus();
+    }
+
+    @DeleteMapping("/rebalance")
+    public void abortRebalance() {
+        rebalanceService.abort();
+    }
+
+    @PutMapping("/rebalance/plan")
+    public void installPlan(@RequestBody RebalancePlan plan) {
+        rebalanceService.install(plan);
+    }
+
+    @DeleteMapping("/rebalance/plan")
+    public void cancelPlan() {
+        rebalanceService.cancel();
+    }
+
+    @PostMapping("/rebalance/stream")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void stream() {
+        rebalanceService.stream();
+    }
+
+    @PutMapping("/rebalance/moves/{from}/{to}")
+    public void completeMove(@PathVariable int from, @PathVariable int to) {
+        rebalanceService.complete(from, to);
+    }
+
+    @PostMapping(value = "/replication/log", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public long applyLog(@RequestBody List<Mutation> mutations) {
+        return replicationService.apply(mutations);
+    }
+
+}
@@ -7,16 +7,18 @@ import by.webapp.kvstorage.service.CollectionService;
 import by.webapp.kvstorage.service.DistributedService;
 import by.webapp.kvstorage.service.RollbackService;
 import by.webapp.kvstorage.util.NodeLoader;
-import by.webapp.kvstorage.util.Validator;
+import by.webapp.kvstorage.util.PageCursor;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.ResourceAccessException;
 
 import javax.validation.Valid;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -185,17 +187,23 @@ public class CollectionController {
     }
 
     @GetMapping
-    public List<Collection> getAll(
+    public ResponseEntity<List<Collection>> getAll(
             @RequestParam(name = "page", required = false,
                     defaultValue = INITIAL_PAGE) int offSet,
             @RequestParam(name = "pageSize", required = false,
                     defaultValue = INITIAL_PAGE_SIZE) int pageSize,
+            @RequestParam(name = "cursor", required = false) String cursor,
             @RequestHeader(name = "replica", required = false,
                     defaultValue = "false") boolean isReplica) {
+        if (offSet < 0 || pageSize <= 0) {
+            return ResponseEntity.ok(Collections.emptyList());
+        }
         String nodeName = NodeLoader.thisNode.getName();
+        final String afterName = PageCursor.decode(cursor);
         List<Collection> collectionList;
         try {
-            collectionList = collectionService.list();
+            collectionList = collectionService.list(afterName,
+                    afterName == null ? PageCursor.getOffset(offSet, pageSize) : 0, pageSize);
         } catch (DataBaseException e) {
             final String message = "DataBase error in CollectionController" +
                     " while getting collection list in " + nodeName;
@@ -207,10 +215,15 @@ public class CollectionController {
                 logger.error(replicaMessage);
                 throw new FailedException(replicaMessage, e);
             }
-            collectionList = distributedService.distributeGettingList(offSet, pageSize);
+            collectionList = distributedService.distributeGettingList(cursor, offSet, pageSize);
         }
         logger.debug("Collections list returned in " + nodeName);
-        return Validator.getCollectionSubList(collectionList, offSet, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (collectionList.size() == pageSize) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER,
+                    PageCursor.encode(collectionList.get(pageSize - 1).getName()));
+        }
+        return response.body(collectionList);
     }
 
 }
\ No newline at end of file
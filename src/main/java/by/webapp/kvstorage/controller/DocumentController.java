@@ -1,23 +1,40 @@
 package by.webapp.kvstorage.controller;
 
+import by.webapp.kvstorage.exception.BadRequestException;
 import by.webapp.kvstorage.exception.DataBaseException;
 import by.webapp.kvstorage.exception.FailedException;
 import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.Query;
 import by.webapp.kvstorage.service.DistributedService;
 import by.webapp.kvstorage.service.DocumentService;
-import by.webapp.kvstorage.service.RollbackService;
+import by.webapp.kvstorage.service.ReplicationService;
 import by.webapp.kvstorage.util.NodeLoader;
+import by.webapp.kvstorage.util.PageCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,17 +45,21 @@ public class DocumentController {
     private static final Logger logger = LogManager.getLogger(DocumentController.class);
     private static final String INITIAL_PAGE = "0";
     private static final String INITIAL_PAGE_SIZE = "10";
+    private static final int IMPORT_BATCH_SIZE = 1000;
     private final DocumentService documentService;
     private final DistributedService distributedService;
-    private final RollbackService rollbackService;
+    private final ReplicationService replicationService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
     public DocumentController(DocumentService documentService,
                               DistributedService distributedService,
-                              RollbackService rollbackService) {
+                              ReplicationService replicationService,
+                              ObjectMapper objectMapper) {
         this.documentService = documentService;
         this.distributedService = distributedService;
-        this.rollbackService = rollbackService;
+        this.replicationService = replicationService;
+        this.objectMapper = objectMapper;
         logger.debug("DocumentController initialized");
     }
 
@@ -46,33 +67,202 @@ public class DocumentController {
     @ResponseStatus(HttpStatus.CREATED)
     public Document create(
             @PathVariable String collectionId,
-            @Valid @RequestBody Document document,
-            @RequestHeader(name = "counter", required = false,
-                    defaultValue = "0") int counter,
-            @RequestHeader(name = "rollback", required = false,
-                    defaultValue = "false") boolean shouldRollBack) {
+            @Valid @RequestBody Document document) {
         String documentId = document.getKey();
+        if (!distributedService.isMyGroup(collectionId + "/" + documentId)) {
+            return distributedService.redirectPost(document, collectionId, documentId);
+        }
+        documentService.setDocumentName(collectionId);
         Document result;
-        if (distributedService.isMyGroup(collectionId + "/" + documentId)) {
+        try {
+            result = documentService.create(document);
+        } catch (DataBaseException e) {
+            logger.error("Problem with data base in  ", e);
+            throw new FailedException("Problem with DB: ", e);
+        }
+        replicate(collectionId, documentId, document, null, false);
+        return result;
+    }
+
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public int createAll(
+            @PathVariable String collectionId,
+            @RequestBody List<Document> documents,
+            @RequestHeader(name = "replica", required = false,
+                    defaultValue = "false") boolean isReplica,
+            @RequestHeader(name = "migration", required = false,
+                    defaultValue = "false") boolean isMigration) {
+        documentService.setDocumentName(collectionId);
+        if (documents.isEmpty()) {
+            return 0;
+        }
+        if (isReplica) {
+            return documentService.createAll(documents);
+        }
+        if (isMigration) {
+            List<Document> created = documentService.createMissing(documents);
+            if (!created.isEmpty()) {
+                try {
+                    distributedService.sendBatch(created, collectionId);
+                } catch (ResourceAccessException e) {
+                    logger.warn("Starting rollback for migrated batch in current node");
+                    documentService.deleteAll(created.stream()
+                            .map(Document::getKey).collect(Collectors.toList()));
+                    throw new FailedException("Exception in batch replication: ", e);
+                }
+            }
+            return created.size();
+        }
+        return distributeBatch(collectionId, documents);
+    }
+
+    @PostMapping(consumes = DistributedService.NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public int importAll(@PathVariable String collectionId, InputStream body) throws IOException {
+        documentService.setDocumentName(collectionId);
+        documentService.checkCollection();
+        int created = 0;
+        List<Document> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        try (MappingIterator<Document> documents =
+                     objectMapper.readerFor(Document.class).readValues(body)) {
+            while (documents.hasNextValue()) {
+                batch.add(documents.nextValue());
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    created += distributeBatch(collectionId, batch);
+                    batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Error: invalid NDJSON after " + created +
+                    " imported documents: " + e.getOriginalMessage());
+        }
+        if (!batch.isEmpty()) {
+            created += distributeBatch(collectionId, batch);
+        }
+        logger.debug(created + " documents imported.");
+        return created;
+    }
+
+    @GetMapping(params = "format=ndjson", produces = DistributedService.NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAll(
+            @PathVariable String collectionId,
+            @RequestHeader(name = "main", required = false,
+                    defaultValue = "true") boolean isCurrentGroup) {
+        documentService.setDocumentName(collectionId);
+        documentService.checkCollection();
+        final ObjectWriter writer = objectMapper.writerFor(Document.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = outputStream -> {
+            documentService.setDocumentName(collectionId);
+            try {
+                documentService.export(document -> {
+                    if (distributedService.isRebalancing() && !distributedService
+                            .isMyGroup(collectionId + "/" + document.getKey())) {
+                        return;
+                    }
+                    try {
+                        writer.writeValue(outputStream, document);
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (isCurrentGroup && distributedService.hasOtherGroups()) {
+                distributedService.exportOtherGroups(collectionId, outputStream);
+            }
+            logger.debug("Documents of " + collectionId + " exported.");
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(DistributedService.NDJSON_VALUE))
+                .body(body);
+    }
+
+    private int distributeBatch(String collectionId, List<Document> documents) {
+        Map<Integer, List<Document>> groups =
+                distributedService.groupByOwner(collectionId, documents);
+        List<Document> localBatch = groups.remove(NodeLoader.thisNode.getGroup());
+        int created = 0;
+        if (localBatch != null) {
+            boolean isAsync = documentService.isAsyncReplication();
+            boolean replicated = false;
             try {
-                documentService.setDocumentName(collectionId);
-                result = documentService.create(document);
-                distributedService.sendPost(
-                        document, counter, shouldRollBack, collectionId, documentId);
-                return result;
-            } catch (DataBaseException | ResourceAccessException e) {
-                if (e instanceof ResourceAccessException) {
-                    logger.warn("Starting rollback for POST request in current node");
-                    documentService.delete(documentId);
+                created += documentService.createAll(localBatch);
+                if (isAsync) {
+                    replicationService.appendAll(localBatch.stream()
+                            .map(document -> toMutation(collectionId, document.getKey(), document))
+                            .collect(Collectors.toList()));
+                } else {
+                    distributedService.sendBatch(localBatch, collectionId);
+                }
+                replicated = true;
+                distributedService.mirrorBatch(localBatch, collectionId);
+            } catch (DataBaseException | ResourceAccessException | IOException e) {
+                if (!(e instanceof DataBaseException)) {
+                    logger.warn("Starting rollback for batch POST request in current node");
+                    List<String> keys = localBatch.stream()
+                            .map(Document::getKey).collect(Collectors.toList());
+                    documentService.deleteAll(keys);
+                    if (replicated && isAsync) {
+                        appendBatchRestore(collectionId, keys);
+                    } else if (replicated) {
+                        distributedService.deleteBatchFromReplicas(keys, collectionId);
+                    }
                 } else {
                     logger.error("Problem with data base in  ", e);
                 }
-                rollbackService.rollback(counter, collectionId, documentId);
                 throw new FailedException("Problem with DB: ", e);
             }
-        } else {
-            return distributedService.redirectPost(document, collectionId, documentId);
         }
+        for (List<Document> batch : groups.values()) {
+            created += distributedService.redirectBatch(batch, collectionId);
+        }
+        logger.debug(created + " documents created in batch.");
+        return created;
+    }
+
+    @PostMapping("/batch/delete")
+    public int deleteAll(
+            @PathVariable String collectionId,
+            @RequestBody List<String> keys,
+            @RequestHeader(name = "replica", required = false,
+                    defaultValue = "false") boolean isReplica) {
+        if (!isReplica) {
+            throw new BadRequestException("Error: batch delete is available for replicas only.");
+        }
+        documentService.setDocumentName(collectionId);
+        return documentService.deleteAll(keys);
+    }
+
+    @PostMapping("/query")
+    public List<Document> query(
+            @PathVariable String collectionId,
+            @RequestBody Query query,
+            @RequestHeader(name = "main", required = false,
+                    defaultValue = "true") boolean isCurrentGroup,
+            @RequestHeader(name = "replica", required = false,
+                    defaultValue = "false") boolean isReplica) {
+        documentService.setDocumentName(collectionId);
+        List<Document> documentList;
+        try {
+            documentList = documentService.query(query);
+        } catch (DataBaseException e) {
+            logger.error("Problem with Data Base in  " +
+                    NodeLoader.thisNode.getName(), e);
+            if (isReplica) {
+                throw new FailedException("Problem with Data Base", e);
+            }
+            documentList = distributedService.sendQueryToReplica(query, collectionId);
+        }
+        documentList = distributedService.retainOwned(collectionId, documentList);
+        if (isCurrentGroup && distributedService.hasOtherGroups()) {
+            documentList = distributedService.distributeQuery(query, collectionId, documentList);
+        }
+        logger.debug("Query results returned.");
+        return documentList;
     }
 
     @GetMapping("/{documentId}")
@@ -83,22 +273,17 @@ public class DocumentController {
         documentService.setDocumentName(collectionId);
         Document document;
         if (distributedService.isMyGroup(collectionId + "/" + documentId)) {
-            if (documentService.isExist(documentId)) {
-                try {
-                    document = documentService.get(documentId);
-                } catch (DataBaseException e) {
-                    logger.error("Problem with Data Base in " +
-                            NodeLoader.thisNode.getName(), e);
-                    if (!isReplica) {
-                        return (Document) distributedService.sendGet(
-                                Document.class, collectionId, documentId);
-                    } else {
-                        throw new FailedException("Problem with Data Base", e);
-                    }
+            try {
+                document = documentService.get(documentId);
+            } catch (DataBaseException e) {
+                logger.error("Problem with Data Base in " +
+                        NodeLoader.thisNode.getName(), e);
+                if (!isReplica) {
+                    return (Document) distributedService.sendGet(
+                            Document.class, collectionId, documentId);
+                } else {
+                    throw new FailedException("Problem with Data Base", e);
                 }
-            } else {
-                document = (Document) distributedService.
-                        sendGet(Document.class, collectionId, documentId);
             }
         } else {
             logger.debug("Document " + documentId + " returned.");
@@ -111,114 +296,233 @@ public class DocumentController {
     @PutMapping("/{documentId}")
     public int update(
             @PathVariable String collectionId, @PathVariable String documentId,
-            @Valid @RequestBody Document document,
-            @RequestHeader(name = "counter", required = false
-                    , defaultValue = "0") int counter,
-            @RequestHeader(name = "rollback", required = false,
-                    defaultValue = "false") boolean shouldRollBack)
-            throws CloneNotSupportedException {
-        documentService.setDocumentName(collectionId);
-        int flag = 0;
-        if (distributedService.isMyGroup(collectionId + "/" + documentId)) {
-            Document documentOldValue = null;
-            try {
-                documentOldValue = documentService.get(documentId).clone();
-                flag = documentService.update(documentId, document);
-                distributedService.sendUpdate(
-                        document, counter, shouldRollBack, collectionId, documentId);
-            } catch (DataBaseException | ResourceAccessException e) {
-                if (shouldRollBack) {
-                    logger.error("Problem with rollback. The application doesn't work correctly");
-                    throw new FailedException("Problem with rollback.", e);
-                }
-                if (e instanceof ResourceAccessException) {
-                    documentService.update(documentId, documentOldValue);
-                } else {
-                    logger.error("Problem with Data Base in  " +
-                            NodeLoader.thisNode.getName(), e);
-                }
-                rollbackService.rollback(documentOldValue, counter,
-                        HttpMethod.PUT, collectionId, documentId);
-            }
-        } else {
+            @Valid @RequestBody Document document) throws CloneNotSupportedException {
+        if (!distributedService.isMyGroup(collectionId + "/" + documentId)) {
             logger.debug("Document " + documentId + " updated.");
             distributedService.redirectUpdate(document, collectionId, documentId);
             return 1;
         }
+        documentService.setDocumentName(collectionId);
+        Document documentOldValue;
+        int flag;
+        try {
+            documentOldValue = documentService.get(documentId).clone();
+            flag = documentService.update(documentId, document);
+        } catch (DataBaseException e) {
+            logger.error("Problem with Data Base in  " +
+                    NodeLoader.thisNode.getName(), e);
+            throw new FailedException("Problem with Data Base", e);
+        }
+        Document documentNewValue = document.clone();
+        documentNewValue.setKey(documentId);
+        replicate(collectionId, documentId, documentNewValue, documentOldValue, false);
         return flag;
     }
 
+    @PutMapping(value = "/{documentId}", params = "upsert=true")
+    public ResponseEntity<Document> upsert(
+            @PathVariable String collectionId, @PathVariable String documentId,
+            @Valid @RequestBody Document document,
+            @RequestHeader(name = "replica", required = false,
+                    defaultValue = "false") boolean isReplica,
+            @RequestHeader(name = "migration", required = false,
+                    defaultValue = "false") boolean isMigration) {
+        document.setKey(documentId);
+        if (!isReplica && !isMigration &&
+                !distributedService.isMyGroup(collectionId + "/" + documentId)) {
+            logger.debug("Document " + documentId + " upserted.");
+            return distributedService.redirectUpsert(document, collectionId, documentId);
+        }
+        documentService.setDocumentName(collectionId);
+        Document documentOldValue;
+        try {
+            documentOldValue = documentService.upsert(document);
+        } catch (DataBaseException e) {
+            logger.error("Problem with Data Base in  " +
+                    NodeLoader.thisNode.getName(), e);
+            throw new FailedException("Problem with Data Base", e);
+        }
+        if (!isReplica) {
+            replicate(collectionId, documentId, document, documentOldValue, isMigration);
+        }
+        return new ResponseEntity<>(document,
+                documentOldValue == null ? HttpStatus.CREATED : HttpStatus.OK);
+    }
+
     @DeleteMapping("/{documentId}")
     public int delete(
-            @PathVariable String collectionId, @PathVariable String documentId,
-            @RequestHeader(name = "counter", required = false
-                    , defaultValue = "0") int counter,
-            @RequestHeader(name = "rollback", required = false,
-                    defaultValue = "false") boolean shouldRollBack)
+            @PathVariable String collectionId, @PathVariable String documentId)
             throws CloneNotSupportedException {
-        documentService.setDocumentName(collectionId);
-        int flag = -1;
-        if (distributedService.isMyGroup(collectionId + "/" + documentId)) {
-            Document documentOldValue = null;
-            try {
-                documentOldValue = documentService.get(documentId).clone();
-                flag = documentService.delete(documentId);
-                distributedService.sendDelete(
-                        counter, shouldRollBack, collectionId, documentId);
-            } catch (DataBaseException | ResourceAccessException e) {
-                if (shouldRollBack) {
-                    throw new FailedException("Problem with rollback.", e);
-                }
-                if (e instanceof ResourceAccessException) {
-                    documentService.create(documentOldValue);
-                } else {
-                    logger.error("Problem with Data Base in  " +
-                            NodeLoader.thisNode.getName(), e);
-                }
-                rollbackService.rollback(documentOldValue, counter,
-                        HttpMethod.DELETE, collectionId);
-            }
-        } else {
+        if (!distributedService.isMyGroup(collectionId + "/" + documentId)) {
             logger.debug("Document " + documentId + " deleted.");
             distributedService.redirectDelete(collectionId, documentId);
-            flag = 1;
+            return 1;
+        }
+        documentService.setDocumentName(collectionId);
+        Document documentOldValue;
+        int flag;
+        try {
+            documentOldValue = documentService.get(documentId).clone();
+            flag = documentService.delete(documentId);
+        } catch (DataBaseException e) {
+            logger.error("Problem with Data Base in  " +
+                    NodeLoader.thisNode.getName(), e);
+            throw new FailedException("Problem with Data Base", e);
         }
+        replicate(collectionId, documentId, null, documentOldValue, false);
         return flag;
     }
 
     @GetMapping
-    public List<Document> getAll(
+    public ResponseEntity<List<Document>> getAll(
             @PathVariable String collectionId,
             @RequestParam(name = "page", required = false,
                     defaultValue = INITIAL_PAGE) int page,
             @RequestParam(name = "pageSize", required = false,
                     defaultValue = INITIAL_PAGE_SIZE) int pageSize,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "prefix", required = false) String prefix,
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
             @RequestHeader(name = "main", required = false,
                     defaultValue = "true") boolean isCurrentGroup,
             @RequestHeader(name = "replica", required = false,
                     defaultValue = "false") boolean isReplica) {
-        {
-            documentService.setDocumentName(collectionId);
-            List<Document> documentList;
-            try {
-                documentList = documentService.list();
-            } catch (DataBaseException e) {
-                logger.error("Problem with Data Base in  " +
-                        NodeLoader.thisNode.getName(), e);
-                if (isReplica) {
-                    throw new FailedException("Problem with Data Base", e);
-                }
-                documentList = distributedService.sendListToReplica(
-                        page, pageSize, collectionId)
-                        .stream().map((obj) -> (Document) obj).collect(Collectors.toList());
+        if (page < 0 || pageSize <= 0) {
+            return ResponseEntity.ok(Collections.emptyList());
+        }
+        documentService.setDocumentName(collectionId);
+        final String afterKey = PageCursor.decode(cursor);
+        if (prefix != null || from != null || to != null) {
+            return scan(collectionId, prefix, from, to, cursor, afterKey, pageSize,
+                    isCurrentGroup, isReplica);
+        }
+        final int offset = afterKey == null ? PageCursor.getOffset(page, pageSize) : 0;
+        final boolean shouldMerge = isCurrentGroup && distributedService.hasOtherGroups();
+        final int fetchPage = shouldMerge ? 1 : page;
+        final int fetchSize = shouldMerge ?
+                (int) Math.min(Integer.MAX_VALUE, (long) offset + pageSize) : pageSize;
+        List<Document> documentList;
+        try {
+            documentList = documentService.list(
+                    afterKey, afterKey == null ? PageCursor.getOffset(fetchPage, fetchSize) : 0,
+                    fetchSize);
+        } catch (DataBaseException e) {
+            logger.error("Problem with Data Base in  " +
+                    NodeLoader.thisNode.getName(), e);
+            if (isReplica) {
+                throw new FailedException("Problem with Data Base", e);
+            }
+            documentList = distributedService.sendListToReplica(
+                    cursor, fetchPage, fetchSize, collectionId);
+        }
+        documentList = distributedService.retainOwned(collectionId, documentList);
+        if (shouldMerge) {
+            documentList = distributedService.distributeDocumentList(
+                    cursor, offset, pageSize, collectionId, documentList);
+        }
+        logger.debug("Documents list returned.");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (documentList.size() == pageSize) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER,
+                    PageCursor.encode(documentList.get(pageSize - 1).getKey()));
+        }
+        return response.body(documentList);
+    }
+
+    private void replicate(String collectionId, String documentId, Document documentNewValue,
+                           Document documentOldValue, boolean isMigration) {
+        Supplier<Document> currentState = () -> documentService.find(collectionId, documentId);
+        boolean isAsync = documentService.isAsyncReplication();
+        try {
+            if (isAsync) {
+                replicationService.appendCurrent(collectionId, documentId);
+            } else {
+                distributedService.replicate(collectionId, documentId, documentNewValue,
+                        documentService.getWriteQuorum(), currentState, () -> {
+                            logger.warn("Starting rollback of " + documentId + " in current node");
+                            documentService.restore(documentId, documentOldValue);
+                        });
+            }
+        } catch (ResourceAccessException e) {
+            throw new FailedException("Problem with replication: ", e);
+        } catch (IOException e) {
+            logger.warn("Starting rollback of " + documentId + " in current node");
+            documentService.restore(documentId, documentOldValue);
+            throw new FailedException("Problem with replication: ", e);
+        }
+        if (isMigration) {
+            return;
+        }
+        try {
+            if (documentNewValue == null) {
+                distributedService.mirrorDelete(collectionId, documentId);
+            } else {
+                distributedService.mirrorUpsert(documentNewValue, collectionId, documentId);
             }
-            if (isCurrentGroup) {
-                documentList = distributedService.distributeDocumentList(
-                        page, pageSize, collectionId, documentList);
+        } catch (ResourceAccessException e) {
+            logger.warn("Starting rollback of mirrored " + documentId + " in current group");
+            documentService.restore(documentId, documentOldValue);
+            if (isAsync) {
+                appendRestore(collectionId, documentId);
+            } else {
+                distributedService.restoreReplicas(collectionId, documentId, currentState);
             }
-            logger.debug("Documents list returned.");
-            return documentList;
+            throw new FailedException("Problem with replication: ", e);
+        }
+    }
+
+    private void appendRestore(String collectionId, String documentId) {
+        try {
+            replicationService.appendCurrent(collectionId, documentId);
+        } catch (IOException e) {
+            logger.error("Rollback of " + documentId + " is not logged for replicas", e);
+        }
+    }
+
+    private void appendBatchRestore(String collectionId, List<String> keys) {
+        try {
+            replicationService.appendAll(keys.stream()
+                    .map(key -> toMutation(collectionId, key, null))
+                    .collect(Collectors.toList()));
+        } catch (IOException e) {
+            logger.error("Rollback of batch is not logged for replicas", e);
+        }
+    }
+
+    private static Mutation toMutation(String collectionId, String documentId, Document document) {
+        return document == null ?
+                new Mutation(Mutation.Type.DELETE, collectionId, documentId, null) :
+                new Mutation(Mutation.Type.PUT, collectionId, documentId, document.getValue());
+    }
+
+    private ResponseEntity<List<Document>> scan(
+            String collectionId, String prefix, String from, String to, String cursor,
+            String afterKey, int pageSize, boolean isCurrentGroup, boolean isReplica) {
+        List<Document> documentList;
+        try {
+            documentList = documentService.scan(prefix, from, to, afterKey, pageSize);
+        } catch (DataBaseException e) {
+            logger.error("Problem with Data Base in  " +
+                    NodeLoader.thisNode.getName(), e);
+            if (isReplica) {
+                throw new FailedException("Problem with Data Base", e);
+            }
+            documentList = distributedService.sendScanToReplica(
+                    prefix, from, to, cursor, pageSize, collectionId);
+        }
+        documentList = distributedService.retainOwned(collectionId, documentList);
+        if (isCurrentGroup && distributedService.hasOtherGroups()) {
+            documentList = distributedService.distributeScan(
+                    prefix, from, to, cursor, pageSize, collectionId, documentList);
+        }
+        logger.debug("Documents range returned.");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (documentList.size() == pageSize) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER,
+                    PageCursor.encode(documentList.get(pageSize - 1).getKey()));
         }
+        return response.body(documentList);
     }
 
 }
\ No newline at end of file
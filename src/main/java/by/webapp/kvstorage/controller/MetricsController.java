@@ -0,0 +1,87 @@
+package by.webapp.kvstorage.controller;
+
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.repository.CollectionRepository;
+import by.webapp.kvstorage.repository.IDocumentRepository;
+import by.webapp.kvstorage.rpc.RpcClient;
+import by.webapp.kvstorage.service.ReplicationService;
+import by.webapp.kvstorage.storage.wal.WriteAheadDocumentRepository;
+import by.webapp.kvstorage.util.InterNodeRequestFactory;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping(
+        value = "/metrics", produces = MediaType.APPLICATION_JSON_VALUE)
+public class MetricsController {
+
+    private static final Logger logger = LogManager.getLogger(MetricsController.class);
+    private final CollectionRepository collectionRepository;
+    private final IDocumentRepository<Document> documentRepository;
+    private final WriteAheadDocumentRepository writeAheadRepository;
+    private final ReplicationService replicationService;
+    private final InterNodeRequestFactory interNodeRequestFactory;
+    private final RpcClient rpcClient;
+
+    @Autowired
+    public MetricsController(CollectionRepository collectionRepository,
+                             IDocumentRepository<Document> documentRepository,
+                             WriteAheadDocumentRepository writeAheadRepository,
+                             ReplicationService replicationService,
+                             InterNodeRequestFactory interNodeRequestFactory,
+                             RpcClient rpcClient) {
+        this.collectionRepository = collectionRepository;
+        this.documentRepository = documentRepository;
+        this.writeAheadRepository = writeAheadRepository;
+        this.replicationService = replicationService;
+        this.interNodeRequestFactory = interNodeRequestFactory;
+        this.rpcClient = rpcClient;
+        logger.debug("MetricsController initialized");
+    }
+
+    @GetMapping("/filters")
+    public Map<String, Object> getFilters() {
+        Map<String, Object> documentFilters = new TreeMap<>();
+        documentRepository.getFilters().forEach(
+                (collectionName, filter) -> documentFilters.put(collectionName, filter.getStats()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("collectionNames", collectionRepository.getFilter().getStats());
+        result.put("documents", documentFilters);
+        return result;
+    }
+
+    @GetMapping("/storage")
+    public Map<String, Map<String, Object>> getStorage() {
+        return new TreeMap<>(documentRepository.getStats());
+    }
+
+    @GetMapping("/wal")
+    public Map<String, Object> getWriteAheadLog() {
+        return writeAheadRepository.getLogStats();
+    }
+
+    @GetMapping("/replication")
+    public Map<String, Object> getReplication() {
+        return replicationService.getStatus();
+    }
+
+    @GetMapping("/http")
+    public Map<String, Object> getHttp() {
+        return interNodeRequestFactory.getStats();
+    }
+
+    @GetMapping("/rpc")
+    public Map<String, Object> getRpc() {
+        return rpcClient.getStats();
+    }
+
+}
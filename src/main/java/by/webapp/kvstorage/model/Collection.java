@@ -9,6 +9,7 @@ import javax.persistence.Id;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
+import java.util.Objects;
 
 @Data
 @Entity
@@ -22,12 +23,31 @@ public class Collection implements Cloneable {
     private String name;
     @Column(name = "algorithm")
     @NotNull(message = "Algorithm is compulsory")
-    @Pattern(regexp = "^[a-zA-Z]{3}$", message = "Algorithm has invalid characters")
+    @Pattern(regexp = "^[a-zA-Z]{3,10}$", message = "Algorithm has invalid characters")
     private String algorithm;
     @Column(name = "cache_limit")
     @NotNull(message = "Cache limit is compulsory")
     @Range(min = 1, message = "Cache limit must be positive")
     private Integer cacheLimit;
+    @Column(name = "cache_bytes")
+    @Range(min = 1, message = "Cache byte limit must be positive")
+    private Long cacheBytes;
+    @Column(name = "compression_threshold")
+    @Range(min = 1, message = "Compression threshold must be positive")
+    private Integer compressionThreshold;
+    @Column(name = "storage")
+    @Pattern(regexp = "^[a-zA-Z]{2,10}$", message = "Storage has invalid characters")
+    private String storage;
+    @Column(name = "indexed_paths")
+    @Pattern(regexp = "^[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*(,[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*)*$",
+            message = "Indexed paths must be comma-separated dotted field names")
+    private String indexedPaths;
+    @Column(name = "write_quorum")
+    @Range(min = 1, message = "Write quorum must be positive")
+    private Integer writeQuorum;
+    @Column(name = "replication")
+    @Pattern(regexp = "^(?i)(sync|async)$", message = "Replication must be sync or async")
+    private String replication;
     @Column(name = "json_schema", columnDefinition = "text", nullable = false)
     private String jsonSchema;
 
@@ -46,6 +66,12 @@ public class Collection implements Cloneable {
         Collection c = (Collection) obj;
         return name.equals(c.name) && algorithm.equals(c.algorithm) &&
                 cacheLimit.equals(c.cacheLimit) &&
+                Objects.equals(cacheBytes, c.cacheBytes) &&
+                Objects.equals(compressionThreshold, c.compressionThreshold) &&
+                Objects.equals(storage, c.storage) &&
+                Objects.equals(indexedPaths, c.indexedPaths) &&
+                Objects.equals(writeQuorum, c.writeQuorum) &&
+                Objects.equals(replication, c.replication) &&
                 jsonSchema.equals(c.jsonSchema);
     }
 
@@ -56,6 +82,12 @@ public class Collection implements Cloneable {
         result = prime * result + name.hashCode();
         result = prime * result + algorithm.hashCode();
         result = prime * result + cacheLimit;
+        result = prime * result + Objects.hashCode(cacheBytes);
+        result = prime * result + Objects.hashCode(compressionThreshold);
+        result = prime * result + Objects.hashCode(storage);
+        result = prime * result + Objects.hashCode(indexedPaths);
+        result = prime * result + Objects.hashCode(writeQuorum);
+        result = prime * result + Objects.hashCode(replication);
         result = prime * result + jsonSchema.hashCode();
         return result;
     }
@@ -64,7 +96,13 @@ public class Collection implements Cloneable {
     public String toString() {
         return new StringBuilder().append("Collection [name=").append(name)
                 .append(", cacheLimit=").append(cacheLimit)
+                .append(", cacheBytes=").append(cacheBytes)
                 .append(", algorithm=").append(algorithm)
+                .append(", compressionThreshold=").append(compressionThreshold)
+                .append(", storage=").append(storage)
+                .append(", indexedPaths=").append(indexedPaths)
+                .append(", writeQuorum=").append(writeQuorum)
+                .append(", replication=").append(replication)
                 .append(", jsonSchema=").append(jsonSchema).append(']').toString();
     }
 
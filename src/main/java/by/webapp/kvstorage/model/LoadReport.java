@@ -0,0 +1,74 @@
+package by.webapp.kvstorage.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@Data
+public class LoadReport {
+
+    public enum State {RUNNING, DONE, FAILED}
+
+    private static final int MAX_REJECTIONS = 100;
+    private final long id;
+    private final String collection;
+    private final long startedAt;
+    private volatile State state = State.RUNNING;
+    private volatile long read;
+    private volatile long loaded;
+    private volatile long duplicates;
+    private volatile long skipped;
+    private volatile long rejected;
+    private volatile long finishedAt;
+    private volatile String message;
+    private final List<String> rejections = new CopyOnWriteArrayList<>();
+
+    public LoadReport(long id, String collection) {
+        this.id = id;
+        this.collection = collection;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    public void reject(long line, String reason) {
+        rejected++;
+        if (rejections.size() < MAX_REJECTIONS) {
+            rejections.add("line " + line + ": " + reason);
+        }
+    }
+
+    public void finish(State state, String message) {
+        this.state = state;
+        this.message = message;
+        this.finishedAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        return id == ((LoadReport) obj).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("LoadReport [id=").append(id)
+                .append(", collection=").append(collection)
+                .append(", state=").append(state)
+                .append(", read=").append(read)
+                .append(", loaded=").append(loaded)
+                .append(", duplicates=").append(duplicates)
+                .append(", skipped=").append(skipped)
+                .append(", rejected=").append(rejected).append(']').toString();
+    }
+
+}
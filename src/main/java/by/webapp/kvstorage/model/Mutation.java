@@ -0,0 +1,67 @@
+package by.webapp.kvstorage.model;
+
+import lombok.Data;
+
+import java.util.Objects;
+
+@Data
+public class Mutation {
+
+    private long sequence;
+    private Type type;
+    private String collection;
+    private String key;
+    private String value;
+
+    public Mutation() {
+    }
+
+    public Mutation(Type type, String collection, String key, String value) {
+        this.type = type;
+        this.collection = collection;
+        this.key = key;
+        this.value = value;
+    }
+
+    public boolean isDelete() {
+        return type == Type.DELETE;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        Mutation m = (Mutation) obj;
+        return sequence == m.sequence && type == m.type && collection.equals(m.collection) &&
+                key.equals(m.key) && Objects.equals(value, m.value);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 79;
+        result = prime * result + Long.hashCode(sequence);
+        result = prime * result + type.hashCode();
+        result = prime * result + collection.hashCode();
+        result = prime * result + key.hashCode();
+        result = prime * result + Objects.hashCode(value);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("Mutation [sequence=").append(sequence)
+                .append(", type=").append(type)
+                .append(", collection=").append(collection)
+                .append(", key=").append(key).append(']').toString();
+    }
+
+    public enum Type {
+        PUT, DELETE
+    }
+
+}
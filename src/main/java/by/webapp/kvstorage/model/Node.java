@@ -2,17 +2,25 @@ package by.webapp.kvstorage.model;
 
 import lombok.Getter;
 
+import java.util.Objects;
+
 @Getter
 public class Node {
 
     private String name;
     private String url;
     private Integer group;
+    private String rpcAddress;
 
     public Node(String name, String url, Integer group) {
+        this(name, url, group, null);
+    }
+
+    public Node(String name, String url, Integer group, String rpcAddress) {
         this.name = name;
         this.url = url;
         this.group = group;
+        this.rpcAddress = rpcAddress;
     }
 
     @Override
@@ -24,7 +32,8 @@ public class Node {
             return false;
         }
         Node node = (Node) obj;
-        return name.equals(node.name) && url.equals(node.url) && group.equals(node.group);
+        return name.equals(node.name) && url.equals(node.url) && group.equals(node.group) &&
+                Objects.equals(rpcAddress, node.rpcAddress);
     }
 
     @Override
@@ -34,6 +43,7 @@ public class Node {
         result = prime * result + name.hashCode();
         result = prime * result + url.hashCode();
         result = prime * result + group.hashCode();
+        result = prime * result + Objects.hashCode(rpcAddress);
         return result;
     }
 
@@ -41,7 +51,8 @@ public class Node {
     public String toString() {
         return new StringBuilder().append("Node [name=").append(name)
                 .append(", url=").append(url)
-                .append(", group=").append(group).append(']').toString();
+                .append(", group=").append(group)
+                .append(", rpcAddress=").append(rpcAddress).append(']').toString();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package by.webapp.kvstorage.model;
+
+import lombok.Data;
+
+import java.util.Objects;
+
+@Data
+public class Predicate {
+
+    private String path;
+    private String op;
+    private Object value;
+
+    public Predicate() {
+    }
+
+    public Predicate(String path, String op, Object value) {
+        this.path = path;
+        this.op = op;
+        this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        Predicate p = (Predicate) obj;
+        return Objects.equals(path, p.path) && Objects.equals(op, p.op) &&
+                Objects.equals(value, p.value);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 79;
+        result = prime * result + Objects.hashCode(path);
+        result = prime * result + Objects.hashCode(op);
+        result = prime * result + Objects.hashCode(value);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("Predicate [path=").append(path)
+                .append(", op=").append(op)
+                .append(", value=").append(value).append(']').toString();
+    }
+
+}
@@ -0,0 +1,46 @@
+package by.webapp.kvstorage.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+@Data
+public class Query {
+
+    private List<Predicate> predicates = new ArrayList<>();
+    private String afterKey;
+    private Integer limit;
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        Query q = (Query) obj;
+        return Objects.equals(predicates, q.predicates) && Objects.equals(afterKey, q.afterKey) &&
+                Objects.equals(limit, q.limit);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 79;
+        result = prime * result + Objects.hashCode(predicates);
+        result = prime * result + Objects.hashCode(afterKey);
+        result = prime * result + Objects.hashCode(limit);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("Query [predicates=").append(predicates)
+                .append(", afterKey=").append(afterKey)
+                .append(", limit=").append(limit).append(']').toString();
+    }
+
+}
@@ -0,0 +1,54 @@
+package by.webapp.kvstorage.model;
+
+import lombok.Data;
+
+@Data
+public class RebalanceMove {
+
+    private int from;
+    private int to;
+    private boolean done;
+    private long copied;
+
+    public RebalanceMove() {
+    }
+
+    public RebalanceMove(int from, int to, boolean done, long copied) {
+        this.from = from;
+        this.to = to;
+        this.done = done;
+        this.copied = copied;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        RebalanceMove m = (RebalanceMove) obj;
+        return from == m.from && to == m.to && done == m.done && copied == m.copied;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 79;
+        result = prime * result + from;
+        result = prime * result + to;
+        result = prime * result + Boolean.hashCode(done);
+        result = prime * result + Long.hashCode(copied);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("RebalanceMove [from=").append(from)
+                .append(", to=").append(to)
+                .append(", done=").append(done)
+                .append(", copied=").append(copied).append(']').toString();
+    }
+
+}
@@ -0,0 +1,54 @@
+package by.webapp.kvstorage.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Objects;
+
+@Data
+public class RebalancePlan {
+
+    private String source;
+    private String target;
+    private List<Collection> collections;
+
+    public RebalancePlan() {
+    }
+
+    public RebalancePlan(String source, String target, List<Collection> collections) {
+        this.source = source;
+        this.target = target;
+        this.collections = collections;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        RebalancePlan p = (RebalancePlan) obj;
+        return Objects.equals(source, p.source) && Objects.equals(target, p.target) &&
+                Objects.equals(collections, p.collections);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 79;
+        result = prime * result + Objects.hashCode(source);
+        result = prime * result + Objects.hashCode(target);
+        result = prime * result + Objects.hashCode(collections);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("RebalancePlan [source=").append(source)
+                .append(", target=").append(target)
+                .append(", collections=").append(collections).append(']').toString();
+    }
+
+}
@@ -2,12 +2,15 @@ package by.webapp.kvstorage.repository;
 
 import by.webapp.kvstorage.exception.DataBaseException;
 import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.util.BloomFilter;
 import by.webapp.kvstorage.util.Validator;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowCountCallbackHandler;
 import org.springframework.stereotype.Repository;
 
@@ -24,7 +27,10 @@ public class CollectionRepository {
     private final JdbcTemplate jdbcTemplate;
     private final ICollectionRepository iCollectionRepository;
     private Map<String, Collection> collections = new HashMap<>();
+    private volatile BloomFilter nameFilter;
     private static final int MAX_ITEMS_COUNT = 1000;
+    private static final int MIN_FILTER_INSERTIONS = 1024;
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
 
     @Autowired
     public CollectionRepository(JdbcTemplate jdbcTemplate,
@@ -48,6 +54,11 @@ public class CollectionRepository {
                 list = iCollectionRepository.findAll().subList(0, boundary);
             }
             list.forEach(collection -> collections.put(collection.getName(), collection));
+            final BloomFilter filter = new BloomFilter(
+                    Math.max(MIN_FILTER_INSERTIONS, 2L * countRows), FILTER_FALSE_POSITIVE_RATE);
+            jdbcTemplate.query("SELECT name FROM collections",
+                    (RowCallbackHandler) resultSet -> filter.put(resultSet.getString(1)));
+            nameFilter = filter;
             logger.debug("CollectionRepository initialized");
         } catch (Exception e) {
             final String message = "Exception while collection repository initializing.";
@@ -58,7 +69,9 @@ public class CollectionRepository {
 
     public Collection create(Collection collection) {
         try {
-            return iCollectionRepository.saveAndFlush(collection);
+            final Collection createdCollection = iCollectionRepository.saveAndFlush(collection);
+            nameFilter.put(createdCollection.getName());
+            return createdCollection;
         } catch (Exception e) {
             final String message = "Exception while collection creating.";
             logger.error(message);
@@ -80,10 +93,18 @@ public class CollectionRepository {
         final String validCollectionName = Validator.getValidInput(collectionName);
         final String algorithmName = collection.getAlgorithm();
         final Integer cacheLimit = collection.getCacheLimit();
+        final Long cacheBytes = collection.getCacheBytes();
+        final Integer compressionThreshold = collection.getCompressionThreshold();
+        final String indexedPaths = collection.getIndexedPaths();
+        final Integer writeQuorum = collection.getWriteQuorum();
+        final String replication = collection.getReplication();
         try {
-            final String query = "UPDATE collections SET " +
-                    "algorithm = ?, cache_limit = ? WHERE name = ?";
-            return jdbcTemplate.update(query, algorithmName, cacheLimit, validCollectionName);
+            final String query = "UPDATE collections SET algorithm = ?, cache_limit = ?, " +
+                    "cache_bytes = ?, compression_threshold = ?, indexed_paths = ?, " +
+                    "write_quorum = ?, replication = ? WHERE name = ?";
+            return jdbcTemplate.update(query, algorithmName, cacheLimit, cacheBytes,
+                    compressionThreshold, indexedPaths, writeQuorum, replication,
+                    validCollectionName);
         } catch (Exception e) {
             final String message = "Exception while collection updating.";
             logger.error(message);
@@ -95,7 +116,7 @@ public class CollectionRepository {
         final String validCollectionName = Validator.getValidInput(collectionName);
         try {
             iCollectionRepository.deleteById(validCollectionName);
-            return jdbcTemplate.update("DROP TABLE " + validCollectionName);
+            return jdbcTemplate.update("DROP TABLE IF EXISTS " + validCollectionName);
         } catch (Exception e) {
             final String message = "Exception while collection deleting.";
             logger.error(message);
@@ -113,8 +134,37 @@ public class CollectionRepository {
         }
     }
 
+    public List<Collection> list(String afterName, int offset, int limit) {
+        final String select = "SELECT name, algorithm, cache_limit, cache_bytes, " +
+                "compression_threshold, storage, indexed_paths, write_quorum, replication, " +
+                "json_schema FROM collections";
+        final String order = " ORDER BY name COLLATE \"C\" LIMIT ? OFFSET ?";
+        try {
+            if (afterName == null) {
+                return jdbcTemplate.query(select + order, new Object[]{limit, offset},
+                        new BeanPropertyRowMapper<>(Collection.class));
+            }
+            return jdbcTemplate.query(select + " WHERE name COLLATE \"C\" > ?" + order,
+                    new Object[]{Validator.getValidInput(afterName), limit, offset},
+                    new BeanPropertyRowMapper<>(Collection.class));
+        } catch (Exception e) {
+            final String message = "Exception while receiving collection page.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
     public boolean isExist(String collectionName) {
-        return iCollectionRepository.existsById(Validator.getValidInput(collectionName));
+        final String validCollectionName = Validator.getValidInput(collectionName);
+        final BloomFilter filter = nameFilter;
+        if (!filter.mightContain(validCollectionName)) {
+            return false;
+        }
+        final boolean isExist = iCollectionRepository.existsById(validCollectionName);
+        if (!isExist) {
+            filter.recordFalsePositive();
+        }
+        return isExist;
     }
 
     public void clean() {
@@ -126,9 +176,25 @@ public class CollectionRepository {
                     "  name        varchar(255) not null primary key,\n" +
                     "  algorithm   varchar(255) not null,\n" +
                     "  cache_limit integer      not null,\n" +
+                    "  cache_bytes bigint,\n" +
+                    "  compression_threshold integer,\n" +
+                    "  storage     varchar(16),\n" +
+                    "  indexed_paths text,\n" +
+                    "  write_quorum integer,\n" +
+                    "  replication varchar(16),\n" +
                     "  json_schema text         not null\n" +
-                    ");";
+                    ");" +
+                    "CREATE TABLE IF NOT EXISTS dictionaries\n" +
+                    "(\n" +
+                    "  collection_name varchar(255) not null,\n" +
+                    "  id              integer      not null,\n" +
+                    "  data            bytea        not null,\n" +
+                    "  primary key (collection_name, id)\n" +
+                    ");" +
+                    "CREATE INDEX IF NOT EXISTS collections_name_c_idx " +
+                    "ON collections (name COLLATE \"C\");";
             jdbcTemplate.update(query);
+            nameFilter = new BloomFilter(MIN_FILTER_INSERTIONS, FILTER_FALSE_POSITIVE_RATE);
         } catch (Exception e) {
             final String message = "Exception while cleaning collection.";
             logger.error(message);
@@ -143,6 +209,24 @@ public class CollectionRepository {
         return countCallback.getRowCount();
     }
 
+    public Map<String, String> getStorages() {
+        try {
+            Map<String, String> storages = new HashMap<>();
+            jdbcTemplate.query("SELECT name, storage FROM collections",
+                    (RowCallbackHandler) resultSet ->
+                            storages.put(resultSet.getString(1), resultSet.getString(2)));
+            return storages;
+        } catch (Exception e) {
+            final String message = "Exception while receiving collection storages.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    public BloomFilter getFilter() {
+        return nameFilter;
+    }
+
     public Map<String, Collection> getPreparedCollections() {
         return collections;
     }
@@ -0,0 +1,136 @@
+package by.webapp.kvstorage.repository;
+
+import by.webapp.kvstorage.model.Document;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class CopyLoader implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(CopyLoader.class);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final Connection connection;
+    private final Runnable release;
+    private final String documentName;
+    private final String stagingName;
+    private final Function<String, Object[]> encoder;
+    private final Consumer<String> onInserted;
+
+    CopyLoader(Connection connection, Runnable release, String documentName,
+               Function<String, Object[]> encoder, Consumer<String> onInserted)
+            throws SQLException {
+        this.connection = connection;
+        this.release = release;
+        this.documentName = documentName;
+        this.stagingName = "pg_temp." + documentName + "_load";
+        this.encoder = encoder;
+        this.onInserted = onInserted;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + stagingName +
+                    " (LIKE " + documentName + ")");
+        }
+    }
+
+    public List<String> load(List<Document> documents) throws SQLException {
+        if (documents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE " + stagingName);
+        }
+        final CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY " + stagingName + " (key, value, value_z) FROM STDIN (FORMAT csv)");
+        try {
+            final StringBuilder rows = new StringBuilder(BUFFER_SIZE + 1024);
+            for (Document document : documents) {
+                final Object[] encoded = encoder.apply(document.getValue());
+                appendRow(rows, document.getKey(), (String) encoded[0], (byte[]) encoded[1]);
+                if (rows.length() >= BUFFER_SIZE) {
+                    write(copyIn, rows);
+                }
+            }
+            write(copyIn, rows);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+        final List<String> inserted = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + documentName + " (key, value, value_z)" +
+                        " SELECT key, value, value_z FROM " + stagingName +
+                        " ON CONFLICT (key) DO NOTHING RETURNING key");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                final String key = resultSet.getString(1);
+                onInserted.accept(key);
+                inserted.add(key);
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public void close() {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + stagingName);
+        } catch (SQLException e) {
+            logger.warn("Staging table " + stagingName + " is not dropped.", e);
+        } finally {
+            release.run();
+        }
+    }
+
+    public static void appendRow(StringBuilder rows, String key, String value, byte[] compressed) {
+        appendQuoted(rows, key);
+        rows.append(',');
+        if (value != null) {
+            appendQuoted(rows, value);
+        }
+        rows.append(',');
+        if (compressed != null) {
+            rows.append("\\x");
+            for (byte b : compressed) {
+                rows.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+        }
+        rows.append('\n');
+    }
+
+    private static void appendQuoted(StringBuilder rows, String text) {
+        rows.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"') {
+                rows.append('"');
+            }
+            rows.append(c);
+        }
+        rows.append('"');
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.length() > 0) {
+            final byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            rows.setLength(0);
+        }
+    }
+
+}
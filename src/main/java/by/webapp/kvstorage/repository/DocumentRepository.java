@@ -3,58 +3,119 @@ package by.webapp.kvstorage.repository;
 import by.webapp.kvstorage.exception.DataBaseException;
 import by.webapp.kvstorage.model.Collection;
 import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Predicate;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.storage.StorageType;
+import by.webapp.kvstorage.util.BloomFilter;
+import by.webapp.kvstorage.util.JsonQuery;
+import by.webapp.kvstorage.util.KeyRange;
 import by.webapp.kvstorage.util.Validator;
+import by.webapp.kvstorage.util.ValueCompressor;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowCountCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
-@Repository("documentRepository")
+@Repository("postgresDocumentRepository")
 @Order(2)
 public class DocumentRepository implements IDocumentRepository<Document> {
 
     private static final Logger logger = LogManager.getLogger(DocumentRepository.class);
     private final JdbcTemplate jdbcTemplate;
     private final CollectionRepository collectionRepository;
+    private final StorageType defaultStorageType;
     private Map<Collection, List<Document>> documentsMap = new HashMap<>();
+    private final Map<String, BloomFilter> filters = new ConcurrentHashMap<>();
     private static final int MAX_ITEMS_COUNT = 100;
-    private String documentName;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MIN_FILTER_INSERTIONS = 1024;
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int DICTIONARY_TRAINING_WRITES = 1000;
+    private static final int DICTIONARY_SAMPLE_SIZE = 1000;
+    private final Map<String, ValueCompressor> compressors = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> untrainedWrites = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> indexedPaths = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> documentName = new ThreadLocal<>();
+    private final ExecutorService trainer;
 
     @Autowired
-    public DocumentRepository(JdbcTemplate jdbcTemplate, CollectionRepository collectionRepository) {
+    public DocumentRepository(JdbcTemplate jdbcTemplate, CollectionRepository collectionRepository,
+                              @Value("${kvstorage.storage:postgres}") String defaultStorage) {
         this.jdbcTemplate = jdbcTemplate;
         this.collectionRepository = collectionRepository;
+        this.defaultStorageType = StorageType.of(defaultStorage);
+        this.trainer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dictionary-trainer");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @PostConstruct
     private void init() {
         try {
             final Map<String, Collection> collections = collectionRepository.getPreparedCollections();
+            jdbcTemplate.query("SELECT collection_name, id, data FROM dictionaries",
+                    (RowCallbackHandler) resultSet -> getCompressor(resultSet.getString(1))
+                            .addDictionary(resultSet.getInt(2), resultSet.getBytes(3)));
             for (Collection collection : collections.values()) {
-                documentName = collection.getName();
+                if (StorageType.of(collection.getStorage(), defaultStorageType)
+                        != StorageType.POSTGRES) {
+                    continue;
+                }
+                final String documentName = collection.getName();
                 final String query = "SELECT COUNT (key) FROM " + documentName + ';';
                 RowCountCallbackHandler countCallback = new RowCountCallbackHandler();
                 jdbcTemplate.query(query, countCallback);
                 final int countRows = countCallback.getRowCount();
-                final String listQuery = "SELECT key, value FROM " + documentName + ';';
-                List<Document> list = jdbcTemplate.query(
-                        listQuery, new BeanPropertyRowMapper<>(Document.class));
+                jdbcTemplate.update("ALTER TABLE " + documentName +
+                        " ADD COLUMN IF NOT EXISTS value_z bytea");
+                final ValueCompressor compressor = getCompressor(documentName);
+                compressor.setThreshold(collection.getCompressionThreshold());
+                if (compressor.getThreshold() != null && !compressor.hasDictionary()) {
+                    trainDictionary(documentName, compressor);
+                }
+                final String listQuery = "SELECT key, value, value_z FROM " + documentName + ';';
+                List<Document> list = jdbcTemplate.query(listQuery, documentMapper(documentName));
                 if (countRows > 1) {
                     int boundary = countRows > MAX_ITEMS_COUNT ?
                             MAX_ITEMS_COUNT : countRows;
                     list = list.subList(0, boundary);
                 }
                 documentsMap.put(collection, list);
+                filters.put(documentName, buildFilter(documentName));
+                createKeyIndex(documentName);
             }
             logger.debug("DocumentRepository initialized");
         } catch (Exception e) {
@@ -64,16 +125,28 @@ public class DocumentRepository implements IDocumentRepository<Document> {
         }
     }
 
+    @PreDestroy
+    private void close() {
+        trainer.shutdownNow();
+    }
+
     @Override
     public Document save(Document document) {
-        documentName = Validator.getValidInput(documentName);
+        final String documentName = getDocumentName();
         final String validKey = Validator.getValidInput(document.getKey());
         final String value = Validator.getValidValue(document.getValue());
+        final Object[] encoded = encode(documentName, value);
         final String query = "INSERT INTO " + documentName +
-                " (key,value) VALUES (?,?)";
+                " (key,value,value_z) VALUES (?,?,?) ON CONFLICT (key) DO NOTHING RETURNING key";
         try {
-            jdbcTemplate.update(query, validKey, value);
-            return findById(validKey);
+            List<String> keys = jdbcTemplate.query(query,
+                    new Object[]{validKey, encoded[0], encoded[1]},
+                    (resultSet, rowNum) -> resultSet.getString(1));
+            if (keys.isEmpty()) {
+                return null;
+            }
+            addToFilter(documentName, validKey);
+            return toDocument(validKey, value);
         } catch (Exception e) {
             final String message = "Exception while document saving.";
             logger.error(message);
@@ -81,15 +154,106 @@ public class DocumentRepository implements IDocumentRepository<Document> {
         }
     }
 
+    @Override
+    public Document upsert(Document document) {
+        final String documentName = getDocumentName();
+        final String validKey = Validator.getValidInput(document.getKey());
+        final String value = Validator.getValidValue(document.getValue());
+        final Object[] encoded = encode(documentName, value);
+        final String query = "WITH previous AS (SELECT value, value_z FROM " + documentName +
+                " WHERE key = ?) INSERT INTO " + documentName +
+                " (key,value,value_z) VALUES (?,?,?)" +
+                " ON CONFLICT (key) DO UPDATE SET value = EXCLUDED.value," +
+                " value_z = EXCLUDED.value_z" +
+                " RETURNING key, (SELECT value FROM previous) AS value," +
+                " (SELECT value_z FROM previous) AS value_z";
+        try {
+            final Document previous = jdbcTemplate.queryForObject(query,
+                    new Object[]{validKey, validKey, encoded[0], encoded[1]},
+                    documentMapper(documentName));
+            addToFilter(documentName, validKey);
+            return previous == null || previous.getValue() == null ? null : previous;
+        } catch (Exception e) {
+            final String message = "Exception while document upserting.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public int saveAll(List<Document> documents) {
+        final String documentName = getDocumentName();
+        final String query = "INSERT INTO " + documentName +
+                " (key,value,value_z) VALUES (?,?,?)";
+        final List<Object[]> rows = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            final Object[] encoded =
+                    encode(documentName, Validator.getValidValue(document.getValue()));
+            rows.add(new Object[]{Validator.getValidInput(document.getKey()),
+                    encoded[0], encoded[1]});
+        }
+        try {
+            int saved = 0;
+            for (int[] batch : jdbcTemplate.batchUpdate(query, rows, BATCH_SIZE,
+                    (preparedStatement, row) -> {
+                        preparedStatement.setString(1, (String) row[0]);
+                        preparedStatement.setString(2, (String) row[1]);
+                        preparedStatement.setBytes(3, (byte[]) row[2]);
+                    })) {
+                saved += countUpdated(batch);
+            }
+            rows.forEach(row -> addToFilter(documentName, (String) row[0]));
+            return saved;
+        } catch (Exception e) {
+            final String message = "Exception while document batch saving.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public int upsertAll(List<Document> documents) {
+        final String documentName = getDocumentName();
+        final String query = "INSERT INTO " + documentName +
+                " (key,value,value_z) VALUES (?,?,?)" +
+                " ON CONFLICT (key) DO UPDATE SET value = EXCLUDED.value," +
+                " value_z = EXCLUDED.value_z";
+        final List<Object[]> rows = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            final Object[] encoded =
+                    encode(documentName, Validator.getValidValue(document.getValue()));
+            rows.add(new Object[]{Validator.getValidInput(document.getKey()),
+                    encoded[0], encoded[1]});
+        }
+        try {
+            int upserted = 0;
+            for (int[] batch : jdbcTemplate.batchUpdate(query, rows, BATCH_SIZE,
+                    (preparedStatement, row) -> {
+                        preparedStatement.setString(1, (String) row[0]);
+                        preparedStatement.setString(2, (String) row[1]);
+                        preparedStatement.setBytes(3, (byte[]) row[2]);
+                    })) {
+                upserted += countUpdated(batch);
+            }
+            rows.forEach(row -> addToFilter(documentName, (String) row[0]));
+            return upserted;
+        } catch (Exception e) {
+            final String message = "Exception while document batch upserting.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
     @Override
     public Document findById(String key) {
-        documentName = Validator.getValidInput(documentName);
+        final String documentName = getDocumentName();
         final String validKey = Validator.getValidInput(key);
-        final String query = "SELECT key,value FROM " + documentName +
+        final String query = "SELECT key, value, value_z FROM " + documentName +
                 " WHERE key = ?";
         try {
-            return jdbcTemplate.queryForObject(query, new Object[]{validKey},
-                    new BeanPropertyRowMapper<>(Document.class));
+            List<Document> documents = jdbcTemplate.query(query, new Object[]{validKey},
+                    documentMapper(documentName));
+            return documents.isEmpty() ? null : documents.get(0);
         } catch (Exception e) {
             final String message = "Exception while document getting.";
             logger.error(message);
@@ -99,13 +263,14 @@ public class DocumentRepository implements IDocumentRepository<Document> {
 
     @Override
     public int update(String key, Document document) {
-        documentName = Validator.getValidInput(documentName);
+        final String documentName = getDocumentName();
         final String validKey = Validator.getValidInput(key);
         final String value = Validator.getValidValue(document.getValue());
+        final Object[] encoded = encode(documentName, value);
         final String query = "UPDATE " + documentName +
-                " SET value=? WHERE key =?";
+                " SET value=?, value_z=? WHERE key =?";
         try {
-            return jdbcTemplate.update(query, value, validKey);
+            return jdbcTemplate.update(query, encoded[0], encoded[1], validKey);
         } catch (Exception e) {
             final String message = "Exception while document updating.";
             logger.error(message);
@@ -115,7 +280,7 @@ public class DocumentRepository implements IDocumentRepository<Document> {
 
     @Override
     public int delete(String key) {
-        documentName = Validator.getValidInput(documentName);
+        final String documentName = getDocumentName();
         final String validKey = Validator.getValidInput(key);
         final String query = "DELETE FROM " + documentName +
                 " WHERE key =?";
@@ -128,13 +293,29 @@ public class DocumentRepository implements IDocumentRepository<Document> {
         }
     }
 
+    @Override
+    public int deleteAll(List<String> keys) {
+        final String documentName = getDocumentName();
+        final String query = "DELETE FROM " + documentName + " WHERE key = ANY (?)";
+        try {
+            return jdbcTemplate.update(connection -> {
+                PreparedStatement preparedStatement = connection.prepareStatement(query);
+                preparedStatement.setArray(1, connection.createArrayOf("varchar", keys.toArray()));
+                return preparedStatement;
+            });
+        } catch (Exception e) {
+            final String message = "Exception while document batch deleting.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
     @Override
     public List<Document> findAll() {
-        documentName = Validator.getValidInput(documentName);
-        final String query = "SELECT key, value FROM " + documentName;
+        final String documentName = getDocumentName();
+        final String query = "SELECT key, value, value_z FROM " + documentName;
         try {
-            return jdbcTemplate.query(
-                    query, new BeanPropertyRowMapper<>(Document.class));
+            return jdbcTemplate.query(query, documentMapper(documentName));
         } catch (Exception e) {
             final String message = "Exception while receiving document list.";
             logger.error(message);
@@ -142,11 +323,139 @@ public class DocumentRepository implements IDocumentRepository<Document> {
         }
     }
 
+    @Override
+    public List<Document> findPage(String afterKey, int offset, int limit) {
+        final String documentName = getDocumentName();
+        final String order = " ORDER BY key COLLATE \"C\" LIMIT ? OFFSET ?";
+        try {
+            if (afterKey == null) {
+                return jdbcTemplate.query("SELECT key, value, value_z FROM " +
+                                documentName + order,
+                        new Object[]{limit, offset}, documentMapper(documentName));
+            }
+            return jdbcTemplate.query("SELECT key, value, value_z FROM " + documentName +
+                            " WHERE key COLLATE \"C\" > ?" + order,
+                    new Object[]{Validator.getValidInput(afterKey), limit, offset},
+                    documentMapper(documentName));
+        } catch (Exception e) {
+            final String message = "Exception while receiving document page.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public List<Document> findRange(KeyRange range, String afterKey, int limit) {
+        final String documentName = getDocumentName();
+        final StringBuilder query = new StringBuilder("SELECT key, value, value_z FROM ")
+                .append(documentName).append(" WHERE true");
+        final List<Object> params = new ArrayList<>();
+        if (afterKey != null) {
+            query.append(" AND key COLLATE \"C\" > ?");
+            params.add(afterKey);
+        }
+        if (range.getFrom() != null) {
+            query.append(" AND key COLLATE \"C\" >= ?");
+            params.add(range.getFrom());
+        }
+        if (range.getTo() != null) {
+            query.append(" AND key COLLATE \"C\" < ?");
+            params.add(range.getTo());
+        }
+        query.append(" ORDER BY key COLLATE \"C\" LIMIT ?");
+        params.add(limit);
+        try {
+            return jdbcTemplate.query(
+                    query.toString(), params.toArray(), documentMapper(documentName));
+        } catch (Exception e) {
+            final String message = "Exception while scanning document range.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachDocument(Consumer<Document> consumer) {
+        final String documentName = getDocumentName();
+        final RowMapper<Document> mapper = documentMapper(documentName);
+        try {
+            jdbcTemplate.query(connection -> {
+                final PreparedStatement preparedStatement = connection.prepareStatement(
+                        "SELECT key, value, value_z FROM " + documentName,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+                return preparedStatement;
+            }, (RowCallbackHandler) resultSet -> consumer.accept(mapper.mapRow(resultSet, 0)));
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (Exception e) {
+            final String message = "Exception while exporting documents.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    public CopyLoader openCopyLoader(String collectionName) {
+        final String documentName = Validator.getValidInput(collectionName);
+        final DataSource dataSource = jdbcTemplate.getDataSource();
+        final Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return new CopyLoader(connection,
+                    () -> DataSourceUtils.releaseConnection(connection, dataSource), documentName,
+                    value -> encode(documentName, value), key -> addToFilter(documentName, key));
+        } catch (Exception e) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            final String message = "Exception while opening bulk loader.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public Set<String> findExistingKeys(List<String> keys) {
+        final String documentName = getDocumentName();
+        final BloomFilter filter = filters.get(documentName);
+        final List<String> candidates = filter == null ? keys : keys.stream()
+                .filter(filter::mightContain).collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final String query = "SELECT key FROM " + documentName + " WHERE key = ANY (?)";
+        try {
+            final Set<String> existingKeys = new HashSet<>();
+            for (int from = 0; from < candidates.size(); from += BATCH_SIZE) {
+                final Object[] chunk = candidates.subList(
+                        from, Math.min(candidates.size(), from + BATCH_SIZE)).toArray();
+                existingKeys.addAll(jdbcTemplate.query(connection -> {
+                    PreparedStatement preparedStatement = connection.prepareStatement(query);
+                    preparedStatement.setArray(1, connection.createArrayOf("varchar", chunk));
+                    return preparedStatement;
+                }, (resultSet, rowNum) -> resultSet.getString(1)));
+            }
+            return existingKeys;
+        } catch (Exception e) {
+            final String message = "Exception in document findExistingKeys() method.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
     public boolean isExist(String key) {
-        documentName = Validator.getValidInput(documentName);
+        final String documentName = getDocumentName();
+        final BloomFilter filter = filters.get(documentName);
+        if (filter != null && !filter.mightContain(key)) {
+            return false;
+        }
         final String sql = "SELECT count(*) FROM " + documentName + " WHERE key = ?";
         try {
-            return jdbcTemplate.queryForObject(sql, new Object[]{key}, Integer.class) > 0;
+            final boolean isExist =
+                    jdbcTemplate.queryForObject(sql, new Object[]{key}, Integer.class) > 0;
+            if (!isExist && filter != null) {
+                filter.recordFalsePositive();
+            }
+            return isExist;
         } catch (Exception e) {
             final String message = "Exception in document isExist() method.";
             logger.error(message);
@@ -154,12 +463,20 @@ public class DocumentRepository implements IDocumentRepository<Document> {
         }
     }
 
+    @Override
     @Transactional
     public void createTable() {
-        documentName = Validator.getValidInput(documentName);
+        final String documentName = getDocumentName();
         try {
+            final List<String> paths = indexedPaths.getOrDefault(documentName,
+                    Collections.emptyList());
             jdbcTemplate.update("CREATE TABLE " + documentName +
-                    " (key VARCHAR(255) PRIMARY KEY, value text);");
+                    " (key VARCHAR(255) PRIMARY KEY, value " +
+                    (paths.isEmpty() ? "text" : "jsonb") + ", value_z bytea);");
+            createKeyIndex(documentName);
+            createPathIndexes(documentName, paths);
+            filters.put(documentName,
+                    new BloomFilter(MIN_FILTER_INSERTIONS, FILTER_FALSE_POSITIVE_RATE));
         } catch (Exception e) {
             final String message = "Exception in document createTable() method.";
             logger.error(message);
@@ -167,10 +484,235 @@ public class DocumentRepository implements IDocumentRepository<Document> {
         }
     }
 
+    @Override
+    public void removeCollection(String collectionName) {
+        filters.remove(collectionName);
+        compressors.remove(collectionName);
+        untrainedWrites.remove(collectionName);
+        indexedPaths.remove(collectionName);
+        try {
+            jdbcTemplate.update("DELETE FROM dictionaries WHERE collection_name = ?",
+                    Validator.getValidInput(collectionName));
+        } catch (Exception e) {
+            final String message = "Exception while removing compression dictionaries.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public void removeCollections() {
+        filters.clear();
+        compressors.clear();
+        untrainedWrites.clear();
+        indexedPaths.clear();
+    }
+
+    @Override
+    public void setCollection(Collection collection) {
+        final String documentName = collection.getName();
+        getCompressor(documentName).setThreshold(collection.getCompressionThreshold());
+        final List<String> paths = JsonQuery.parsePaths(collection.getIndexedPaths());
+        final List<String> previousPaths = paths.isEmpty() ?
+                indexedPaths.remove(documentName) : indexedPaths.put(documentName, paths);
+        if (paths.equals(previousPaths == null ? Collections.emptyList() : previousPaths)) {
+            return;
+        }
+        try {
+            final Boolean isCreated = jdbcTemplate.queryForObject(
+                    "SELECT to_regclass(?) IS NOT NULL", Boolean.class, documentName);
+            if (Boolean.TRUE.equals(isCreated)) {
+                createPathIndexes(documentName, paths);
+            }
+        } catch (Exception e) {
+            final String message = "Exception while creating json path indexes.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public List<Document> findByQuery(Query query) {
+        final String documentName = getDocumentName();
+        final StringBuilder sql = new StringBuilder("SELECT key, value, value_z FROM ")
+                .append(documentName).append(" WHERE true");
+        final List<Object> params = new ArrayList<>();
+        for (Predicate predicate : query.getPredicates()) {
+            // the path is inlined as the same literal the expression index is built on,
+            // so generic plans of the statement can still use the index
+            final String path = pathExpression(predicate.getPath());
+            final String value = JsonQuery.toJson(predicate.getValue());
+            sql.append(" AND ").append(path).append(' ')
+                    .append(JsonQuery.getSqlOperator(predicate.getOp()))
+                    .append(" CAST(? AS jsonb)");
+            params.add(value);
+            if (!"eq".equals(predicate.getOp())) {
+                sql.append(" AND jsonb_typeof(").append(path).append(')')
+                        .append(" = jsonb_typeof(CAST(? AS jsonb))");
+                params.add(value);
+            }
+        }
+        if (query.getAfterKey() != null) {
+            sql.append(" AND key COLLATE \"C\" > ?");
+            params.add(query.getAfterKey());
+        }
+        sql.append(" ORDER BY key COLLATE \"C\" LIMIT ?");
+        params.add(query.getLimit());
+        try {
+            return jdbcTemplate.query(
+                    sql.toString(), params.toArray(), documentMapper(documentName));
+        } catch (Exception e) {
+            final String message = "Exception while querying documents.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public Map<String, BloomFilter> getFilters() {
+        return filters;
+    }
+
+    private void addToFilter(String documentName, String key) {
+        BloomFilter filter = filters.get(documentName);
+        if (filter != null) {
+            filter.put(key);
+        }
+    }
+
+    private ValueCompressor getCompressor(String documentName) {
+        return compressors.computeIfAbsent(documentName, name -> new ValueCompressor());
+    }
+
+    private Object[] encode(String documentName, String value) {
+        final ValueCompressor compressor = getCompressor(documentName);
+        if (indexedPaths.containsKey(documentName) || !compressor.shouldCompress(value)) {
+            return new Object[]{value, null};
+        }
+        if (!compressor.hasDictionary() && untrainedWrites.computeIfAbsent(
+                documentName, name -> new AtomicInteger()).incrementAndGet()
+                == DICTIONARY_TRAINING_WRITES) {
+            trainer.execute(() -> trainDictionary(documentName, compressor));
+        }
+        return new Object[]{null, compressor.compress(value)};
+    }
+
+    private void trainDictionary(String documentName, ValueCompressor compressor) {
+        try {
+            final List<String> samples = jdbcTemplate.query("SELECT key, value, value_z FROM " +
+                            documentName + " LIMIT " + DICTIONARY_SAMPLE_SIZE,
+                    documentMapper(documentName)).stream()
+                    .map(Document::getValue).collect(Collectors.toList());
+            if (samples.isEmpty()) {
+                return;
+            }
+            final byte[] dictionary = ValueCompressor.trainDictionary(
+                    samples, ValueCompressor.MAX_DICTIONARY_BYTES);
+            final int id = compressor.getDictionaryId() + 1;
+            if (compressors.get(documentName) != compressor) {
+                return;
+            }
+            jdbcTemplate.update("INSERT INTO dictionaries (collection_name, id, data) " +
+                    "VALUES (?,?,?) ON CONFLICT DO NOTHING", documentName, id, dictionary);
+            compressor.addDictionary(id, dictionary);
+            logger.debug("Compression dictionary " + id + " trained for " + documentName);
+        } catch (Exception e) {
+            logger.error("Exception while training compression dictionary.", e);
+        }
+    }
+
+    private RowMapper<Document> documentMapper(String documentName) {
+        final ValueCompressor compressor = getCompressor(documentName);
+        return (resultSet, rowNum) -> {
+            final byte[] compressed = resultSet.getBytes("value_z");
+            return toDocument(resultSet.getString("key"), compressed == null ?
+                    resultSet.getString("value") : compressor.decompress(compressed));
+        };
+    }
+
+    private static Document toDocument(String key, String value) {
+        Document document = new Document();
+        document.setKey(key);
+        document.setValue(value);
+        return document;
+    }
+
+    private int countUpdated(int[] batch) {
+        int updated = 0;
+        for (int count : batch) {
+            updated += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        return updated;
+    }
+
+    private void createKeyIndex(String documentName) {
+        jdbcTemplate.update("CREATE INDEX IF NOT EXISTS " + documentName +
+                "_key_c_idx ON " + documentName + " (key COLLATE \"C\")");
+    }
+
+    private void createPathIndexes(String documentName, List<String> paths) {
+        if (!paths.isEmpty()) {
+            final String type = jdbcTemplate.queryForObject(
+                    "SELECT data_type FROM information_schema.columns " +
+                            "WHERE table_name = lower(?) AND column_name = 'value'",
+                    String.class, documentName);
+            if (!"jsonb".equals(type)) {
+                inflateValues(documentName);
+                jdbcTemplate.update("ALTER TABLE " + documentName +
+                        " ALTER COLUMN value TYPE jsonb USING value::jsonb");
+            }
+        }
+        final String prefix = documentName.toLowerCase() + "_path_";
+        final Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename = lower(?) AND indexname LIKE ?",
+                String.class, documentName, prefix + '%'));
+        for (String path : paths) {
+            final String indexName = prefix + Integer.toHexString(path.hashCode());
+            if (!existing.remove(indexName)) {
+                jdbcTemplate.update("CREATE INDEX IF NOT EXISTS " + indexName + " ON " +
+                        documentName + " ((" + pathExpression(path) + "))");
+            }
+        }
+        for (String indexName : existing) {
+            jdbcTemplate.update("DROP INDEX IF EXISTS " + indexName);
+        }
+        logger.debug("Json path indexes of " + documentName + " are " + paths);
+    }
+
+    private void inflateValues(String documentName) {
+        final List<Document> documents = jdbcTemplate.query("SELECT key, value, value_z FROM " +
+                documentName + " WHERE value_z IS NOT NULL", documentMapper(documentName));
+        jdbcTemplate.batchUpdate("UPDATE " + documentName + " SET value = ?, value_z = NULL " +
+                        "WHERE key = ?", documents.stream()
+                        .map(document -> new Object[]{document.getValue(), document.getKey()})
+                        .collect(Collectors.toList()));
+    }
+
+    private static String pathExpression(String path) {
+        return "value #> '" + JsonQuery.toPathArray(path) + "'";
+    }
+
+    private BloomFilter buildFilter(String documentName) {
+        final Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM " + documentName, Integer.class);
+        final BloomFilter filter = new BloomFilter(
+                Math.max(MIN_FILTER_INSERTIONS, 2L * (count == null ? 0 : count)),
+                FILTER_FALSE_POSITIVE_RATE);
+        jdbcTemplate.query("SELECT key FROM " + documentName,
+                (RowCallbackHandler) resultSet -> filter.put(resultSet.getString(1)));
+        return filter;
+    }
+
+    @Override
     public void setDocumentName(String documentName) {
-        this.documentName = Validator.getValidInput(documentName);
+        this.documentName.set(Validator.getValidInput(documentName));
     }
 
+    private String getDocumentName() {
+        return Validator.getValidInput(documentName.get());
+    }
+
+    @Override
     public Map<Collection, List<Document>> getPreparedDocuments() {
         return documentsMap;
     }
@@ -1,13 +1,24 @@
 package by.webapp.kvstorage.repository;
 
+import by.webapp.kvstorage.model.Collection;
 import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.util.BloomFilter;
+import by.webapp.kvstorage.util.JsonQuery;
+import by.webapp.kvstorage.util.KeyRange;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface IDocumentRepository<T> {
 
     T save(T document);
 
+    T upsert(T document);
+
     T findById(String id);
 
     int update(String key, T document);
@@ -16,4 +27,50 @@ public interface IDocumentRepository<T> {
 
     List<Document> findAll();
 
-}
\ No newline at end of file
+    List<T> findPage(String afterKey, int offset, int limit);
+
+    List<T> findRange(KeyRange range, String afterKey, int limit);
+
+    void forEachDocument(Consumer<T> consumer);
+
+    default List<Document> findByQuery(Query query) {
+        return JsonQuery.filter(findAll(), query);
+    }
+
+    int saveAll(List<T> documents);
+
+    default int upsertAll(List<T> documents) {
+        documents.forEach(this::upsert);
+        return documents.size();
+    }
+
+    int deleteAll(List<String> keys);
+
+    Set<String> findExistingKeys(List<String> keys);
+
+    boolean isExist(String key);
+
+    void createTable();
+
+    void setDocumentName(String documentName);
+
+    Map<Collection, List<T>> getPreparedDocuments();
+
+    default void setCollection(Collection collection) {
+    }
+
+    default void removeCollection(String collectionName) {
+    }
+
+    default void removeCollections() {
+    }
+
+    default Map<String, BloomFilter> getFilters() {
+        return Collections.emptyMap();
+    }
+
+    default Map<String, Map<String, Object>> getStats() {
+        return Collections.emptyMap();
+    }
+
+}
@@ -0,0 +1,169 @@
+package by.webapp.kvstorage.rpc;
+
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.Node;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class RpcClient {
+
+    private static final Logger logger = LogManager.getLogger(RpcClient.class);
+    private final boolean enabled;
+    private final int connectTimeout;
+    private final long timeout;
+    private final int maxFrameBytes;
+    private final int compressionMinBytes;
+    private final Map<String, RpcConnection> connections = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RpcClient(@Value("${kvstorage.rpc.enabled:true}") boolean enabled,
+                     @Value("${kvstorage.rpc.connect-timeout-ms:2000}") int connectTimeout,
+                     @Value("${kvstorage.rpc.timeout-ms:10000}") long timeout,
+                     @Value("${kvstorage.rpc.max-frame-bytes:67108864}") int maxFrameBytes,
+                     @Value("${kvstorage.replication.compression-min-bytes:1024}")
+                             int compressionMinBytes) {
+        this.enabled = enabled;
+        this.connectTimeout = connectTimeout;
+        this.timeout = timeout;
+        this.maxFrameBytes = maxFrameBytes;
+        this.compressionMinBytes = compressionMinBytes;
+    }
+
+    @PreDestroy
+    public void close() {
+        connections.values().forEach(RpcConnection::close);
+        connections.clear();
+    }
+
+    public boolean isEnabled(Node node) {
+        return enabled && node.getRpcAddress() != null;
+    }
+
+    public Document get(Node node, String collectionId, String documentId) {
+        return call(node, RpcOperation.GET, new RpcOutput()
+                .writeString(collectionId).writeString(documentId)).readDocument();
+    }
+
+    public Document create(Node node, String collectionId, Document document) {
+        return call(node, RpcOperation.CREATE, new RpcOutput()
+                .writeString(collectionId).writeDocument(document)).readDocument();
+    }
+
+    public int update(Node node, String collectionId, String documentId, Document document) {
+        return call(node, RpcOperation.UPDATE, new RpcOutput()
+                .writeString(collectionId).writeString(documentId)
+                .writeDocument(document)).readInt();
+    }
+
+    public boolean upsert(Node node, String collectionId, String documentId, Document document) {
+        return call(node, RpcOperation.UPSERT, new RpcOutput()
+                .writeString(collectionId).writeString(documentId)
+                .writeDocument(document)).readBoolean();
+    }
+
+    public int delete(Node node, String collectionId, String documentId) {
+        return call(node, RpcOperation.DELETE, new RpcOutput()
+                .writeString(collectionId).writeString(documentId)).readInt();
+    }
+
+    public int forwardBatch(Node node, String collectionId, List<Document> documents) {
+        return batch(node, RpcOperation.FORWARD_BATCH, collectionId, documents);
+    }
+
+    public int replicateBatch(Node node, String collectionId, List<Document> documents) {
+        return batch(node, RpcOperation.REPLICA_BATCH, collectionId, documents);
+    }
+
+    public long apply(Node node, List<Mutation> mutations) {
+        final RpcOutput request = new RpcOutput().writeMutations(mutations);
+        if (isOversized(request) && mutations.size() > 1) {
+            final int half = mutations.size() / 2;
+            final List<Mutation> first = mutations.subList(0, half);
+            final long acknowledged = apply(node, first);
+            return acknowledged < first.get(half - 1).getSequence() ?
+                    acknowledged : apply(node, mutations.subList(half, mutations.size()));
+        }
+        return call(node, RpcOperation.APPLY, request).readLong();
+    }
+
+    public Map<String, Object> getStats() {
+        final Map<String, Object> peers = new TreeMap<>();
+        connections.forEach((address, connection) -> {
+            final Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("open", connection.isOpen());
+            stats.put("pending", connection.getPending());
+            peers.put(address, stats);
+        });
+        return peers;
+    }
+
+    // a frame over the peer's limit would make it drop the connection with every call on it,
+    // so oversized batches are sent in halves:
+    private int batch(Node node, RpcOperation operation, String collectionId,
+                      List<Document> documents) {
+        final RpcOutput request = new RpcOutput()
+                .writeString(collectionId).writeDocuments(documents);
+        if (isOversized(request) && documents.size() > 1) {
+            final int half = documents.size() / 2;
+            return batch(node, operation, collectionId, documents.subList(0, half)) +
+                    batch(node, operation, collectionId, documents.subList(half, documents.size()));
+        }
+        return call(node, operation, request).readInt();
+    }
+
+    private boolean isOversized(RpcOutput request) {
+        return request.size() > maxFrameBytes - RpcFrame.HEADER_SIZE;
+    }
+
+    private RpcInput call(Node node, RpcOperation operation, RpcOutput request) {
+        try {
+            return getConnection(node.getRpcAddress()).call(operation, request, timeout);
+        } catch (IOException e) {
+            logger.error("RPC " + operation + " to " + node.getName() + " failed: " +
+                    e.getMessage());
+            throw new ResourceAccessException("RPC " + operation + " to " + node.getName() +
+                    " failed: " + e.getMessage());
+        }
+    }
+
+    private RpcConnection getConnection(String address) throws IOException {
+        RpcConnection connection = connections.get(address);
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+        synchronized (connections) {
+            connection = connections.get(address);
+            if (connection == null || !connection.isOpen()) {
+                connection = new RpcConnection(parse(address), connectTimeout, maxFrameBytes,
+                        compressionMinBytes);
+                connections.put(address, connection);
+            }
+            return connection;
+        }
+    }
+
+    static InetSocketAddress parse(String address) {
+        final int colon = address.lastIndexOf(':');
+        if (colon <= 0 || colon == address.length() - 1) {
+            throw new IllegalArgumentException("RPC address must be host:port, got " + address);
+        }
+        return new InetSocketAddress(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)));
+    }
+
+}
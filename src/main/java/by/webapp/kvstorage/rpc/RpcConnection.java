@@ -0,0 +1,173 @@
+package by.webapp.kvstorage.rpc;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.FailedException;
+import by.webapp.kvstorage.exception.ResourceNotFoundException;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RpcConnection implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(RpcConnection.class);
+    private final InetSocketAddress address;
+    private final int maxFrameBytes;
+    private final int compressionMinBytes;
+    private final SocketChannel channel;
+    private final Object writeLock = new Object();
+    private final AtomicLong correlationIds = new AtomicLong();
+    private final Map<Long, CompletableFuture<RpcFrame>> pending = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public RpcConnection(InetSocketAddress address, int connectTimeout, int maxFrameBytes,
+                         int compressionMinBytes) throws IOException {
+        this.address = address;
+        this.maxFrameBytes = maxFrameBytes;
+        this.compressionMinBytes = compressionMinBytes;
+        channel = SocketChannel.open();
+        try {
+            channel.socket().connect(address, connectTimeout);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        final Thread reader = new Thread(this::readLoop, "rpc-reader-" + address);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public RpcInput call(RpcOperation operation, RpcOutput request, long timeoutMillis)
+            throws IOException {
+        final long correlationId = correlationIds.incrementAndGet();
+        final CompletableFuture<RpcFrame> future = new CompletableFuture<>();
+        pending.put(correlationId, future);
+        try {
+            if (closed) {
+                throw new IOException("RPC connection to " + address + " is closed");
+            }
+            if (request.size() > maxFrameBytes - RpcFrame.HEADER_SIZE) {
+                throw new BadRequestException("Error: RPC " + operation + " request of " +
+                        request.size() + " bytes exceeds the frame limit of " +
+                        maxFrameBytes + " bytes.");
+            }
+            final ByteBuffer frame = new RpcFrame(correlationId, operation.getCode(),
+                    RpcFrame.OK, request.toByteBuffer()).encode(compressionMinBytes);
+            synchronized (writeLock) {
+                try {
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                } catch (IOException e) {
+                    close(e);
+                    throw e;
+                }
+            }
+            return read(future.get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for RPC " + operation);
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("RPC " + operation + " to " + address +
+                    " timed out after " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("RPC " + operation + " failed", e.getCause());
+        } finally {
+            pending.remove(correlationId);
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        close(new IOException("RPC connection to " + address + " is closed"));
+    }
+
+    private void close(IOException cause) {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Exception while closing RPC connection to " + address, e);
+        }
+        pending.values().forEach(future -> future.completeExceptionally(cause));
+    }
+
+    private void readLoop() {
+        final ByteBuffer length = ByteBuffer.allocate(4);
+        try {
+            while (!closed) {
+                length.clear();
+                readFully(length);
+                length.flip();
+                final int frameLength = length.getInt();
+                if (frameLength < RpcFrame.HEADER_SIZE || frameLength > maxFrameBytes) {
+                    throw new IOException("Invalid RPC frame length " + frameLength);
+                }
+                final ByteBuffer body = ByteBuffer.allocate(frameLength);
+                readFully(body);
+                body.flip();
+                final RpcFrame frame = RpcFrame.decode(body, maxFrameBytes);
+                final CompletableFuture<RpcFrame> future = pending.remove(frame.getCorrelationId());
+                if (future != null) {
+                    future.complete(frame);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                logger.warn("RPC connection to " + address + " is lost: " + e.getMessage());
+                close(e);
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("RPC peer " + address + " closed the connection");
+            }
+        }
+    }
+
+    private static RpcInput read(RpcFrame frame) {
+        final RpcInput input = new RpcInput(frame.getPayload());
+        switch (frame.getStatus()) {
+            case RpcFrame.OK:
+                return input;
+            case RpcFrame.BAD_REQUEST:
+                throw new BadRequestException(input.readString());
+            case RpcFrame.NOT_FOUND:
+                throw new ResourceNotFoundException(input.readString());
+            default:
+                throw new FailedException(input.readString());
+        }
+    }
+
+}
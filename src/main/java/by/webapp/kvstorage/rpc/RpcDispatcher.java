@@ -0,0 +1,134 @@
+package by.webapp.kvstorage.rpc;
+
+import by.webapp.kvstorage.controller.DocumentController;
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.FailedException;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.service.ReplicationService;
+import by.webapp.kvstorage.util.NodeLoader;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+public class RpcDispatcher implements RpcHandler {
+
+    private static final Logger logger = LogManager.getLogger(RpcDispatcher.class);
+    private final DocumentController documentController;
+    private final ReplicationService replicationService;
+    private final Validator validator;
+    private final boolean enabled;
+    private final int threads;
+    private final int queueCapacity;
+    private final int maxFrameBytes;
+    private final int compressionMinBytes;
+    private RpcServer server;
+
+    @Autowired
+    public RpcDispatcher(DocumentController documentController,
+                         ReplicationService replicationService,
+                         Validator validator,
+                         @Value("${kvstorage.rpc.enabled:true}") boolean enabled,
+                         @Value("${kvstorage.rpc.threads:32}") int threads,
+                         @Value("${kvstorage.rpc.queue-capacity:1024}") int queueCapacity,
+                         @Value("${kvstorage.rpc.max-frame-bytes:67108864}") int maxFrameBytes,
+                         @Value("${kvstorage.replication.compression-min-bytes:1024}")
+                                 int compressionMinBytes) {
+        this.documentController = documentController;
+        this.replicationService = replicationService;
+        this.validator = validator;
+        this.enabled = enabled;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.maxFrameBytes = maxFrameBytes;
+        this.compressionMinBytes = compressionMinBytes;
+    }
+
+    @PostConstruct
+    private void start() {
+        final String address = NodeLoader.thisNode.getRpcAddress();
+        if (!enabled || address == null) {
+            logger.debug("RPC server is disabled");
+            return;
+        }
+        final int port = RpcClient.parse(address).getPort();
+        try {
+            server = new RpcServer(new InetSocketAddress(port), threads, queueCapacity,
+                    maxFrameBytes, compressionMinBytes, this);
+        } catch (IOException e) {
+            final String message = "Exception while starting RPC server on port " + port;
+            logger.error(message);
+            throw new FailedException(message, e);
+        }
+        logger.debug("RPC server started on port " + port);
+    }
+
+    @PreDestroy
+    private void close() {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            logger.error("Exception while closing RPC server.", e);
+        }
+    }
+
+    @Override
+    public RpcOutput handle(RpcOperation operation, RpcInput input) throws Exception {
+        final RpcOutput output = new RpcOutput();
+        switch (operation) {
+            case GET:
+                return output.writeDocument(documentController.get(
+                        input.readString(), input.readString(), false));
+            case CREATE:
+                return output.writeDocument(documentController.create(
+                        input.readString(), valid(input.readDocument())));
+            case UPDATE:
+                return output.writeInt(documentController.update(
+                        input.readString(), input.readString(), valid(input.readDocument())));
+            case UPSERT:
+                return output.writeBoolean(documentController.upsert(
+                        input.readString(), input.readString(), valid(input.readDocument()),
+                        false, false).getStatusCode() == HttpStatus.CREATED);
+            case DELETE:
+                return output.writeInt(documentController.delete(
+                        input.readString(), input.readString()));
+            case FORWARD_BATCH:
+                return output.writeInt(documentController.createAll(
+                        input.readString(), input.readDocuments(), false, false));
+            case REPLICA_BATCH:
+                return output.writeInt(documentController.createAll(
+                        input.readString(), input.readDocuments(), true, false));
+            case APPLY:
+                return output.writeLong(replicationService.apply(input.readMutations()));
+            default:
+                throw new IllegalArgumentException("Unsupported RPC operation " + operation);
+        }
+    }
+
+    // the same bean validation that @Valid runs on the HTTP request bodies:
+    private Document valid(Document document) {
+        final Set<ConstraintViolation<Document>> violations = validator.validate(document);
+        if (!violations.isEmpty()) {
+            throw new BadRequestException("Validation error: " + violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .collect(Collectors.joining(", ")));
+        }
+        return document;
+    }
+
+}
@@ -0,0 +1,126 @@
+package by.webapp.kvstorage.rpc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public final class RpcFrame {
+
+    public static final int HEADER_SIZE = 11;
+    public static final byte OK = 0;
+    public static final byte BAD_REQUEST = 1;
+    public static final byte NOT_FOUND = 2;
+    public static final byte FAILED = 3;
+    private static final byte COMPRESSED = 1;
+    private static final int MIN_INFLATE_BUFFER = 256;
+    private final long correlationId;
+    private final byte operation;
+    private final byte status;
+    private final ByteBuffer payload;
+
+    public RpcFrame(long correlationId, byte operation, byte status, ByteBuffer payload) {
+        this.correlationId = correlationId;
+        this.operation = operation;
+        this.status = status;
+        this.payload = payload;
+    }
+
+    public static RpcFrame decode(ByteBuffer body, int maxPayloadBytes) throws IOException {
+        final long correlationId = body.getLong();
+        final byte operation = body.get();
+        final byte status = body.get();
+        final byte flags = body.get();
+        final ByteBuffer payload = (flags & COMPRESSED) == 0 ?
+                body.slice() : inflate(body.slice(), maxPayloadBytes);
+        return new RpcFrame(correlationId, operation, status, payload);
+    }
+
+    public ByteBuffer encode(int compressionMinBytes) {
+        ByteBuffer body = payload.duplicate();
+        byte flags = 0;
+        if (compressionMinBytes > 0 && body.remaining() >= compressionMinBytes) {
+            final ByteBuffer deflated = deflate(body);
+            if (deflated != null) {
+                body = deflated;
+                flags |= COMPRESSED;
+            }
+        }
+        final ByteBuffer frame = ByteBuffer.allocate(4 + HEADER_SIZE + body.remaining());
+        frame.putInt(HEADER_SIZE + body.remaining());
+        frame.putLong(correlationId);
+        frame.put(operation);
+        frame.put(status);
+        frame.put(flags);
+        frame.put(body);
+        frame.flip();
+        return frame;
+    }
+
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    public byte getOperation() {
+        return operation;
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    public ByteBuffer getPayload() {
+        return payload;
+    }
+
+    private static ByteBuffer deflate(ByteBuffer payload) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload.array(), payload.arrayOffset() + payload.position(),
+                    payload.remaining());
+            deflater.finish();
+            final byte[] output = new byte[payload.remaining()];
+            int length = 0;
+            while (!deflater.finished() && length < output.length) {
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return deflater.finished() ? ByteBuffer.wrap(output, 0, length) : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer compressed, int maxPayloadBytes)
+            throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                    compressed.remaining());
+            byte[] output = new byte[(int) Math.min(maxPayloadBytes,
+                    Math.max(4L * compressed.remaining(), MIN_INFLATE_BUFFER))];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == output.length) {
+                    if (length >= maxPayloadBytes) {
+                        throw new IOException("Inflated RPC payload exceeds " +
+                                maxPayloadBytes + " bytes");
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min(2L * length, maxPayloadBytes));
+                }
+                final int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Compressed RPC payload is truncated");
+                }
+                length += inflated;
+            }
+            return ByteBuffer.wrap(output, 0, length).slice();
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed RPC payload is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
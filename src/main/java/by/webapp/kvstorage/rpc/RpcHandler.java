@@ -0,0 +1,7 @@
+package by.webapp.kvstorage.rpc;
+
+public interface RpcHandler {
+
+    RpcOutput handle(RpcOperation operation, RpcInput input) throws Exception;
+
+}
@@ -0,0 +1,86 @@
+package by.webapp.kvstorage.rpc;
+
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class RpcInput {
+
+    private final ByteBuffer buffer;
+
+    public RpcInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readInt() {
+        return buffer.getInt();
+    }
+
+    public long readLong() {
+        return buffer.getLong();
+    }
+
+    public boolean readBoolean() {
+        return buffer.get() != 0;
+    }
+
+    public String readString() {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("RPC string of " + length + " bytes is truncated");
+        }
+        final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public Document readDocument() {
+        final Document document = new Document();
+        document.setKey(readString());
+        document.setValue(readString());
+        return document;
+    }
+
+    public List<Document> readDocuments() {
+        final int count = readCount();
+        final List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(readDocument());
+        }
+        return documents;
+    }
+
+    public List<Mutation> readMutations() {
+        final int count = readCount();
+        final List<Mutation> mutations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long sequence = readLong();
+            final byte type = buffer.get();
+            if (type < 0 || type >= Mutation.Type.values().length) {
+                throw new IllegalArgumentException("Unknown mutation type " + type);
+            }
+            final Mutation mutation = new Mutation(Mutation.Type.values()[type],
+                    readString(), readString(), readString());
+            mutation.setSequence(sequence);
+            mutations.add(mutation);
+        }
+        return mutations;
+    }
+
+    private int readCount() {
+        final int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid RPC item count " + count);
+        }
+        return count;
+    }
+
+}
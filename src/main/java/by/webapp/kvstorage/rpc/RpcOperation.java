@@ -0,0 +1,18 @@
+package by.webapp.kvstorage.rpc;
+
+public enum RpcOperation {
+    GET, CREATE, UPDATE, UPSERT, DELETE, FORWARD_BATCH, REPLICA_BATCH, APPLY;
+
+    public byte getCode() {
+        return (byte) ordinal();
+    }
+
+    public static RpcOperation of(byte code) {
+        final RpcOperation[] operations = values();
+        if (code < 0 || code >= operations.length) {
+            throw new IllegalArgumentException("Unknown RPC operation " + code);
+        }
+        return operations[code];
+    }
+
+}
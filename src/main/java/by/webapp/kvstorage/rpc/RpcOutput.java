@@ -0,0 +1,83 @@
+package by.webapp.kvstorage.rpc;
+
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public final class RpcOutput {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    public RpcOutput writeInt(int value) {
+        ensureCapacity(4).putInt(value);
+        return this;
+    }
+
+    public RpcOutput writeLong(long value) {
+        ensureCapacity(8).putLong(value);
+        return this;
+    }
+
+    public RpcOutput writeBoolean(boolean value) {
+        ensureCapacity(1).put((byte) (value ? 1 : 0));
+        return this;
+    }
+
+    public RpcOutput writeString(String value) {
+        if (value == null) {
+            return writeInt(-1);
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        ensureCapacity(bytes.length).put(bytes);
+        return this;
+    }
+
+    public RpcOutput writeDocument(Document document) {
+        return writeString(document.getKey()).writeString(document.getValue());
+    }
+
+    public RpcOutput writeDocuments(List<Document> documents) {
+        writeInt(documents.size());
+        documents.forEach(this::writeDocument);
+        return this;
+    }
+
+    public RpcOutput writeMutations(List<Mutation> mutations) {
+        writeInt(mutations.size());
+        for (Mutation mutation : mutations) {
+            writeLong(mutation.getSequence());
+            ensureCapacity(1).put((byte) mutation.getType().ordinal());
+            writeString(mutation.getCollection());
+            writeString(mutation.getKey());
+            writeString(mutation.getValue());
+        }
+        return this;
+    }
+
+    public int size() {
+        return buffer.position();
+    }
+
+    public ByteBuffer toByteBuffer() {
+        final ByteBuffer result = buffer.duplicate();
+        result.flip();
+        return result;
+    }
+
+    private ByteBuffer ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            final ByteBuffer larger = ByteBuffer.allocate(
+                    Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        return buffer;
+    }
+
+}
@@ -0,0 +1,279 @@
+package by.webapp.kvstorage.rpc;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.ResourceNotFoundException;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class RpcServer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(RpcServer.class);
+    private final RpcHandler handler;
+    private final int maxFrameBytes;
+    private final int compressionMinBytes;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService workers;
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    // connections that stopped reading because the worker queue was full, selector thread only:
+    private final Queue<Connection> paused = new ArrayDeque<>();
+    private final Thread selectorThread;
+    private volatile boolean closed;
+
+    public RpcServer(InetSocketAddress address, int threads, int queueCapacity,
+                     int maxFrameBytes, int compressionMinBytes, RpcHandler handler)
+            throws IOException {
+        this.handler = handler;
+        this.maxFrameBytes = maxFrameBytes;
+        this.compressionMinBytes = compressionMinBytes;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "rpc-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        selectorThread = new Thread(this::selectLoop, "rpc-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void selectLoop() {
+        while (!closed) {
+            try {
+                selector.select();
+                Connection connection;
+                while ((connection = writable.poll()) != null) {
+                    connection.enableWrite();
+                }
+                resumePaused();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.error("Exception in RPC selector loop.", e);
+                }
+            }
+        }
+    }
+
+    private void resumePaused() {
+        Connection connection;
+        while ((connection = paused.peek()) != null) {
+            if (connection.key.isValid() && !connection.resume()) {
+                return;
+            }
+            paused.poll();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        try {
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            final Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (EOFException e) {
+            closeKey(key);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Closing RPC connection: " + e.getMessage());
+            closeKey(key);
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private static void closeKey(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            logger.debug("Exception while closing RPC connection.", e);
+        }
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer length = ByteBuffer.allocate(4);
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private ByteBuffer body;
+        private RpcFrame waiting;
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            while (true) {
+                if (body == null) {
+                    if (channel.read(length) < 0) {
+                        throw new EOFException();
+                    }
+                    if (length.hasRemaining()) {
+                        return;
+                    }
+                    length.flip();
+                    final int frameLength = length.getInt();
+                    length.clear();
+                    if (frameLength < RpcFrame.HEADER_SIZE || frameLength > maxFrameBytes) {
+                        throw new IOException("Invalid RPC frame length " + frameLength);
+                    }
+                    body = ByteBuffer.allocate(frameLength);
+                }
+                if (channel.read(body) < 0) {
+                    throw new EOFException();
+                }
+                if (body.hasRemaining()) {
+                    return;
+                }
+                body.flip();
+                final RpcFrame request = RpcFrame.decode(body, maxFrameBytes);
+                body = null;
+                if (!dispatch(request)) {
+                    // leave the rest in the socket so that TCP pushes back on the client:
+                    waiting = request;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    paused.add(this);
+                    return;
+                }
+            }
+        }
+
+        private boolean resume() {
+            if (!dispatch(waiting)) {
+                return false;
+            }
+            waiting = null;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            return true;
+        }
+
+        private boolean dispatch(RpcFrame request) {
+            try {
+                workers.execute(() -> respond(request));
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        private void respond(RpcFrame request) {
+            byte status = RpcFrame.OK;
+            RpcOutput output;
+            try {
+                output = handler.handle(RpcOperation.of(request.getOperation()),
+                        new RpcInput(request.getPayload()));
+            } catch (BadRequestException e) {
+                status = RpcFrame.BAD_REQUEST;
+                output = new RpcOutput().writeString(e.getMessage());
+            } catch (ResourceNotFoundException e) {
+                status = RpcFrame.NOT_FOUND;
+                output = new RpcOutput().writeString(e.getMessage());
+            } catch (Exception e) {
+                logger.error("RPC " + request.getOperation() + " failed.", e);
+                status = RpcFrame.FAILED;
+                output = new RpcOutput().writeString(String.valueOf(e.getMessage()));
+            }
+            responses.add(new RpcFrame(request.getCorrelationId(), request.getOperation(),
+                    status, output.toByteBuffer()).encode(compressionMinBytes));
+            writable.add(this);
+            selector.wakeup();
+        }
+
+        private void enableWrite() {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void write() throws IOException {
+            ByteBuffer response;
+            while ((response = responses.peek()) != null) {
+                channel.write(response);
+                if (response.hasRemaining()) {
+                    return;
+                }
+                responses.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+
+    }
+
+}
@@ -0,0 +1,258 @@
+package by.webapp.kvstorage.service;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.FailedException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.LoadReport;
+import by.webapp.kvstorage.repository.CopyLoader;
+import by.webapp.kvstorage.repository.DocumentRepository;
+import by.webapp.kvstorage.storage.RoutingDocumentRepository;
+import by.webapp.kvstorage.storage.StorageType;
+import by.webapp.kvstorage.util.Validator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Service
+public class BulkLoadService {
+
+    private static final Logger logger = LogManager.getLogger(BulkLoadService.class);
+    private static final int VALIDATION_CHUNK = 1000;
+    private static final int COPY_BATCH = 20_000;
+    private static final int MAX_REPORTS = 100;
+    private static final Object BLANK_LINE = new Object();
+    private final CollectionService collectionService;
+    private final DistributedService distributedService;
+    private final DocumentRepository postgresRepository;
+    private final RoutingDocumentRepository routingRepository;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService validators;
+    private final int parallelism;
+    private final AtomicLong reportIds = new AtomicLong();
+    private final Map<Long, LoadReport> reports = new LinkedHashMap<>();
+
+    @Autowired
+    public BulkLoadService(CollectionService collectionService,
+                           DistributedService distributedService,
+                           @Qualifier("postgresDocumentRepository")
+                                   DocumentRepository postgresRepository,
+                           RoutingDocumentRepository routingRepository,
+                           ObjectMapper objectMapper,
+                           @Value("${kvstorage.load.threads:0}") int threads) {
+        this.collectionService = collectionService;
+        this.distributedService = distributedService;
+        this.postgresRepository = postgresRepository;
+        this.routingRepository = routingRepository;
+        this.objectMapper = objectMapper;
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.validators = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-load-validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        validators.shutdownNow();
+    }
+
+    public LoadReport load(String collectionName, InputStream input,
+                           Consumer<LoadReport> onProgress) {
+        final Collection collection = collectionService.get(collectionName);
+        final String name = collection.getName();
+        if (routingRepository.getStorageType(name) != StorageType.POSTGRES) {
+            final String message = "Error: bulk load is available for postgres collections only.";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+        if (distributedService.isRebalancing()) {
+            final String message = "Error: bulk load is unavailable while groups are rebalanced.";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+        final LoadReport report = register(name);
+        final Deque<Future<List<Object>>> pending = new ArrayDeque<>();
+        final List<Document> batch = new ArrayList<>(COPY_BATCH);
+        try (CopyLoader loader = postgresRepository.openCopyLoader(name);
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<String> lines = new ArrayList<>(VALIDATION_CHUNK);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                lines.add(line);
+                if (lines.size() == VALIDATION_CHUNK) {
+                    pending.add(submit(collection, lines, lineNumber - lines.size() + 1));
+                    lines = new ArrayList<>(VALIDATION_CHUNK);
+                    if (pending.size() > 2 * parallelism) {
+                        drain(pending.poll(), report, batch, loader, onProgress);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                pending.add(submit(collection, lines, lineNumber - lines.size() + 1));
+            }
+            while (!pending.isEmpty()) {
+                drain(pending.poll(), report, batch, loader, onProgress);
+            }
+            copy(report, batch, loader, onProgress);
+            report.finish(LoadReport.State.DONE, null);
+        } catch (IOException | SQLException | RuntimeException e) {
+            pending.forEach(future -> future.cancel(true));
+            report.finish(LoadReport.State.FAILED, e.getMessage());
+            logger.error("Bulk load of " + name + " failed.", e);
+            throw new FailedException("Bulk load of " + name + " failed: " + e.getMessage(), e);
+        }
+        logger.info("Bulk load finished: " + report);
+        return report;
+    }
+
+    public List<LoadReport> getReports() {
+        synchronized (reports) {
+            return new ArrayList<>(reports.values());
+        }
+    }
+
+    private LoadReport register(String collectionName) {
+        final LoadReport report = new LoadReport(reportIds.incrementAndGet(), collectionName);
+        synchronized (reports) {
+            reports.put(report.getId(), report);
+            if (reports.size() > MAX_REPORTS) {
+                reports.remove(reports.keySet().iterator().next());
+            }
+        }
+        return report;
+    }
+
+    private Future<List<Object>> submit(Collection collection, List<String> lines, long firstLine) {
+        return validators.submit(() -> {
+            final List<Object> results = new ArrayList<>(lines.size());
+            long lineNumber = firstLine;
+            for (String line : lines) {
+                results.add(validate(collection, line, lineNumber++));
+            }
+            return results;
+        });
+    }
+
+    private Object validate(Collection collection, String line, long lineNumber) {
+        if (line.trim().isEmpty()) {
+            return BLANK_LINE;
+        }
+        try {
+            final Document document = objectMapper.readValue(line, Document.class);
+            if (document.getKey() == null || document.getValue() == null) {
+                return new Rejection(lineNumber, "document without key or value");
+            }
+            document.setKey(Validator.getValidInput(document.getKey()));
+            document.setValue(Validator.getValidValue(document.getValue()));
+            Validator.isInvalidToJsonSchema(document.getValue(), collection);
+            if (!distributedService.isMyGroup(collection.getName() + "/" + document.getKey())) {
+                return null;
+            }
+            return document;
+        } catch (IOException | BadRequestException e) {
+            return new Rejection(lineNumber, e.getMessage());
+        }
+    }
+
+    private void drain(Future<List<Object>> future, LoadReport report, List<Document> batch,
+                       CopyLoader loader, Consumer<LoadReport> onProgress) throws SQLException {
+        final List<Object> results;
+        try {
+            results = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedException("Bulk load is interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new FailedException("Bulk load validation failed.", e.getCause());
+        }
+        for (Object result : results) {
+            if (result == BLANK_LINE) {
+                continue;
+            }
+            report.setRead(report.getRead() + 1);
+            if (result instanceof Document) {
+                batch.add((Document) result);
+            } else if (result instanceof Rejection) {
+                report.reject(((Rejection) result).line, ((Rejection) result).reason);
+            } else {
+                report.setSkipped(report.getSkipped() + 1);
+            }
+        }
+        if (batch.size() >= COPY_BATCH) {
+            copy(report, batch, loader, onProgress);
+        }
+    }
+
+    private void copy(LoadReport report, List<Document> batch, CopyLoader loader,
+                      Consumer<LoadReport> onProgress) throws SQLException {
+        final List<String> inserted = loader.load(batch);
+        if (!inserted.isEmpty() && !distributedService.getReplicas().isEmpty()) {
+            replicate(report.getCollection(), batch, inserted);
+        }
+        report.setLoaded(report.getLoaded() + inserted.size());
+        report.setDuplicates(report.getDuplicates() + batch.size() - inserted.size());
+        batch.clear();
+        onProgress.accept(report);
+    }
+
+    private void replicate(String collectionName, List<Document> batch, List<String> keys) {
+        final Set<String> inserted = new HashSet<>(keys);
+        final List<Document> documents = batch.stream()
+                .filter(document -> inserted.remove(document.getKey()))
+                .collect(Collectors.toList());
+        try {
+            distributedService.sendBatch(documents, collectionName);
+        } catch (ResourceAccessException e) {
+            logger.warn("Starting rollback for bulk load batch in current node");
+            postgresRepository.setDocumentName(collectionName);
+            postgresRepository.deleteAll(keys);
+            throw new FailedException("Exception in batch replication: ", e);
+        }
+    }
+
+    private static class Rejection {
+
+        private final long line;
+        private final String reason;
+
+        Rejection(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+    }
+
+}
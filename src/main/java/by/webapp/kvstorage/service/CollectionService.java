@@ -3,9 +3,12 @@ package by.webapp.kvstorage.service;
 import by.webapp.kvstorage.cache.CacheFactory;
 import by.webapp.kvstorage.cache.ICache;
 import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.FailedException;
 import by.webapp.kvstorage.exception.ResourceNotFoundException;
 import by.webapp.kvstorage.model.Collection;
 import by.webapp.kvstorage.repository.CollectionRepository;
+import by.webapp.kvstorage.storage.StorageType;
+import by.webapp.kvstorage.util.JsonQuery;
 import by.webapp.kvstorage.util.Validator;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -67,7 +70,11 @@ public class CollectionService implements GlobalService<Collection> {
             logger.error(message);
             throw new BadRequestException(message);
         }
-        setCache(collection.getAlgorithm(), collection.getCacheLimit());
+        CacheFactory.getAlgorithm(collection.getAlgorithm(), collection.getCacheBytes());
+        if (collection.getStorage() != null) {
+            StorageType.of(collection.getStorage());
+        }
+        JsonQuery.parsePaths(collection.getIndexedPaths());
         documentService.setCollection(collection);
         documentService.setDocumentName(collectionName);
         documentService.createTable();
@@ -101,11 +108,43 @@ public class CollectionService implements GlobalService<Collection> {
             logger.error(message);
             throw new ResourceNotFoundException(message);
         }
+        CacheFactory.getAlgorithm(collection.getAlgorithm(), collection.getCacheBytes());
+        JsonQuery.parsePaths(collection.getIndexedPaths());
+        final String storage = get(collectionName).getStorage();
+        if (collection.getStorage() == null) {
+            collection.setStorage(storage);
+        } else if (storage != null
+                && StorageType.of(collection.getStorage()) != StorageType.of(storage)) {
+            final String message = "Error: storage of an existing collection can't be changed.";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
         collectionCache.remove(collectionName);
         collectionCache.put(collectionName, collection);
+        documentService.setCollection(collection);
         return collectionRepository.update(collectionName, collection);
     }
 
+    @Override
+    @Transactional
+    public Collection upsert(Collection collection) {
+        final String collectionName = collection.getName();
+        if (isAbsent(collectionName)) {
+            create(collection);
+            return null;
+        }
+        final Collection previousCollection;
+        try {
+            previousCollection = get(collectionName).clone();
+        } catch (CloneNotSupportedException e) {
+            final String message = "Error: collection " + collectionName + " can't be copied.";
+            logger.error(message);
+            throw new FailedException(message, e);
+        }
+        update(collectionName, collection);
+        return previousCollection;
+    }
+
     @Override
     @Transactional
     public int delete(String collectionName) throws RuntimeException {
@@ -115,6 +154,7 @@ public class CollectionService implements GlobalService<Collection> {
                     "Error: attempt to delete non-existing collection.");
         }
         collectionCache.remove(safeCollectionName);
+        documentService.removeCollection(safeCollectionName);
         return collectionRepository.delete(safeCollectionName);
     }
 
@@ -123,9 +163,14 @@ public class CollectionService implements GlobalService<Collection> {
         return collectionRepository.list();
     }
 
+    public List<Collection> list(String afterName, int offset, int limit) {
+        return collectionRepository.list(afterName, offset, limit);
+    }
+
     @Transactional
     public void clean() {
         collectionRepository.clean();
+        documentService.removeCollections();
     }
 
     public boolean isAbsent(String collectionName) {
@@ -5,44 +5,103 @@ import by.webapp.kvstorage.exception.FailedException;
 import by.webapp.kvstorage.exception.ResourceNotFoundException;
 import by.webapp.kvstorage.model.Collection;
 import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
 import by.webapp.kvstorage.model.Node;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.model.RebalancePlan;
+import by.webapp.kvstorage.rpc.RpcClient;
+import by.webapp.kvstorage.util.JsonQuery;
+import by.webapp.kvstorage.util.KeyRange;
 import by.webapp.kvstorage.util.NodeLoader;
-import by.webapp.kvstorage.util.Validator;
+import by.webapp.kvstorage.util.Placement;
+import by.webapp.kvstorage.util.WriteQuorum;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component
 public class DistributedService {
 
     private static final Logger logger = LogManager.getLogger(DistributedService.class);
+    public static final String NDJSON_VALUE = "application/x-ndjson";
     private final RestTemplate restTemplate;
-    private Map<Integer, List<Node>> groupToNodesMap;
-    private final List<Node> nodeList = new ArrayList<>();
+    private final RpcClient rpcClient;
+    private volatile Placement placement;
+    private static final String BATCH_PATH = "batch";
+    private static final String BATCH_DELETE_PATH = "batch/delete";
+    private static final String UPSERT_PARAM = "?upsert=true";
+    private static final String QUERY_PATH = "query";
+    private static final String REBALANCE_PLAN_PATH = "rebalance/plan";
+    private static final String REBALANCE_STREAM_PATH = "rebalance/stream";
+    private static final String REBALANCE_MOVES_PATH = "rebalance/moves/";
+    private static final String REPLICATION_LOG_PATH = "replication/log";
+
+    private static final long REPAIR_DELAY_MILLIS = 1000;
+    private final ExecutorService replicationExecutor;
+    private final ScheduledExecutorService repairs;
+    private final long quorumTimeout;
+    private final int repairAttempts;
 
     @Autowired
-    public DistributedService(RestTemplate restTemplate) {
+    public DistributedService(RestTemplate restTemplate,
+                              RpcClient rpcClient,
+                              @Value("${kvstorage.replication.threads:32}") int threads,
+                              @Value("${kvstorage.replication.quorum-timeout-ms:10000}")
+                                      long quorumTimeout,
+                              @Value("${kvstorage.replication.repair-attempts:5}")
+                                      int repairAttempts) {
         this.restTemplate = restTemplate;
-        groupToNodesMap = NodeLoader.groupToNodesMap;
-        groupToNodesMap.values().forEach(nodeList::addAll);
+        this.rpcClient = rpcClient;
+        this.quorumTimeout = quorumTimeout;
+        this.repairAttempts = repairAttempts;
+        placement = new Placement(NodeLoader.topology);
+        replicationExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "replication-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        repairs = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-repair");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        replicationExecutor.shutdownNow();
+        repairs.shutdownNow();
     }
 
 //------------------------------     Collection distributing     ------------------------------
 
     public void distributeCreating(
             Object object, int counter, boolean shouldRollBack) {
-        Node node = getReceivingNode(counter, shouldRollBack, nodeList);
+        Node node = getReceivingNode(counter, shouldRollBack, placement.getNodes());
         counter = shouldRollBack ? counter - 1 : counter + 1;
         if (node == null) {
             return;
@@ -66,7 +125,7 @@ public class DistributedService {
 
     public void distributeUpdating(
             Object object, int counter, boolean shouldRollBack, String... args) {
-        Node node = getReceivingNode(counter, shouldRollBack, nodeList);
+        Node node = getReceivingNode(counter, shouldRollBack, placement.getNodes());
         counter = shouldRollBack ? counter - 1 : counter + 1;
         if (node == null) {
             return;
@@ -90,7 +149,7 @@ public class DistributedService {
 
     public void distributeDeleting(
             int counter, boolean shouldRollBack, String... args) {
-        Node node = getReceivingNode(counter, shouldRollBack, nodeList);
+        Node node = getReceivingNode(counter, shouldRollBack, placement.getNodes());
         counter = shouldRollBack ? counter - 1 : counter + 1;
         if (node == null) {
             return;
@@ -112,22 +171,21 @@ public class DistributedService {
         }
     }
 
-    public List<by.webapp.kvstorage.model.Collection> distributeGettingList(int offSet, int pageSize) {
-        List<Node> list = nodeList;
+    public List<Collection> distributeGettingList(String cursor, int page, int pageSize) {
+        List<Node> list = new ArrayList<>(placement.getNodes());
         list.remove(NodeLoader.thisNode);
         boolean groupIsNotAvailable = true;
-        List<Object> objects = null;
+        List<Collection> collections = null;
         for (Node node : list) {
             try {
-                objects = restTemplate.exchange(
-                        assembleURL(node.getUrl()),
+                collections = restTemplate.exchange(
+                        assembleListURL(assembleURL(node.getUrl()), cursor, page, pageSize),
                         HttpMethod.GET,
                         new HttpEntity<>(getReplicaHeaders()),
-                        new ParameterizedTypeReference<List<Object>>() {
-                        },
-                        getRequestParams(offSet, pageSize))
+                        new ParameterizedTypeReference<List<Collection>>() {
+                        })
                         .getBody();
-                if (objects != null) {
+                if (collections != null) {
                     groupIsNotAvailable = false;
                     break;
                 }
@@ -142,38 +200,97 @@ public class DistributedService {
             logger.error(message);
             throw new FailedException(message);
         }
-        List<by.webapp.kvstorage.model.Collection> collectionList = objects.stream()
-                .map((obj) -> (Collection) obj).collect(Collectors.toList());
-        return Validator.getCollectionSubList(collectionList, offSet, pageSize);
+        return collections;
     }
 
 //------------------------------     Document distributing     ------------------------------
 
-    public void sendPost(
-            Object object, int counter, boolean shouldRollBack, String... args) {
-        List<Node> nodes = groupToNodesMap.get(
-                defineGroup(args[0] + "/" + args[1]));
-        Node node = getReceivingNode(counter, shouldRollBack, nodes);
-        if (node == null) {
+    public void replicate(String collectionId, String documentId, Document next,
+                          Integer writeQuorum, Supplier<Document> currentState,
+                          Runnable rollback) {
+        List<Node> replicas = getReplicas();
+        if (replicas.isEmpty()) {
             return;
         }
-        counter = shouldRollBack ? counter - 1 : counter + 1;
+        int required = WriteQuorum.getRequiredReplicas(writeQuorum, replicas.size());
+        WriteQuorum quorum = new WriteQuorum(required, replicas.size());
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (Node node : replicas) {
+            writes.add(CompletableFuture
+                    .runAsync(() -> sendState(node, collectionId, documentId, next),
+                            replicationExecutor)
+                    .whenComplete((ignored, error) -> {
+                        if (error == null) {
+                            quorum.acknowledge();
+                        } else {
+                            logger.error("Replication failed in " + node.getName(), error);
+                            quorum.fail();
+                        }
+                    }));
+        }
+        boolean isReached;
         try {
-            restTemplate.postForEntity(assembleURL(node.getUrl(), args[0]),
-                    getEntity(object, getHeaders(counter, shouldRollBack)), Object.class);
-        } catch (HttpServerErrorException.ServiceUnavailable e) {
-            throw new FailedException("Exception in sendPost() ", e);
-        } catch (ResourceAccessException e) {
-            logger.error("Node " + node.getName() + " is unavailable.", e);
-            throw new ResourceAccessException("Exception in sendPost() " + e);
+            isReached = quorum.await(quorumTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            isReached = false;
+        }
+        if (!isReached) {
+            rollback.run();
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            Node node = replicas.get(i);
+            if (isReached) {
+                writes.get(i).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        repair(node, collectionId, documentId, currentState, 1);
+                    }
+                });
+            } else {
+                writes.get(i).whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        restoreReplica(node, collectionId, documentId, currentState);
+                    }
+                });
+            }
+        }
+        if (!isReached) {
+            throw new ResourceAccessException("Write quorum of " + (required + 1) +
+                    " is not reached for " + collectionId + "/" + documentId);
+        }
+    }
+
+    public void restoreReplicas(String collectionId, String documentId,
+                                Supplier<Document> currentState) {
+        getReplicas().forEach(node -> replicationExecutor.execute(() ->
+                restoreReplica(node, collectionId, documentId, currentState)));
+    }
+
+    public long shipLog(Node node, List<Mutation> mutations) {
+        if (rpcClient.isEnabled(node)) {
+            return rpcClient.apply(node, mutations);
+        }
+        try {
+            Long acknowledged = restTemplate.postForEntity(
+                    assembleAdminURL(node.getUrl(), REPLICATION_LOG_PATH),
+                    getEntity(mutations, getReplicaHeaders()), Long.class).getBody();
+            if (acknowledged == null) {
+                throw new ResourceAccessException("Empty acknowledgement from " + node.getName());
+            }
+            return acknowledged;
+        } catch (HttpStatusCodeException e) {
+            throw new ResourceAccessException("Exception in shipLog() " + e);
         }
     }
 
     public Document redirectPost(Object object, String... args) {
-        Node node = groupToNodesMap.get(
+        Node node = placement.getGroups().get(
                 defineGroup(args[0] + "/" + args[1])).get(0);
         Document result = null;
         try {
+            if (rpcClient.isEnabled(node)) {
+                return rpcClient.create(node, args[0], (Document) object);
+            }
             LinkedHashMap body = (LinkedHashMap) restTemplate.postForEntity(
                     assembleURL(node.getUrl(), args[0]),
                     getEntity(object, getHeaders()), Object.class).getBody();
@@ -195,7 +312,7 @@ public class DistributedService {
     }
 
     public Object sendGet(Class classType, String... parameters) {
-        List<Node> list = new ArrayList<>(groupToNodesMap.get(NodeLoader.thisNode.getGroup()));
+        List<Node> list = new ArrayList<>(getMyGroupNodes());
         list.remove(NodeLoader.thisNode);
         for (Node node : list) {
             try {
@@ -216,9 +333,12 @@ public class DistributedService {
 
     public Object redirectGet(Class classType, String... args) {
         int idGroup = defineGroup(args[0] + "/" + args[1]);
-        List<Node> list = groupToNodesMap.get(idGroup);
+        List<Node> list = placement.getGroups().get(idGroup);
         for (Node node : list) {
             try {
+                if (rpcClient.isEnabled(node)) {
+                    return rpcClient.get(node, args[0], args[1]);
+                }
                 ResponseEntity response = restTemplate.exchange
                         (assembleURL(node.getUrl(), args[0] + "/" + args[1]),
                                 HttpMethod.GET,
@@ -237,30 +357,14 @@ public class DistributedService {
         throw new FailedException("Exception in redirectGet().");
     }
 
-    public void sendUpdate(
-            Object object, int counter, boolean shouldRollBack, String... args) {
-        List<Node> nodes = groupToNodesMap.get(NodeLoader.thisNode.getGroup());
-        Node node = getReceivingNode(counter, shouldRollBack, nodes);
-        if (node == null) {
-            return;
-        }
-        counter = shouldRollBack ? counter - 1 : counter + 1;
-        try {
-            restTemplate.put(assembleURL(node.getUrl(), args),
-                    getEntity(object, getHeaders(counter, shouldRollBack)));
-        } catch (HttpServerErrorException.ServiceUnavailable e) {
-            throw new FailedException("Exception in sendUpdate()", e);
-        } catch (ResourceAccessException e) {
-            logger.error("Node " + node.getName() + " is unavailable.");
-            throw new ResourceAccessException(
-                    "Node " + node.getName() + " is unavailable." + e);
-        }
-    }
-
     public void redirectUpdate(Object object, String... args) {
-        Node node = groupToNodesMap.get(
+        Node node = placement.getGroups().get(
                 defineGroup(args[0] + "/" + args[1])).get(0);
         try {
+            if (rpcClient.isEnabled(node)) {
+                rpcClient.update(node, args[0], args[1], (Document) object);
+                return;
+            }
             restTemplate.exchange(
                     assembleURL(node.getUrl(), args),
                     HttpMethod.PUT,
@@ -277,32 +381,41 @@ public class DistributedService {
         }
     }
 
-    public void sendDelete(
-            int counter, boolean shouldRollBack, String... args) {
-        List<Node> nodes = groupToNodesMap.get(
-                defineGroup(args[0] + "/" + args[1]));
-        Node node = getReceivingNode(counter, shouldRollBack, nodes);
-        if (node == null) {
-            return;
-        }
-        counter = shouldRollBack ? counter - 1 : counter + 1;
+    public ResponseEntity<Document> redirectUpsert(Object object, String... args) {
+        Node node = placement.getGroups().get(
+                defineGroup(args[0] + "/" + args[1])).get(0);
         try {
-            restTemplate.exchange(assembleURL(node.getUrl(), args),
-                    HttpMethod.DELETE, new HttpEntity<>(
-                            getHeaders(counter, shouldRollBack)), Object.class);
-        } catch (HttpServerErrorException.ServiceUnavailable e) {
-            throw new FailedException("Exception in sendDelete() ", e);
+            if (rpcClient.isEnabled(node)) {
+                boolean isCreated = rpcClient.upsert(node, args[0], args[1], (Document) object);
+                return new ResponseEntity<>((Document) object,
+                        isCreated ? HttpStatus.CREATED : HttpStatus.OK);
+            }
+            ResponseEntity<Document> response = restTemplate.exchange(
+                    assembleURL(node.getUrl(), args) + UPSERT_PARAM,
+                    HttpMethod.PUT,
+                    getEntity(object, getHeaders()), Document.class);
+            return new ResponseEntity<>(response.getBody(), response.getStatusCode());
         } catch (ResourceAccessException e) {
-            logger.error("Node " + node.getName() + " is unavailable.", e);
-            throw new ResourceAccessException("Node " + node.getName() +
-                    " is unavailable." + e);
+            final String message = "Node " + node.getName() + " is unavailable.";
+            logger.error(message, e);
+            throw new FailedException(message, e);
+        } catch (HttpClientErrorException e) {
+            logger.error("ClientError is received from " + node.getName(), e);
+            throwClientException(e);
+        } catch (HttpServerErrorException.ServiceUnavailable e) {
+            throw new FailedException("Exception in redirectUpsert() ", e);
         }
+        throw new FailedException("Exception in redirectUpsert().");
     }
 
     public void redirectDelete(String... args) {
-        Node node = groupToNodesMap.get(
+        Node node = placement.getGroups().get(
                 defineGroup(args[0] + "/" + args[1])).get(0);
         try {
+            if (rpcClient.isEnabled(node)) {
+                rpcClient.delete(node, args[0], args[1]);
+                return;
+            }
             restTemplate.exchange(assembleURL(node.getUrl(), args),
                     HttpMethod.DELETE, new HttpEntity<>(getHeaders()), Object.class);
         } catch (ResourceAccessException e) {
@@ -317,24 +430,26 @@ public class DistributedService {
         }
     }
 
-    public List<Document> distributeDocumentList(
-            int offSet, int pageSize, String collectionId, List<Document> documents) {
-        Map<Integer, List<Node>> mapGroups = new HashMap<>(groupToNodesMap);
+    public List<Document> distributeDocumentList(String cursor, int offSet, int pageSize,
+                                                 String collectionId, List<Document> documents) {
+        Map<Integer, List<Node>> mapGroups = new HashMap<>(placement.getGroups());
         mapGroups.remove(NodeLoader.thisNode.getGroup());
+        final List<Document> mergedDocuments = new ArrayList<>(documents);
+        final int groupPageSize = (int) Math.min(Integer.MAX_VALUE, (long) offSet + pageSize);
         for (Map.Entry<Integer, List<Node>> group : mapGroups.entrySet()) {
             boolean isAvailable = false;
             for (Node node : group.getValue()) {
                 try {
                     List<Document> body = restTemplate.exchange(
-                            assembleURL(node.getUrl(), collectionId),
+                            assembleListURL(assembleURL(node.getUrl(), collectionId),
+                                    cursor, 1, groupPageSize),
                             HttpMethod.GET,
                             new HttpEntity<>(getNotMainGroupHeaders()),
                             new ParameterizedTypeReference<List<Document>>() {
-                            },
-                            getRequestParams(offSet, pageSize))
+                            })
                             .getBody();
                     if (body != null) {
-                        documents.addAll(body);
+                        mergedDocuments.addAll(body);
                         isAvailable = true;
                         break;
                     }
@@ -350,26 +465,31 @@ public class DistributedService {
                 throw new FailedException(message);
             }
         }
-        return Validator.getDocumentSubList(documents, offSet, pageSize);
+        mergedDocuments.sort(Comparator.comparing(Document::getKey));
+        if (offSet >= mergedDocuments.size()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(mergedDocuments.subList(
+                offSet, (int) Math.min(mergedDocuments.size(), (long) offSet + pageSize)));
     }
 
-    public List<Object> sendListToReplica(
-            int offSet, int size, String collectionId) {
-        List<Node> list = new ArrayList<>(groupToNodesMap.get(NodeLoader.thisNode.getGroup()));
+    public List<Document> sendListToReplica(
+            String cursor, int page, int size, String collectionId) {
+        List<Node> list = new ArrayList<>(getMyGroupNodes());
         list.remove(NodeLoader.thisNode);
         boolean groupIsNotAvailable = true;
-        List<Object> objects = null;
+        List<Document> documents = null;
         for (Node node : list) {
             try {
-                objects = restTemplate.exchange(
-                        assembleURL(node.getUrl(), collectionId),
+                documents = restTemplate.exchange(
+                        assembleListURL(assembleURL(node.getUrl(), collectionId),
+                                cursor, page, size),
                         HttpMethod.GET,
-                        new HttpEntity<>(getReplicaHeaders()),
-                        new ParameterizedTypeReference<List<Object>>() {
-                        },
-                        getRequestParams(offSet, size))
+                        new HttpEntity<>(getReplicaListHeaders()),
+                        new ParameterizedTypeReference<List<Document>>() {
+                        })
                         .getBody();
-                if (objects != null) {
+                if (documents != null) {
                     groupIsNotAvailable = false;
                     break;
                 }
@@ -384,17 +504,486 @@ public class DistributedService {
             logger.error(message);
             throw new FailedException(message);
         }
-        return objects;
+        return documents;
+    }
+
+    public List<Document> distributeScan(String prefix, String from, String to, String cursor,
+                                         int pageSize, String collectionId,
+                                         List<Document> documents) {
+        Map<Integer, List<Node>> mapGroups = new HashMap<>(placement.getGroups());
+        mapGroups.remove(NodeLoader.thisNode.getGroup());
+        final List<List<Document>> sources = new ArrayList<>();
+        sources.add(documents);
+        for (Map.Entry<Integer, List<Node>> group : mapGroups.entrySet()) {
+            boolean isAvailable = false;
+            for (Node node : group.getValue()) {
+                try {
+                    List<Document> body = restTemplate.exchange(
+                            assembleScanURL(assembleURL(node.getUrl(), collectionId),
+                                    prefix, from, to, cursor, pageSize),
+                            HttpMethod.GET,
+                            new HttpEntity<>(getNotMainGroupHeaders()),
+                            new ParameterizedTypeReference<List<Document>>() {
+                            })
+                            .getBody();
+                    if (body != null) {
+                        sources.add(body);
+                        isAvailable = true;
+                        break;
+                    }
+                } catch (ResourceAccessException e) {
+                    logger.error("Node " + node.getName() + " is unavailable.", e);
+                } catch (HttpClientErrorException e) {
+                    logger.error("ClientError is received from " + node.getName());
+                    throwClientException(e);
+                } catch (HttpServerErrorException.ServiceUnavailable e) {
+                    break;
+                }
+            }
+            if (!isAvailable) {
+                final String message = "Group  " + group.getKey() + " is unavailable.";
+                logger.error(message);
+                throw new FailedException(message);
+            }
+        }
+        return KeyRange.merge(sources, pageSize);
+    }
+
+    public List<Document> sendScanToReplica(String prefix, String from, String to, String cursor,
+                                            int pageSize, String collectionId) {
+        List<Node> list = new ArrayList<>(getMyGroupNodes());
+        list.remove(NodeLoader.thisNode);
+        for (Node node : list) {
+            try {
+                List<Document> documents = restTemplate.exchange(
+                        assembleScanURL(assembleURL(node.getUrl(), collectionId),
+                                prefix, from, to, cursor, pageSize),
+                        HttpMethod.GET,
+                        new HttpEntity<>(getReplicaListHeaders()),
+                        new ParameterizedTypeReference<List<Document>>() {
+                        })
+                        .getBody();
+                if (documents != null) {
+                    return documents;
+                }
+            } catch (HttpServerErrorException.ServiceUnavailable e) {
+                logger.error("SCAN request is failed in " + node.getName(), e);
+            } catch (ResourceAccessException e) {
+                logger.error("Node " + node.getName() + " is unavailable.", e);
+            }
+        }
+        final String message = "Group  " + NodeLoader.thisNode.getGroup() + " is unavailable.";
+        logger.error(message);
+        throw new FailedException(message);
+    }
+
+    public void exportOtherGroups(String collectionId, OutputStream outputStream) {
+        Map<Integer, List<Node>> mapGroups = new HashMap<>(placement.getGroups());
+        mapGroups.remove(NodeLoader.thisNode.getGroup());
+        final String path = "?format=ndjson";
+        for (Map.Entry<Integer, List<Node>> group : mapGroups.entrySet()) {
+            boolean isAvailable = false;
+            for (Node node : group.getValue()) {
+                final long[] copied = {0};
+                try {
+                    restTemplate.execute(assembleURL(node.getUrl(), collectionId) + path,
+                            HttpMethod.GET,
+                            request -> {
+                                request.getHeaders().setAccept(Collections.singletonList(
+                                        MediaType.parseMediaType(NDJSON_VALUE)));
+                                request.getHeaders().add("main", String.valueOf(false));
+                            },
+                            response -> {
+                                final InputStream body = response.getBody();
+                                final byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+                                int read;
+                                while ((read = body.read(buffer)) != -1) {
+                                    outputStream.write(buffer, 0, read);
+                                    copied[0] += read;
+                                }
+                                return null;
+                            });
+                    isAvailable = true;
+                    break;
+                } catch (ResourceAccessException e) {
+                    logger.error("Node " + node.getName() + " is unavailable.", e);
+                    if (copied[0] > 0) {
+                        break;
+                    }
+                } catch (HttpServerErrorException.ServiceUnavailable e) {
+                    break;
+                }
+            }
+            if (!isAvailable) {
+                final String message = "Group  " + group.getKey() + " is unavailable.";
+                logger.error(message);
+                throw new FailedException(message);
+            }
+        }
+    }
+
+    public List<Document> distributeQuery(Query query, String collectionId,
+                                          List<Document> documents) {
+        Map<Integer, List<Node>> mapGroups = new HashMap<>(placement.getGroups());
+        mapGroups.remove(NodeLoader.thisNode.getGroup());
+        final List<Document> mergedDocuments = new ArrayList<>(documents);
+        for (Map.Entry<Integer, List<Node>> group : mapGroups.entrySet()) {
+            boolean isAvailable = false;
+            for (Node node : group.getValue()) {
+                try {
+                    List<Document> body = restTemplate.exchange(
+                            assembleURL(node.getUrl(), collectionId, QUERY_PATH),
+                            HttpMethod.POST,
+                            getEntity(query, getNotMainGroupHeaders()),
+                            new ParameterizedTypeReference<List<Document>>() {
+                            })
+                            .getBody();
+                    if (body != null) {
+                        mergedDocuments.addAll(body);
+                        isAvailable = true;
+                        break;
+                    }
+                } catch (ResourceAccessException e) {
+                    logger.error("Node " + node.getName() + " is unavailable.", e);
+                } catch (HttpClientErrorException e) {
+                    logger.error("ClientError is received from " + node.getName());
+                    throwClientException(e);
+                } catch (HttpServerErrorException.ServiceUnavailable e) {
+                    break;
+                }
+            }
+            if (!isAvailable) {
+                final String message = "Group  " + group.getKey() + " is unavailable.";
+                logger.error(message);
+                throw new FailedException(message);
+            }
+        }
+        return JsonQuery.page(mergedDocuments, query);
+    }
+
+    public List<Document> sendQueryToReplica(Query query, String collectionId) {
+        List<Node> list = new ArrayList<>(getMyGroupNodes());
+        list.remove(NodeLoader.thisNode);
+        for (Node node : list) {
+            try {
+                List<Document> documents = restTemplate.exchange(
+                        assembleURL(node.getUrl(), collectionId, QUERY_PATH),
+                        HttpMethod.POST,
+                        getEntity(query, getReplicaListHeaders()),
+                        new ParameterizedTypeReference<List<Document>>() {
+                        })
+                        .getBody();
+                if (documents != null) {
+                    return documents;
+                }
+            } catch (HttpServerErrorException.ServiceUnavailable e) {
+                logger.error("QUERY request is failed in " + node.getName(), e);
+            } catch (ResourceAccessException e) {
+                logger.error("Node " + node.getName() + " is unavailable.", e);
+            }
+        }
+        final String message = "Group  " + NodeLoader.thisNode.getGroup() + " is unavailable.";
+        logger.error(message);
+        throw new FailedException(message);
+    }
+
+    public Map<Integer, List<Document>> groupByOwner(
+            String collectionId, List<Document> documents) {
+        Map<Integer, List<Document>> groups = new HashMap<>();
+        for (Document document : documents) {
+            groups.computeIfAbsent(defineGroup(collectionId + "/" + document.getKey()),
+                    group -> new ArrayList<>()).add(document);
+        }
+        return groups;
+    }
+
+    public void sendBatch(List<Document> documents, String collectionId) {
+        List<Node> replicas = new ArrayList<>(getMyGroupNodes());
+        replicas.remove(NodeLoader.thisNode);
+        List<Node> appliedReplicas = new ArrayList<>();
+        for (Node node : replicas) {
+            try {
+                if (rpcClient.isEnabled(node)) {
+                    rpcClient.replicateBatch(node, collectionId, documents);
+                } else {
+                    restTemplate.postForEntity(
+                            assembleURL(node.getUrl(), collectionId, BATCH_PATH),
+                            getEntity(documents, getReplicaHeaders()), Object.class);
+                }
+                appliedReplicas.add(node);
+            } catch (RuntimeException e) {
+                logger.error("Batch replication failed in " + node.getName(), e);
+                List<String> keys = documents.stream()
+                        .map(Document::getKey).collect(Collectors.toList());
+                // the failed replica may have applied the batch before its response was lost
+                appliedReplicas.add(node);
+                appliedReplicas.forEach(replica -> sendBatchDelete(replica, keys, collectionId));
+                throw new ResourceAccessException("Exception in sendBatch() " + e);
+            }
+        }
+    }
+
+    public void deleteBatchFromReplicas(List<String> keys, String collectionId) {
+        getReplicas().forEach(replica -> sendBatchDelete(replica, keys, collectionId));
+    }
+
+    public int redirectBatch(List<Document> documents, String collectionId) {
+        List<Node> nodes = placement.getGroups().get(
+                defineGroup(collectionId + "/" + documents.get(0).getKey()));
+        for (Node node : nodes) {
+            try {
+                if (rpcClient.isEnabled(node)) {
+                    return rpcClient.forwardBatch(node, collectionId, documents);
+                }
+                Integer created = restTemplate.postForEntity(
+                        assembleURL(node.getUrl(), collectionId, BATCH_PATH),
+                        getEntity(documents, getHeaders()), Integer.class).getBody();
+                return created == null ? 0 : created;
+            } catch (ResourceAccessException e) {
+                logger.error("Node " + node.getName() + " is unavailable.", e);
+            } catch (HttpClientErrorException e) {
+                logger.error("ClientError is received from " + node.getName());
+                throwClientException(e);
+            } catch (HttpServerErrorException e) {
+                throw new FailedException("Exception in redirectBatch() ", e);
+            }
+        }
+        throw new FailedException("Exception in redirectBatch().");
+    }
+
+    private void sendBatchDelete(Node node, List<String> keys, String collectionId) {
+        try {
+            if (rpcClient.isEnabled(node)) {
+                rpcClient.apply(node, keys.stream()
+                        .map(key -> new Mutation(Mutation.Type.DELETE, collectionId, key, null))
+                        .collect(Collectors.toList()));
+                return;
+            }
+            restTemplate.postForEntity(assembleURL(node.getUrl(), collectionId, BATCH_DELETE_PATH),
+                    getEntity(keys, getReplicaHeaders()), Object.class);
+        } catch (RuntimeException e) {
+            logger.fatal("Batch rollback failed in " + node.getName() +
+                    ". The application doesn't work correctly", e);
+        }
+    }
+
+//------------------------------     Rebalancing     ------------------------------
+
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    public void setPlacement(Placement placement) {
+        this.placement = placement;
+    }
+
+    public boolean isRebalancing() {
+        return placement.isMoving();
+    }
+
+    public List<Document> retainOwned(String collectionId, List<Document> documents) {
+        if (!placement.isMoving()) {
+            return documents;
+        }
+        return documents.stream()
+                .filter(document -> isMyGroup(collectionId + "/" + document.getKey()))
+                .collect(Collectors.toList());
+    }
+
+    public void mirrorUpsert(Document document, String collectionId, String documentId) {
+        Integer group = placement.getPendingOwner(collectionId + "/" + documentId);
+        if (group == null) {
+            return;
+        }
+        for (Node node : placement.getGroups().get(group)) {
+            try {
+                restTemplate.exchange(
+                        assembleURL(node.getUrl(), collectionId, documentId) + UPSERT_PARAM,
+                        HttpMethod.PUT, getEntity(document, getMigrationHeaders()),
+                        Document.class);
+                return;
+            } catch (ResourceAccessException e) {
+                logger.error("Node " + node.getName() + " is unavailable.", e);
+            } catch (HttpStatusCodeException e) {
+                logger.error("Mirrored write is rejected by " + node.getName(), e);
+                throw new ResourceAccessException("Exception in mirrorUpsert() " + e);
+            }
+        }
+        throw new ResourceAccessException("Exception in mirrorUpsert(): group " + group +
+                " is unavailable.");
+    }
+
+    public void mirrorDelete(String collectionId, String documentId) {
+        Integer group = placement.getPendingOwner(collectionId + "/" + documentId);
+        if (group != null) {
+            deleteFromGroup(Collections.singletonList(documentId), collectionId, group);
+        }
+    }
+
+    public void mirrorBatch(List<Document> documents, String collectionId) {
+        if (!placement.isMoving()) {
+            return;
+        }
+        Map<Integer, List<Document>> groups = new HashMap<>();
+        for (Document document : documents) {
+            Integer group = placement.getPendingOwner(collectionId + "/" + document.getKey());
+            if (group != null) {
+                groups.computeIfAbsent(group, id -> new ArrayList<>()).add(document);
+            }
+        }
+        groups.forEach((group, batch) -> copyToGroup(batch, collectionId, group));
+    }
+
+    public int copyToGroup(List<Document> documents, String collectionId, int group) {
+        for (Node node : placement.getGroups().get(group)) {
+            try {
+                Integer created = restTemplate.postForEntity(
+                        assembleURL(node.getUrl(), collectionId, BATCH_PATH),
+                        getEntity(documents, getMigrationHeaders()), Integer.class).getBody();
+                return created == null ? 0 : created;
+            } catch (ResourceAccessException e) {
+                logger.error("Node " + node.getName() + " is unavailable.", e);
+            } catch (HttpStatusCodeException e) {
+                logger.error("Copied batch is rejected by " + node.getName(), e);
+                throw new ResourceAccessException("Exception in copyToGroup() " + e);
+            }
+        }
+        throw new ResourceAccessException("Exception in copyToGroup(): group " + group +
+                " is unavailable.");
+    }
+
+    public void deleteFromGroup(List<String> keys, String collectionId, int group) {
+        for (Node node : placement.getGroups().get(group)) {
+            try {
+                restTemplate.postForEntity(
+                        assembleURL(node.getUrl(), collectionId, BATCH_DELETE_PATH),
+                        getEntity(keys, getReplicaHeaders()), Object.class);
+            } catch (ResourceAccessException | HttpStatusCodeException e) {
+                logger.error("Batch delete failed in " + node.getName(), e);
+                throw new ResourceAccessException("Exception in deleteFromGroup() " + e);
+            }
+        }
+    }
+
+    public void sendPlan(RebalancePlan plan, List<Node> nodes) {
+        for (Node node : nodes) {
+            try {
+                restTemplate.put(assembleAdminURL(node.getUrl(), REBALANCE_PLAN_PATH),
+                        getEntity(plan, getHeaders()));
+            } catch (ResourceAccessException | HttpStatusCodeException e) {
+                final String message = "Rebalance plan is not accepted by " + node.getName();
+                logger.error(message, e);
+                throw new FailedException(message, e);
+            }
+        }
+    }
+
+    public void startStreaming(int group) {
+        for (Node node : placement.getCurrent().getGroups().get(group)) {
+            try {
+                restTemplate.postForEntity(assembleAdminURL(node.getUrl(), REBALANCE_STREAM_PATH),
+                        getEntity(null, getHeaders()), Object.class);
+                return;
+            } catch (ResourceAccessException e) {
+                logger.error("Node " + node.getName() + " is unavailable.", e);
+            }
+        }
+        final String message = "Group " + group + " can't stream its moving keys.";
+        logger.error(message);
+        throw new FailedException(message);
+    }
+
+    public void sendAbort(List<Node> nodes) {
+        for (Node node : nodes) {
+            try {
+                restTemplate.delete(assembleAdminURL(node.getUrl(), REBALANCE_PLAN_PATH));
+            } catch (ResourceAccessException | HttpStatusCodeException e) {
+                logger.error("Rebalance abort is not accepted by " + node.getName(), e);
+            }
+        }
+    }
+
+    public void sendMoveDone(int from, int to, List<Node> nodes) {
+        for (Node node : nodes) {
+            try {
+                restTemplate.put(assembleAdminURL(node.getUrl(),
+                        REBALANCE_MOVES_PATH + from + '/' + to), getEntity(null, getHeaders()));
+            } catch (ResourceAccessException | HttpStatusCodeException e) {
+                logger.error("Completed move " + from + "->" + to + " is not accepted by " +
+                        node.getName(), e);
+            }
+        }
     }
 
 //-----------------------------------     Util methods     -----------------------------------
 
+    public boolean hasOtherGroups() {
+        return placement.getGroups().size() > 1;
+    }
+
     public boolean isMyGroup(String id) {
         return defineGroup(id) == NodeLoader.thisNode.getGroup();
     }
 
+    private void sendState(Node node, String collectionId, String documentId,
+                           Document state) {
+        if (rpcClient.isEnabled(node)) {
+            rpcClient.apply(node, Collections.singletonList(state == null ?
+                    new Mutation(Mutation.Type.DELETE, collectionId, documentId, null) :
+                    new Mutation(Mutation.Type.PUT, collectionId, documentId, state.getValue())));
+            return;
+        }
+        if (state == null) {
+            restTemplate.postForEntity(assembleURL(node.getUrl(), collectionId, BATCH_DELETE_PATH),
+                    getEntity(Collections.singletonList(documentId), getReplicaHeaders()),
+                    Object.class);
+        } else {
+            restTemplate.exchange(
+                    assembleURL(node.getUrl(), collectionId, documentId) + UPSERT_PARAM,
+                    HttpMethod.PUT, getEntity(state, getReplicaHeaders()), Document.class);
+        }
+    }
+
+    private void restoreReplica(Node node, String collectionId, String documentId,
+                                Supplier<Document> currentState) {
+        try {
+            sendState(node, collectionId, documentId, currentState.get());
+        } catch (RuntimeException e) {
+            logger.error("Rollback of " + documentId + " failed in " + node.getName(), e);
+            repair(node, collectionId, documentId, currentState, 1);
+        }
+    }
+
+    private void repair(Node node, String collectionId, String documentId,
+                        Supplier<Document> currentState, int attempt) {
+        repairs.schedule(() -> {
+            try {
+                sendState(node, collectionId, documentId, currentState.get());
+                logger.info("Replica " + node.getName() + " caught up with " +
+                        collectionId + "/" + documentId);
+            } catch (RuntimeException e) {
+                if (attempt < repairAttempts) {
+                    repair(node, collectionId, documentId, currentState, attempt + 1);
+                } else {
+                    logger.fatal("Replica " + node.getName() + " is not repaired for " +
+                            collectionId + "/" + documentId, e);
+                }
+            }
+        }, REPAIR_DELAY_MILLIS << (attempt - 1), TimeUnit.MILLISECONDS);
+    }
+
+    public List<Node> getReplicas() {
+        List<Node> replicas = new ArrayList<>(getMyGroupNodes());
+        replicas.remove(NodeLoader.thisNode);
+        return replicas;
+    }
+
+    private List<Node> getMyGroupNodes() {
+        return placement.getGroups().get(NodeLoader.thisNode.getGroup());
+    }
+
     private int defineGroup(String id) {
-        return Math.abs(id.hashCode()) % groupToNodesMap.size();
+        return placement.getOwner(id);
     }
 
     private Node getReceivingNode(
@@ -409,7 +998,7 @@ public class DistributedService {
     private int getNextIndex(List<Node> list) {
         int index = 0;
         for (int i = 0; i < list.size(); i++) {
-            if (list.get(i) == NodeLoader.thisNode) {
+            if (list.get(i).equals(NodeLoader.thisNode)) {
                 if (i == list.size() - 1) {
                     return 0;
                 } else {
@@ -424,7 +1013,7 @@ public class DistributedService {
     private int definePreviousIndex(List<Node> list) {
         int index = 0;
         for (int i = 0; i < list.size(); i++) {
-            if (list.get(i) == NodeLoader.thisNode) {
+            if (list.get(i).equals(NodeLoader.thisNode)) {
                 index = i - 1;
                 if ((i - 1) < 0) {
                     index = list.size() - 1;
@@ -450,16 +1039,39 @@ public class DistributedService {
         return null;
     }
 
+    private String assembleAdminURL(String host, String path) {
+        return host + "/admin/" + path;
+    }
+
     private HttpEntity getEntity(Object object, HttpHeaders headers) {
         return new HttpEntity<>(object, headers);
     }
 
-    private Map<String, Integer> getRequestParams(
-            Integer page, Integer pageSize) {
-        return new HashMap<String, Integer>() {{
-            put("page", page);
-            put("pageSize", pageSize);
-        }};
+    private String assembleListURL(
+            String url, String cursor, Integer page, Integer pageSize) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url)
+                .queryParam("page", page)
+                .queryParam("pageSize", pageSize);
+        if (cursor != null) {
+            builder.queryParam("cursor", cursor);
+        }
+        return builder.toUriString();
+    }
+
+    private String assembleScanURL(String url, String prefix, String from, String to,
+                                   String cursor, int pageSize) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(
+                assembleListURL(url, cursor, 1, pageSize));
+        if (prefix != null) {
+            builder.queryParam("prefix", prefix);
+        }
+        if (from != null) {
+            builder.queryParam("from", from);
+        }
+        if (to != null) {
+            builder.queryParam("to", to);
+        }
+        return builder.toUriString();
     }
 
     private HttpHeaders getHeaders(Object... args) {
@@ -487,6 +1099,18 @@ public class DistributedService {
         return headers;
     }
 
+    private HttpHeaders getMigrationHeaders() {
+        HttpHeaders headers = getHeaders();
+        headers.add("migration", String.valueOf(true));
+        return headers;
+    }
+
+    private HttpHeaders getReplicaListHeaders() {
+        HttpHeaders headers = getReplicaHeaders();
+        headers.add("main", String.valueOf(false));
+        return headers;
+    }
+
     private HttpHeaders getNotMainGroupHeaders() {
         HttpHeaders headers = getHeaders();
         headers.add("main", String.valueOf(false));
@@ -1,26 +1,41 @@
 package by.webapp.kvstorage.service;
 
-import by.webapp.kvstorage.cache.CacheFactory;
+import by.webapp.kvstorage.cache.CacheBudget;
+import by.webapp.kvstorage.cache.CacheRegistry;
 import by.webapp.kvstorage.cache.ICache;
+import by.webapp.kvstorage.cache.Weigher;
 import by.webapp.kvstorage.exception.BadRequestException;
 import by.webapp.kvstorage.exception.ResourceNotFoundException;
 import by.webapp.kvstorage.model.Collection;
 import by.webapp.kvstorage.model.Document;
-import by.webapp.kvstorage.repository.DocumentRepository;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.repository.IDocumentRepository;
+import by.webapp.kvstorage.util.JsonQuery;
+import by.webapp.kvstorage.util.KeyRange;
 import by.webapp.kvstorage.util.Validator;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service("documentService")
 @Transactional(readOnly = true)
@@ -28,16 +43,17 @@ import java.util.Map;
 public class DocumentService implements GlobalService<Document> {
 
     private static final Logger logger = LogManager.getLogger(DocumentService.class);
-    private final DocumentRepository documentRepository;
-    private CacheFactory<String> cacheFactory = new CacheFactory<>();
-    private ICache<String, String> documentCache;
-    private Collection collection;
-    private String documentName;
+    private final IDocumentRepository<Document> documentRepository;
+    private final CacheRegistry<String> cacheRegistry;
+    private final Map<String, Collection> collections = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> documentName = new ThreadLocal<>();
+    private static final int MAX_BATCH_SIZE = 100_000;
     private Map<Collection, List<Document>> preparedDocuments;
 
     @PostConstruct
     public void init() {
         preparedDocuments = documentRepository.getPreparedDocuments();
+        preparedDocuments.keySet().forEach(this::setCollection);
         logger.debug("DocumentService initialized");
     }
 
@@ -50,86 +66,175 @@ public class DocumentService implements GlobalService<Document> {
     }
 
     @Autowired
-    public DocumentService(DocumentRepository documentRepository) {
+    public DocumentService(IDocumentRepository<Document> documentRepository,
+                           @Value("${kvstorage.cache.max-bytes:0}") long maxCacheBytes) {
         this.documentRepository = documentRepository;
+        final long nodeCacheBytes = maxCacheBytes > 0 ?
+                maxCacheBytes : Runtime.getRuntime().maxMemory() / 4;
+        this.cacheRegistry = new CacheRegistry<>(Weigher.strings(), new CacheBudget(nodeCacheBytes));
     }
 
     @Override
     @Transactional
     public Document create(Document document) throws BadRequestException {
-        for (Collection entry : preparedDocuments.keySet()) {
-            if (entry.getName().equalsIgnoreCase(documentName)) {
-                collection = entry;
-            }
-        }
-        setCache(collection.getAlgorithm(), collection.getCacheLimit());
+        final Collection collection = getCollection();
         final String key = document.getKey();
         final String value = document.getValue();
-        if (isExist(key)) {
-            documentCache.put(key, value);
+        if (Validator.isInvalidToJsonSchema(value, collection)) {
+            final String message = "Error: value does not match json schema.";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+        final Document savedDocument = documentRepository.save(document);
+        if (savedDocument == null) {
             final String message = "Error: an attempt to create an existing document.";
             logger.error(message);
             throw new BadRequestException(message);
         }
-        if (Validator.isInvalidToJsonSchema(value, collection.getJsonSchema())) {
+        cacheRegistry.getCache(collection).put(key, value);
+        return savedDocument;
+    }
+
+    @Override
+    @Transactional
+    public Document upsert(Document document) throws BadRequestException {
+        final Collection collection = getCollection();
+        final String value = document.getValue();
+        if (Validator.isInvalidToJsonSchema(value, collection)) {
             final String message = "Error: value does not match json schema.";
             logger.error(message);
             throw new BadRequestException(message);
         }
-        documentCache.put(key, value);
-        return documentRepository.save(document);
+        final Document previousDocument = documentRepository.upsert(document);
+        cacheRegistry.getCache(collection).put(document.getKey(), value);
+        return previousDocument;
+    }
+
+    @Transactional
+    public int createAll(List<Document> documents) throws BadRequestException {
+        final Collection collection = getCollection();
+        if (documents.size() > MAX_BATCH_SIZE) {
+            final String message = "Error: batch size exceeds " + MAX_BATCH_SIZE + " documents.";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+        final List<String> keys = new ArrayList<>(documents.size());
+        final Set<String> uniqueKeys = new HashSet<>();
+        for (Document document : documents) {
+            final String key = document.getKey();
+            if (key == null || document.getValue() == null) {
+                final String message = "Error: batch contains a document without key or value.";
+                logger.error(message);
+                throw new BadRequestException(message);
+            }
+            if (!uniqueKeys.add(key)) {
+                final String message = "Error: batch contains duplicate key [" + key + "].";
+                logger.error(message);
+                throw new BadRequestException(message);
+            }
+            if (Validator.isInvalidToJsonSchema(document.getValue(), collection)) {
+                final String message = "Error: value does not match json schema.";
+                logger.error(message);
+                throw new BadRequestException(message);
+            }
+            keys.add(key);
+        }
+        final Set<String> existingKeys = documentRepository.findExistingKeys(keys);
+        if (!existingKeys.isEmpty()) {
+            final String message = "Error: an attempt to create existing documents " + existingKeys;
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+        return documentRepository.saveAll(documents);
+    }
+
+    @Transactional
+    public List<Document> createMissing(List<Document> documents) {
+        getCollection();
+        final Set<String> existingKeys = findExisting(documents.stream()
+                .map(Document::getKey).collect(Collectors.toList()));
+        final List<Document> missing = documents.stream()
+                .filter(document -> !existingKeys.contains(document.getKey()))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            documentRepository.saveAll(missing);
+        }
+        return missing;
+    }
+
+    public Set<String> findExisting(List<String> keys) {
+        return documentRepository.findExistingKeys(keys);
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Document get(String key) throws ResourceNotFoundException {
-        if (documentName == null) {
-            final String message = "Error: an attempt to get document from non-existing collection.";
-            logger.error(message);
-            throw new ResourceNotFoundException(message);
+        final ICache<String, String> documentCache = getCache();
+        final String cachedValue = documentCache.get(key);
+        if (cachedValue != null) {
+            Document document = new Document();
+            document.setKey(key);
+            document.setValue(cachedValue);
+            return document;
         }
-        if (!isExist(key)) {
+        final Document document = documentRepository.findById(key);
+        if (document == null) {
             final String message = "Error: an attempt to get non-existing document.";
             logger.error(message);
             throw new ResourceNotFoundException(message);
         }
-        Document document = new Document();
-        if (documentCache.contains(key)) {
-            document.setKey(key);
-            document.setValue(documentCache.get(key));
+        documentCache.put(key, document.getValue());
+        return document;
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Document find(String collectionName, String key) {
+        setDocumentName(collectionName);
+        getCollection();
+        return documentRepository.findById(key);
+    }
+
+    @Transactional
+    public void restore(String key, Document previous) {
+        if (previous == null) {
+            deleteAll(Collections.singletonList(key));
         } else {
-            document = documentRepository.findById(key);
-            documentCache.put(key, document.getValue());
+            upsert(previous);
         }
-        return document;
+    }
+
+    public Integer getWriteQuorum() {
+        return getCollection().getWriteQuorum();
+    }
+
+    public boolean isAsyncReplication() {
+        return "async".equalsIgnoreCase(getCollection().getReplication());
     }
 
     @Override
     @Transactional
     public int update(String key, Document document) throws RuntimeException {
+        final Collection collection = getCollection();
         if (!isExist(key)) {
             final String message = "Error: an attempt to update non-existing document.";
             logger.error(message);
             throw new ResourceNotFoundException(message);
         }
         final String newValue = document.getValue();
-        for (Collection entry : preparedDocuments.keySet()) {
-            if (entry.getName().equalsIgnoreCase(documentName)) {
-                collection = entry;
-            }
-        }
-        if (Validator.isInvalidToJsonSchema(newValue, collection.getJsonSchema())) {
+        if (Validator.isInvalidToJsonSchema(newValue, collection)) {
             final String message = "Error: value does not match json schema.";
             logger.error(message);
             throw new BadRequestException(message);
         }
-        documentCache.remove(key);
-        documentCache.put(key, newValue);
-        return documentRepository.update(key, document);
+        final int result = documentRepository.update(key, document);
+        cacheRegistry.getCache(collection).put(key, newValue);
+        return result;
     }
 
     @Override
     @Transactional
     public int delete(String key) throws ResourceNotFoundException {
+        final ICache<String, String> documentCache = getCache();
         if (!isExist(key)) {
             final String message = "Error: attempt to delete non-existing document";
             logger.error(message);
@@ -139,9 +244,16 @@ public class DocumentService implements GlobalService<Document> {
         return documentRepository.delete(key);
     }
 
+    @Transactional
+    public int deleteAll(List<String> keys) {
+        final ICache<String, String> documentCache = getCache();
+        keys.forEach(documentCache::remove);
+        return documentRepository.deleteAll(keys);
+    }
+
     @Override
     public List<Document> list() {
-        if (documentName == null) {
+        if (documentName.get() == null) {
             final String message = "Error: an attempt to get documents from non-existing collections.";
             logger.error(message);
             throw new ResourceNotFoundException(message);
@@ -149,6 +261,42 @@ public class DocumentService implements GlobalService<Document> {
         return documentRepository.findAll();
     }
 
+    public List<Document> list(String afterKey, int offset, int limit) {
+        if (documentName.get() == null) {
+            final String message = "Error: an attempt to get documents from non-existing collections.";
+            logger.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        return documentRepository.findPage(afterKey, offset, limit);
+    }
+
+    public List<Document> scan(String prefix, String from, String to, String afterKey, int limit) {
+        if (documentName.get() == null) {
+            final String message = "Error: an attempt to get documents from non-existing collections.";
+            logger.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        final KeyRange range = KeyRange.of(getValidKey(prefix), getValidKey(from), getValidKey(to));
+        return documentRepository.findRange(range, getValidKey(afterKey), limit);
+    }
+
+    public void export(Consumer<Document> consumer) {
+        getCollection();
+        documentRepository.forEachDocument(consumer);
+    }
+
+    public void checkCollection() {
+        getCollection();
+    }
+
+    public List<Document> query(Query query) {
+        JsonQuery.validate(query, getCollection());
+        if (query.getAfterKey() != null) {
+            query.setAfterKey(Validator.getValidInput(query.getAfterKey()));
+        }
+        return documentRepository.findByQuery(query);
+    }
+
     public boolean isExist(String key) {
         return documentRepository.isExist(key);
     }
@@ -158,28 +306,63 @@ public class DocumentService implements GlobalService<Document> {
     }
 
     public void setCollection(Collection collection) {
-        this.collection = collection;
+        documentRepository.setCollection(collection);
+        collections.put(toCollectionKey(collection.getName()), collection);
+    }
+
+    public void removeCollection(String collectionName) {
+        collections.remove(toCollectionKey(collectionName));
+        cacheRegistry.evict(collectionName);
+        documentRepository.removeCollection(collectionName);
+        Validator.evictSchema(collectionName);
+    }
+
+    public void removeCollections() {
+        collections.clear();
+        cacheRegistry.clear();
+        documentRepository.removeCollections();
+        Validator.clearSchemas();
     }
 
     public void setDocumentName(String documentName) {
         final String safeName = Validator.getValidInput(documentName);
-        this.documentName = safeName;
+        this.documentName.set(safeName);
         documentRepository.setDocumentName(safeName);
     }
 
-    private void setCache(String algorithmName, Integer cacheLimit) {
-        documentCache = cacheFactory.create(algorithmName, cacheLimit);
+    private Collection getCollection() {
+        final String name = documentName.get();
+        final Collection collection =
+                name == null ? null : collections.get(toCollectionKey(name));
+        if (collection == null) {
+            final String message = "Error: an attempt to get document from non-existing collection.";
+            logger.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        return collection;
+    }
+
+    private static String toCollectionKey(String collectionName) {
+        return collectionName.toLowerCase(Locale.ROOT);
+    }
+
+    private static String getValidKey(String key) {
+        return key == null ? null : Validator.getValidInput(key);
+    }
+
+    private ICache<String, String> getCache() {
+        return cacheRegistry.getCache(getCollection());
     }
 
     private void populateDocuments() {
         for (Map.Entry<Collection, List<Document>> entry
                 : preparedDocuments.entrySet()) {
-            final String collName = entry.getKey().getName();
-            this.collection = entry.getKey();
-            setDocumentName(collName);
-            setCache(collection.getAlgorithm(), collection.getCacheLimit());
+            final Collection collection = entry.getKey();
+            setCollection(collection);
+            setDocumentName(collection.getName());
+            final ICache<String, String> documentCache = cacheRegistry.getCache(collection);
             List<Document> docList = entry.getValue();
-            if (docList.size() > 0 & collection != null) {
+            if (docList.size() > 0) {
                 docList.stream()
                         .filter(document -> !isExist(document.getKey()))
                         .forEach(this::create);
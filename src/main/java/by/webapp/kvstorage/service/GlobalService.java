@@ -10,6 +10,8 @@ public interface GlobalService<T> {
 
     int update(String entityId, T entity);
 
+    T upsert(T entity);
+
     int delete(String entityId);
 
     List<T> list();
@@ -0,0 +1,448 @@
+package by.webapp.kvstorage.service;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.FailedException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Node;
+import by.webapp.kvstorage.model.RebalanceMove;
+import by.webapp.kvstorage.model.RebalancePlan;
+import by.webapp.kvstorage.util.NodeLoader;
+import by.webapp.kvstorage.util.Placement;
+import by.webapp.kvstorage.util.Topology;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+public class RebalanceService {
+
+    private static final Logger logger = LogManager.getLogger(RebalanceService.class);
+    private static final String STATE_FILE = "placement.json";
+    private static final int STREAM_ATTEMPTS = 5;
+    private static final long STREAM_RETRY_MILLIS = 5000;
+    private final DistributedService distributedService;
+    private final CollectionService collectionService;
+    private final DocumentService documentService;
+    private final int batchSize;
+    private final int rate;
+    private final Path stateFile;
+    private final ExecutorService streamer;
+    private final Map<String, AtomicLong> copied = new ConcurrentHashMap<>();
+    private volatile Placement started;
+    private volatile Placement removal;
+
+    @Autowired
+    public RebalanceService(DistributedService distributedService,
+                            CollectionService collectionService,
+                            DocumentService documentService,
+                            @Value("${kvstorage.rebalance.batch-size:500}") int batchSize,
+                            @Value("${kvstorage.rebalance.rate:5000}") int rate,
+                            @Value("${kvstorage.storage.dir:data}") String dataDirectory) {
+        this.distributedService = distributedService;
+        this.collectionService = collectionService;
+        this.documentService = documentService;
+        this.batchSize = batchSize;
+        this.rate = rate;
+        this.stateFile = Paths.get(dataDirectory, STATE_FILE);
+        this.streamer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rebalance-streamer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    private void init() {
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+        final Placement placement;
+        try {
+            final JSONObject state = (JSONObject) new JSONParser().parse(
+                    new String(Files.readAllBytes(stateFile), StandardCharsets.UTF_8));
+            placement = restore(state);
+            final JSONObject removed = (JSONObject) state.get("removal");
+            removal = removed == null ? null : restore(removed);
+        } catch (IOException | ParseException | RuntimeException e) {
+            final String message = "Error: placement state " + stateFile + " can't be loaded.";
+            logger.fatal(message, e);
+            throw new FailedException(message, e);
+        }
+        distributedService.setPlacement(placement);
+        started = placement.isMoving() ? placement : null;
+        logger.info("Placement restored from " + stateFile + (placement.isMoving() ?
+                ", resuming moves: " + getStatus() : "."));
+        final int group = NodeLoader.thisNode.getGroup();
+        if (removal != null) {
+            submitRemoval(removal, group);
+        }
+        final List<Node> nodes = placement.getCurrent().getGroups().get(group);
+        final boolean isSource = placement.getMoves().stream()
+                .anyMatch(move -> move[0] == group && !placement.isDone(move[0], move[1]));
+        if (isSource && nodes != null && NodeLoader.thisNode.equals(nodes.get(0))) {
+            stream();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        streamer.shutdownNow();
+    }
+
+    public synchronized List<RebalanceMove> start(String layout) {
+        final Placement placement = distributedService.getPlacement();
+        if (placement.isMoving()) {
+            throw badRequest("Error: rebalance is already running.");
+        }
+        final Topology target = parse(layout);
+        checkNodes(placement.getCurrent(), target);
+        final Placement moving = placement.startMoving(target);
+        final RebalancePlan plan = new RebalancePlan(placement.getCurrent().getLayout(),
+                layout, collectionService.list());
+        install(plan);
+        final List<Node> nodes = moving.getNodes();
+        nodes.remove(NodeLoader.thisNode);
+        distributedService.sendPlan(plan, nodes);
+        final Set<Integer> sources = new LinkedHashSet<>();
+        moving.getMoves().forEach(move -> sources.add(move[0]));
+        sources.forEach(distributedService::startStreaming);
+        logger.info("Rebalance started, moves: " + getStatus());
+        return getStatus();
+    }
+
+    public synchronized void install(RebalancePlan plan) {
+        final Topology source = parse(plan.getSource());
+        final Topology target = parse(plan.getTarget());
+        for (Collection collection : plan.getCollections()) {
+            if (collectionService.isAbsent(collection.getName())) {
+                collectionService.create(collection);
+            }
+        }
+        final Placement moving = new Placement(source).startMoving(target);
+        copied.clear();
+        started = moving;
+        setPlacement(moving.getMoves().isEmpty() ? new Placement(target) : moving);
+        logger.info("Rebalance plan installed in " + NodeLoader.thisNode.getName());
+    }
+
+    public void stream() {
+        final Placement placement = distributedService.getPlacement();
+        if (!placement.isMoving()) {
+            throw badRequest("Error: there is no rebalance to stream.");
+        }
+        streamer.submit(this::streamWithRetry);
+    }
+
+    public synchronized void abort() {
+        final Placement placement = distributedService.getPlacement();
+        if (!placement.isMoving()) {
+            throw badRequest("Error: there is no rebalance to abort.");
+        }
+        for (int[] move : placement.getMoves()) {
+            if (placement.isDone(move[0], move[1])) {
+                throw badRequest("Error: move " + move[0] + "->" + move[1] +
+                        " is already completed, the rebalance can only be resumed.");
+            }
+        }
+        final List<Node> nodes = placement.getNodes();
+        nodes.remove(NodeLoader.thisNode);
+        distributedService.sendAbort(nodes);
+        cancel();
+    }
+
+    public synchronized void cancel() {
+        final Placement placement = distributedService.getPlacement();
+        if (!placement.isMoving()) {
+            return;
+        }
+        setPlacement(new Placement(placement.getCurrent()));
+        started = null;
+        copied.clear();
+        logger.info("Rebalance aborted in " + NodeLoader.thisNode.getName() +
+                ", keys copied so far are left in their target groups.");
+    }
+
+    public synchronized void complete(int from, int to) {
+        final Placement placement = distributedService.getPlacement();
+        if (!placement.isMoving()) {
+            return;
+        }
+        final Placement next = placement.completeMove(from, to);
+        final int group = NodeLoader.thisNode.getGroup();
+        final boolean isSourceDone = placement.getMoves().stream()
+                .filter(move -> move[0] == group)
+                .allMatch(move -> !next.isMoving() || next.isDone(move[0], move[1]));
+        if (from == group && isSourceDone) {
+            removal = placement;
+        }
+        setPlacement(next);
+        logger.info("Keys of group " + from + " moved to group " + to + '.');
+        if (from == group && isSourceDone) {
+            submitRemoval(placement, group);
+        }
+    }
+
+    public List<RebalanceMove> getStatus() {
+        final Placement moving = started == null ?
+                distributedService.getPlacement() : started;
+        final Placement placement = distributedService.getPlacement();
+        final List<RebalanceMove> moves = new ArrayList<>();
+        for (int[] move : moving.getMoves()) {
+            final AtomicLong count = copied.get(move[0] + "->" + move[1]);
+            moves.add(new RebalanceMove(move[0], move[1],
+                    !placement.isMoving() || placement.isDone(move[0], move[1]),
+                    count == null ? 0 : count.get()));
+        }
+        return moves;
+    }
+
+    private void streamWithRetry() {
+        for (int attempt = 1; ; attempt++) {
+            final Placement placement = distributedService.getPlacement();
+            if (!placement.isMoving()) {
+                return;
+            }
+            try {
+                copyMovingKeys(placement);
+                return;
+            } catch (RuntimeException e) {
+                if (!distributedService.getPlacement().isMoving()) {
+                    return;
+                }
+                if (attempt == STREAM_ATTEMPTS) {
+                    logger.error("Streaming of moving keys failed in " +
+                            NodeLoader.thisNode.getName() + " after " + attempt +
+                            " attempts, resume it with POST /admin/rebalance/stream or " +
+                            "abort it with DELETE /admin/rebalance", e);
+                    return;
+                }
+                logger.error("Streaming of moving keys failed in " +
+                        NodeLoader.thisNode.getName() + ", retrying.", e);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(STREAM_RETRY_MILLIS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void submitRemoval(Placement placement, int group) {
+        streamer.submit(() -> {
+            try {
+                removeMovedKeys(placement, group);
+                synchronized (this) {
+                    removal = null;
+                    persist(distributedService.getPlacement());
+                }
+            } catch (RuntimeException e) {
+                logger.error("Removal of moved keys failed in " +
+                        NodeLoader.thisNode.getName() + ", it is retried on restart.", e);
+            }
+        });
+    }
+
+    private void setPlacement(Placement placement) {
+        persist(placement);
+        distributedService.setPlacement(placement);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void persist(Placement placement) {
+        final JSONObject state = new JSONObject();
+        state.put("current", placement.getCurrent().getLayout());
+        if (placement.isMoving()) {
+            state.put("target", placement.getTarget().getLayout());
+            final JSONArray done = new JSONArray();
+            for (int[] move : placement.getMoves()) {
+                if (placement.isDone(move[0], move[1])) {
+                    done.add(move[0] + "->" + move[1]);
+                }
+            }
+            state.put("done", done);
+        }
+        final Placement removed = removal;
+        if (removed != null) {
+            final JSONObject removedState = new JSONObject();
+            removedState.put("current", removed.getCurrent().getLayout());
+            removedState.put("target", removed.getTarget().getLayout());
+            removedState.put("done", new JSONArray());
+            state.put("removal", removedState);
+        }
+        final Path temp = stateFile.resolveSibling(STATE_FILE + ".tmp");
+        try {
+            Files.createDirectories(stateFile.getParent());
+            Files.write(temp, state.toJSONString().getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            final String message = "Error: placement state can't be saved to " + stateFile;
+            logger.error(message, e);
+            throw new FailedException(message, e);
+        }
+    }
+
+    private static Placement restore(JSONObject state) throws ParseException {
+        Placement placement = new Placement(Topology.parse((String) state.get("current")));
+        final String target = (String) state.get("target");
+        if (target == null) {
+            return placement;
+        }
+        placement = placement.startMoving(Topology.parse(target));
+        for (Object move : (JSONArray) state.get("done")) {
+            final String[] groupIds = ((String) move).split("->");
+            placement = placement.completeMove(Integer.parseInt(groupIds[0]),
+                    Integer.parseInt(groupIds[1]));
+        }
+        return placement;
+    }
+
+    private void copyMovingKeys(Placement placement) {
+        final int group = NodeLoader.thisNode.getGroup();
+        final long startedAt = System.nanoTime();
+        final AtomicLong sent = new AtomicLong();
+        for (Collection collection : collectionService.list()) {
+            final String name = collection.getName();
+            final Map<Integer, List<Document>> batches = new HashMap<>();
+            documentService.setDocumentName(name);
+            documentService.export(document -> {
+                if (!distributedService.getPlacement().isMoving()) {
+                    throw new IllegalStateException("Rebalance is no longer running.");
+                }
+                final Integer target =
+                        placement.getPendingOwner(name + "/" + document.getKey(), group);
+                if (target == null) {
+                    return;
+                }
+                final List<Document> batch =
+                        batches.computeIfAbsent(target, id -> new ArrayList<>(batchSize));
+                batch.add(document);
+                if (batch.size() == batchSize) {
+                    copy(name, group, target, batch);
+                    throttle(sent.addAndGet(batch.size()), startedAt);
+                    batch.clear();
+                }
+            });
+            batches.forEach((target, batch) -> {
+                if (!batch.isEmpty()) {
+                    copy(name, group, target, batch);
+                }
+            });
+        }
+        final List<Node> nodes = new ArrayList<>(placement.getGroups().get(group));
+        placement.getNodes().stream().filter(node -> !nodes.contains(node)).forEach(nodes::add);
+        for (int[] move : placement.getMoves()) {
+            if (move[0] == group) {
+                distributedService.sendMoveDone(move[0], move[1], nodes);
+            }
+        }
+    }
+
+    private void copy(String collectionName, int group, int target, List<Document> batch) {
+        final int created = distributedService.copyToGroup(batch, collectionName, target);
+        final List<String> keys = batch.stream().map(Document::getKey).collect(Collectors.toList());
+        final Set<String> existingKeys = documentService.findExisting(keys);
+        final List<String> deletedKeys = keys.stream()
+                .filter(key -> !existingKeys.contains(key)).collect(Collectors.toList());
+        if (!deletedKeys.isEmpty()) {
+            distributedService.deleteFromGroup(deletedKeys, collectionName, target);
+        }
+        copied.computeIfAbsent(group + "->" + target, move -> new AtomicLong())
+                .addAndGet(created);
+    }
+
+    private void removeMovedKeys(Placement placement, int group) {
+        for (Collection collection : collectionService.list()) {
+            final String name = collection.getName();
+            final List<String> keys = new ArrayList<>();
+            documentService.setDocumentName(name);
+            documentService.export(document -> {
+                final String id = name + "/" + document.getKey();
+                if (placement.getCurrent().getRing().getGroup(id) == group &&
+                        placement.getTarget().getRing().getGroup(id) != group) {
+                    keys.add(document.getKey());
+                }
+            });
+            for (int i = 0; i < keys.size(); i += batchSize) {
+                documentService.deleteAll(keys.subList(i, Math.min(keys.size(), i + batchSize)));
+            }
+            logger.info(keys.size() + " moved documents of " + name + " removed.");
+        }
+    }
+
+    private void throttle(long sent, long startedAt) {
+        if (rate <= 0) {
+            return;
+        }
+        final long aheadNanos = sent * TimeUnit.SECONDS.toNanos(1) / rate -
+                (System.nanoTime() - startedAt);
+        if (aheadNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Streaming of moving keys is interrupted.", e);
+            }
+        }
+    }
+
+    private void checkNodes(Topology current, Topology target) {
+        for (List<Node> nodes : target.getGroups().values()) {
+            for (Node node : nodes) {
+                final Node currentNode = current.findNode(node.getName());
+                if (currentNode != null && !currentNode.equals(node)) {
+                    throw badRequest("Error: node " + node.getName() +
+                            " can't change its url or group.");
+                }
+            }
+        }
+    }
+
+    private static Topology parse(String layout) {
+        try {
+            return Topology.parse(layout);
+        } catch (ParseException | RuntimeException e) {
+            throw badRequest("Error: invalid groups layout: " + e.getMessage());
+        }
+    }
+
+    private static BadRequestException badRequest(String message) {
+        logger.error(message);
+        return new BadRequestException(message);
+    }
+
+}
@@ -0,0 +1,238 @@
+package by.webapp.kvstorage.service;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.DataBaseException;
+import by.webapp.kvstorage.exception.ResourceNotFoundException;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.Node;
+import by.webapp.kvstorage.storage.wal.WriteAheadLog;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+public class ReplicationService {
+
+    private static final Logger logger = LogManager.getLogger(ReplicationService.class);
+    private static final int LOCK_STRIPES = 256;
+    private final DistributedService distributedService;
+    private final DocumentService documentService;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int groupSize;
+    private final long groupMicros;
+    private final int batchSize;
+    private final long shipInterval;
+    private final Map<String, ReplicaOffset> offsets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService shipper;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicReference<Mutation> lastSkipped = new AtomicReference<>();
+    private WriteAheadLog log;
+
+    @Autowired
+    public ReplicationService(DistributedService distributedService,
+                              DocumentService documentService,
+                              @Value("${kvstorage.storage.dir:data}") String dataDirectory,
+                              @Value("${kvstorage.wal.segment-bytes:67108864}") long segmentBytes,
+                              @Value("${kvstorage.wal.group-size:256}") int groupSize,
+                              @Value("${kvstorage.wal.group-micros:200}") long groupMicros,
+                              @Value("${kvstorage.replication.log.batch-size:500}") int batchSize,
+                              @Value("${kvstorage.replication.log.ship-interval-ms:100}")
+                                      long shipInterval) {
+        this.distributedService = distributedService;
+        this.documentService = documentService;
+        this.directory = Paths.get(dataDirectory, "replication");
+        this.segmentBytes = segmentBytes;
+        this.groupSize = groupSize;
+        this.groupMicros = groupMicros;
+        this.batchSize = batchSize;
+        this.shipInterval = shipInterval;
+        this.shipper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication-shipper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            log = new WriteAheadLog(directory, segmentBytes, groupSize, groupMicros,
+                    mutations -> {
+                    });
+        } catch (IOException e) {
+            final String message = "Exception while replication log initializing.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+        final int recovered = log.replay().size();
+        if (recovered > 0) {
+            logger.info(recovered + " unshipped replication log entries recovered.");
+        }
+        shipper.scheduleWithFixedDelay(this::ship, shipInterval, shipInterval,
+                TimeUnit.MILLISECONDS);
+        logger.debug("ReplicationService initialized in " + directory);
+    }
+
+    @PreDestroy
+    public void close() {
+        shipper.shutdown();
+        try {
+            shipper.awaitTermination(10, TimeUnit.SECONDS);
+            log.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Exception while closing replication log.", e);
+        }
+    }
+
+    public long appendCurrent(String collectionId, String documentId) throws IOException {
+        // the state is re-read under the key's lock, so the last entry logged for a key
+        // is never older than its last committed write
+        synchronized (lockFor(collectionId, documentId)) {
+            final Document current = documentService.find(collectionId, documentId);
+            return log.append(current == null ?
+                    new Mutation(Mutation.Type.DELETE, collectionId, documentId, null) :
+                    new Mutation(Mutation.Type.PUT, collectionId, documentId, current.getValue()));
+        }
+    }
+
+    public long appendAll(List<Mutation> mutations) throws IOException {
+        return log.appendAll(mutations);
+    }
+
+    public long apply(List<Mutation> mutations) {
+        long applied = 0;
+        for (Mutation mutation : mutations) {
+            try {
+                documentService.setDocumentName(mutation.getCollection());
+                if (mutation.isDelete()) {
+                    documentService.deleteAll(Collections.singletonList(mutation.getKey()));
+                } else {
+                    final Document document = new Document();
+                    document.setKey(mutation.getKey());
+                    document.setValue(mutation.getValue());
+                    documentService.upsert(document);
+                }
+            } catch (ResourceNotFoundException | BadRequestException e) {
+                logger.error("Skipping replicated " + mutation + " that can't be applied: " +
+                        e.getMessage());
+                skipped.incrementAndGet();
+                lastSkipped.set(mutation);
+            } catch (RuntimeException e) {
+                if (applied == 0) {
+                    throw e;
+                }
+                logger.warn("Exception while applying replicated " + mutation +
+                        ", acknowledging up to " + applied + ": " + e.getMessage());
+                return applied;
+            }
+            applied = mutation.getSequence();
+        }
+        return applied;
+    }
+
+    public Map<String, Object> getStatus() {
+        final long lastSequence = log.getLastSequence();
+        final long now = System.currentTimeMillis();
+        final Map<String, Object> replicas = new LinkedHashMap<>();
+        for (Node node : distributedService.getReplicas()) {
+            final ReplicaOffset offset = getOffset(node);
+            final long pending = Math.max(0, lastSequence - offset.acknowledged);
+            final Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("acknowledged", offset.acknowledged);
+            stats.put("pending", pending);
+            stats.put("lagMillis", pending == 0 ? 0 : now - offset.caughtUpAt);
+            replicas.put(node.getName(), stats);
+        }
+        final Map<String, Object> status = new LinkedHashMap<>();
+        status.put("lastSequence", lastSequence);
+        status.put("checkpoint", log.getCheckpoint());
+        status.put("skipped", skipped.get());
+        final Mutation mutation = lastSkipped.get();
+        if (mutation != null) {
+            status.put("lastSkipped", mutation.toString());
+        }
+        status.put("replicas", replicas);
+        return status;
+    }
+
+    public void ship() {
+        final List<Node> replicas = distributedService.getReplicas();
+        long shipped = log.getLastSequence();
+        for (Node node : replicas) {
+            final ReplicaOffset offset = getOffset(node);
+            try {
+                List<Mutation> batch;
+                while (!(batch = log.read(offset.acknowledged, batchSize)).isEmpty()) {
+                    final long acknowledged = distributedService.shipLog(node, batch);
+                    if (acknowledged <= offset.acknowledged) {
+                        throw new IllegalStateException("Replica " + node.getName() +
+                                " did not advance past " + acknowledged);
+                    }
+                    offset.acknowledged = acknowledged;
+                }
+                offset.caughtUpAt = System.currentTimeMillis();
+            } catch (ResourceAccessException | IOException e) {
+                logger.warn("Replication log shipping to " + node.getName() + " failed: " +
+                        e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Replication log shipping to " + node.getName() + " failed.", e);
+            }
+            shipped = Math.min(shipped, offset.acknowledged);
+        }
+        try {
+            log.checkpoint(shipped);
+        } catch (IOException e) {
+            logger.error("Exception while replication log checkpointing.", e);
+        }
+    }
+
+    private Object lockFor(String collection, String key) {
+        final int hash = collection.toLowerCase(Locale.ROOT).hashCode() * 31 + key.hashCode();
+        return locks[(hash & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private ReplicaOffset getOffset(Node node) {
+        return offsets.computeIfAbsent(node.getName(),
+                name -> new ReplicaOffset(log.getCheckpoint()));
+    }
+
+    private static final class ReplicaOffset {
+
+        private volatile long acknowledged;
+        private volatile long caughtUpAt = System.currentTimeMillis();
+
+        private ReplicaOffset(long acknowledged) {
+            this.acknowledged = acknowledged;
+        }
+
+    }
+
+}
@@ -0,0 +1,440 @@
+package by.webapp.kvstorage.storage;
+
+import by.webapp.kvstorage.exception.DataBaseException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.repository.CollectionRepository;
+import by.webapp.kvstorage.repository.IDocumentRepository;
+import by.webapp.kvstorage.util.JsonQuery;
+import by.webapp.kvstorage.util.KeyRange;
+import by.webapp.kvstorage.util.Validator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public abstract class EmbeddedDocumentRepository<S extends KeyValueStore>
+        implements IDocumentRepository<Document> {
+
+    private static final Logger logger = LogManager.getLogger(EmbeddedDocumentRepository.class);
+    private static final int MAX_ITEMS_COUNT = 100;
+    private static final int QUERY_SCAN_CHUNK = 1000;
+    private final CollectionRepository collectionRepository;
+    private final StorageType storageType;
+    private final StorageType defaultStorageType;
+    private final Path dataDirectory;
+    private final long compactionInterval;
+    private final Map<String, S> stores = new ConcurrentHashMap<>();
+    private final Map<Collection, List<Document>> documentsMap = new HashMap<>();
+    private final ThreadLocal<String> documentName = new ThreadLocal<>();
+    private ScheduledExecutorService executor;
+
+    protected EmbeddedDocumentRepository(CollectionRepository collectionRepository,
+                                         StorageType storageType, String defaultStorage,
+                                         Path dataDirectory, long compactionInterval) {
+        this.collectionRepository = collectionRepository;
+        this.storageType = storageType;
+        this.defaultStorageType = StorageType.of(defaultStorage);
+        this.dataDirectory = dataDirectory;
+        this.compactionInterval = compactionInterval;
+    }
+
+    protected abstract S openStore(Path directory, ScheduledExecutorService executor)
+            throws IOException;
+
+    @PostConstruct
+    private void init() {
+        try {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, storageType.getName() + "-store-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (Collection collection : collectionRepository.getPreparedCollections().values()) {
+                if (StorageType.of(collection.getStorage(), defaultStorageType) != storageType) {
+                    continue;
+                }
+                final S store = getStore(collection.getName());
+                List<Document> list = new ArrayList<>();
+                for (Map.Entry<String, String> entry : store.scan(null, 0, MAX_ITEMS_COUNT)) {
+                    list.add(toDocument(entry.getKey(), entry.getValue()));
+                }
+                documentsMap.put(collection, list);
+            }
+            executor.scheduleWithFixedDelay(this::compactStores,
+                    compactionInterval, compactionInterval, TimeUnit.SECONDS);
+            logger.debug(getClass().getSimpleName() + " initialized in " + dataDirectory);
+        } catch (Exception e) {
+            final String message = "Exception while " + storageType.getName() +
+                    " repository initializing.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @PreDestroy
+    private void close() {
+        executor.shutdown();
+        for (S store : stores.values()) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                logger.error("Exception while closing " + storageType.getName() + " store.", e);
+            }
+        }
+    }
+
+    @Override
+    public Document save(Document document) {
+        final String validKey = Validator.getValidInput(document.getKey());
+        final String value = Validator.getValidValue(document.getValue());
+        try {
+            return getStore().putIfAbsent(validKey, value) ? toDocument(validKey, value) : null;
+        } catch (IOException e) {
+            final String message = "Exception while document saving.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public Document upsert(Document document) {
+        final String validKey = Validator.getValidInput(document.getKey());
+        final String value = Validator.getValidValue(document.getValue());
+        try {
+            final String previousValue = getStore().put(validKey, value);
+            return previousValue == null ? null : toDocument(validKey, previousValue);
+        } catch (IOException e) {
+            final String message = "Exception while document upserting.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public List<Document> findRange(KeyRange range, String afterKey, int limit) {
+        try {
+            final KeyValueStore store = getStore();
+            final List<Document> documents = new ArrayList<>();
+            final String from = range.getFrom();
+            String start = afterKey;
+            if (from != null && (start == null || start.compareTo(from) < 0)) {
+                final String first = store.get(from);
+                if (first != null && range.contains(from) && limit > 0) {
+                    documents.add(toDocument(from, first));
+                }
+                start = from;
+            }
+            while (documents.size() < limit) {
+                final int chunkSize = Math.min(QUERY_SCAN_CHUNK, limit - documents.size());
+                final List<Map.Entry<String, String>> chunk = store.scan(start, 0, chunkSize);
+                for (Map.Entry<String, String> entry : chunk) {
+                    if (range.isAfterEnd(entry.getKey())) {
+                        return documents;
+                    }
+                    documents.add(toDocument(entry.getKey(), entry.getValue()));
+                }
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+                start = chunk.get(chunk.size() - 1).getKey();
+            }
+            return documents;
+        } catch (IOException e) {
+            final String message = "Exception while scanning document range.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public void forEachDocument(Consumer<Document> consumer) {
+        String afterKey = null;
+        try {
+            final KeyValueStore store = getStore();
+            List<Map.Entry<String, String>> chunk;
+            do {
+                chunk = store.scan(afterKey, 0, QUERY_SCAN_CHUNK);
+                for (Map.Entry<String, String> entry : chunk) {
+                    consumer.accept(toDocument(entry.getKey(), entry.getValue()));
+                }
+                if (!chunk.isEmpty()) {
+                    afterKey = chunk.get(chunk.size() - 1).getKey();
+                }
+            } while (chunk.size() == QUERY_SCAN_CHUNK);
+        } catch (IOException e) {
+            final String message = "Exception while exporting documents.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public List<Document> findByQuery(Query query) {
+        String afterKey = query.getAfterKey();
+        try {
+            final List<Document> documents = new ArrayList<>();
+            while (documents.size() < query.getLimit()) {
+                final List<Map.Entry<String, String>> chunk =
+                        getStore().scan(afterKey, 0, QUERY_SCAN_CHUNK);
+                for (Map.Entry<String, String> entry : chunk) {
+                    if (documents.size() < query.getLimit()
+                            && JsonQuery.matches(entry.getValue(), query.getPredicates())) {
+                        documents.add(toDocument(entry.getKey(), entry.getValue()));
+                    }
+                }
+                if (chunk.size() < QUERY_SCAN_CHUNK) {
+                    break;
+                }
+                afterKey = chunk.get(chunk.size() - 1).getKey();
+            }
+            return documents;
+        } catch (IOException e) {
+            final String message = "Exception while querying documents.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public int saveAll(List<Document> documents) {
+        final Map<String, String> entries = new LinkedHashMap<>();
+        for (Document document : documents) {
+            entries.put(Validator.getValidInput(document.getKey()),
+                    Validator.getValidValue(document.getValue()));
+        }
+        try {
+            return getStore().putAllIfAbsent(entries);
+        } catch (IOException e) {
+            final String message = "Exception while document batch saving.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public Document findById(String key) {
+        final String validKey = Validator.getValidInput(key);
+        try {
+            final String value = getStore().get(validKey);
+            return value == null ? null : toDocument(validKey, value);
+        } catch (IOException e) {
+            final String message = "Exception while document getting.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public int update(String key, Document document) {
+        final String validKey = Validator.getValidInput(key);
+        final String value = Validator.getValidValue(document.getValue());
+        try {
+            return getStore().replace(validKey, value) ? 1 : 0;
+        } catch (IOException e) {
+            final String message = "Exception while document updating.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public int delete(String key) {
+        final String validKey = Validator.getValidInput(key);
+        try {
+            return getStore().remove(validKey) ? 1 : 0;
+        } catch (IOException e) {
+            final String message = "Exception while document deleting.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public int deleteAll(List<String> keys) {
+        try {
+            return getStore().removeAll(keys);
+        } catch (IOException e) {
+            final String message = "Exception while document batch deleting.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public List<Document> findAll() {
+        return findPage(null, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Document> findPage(String afterKey, int offset, int limit) {
+        final String validAfterKey = afterKey == null ? null : Validator.getValidInput(afterKey);
+        try {
+            List<Document> documents = new ArrayList<>();
+            for (Map.Entry<String, String> entry : getStore().scan(validAfterKey, offset, limit)) {
+                documents.add(toDocument(entry.getKey(), entry.getValue()));
+            }
+            return documents;
+        } catch (IOException e) {
+            final String message = "Exception while receiving document list.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public Set<String> findExistingKeys(List<String> keys) {
+        final S store = getStore();
+        Set<String> existingKeys = new HashSet<>();
+        try {
+            for (String key : keys) {
+                if (store.contains(key)) {
+                    existingKeys.add(key);
+                }
+            }
+        } catch (IOException e) {
+            final String message = "Exception while checking document keys.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+        return existingKeys;
+    }
+
+    @Override
+    public boolean isExist(String key) {
+        try {
+            return getStore().contains(key);
+        } catch (IOException e) {
+            final String message = "Exception while checking document key.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public void createTable() {
+        getStore();
+    }
+
+    @Override
+    public void removeCollection(String collectionName) {
+        final String validName = Validator.getValidInput(collectionName);
+        try {
+            final S store = stores.remove(validName);
+            if (store != null) {
+                store.destroy();
+            } else {
+                deleteDirectory(dataDirectory.resolve(validName));
+            }
+        } catch (IOException e) {
+            final String message = "Exception while removing collection files.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public void removeCollections() {
+        try {
+            for (String name : new ArrayList<>(stores.keySet())) {
+                stores.remove(name).destroy();
+            }
+            deleteDirectory(dataDirectory);
+        } catch (IOException e) {
+            final String message = "Exception while removing collection files.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @Override
+    public void setDocumentName(String documentName) {
+        this.documentName.set(Validator.getValidInput(documentName));
+    }
+
+    @Override
+    public Map<Collection, List<Document>> getPreparedDocuments() {
+        return documentsMap;
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new HashMap<>();
+        stores.forEach((name, store) -> {
+            Map<String, Object> storeStats = new LinkedHashMap<>(store.getStats());
+            storeStats.put("storage", storageType.getName());
+            stats.put(name, storeStats);
+        });
+        return stats;
+    }
+
+    private S getStore() {
+        return getStore(Validator.getValidInput(documentName.get()));
+    }
+
+    private S getStore(String collectionName) {
+        try {
+            return stores.computeIfAbsent(collectionName, name -> {
+                try {
+                    return openStore(dataDirectory.resolve(name), executor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            final String message = "Exception while opening store of " + collectionName;
+            logger.error(message);
+            throw new DataBaseException(message, e.getCause());
+        }
+    }
+
+    private void compactStores() {
+        for (Map.Entry<String, S> entry : stores.entrySet()) {
+            try {
+                entry.getValue().compact();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Exception while compacting store of " + entry.getKey(), e);
+            }
+        }
+    }
+
+    private static Document toDocument(String key, String value) {
+        Document document = new Document();
+        document.setKey(key);
+        document.setValue(value);
+        return document;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+}
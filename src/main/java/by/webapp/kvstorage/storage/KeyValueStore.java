@@ -0,0 +1,35 @@
+package by.webapp.kvstorage.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface KeyValueStore extends Closeable {
+
+    String get(String key) throws IOException;
+
+    boolean contains(String key) throws IOException;
+
+    boolean putIfAbsent(String key, String value) throws IOException;
+
+    String put(String key, String value) throws IOException;
+
+    boolean replace(String key, String value) throws IOException;
+
+    boolean remove(String key) throws IOException;
+
+    int putAllIfAbsent(Map<String, String> entries) throws IOException;
+
+    int removeAll(Collection<String> keys) throws IOException;
+
+    List<Map.Entry<String, String>> scan(String afterKey, int offset, int limit) throws IOException;
+
+    boolean compact() throws IOException;
+
+    Map<String, Object> getStats();
+
+    void destroy() throws IOException;
+
+}
@@ -0,0 +1,41 @@
+package by.webapp.kvstorage.storage;
+
+import by.webapp.kvstorage.repository.CollectionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledExecutorService;
+
+@Repository("logDocumentRepository")
+@Order(2)
+public class LogStructuredDocumentRepository extends EmbeddedDocumentRepository<LogStructuredStore> {
+
+    private final long segmentBytes;
+    private final boolean syncOnWrite;
+
+    @Autowired
+    public LogStructuredDocumentRepository(
+            CollectionRepository collectionRepository,
+            @Value("${kvstorage.storage:postgres}") String defaultStorage,
+            @Value("${kvstorage.storage.dir:data}") String dataDirectory,
+            @Value("${kvstorage.storage.segment-bytes:67108864}") long segmentBytes,
+            @Value("${kvstorage.storage.sync:true}") boolean syncOnWrite,
+            @Value("${kvstorage.storage.compaction-interval:60}") long compactionInterval) {
+        super(collectionRepository, StorageType.LOG, defaultStorage,
+                Paths.get(dataDirectory, StorageType.LOG.getName()), compactionInterval);
+        this.segmentBytes = segmentBytes;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    @Override
+    protected LogStructuredStore openStore(Path directory, ScheduledExecutorService executor)
+            throws IOException {
+        return new LogStructuredStore(directory, segmentBytes, syncOnWrite);
+    }
+
+}
@@ -0,0 +1,680 @@
+package by.webapp.kvstorage.storage;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class LogStructuredStore implements KeyValueStore {
+
+    private static final Logger logger = LogManager.getLogger(LogStructuredStore.class);
+    private static final String DATA_SUFFIX = ".data";
+    private static final String HINT_SUFFIX = ".hint";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_SIZE = 20;
+    private static final int TOMBSTONE = -1;
+    private static final int MAX_KEY_LENGTH = 64 * 1024;
+    private static final int MAX_READ_ATTEMPTS = 8;
+    private static final double COMPACTION_RATIO = 0.5;
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final boolean syncOnWrite;
+    // sorted so that scan() seeks to its cursor instead of ordering the whole key set:
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+    private final AtomicInteger keyCount = new AtomicInteger();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextSegmentId = new AtomicLong();
+    private final Object writeLock = new Object();
+    private final Object compactionLock = new Object();
+    private long sequence;
+    private volatile Segment active;
+    private volatile boolean closed;
+
+    public LogStructuredStore(Path directory, long maxSegmentBytes, boolean syncOnWrite)
+            throws IOException {
+        if (maxSegmentBytes <= HEADER_SIZE) {
+            throw new IllegalArgumentException(
+                    "Wrong input data: 'maxSegmentBytes' is too small");
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncOnWrite = syncOnWrite;
+        Files.createDirectories(directory);
+        load();
+        active = createSegment();
+    }
+
+    @Override
+    public String get(String key) throws IOException {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            final Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            final String value = read(location);
+            if (value != null) {
+                return value;
+            }
+        }
+        throw new IOException("Segment of key [" + key + "] is not readable");
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, String value) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            if (index.containsKey(key)) {
+                return false;
+            }
+            append(key, value, syncOnWrite);
+            return true;
+        }
+    }
+
+    @Override
+    public String put(String key, String value) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            final String previousValue = get(key);
+            append(key, value, syncOnWrite);
+            return previousValue;
+        }
+    }
+
+    @Override
+    public boolean replace(String key, String value) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            if (!index.containsKey(key)) {
+                return false;
+            }
+            append(key, value, syncOnWrite);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean remove(String key) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            if (!index.containsKey(key)) {
+                return false;
+            }
+            append(key, null, syncOnWrite);
+            return true;
+        }
+    }
+
+    @Override
+    public int putAllIfAbsent(Map<String, String> entries) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            int written = 0;
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                if (!index.containsKey(entry.getKey())) {
+                    append(entry.getKey(), entry.getValue(), false);
+                    written++;
+                }
+            }
+            if (syncOnWrite && written > 0) {
+                active.channel.force(false);
+            }
+            return written;
+        }
+    }
+
+    @Override
+    public int removeAll(Collection<String> keys) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            int removed = 0;
+            for (String key : keys) {
+                if (index.containsKey(key)) {
+                    append(key, null, false);
+                    removed++;
+                }
+            }
+            if (syncOnWrite && removed > 0) {
+                active.channel.force(false);
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    public List<Map.Entry<String, String>> scan(String afterKey, int offset, int limit)
+            throws IOException {
+        final NavigableMap<String, Location> tail =
+                afterKey == null ? index : index.tailMap(afterKey, false);
+        final List<Map.Entry<String, String>> entries = new ArrayList<>();
+        int skipped = 0;
+        for (String key : tail.keySet()) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            final String value = get(key);
+            if (value != null) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+            }
+        }
+        return entries;
+    }
+
+    public Set<String> keys() {
+        return index.keySet();
+    }
+
+    public int size() {
+        return keyCount.get();
+    }
+
+    @Override
+    public boolean compact() throws IOException {
+        return compact(false);
+    }
+
+    public boolean compact(boolean force) throws IOException {
+        synchronized (compactionLock) {
+            ensureOpen();
+            final Segment current = active;
+            final List<Segment> candidates = segments.values().stream()
+                    .filter(segment -> segment != current).collect(Collectors.toList());
+            if (candidates.isEmpty()) {
+                return false;
+            }
+            long totalBytes = 0;
+            long liveBytes = 0;
+            for (Segment segment : candidates) {
+                totalBytes += segment.size.get();
+                liveBytes += segment.liveBytes.get();
+            }
+            if (!force && (totalBytes == 0 ||
+                    (double) (totalBytes - liveBytes) / totalBytes < COMPACTION_RATIO)) {
+                return false;
+            }
+            final Merge merge = new Merge();
+            final Set<Long> withTombstones = new HashSet<>();
+            for (Segment candidate : candidates) {
+                scan(candidate, (offset, recordSequence, key, value) -> {
+                    if (value != null) {
+                        merge.copy(candidate, offset, recordSequence, key, value);
+                    } else {
+                        withTombstones.add(candidate.id);
+                    }
+                });
+            }
+            merge.finish();
+            syncDirectory();
+            // A crash between deletions must not bring back a deleted key, so every tombstone
+            // outlives the older puts it shadows: merged segments only hold puts and go first,
+            // the remaining segments hold ascending sequence ranges and go in id order.
+            candidates.sort(Comparator.comparing(
+                    (Segment segment) -> withTombstones.contains(segment.id)));
+            for (Segment candidate : candidates) {
+                segments.remove(candidate.id);
+                candidate.channel.close();
+                Files.deleteIfExists(dataPath(candidate.id));
+                Files.deleteIfExists(hintPath(candidate.id));
+            }
+            syncDirectory();
+            logger.debug("Compacted " + candidates.size() + " segments in " + directory +
+                    ": " + totalBytes + " -> " + merge.writtenBytes + " bytes");
+            return true;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long totalBytes = 0;
+        long liveBytes = 0;
+        for (Segment segment : segments.values()) {
+            totalBytes += segment.size.get();
+            liveBytes += segment.liveBytes.get();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keys", keyCount.get());
+        stats.put("segments", segments.size());
+        stats.put("totalBytes", totalBytes);
+        stats.put("liveBytes", liveBytes);
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (compactionLock) {
+            synchronized (writeLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                active.channel.force(false);
+                for (Segment segment : segments.values()) {
+                    segment.channel.close();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        close();
+        if (Files.exists(directory)) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder())
+                        .collect(Collectors.toList())) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        index.clear();
+        keyCount.set(0);
+        segments.clear();
+    }
+
+    private void append(String key, String value, boolean sync) throws IOException {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] valueBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        final long recordSequence = ++sequence;
+        final ByteBuffer record = encode(recordSequence, keyBytes, valueBytes);
+        final int recordSize = record.remaining();
+        Segment segment = active;
+        if (segment.size.get() > 0 && segment.size.get() + recordSize > maxSegmentBytes) {
+            segment.channel.force(false);
+            segment = createSegment();
+            active = segment;
+        }
+        final long offset = segment.size.get();
+        writeFully(segment.channel, record, offset);
+        segment.size.addAndGet(recordSize);
+        if (sync) {
+            segment.channel.force(false);
+        }
+        if (valueBytes == null) {
+            release(removeKey(key));
+        } else {
+            segment.liveBytes.addAndGet(recordSize);
+            release(putKey(key, new Location(segment.id, offset, recordSize,
+                    keyBytes.length, valueBytes.length, recordSequence)));
+        }
+    }
+
+    private Location putKey(String key, Location location) {
+        final Location previous = index.put(key, location);
+        if (previous == null) {
+            keyCount.incrementAndGet();
+        }
+        return previous;
+    }
+
+    private Location removeKey(String key) {
+        final Location previous = index.remove(key);
+        if (previous != null) {
+            keyCount.decrementAndGet();
+        }
+        return previous;
+    }
+
+    private String read(Location location) throws IOException {
+        final Segment segment = segments.get(location.segmentId);
+        if (segment == null) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(location.valueLength);
+        long position = location.offset + HEADER_SIZE + location.keyLength;
+        try {
+            while (buffer.hasRemaining()) {
+                final int read = segment.channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of segment " + segment.id);
+                }
+                position += read;
+            }
+        } catch (ClosedChannelException e) {
+            return null;
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    private void release(Location location) {
+        if (location != null) {
+            final Segment segment = segments.get(location.segmentId);
+            if (segment != null) {
+                segment.liveBytes.addAndGet(-location.recordSize);
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                final String fileName = path.getFileName().toString();
+                if (fileName.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else if (fileName.endsWith(DATA_SUFFIX)) {
+                    ids.add(Long.parseLong(fileName.substring(
+                            0, fileName.length() - DATA_SUFFIX.length())));
+                }
+            }
+        }
+        ids.sort(Comparator.naturalOrder());
+        final Map<String, Long> tombstones = new HashMap<>();
+        for (Long id : ids) {
+            final Segment segment = openSegment(id);
+            segments.put(id, segment);
+            final Path hintPath = hintPath(id);
+            if (Files.exists(hintPath)) {
+                loadHints(segment, hintPath, tombstones);
+            } else {
+                final long validBytes = scan(segment, (offset, recordSequence, key, value) ->
+                        recover(key, value == null ? null : new Location(segment.id, offset,
+                                HEADER_SIZE + key.length + value.length,
+                                key.length, value.length, recordSequence),
+                                recordSequence, tombstones));
+                if (validBytes < segment.size.get()) {
+                    logger.warn("Truncating torn tail of segment " + dataPath(id) +
+                            " at " + validBytes + " bytes");
+                    segment.channel.truncate(validBytes);
+                    segment.size.set(validBytes);
+                }
+            }
+            nextSegmentId.set(id + 1);
+            if (segment.size.get() == 0) {
+                segments.remove(id);
+                segment.channel.close();
+                Files.deleteIfExists(dataPath(id));
+                Files.deleteIfExists(hintPath);
+            }
+        }
+        for (Location location : index.values()) {
+            segments.get(location.segmentId).liveBytes.addAndGet(location.recordSize);
+        }
+        logger.debug("Loaded " + keyCount.get() + " keys from " + ids.size() +
+                " segments in " + directory);
+    }
+
+    private void loadHints(Segment segment, Path hintPath, Map<String, Long> tombstones)
+            throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(hintPath)))) {
+            while (true) {
+                final long recordSequence;
+                try {
+                    recordSequence = input.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                final int keyLength = input.readInt();
+                final int valueLength = input.readInt();
+                final long offset = input.readLong();
+                final byte[] key = new byte[keyLength];
+                input.readFully(key);
+                recover(key, new Location(segment.id, offset, HEADER_SIZE + keyLength + valueLength,
+                        keyLength, valueLength, recordSequence), recordSequence, tombstones);
+            }
+        }
+    }
+
+    private void recover(byte[] keyBytes, Location location, long recordSequence,
+                         Map<String, Long> tombstones) {
+        final String key = new String(keyBytes, StandardCharsets.UTF_8);
+        final Location current = index.get(key);
+        final Long deletedAt = tombstones.get(key);
+        if ((current != null && current.sequence > recordSequence) ||
+                (deletedAt != null && deletedAt > recordSequence)) {
+            return;
+        }
+        if (location == null) {
+            removeKey(key);
+            tombstones.put(key, recordSequence);
+        } else {
+            putKey(key, location);
+            tombstones.remove(key);
+        }
+        sequence = Math.max(sequence, recordSequence);
+    }
+
+    private long scan(Segment segment, RecordVisitor visitor) throws IOException {
+        final long size = segment.size.get();
+        long offset = 0;
+        try (InputStream stream = Files.newInputStream(dataPath(segment.id));
+             DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            while (offset + HEADER_SIZE <= size) {
+                final int checksum = input.readInt();
+                final long recordSequence = input.readLong();
+                final int keyLength = input.readInt();
+                final int valueLength = input.readInt();
+                if (keyLength < 0 || keyLength > MAX_KEY_LENGTH || valueLength < TOMBSTONE ||
+                        offset + HEADER_SIZE + keyLength + Math.max(valueLength, 0) > size) {
+                    break;
+                }
+                final byte[] key = new byte[keyLength];
+                input.readFully(key);
+                final byte[] value = valueLength == TOMBSTONE ? null : new byte[valueLength];
+                if (value != null) {
+                    input.readFully(value);
+                }
+                if (checksum != checksum(recordSequence, key, value)) {
+                    break;
+                }
+                visitor.visit(offset, recordSequence, key, value);
+                offset += HEADER_SIZE + keyLength + (value == null ? 0 : valueLength);
+            }
+        } catch (EOFException e) {
+            logger.warn("Unexpected end of segment " + dataPath(segment.id));
+        }
+        return offset;
+    }
+
+    private Segment createSegment() throws IOException {
+        final long id = nextSegmentId.getAndIncrement();
+        final FileChannel channel = FileChannel.open(dataPath(id), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final Segment segment = new Segment(id, channel, 0);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        final FileChannel channel = FileChannel.open(dataPath(id),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, channel, channel.size());
+    }
+
+    private Path dataPath(long id) {
+        return directory.resolve(String.format("%020d", id) + DATA_SUFFIX);
+    }
+
+    private Path hintPath(long id) {
+        return directory.resolve(String.format("%020d", id) + HINT_SUFFIX);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Directory " + directory + " can't be synced: " + e.getMessage());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Store " + directory + " is closed");
+        }
+    }
+
+    private static ByteBuffer encode(long recordSequence, byte[] key, byte[] value) {
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_SIZE + key.length + (value == null ? 0 : value.length));
+        buffer.putInt(checksum(recordSequence, key, value));
+        buffer.putLong(recordSequence);
+        buffer.putInt(key.length);
+        buffer.putInt(value == null ? TOMBSTONE : value.length);
+        buffer.put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int checksum(long recordSequence, byte[] key, byte[] value) {
+        final ByteBuffer header = ByteBuffer.allocate(16);
+        header.putLong(recordSequence);
+        header.putInt(key.length);
+        header.putInt(value == null ? TOMBSTONE : value.length);
+        final CRC32 crc = new CRC32();
+        crc.update(header.array());
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private interface RecordVisitor {
+
+        void visit(long offset, long recordSequence, byte[] key, byte[] value) throws IOException;
+
+    }
+
+    private class Merge {
+
+        private Segment output;
+        private DataOutputStream hints;
+        private long writtenBytes;
+
+        void copy(Segment source, long offset, long recordSequence, byte[] keyBytes, byte[] value)
+                throws IOException {
+            final String key = new String(keyBytes, StandardCharsets.UTF_8);
+            final Location location = index.get(key);
+            if (location == null || location.segmentId != source.id || location.offset != offset) {
+                return;
+            }
+            final ByteBuffer record = encode(recordSequence, keyBytes, value);
+            final int recordSize = record.remaining();
+            if (output == null || output.size.get() + recordSize > maxSegmentBytes) {
+                finish();
+                output = createSegment();
+                hints = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                        tempPath(hintPath(output.id)), StandardOpenOption.CREATE_NEW)));
+            }
+            final long outputOffset = output.size.get();
+            writeFully(output.channel, record, outputOffset);
+            output.size.addAndGet(recordSize);
+            writtenBytes += recordSize;
+            hints.writeLong(recordSequence);
+            hints.writeInt(keyBytes.length);
+            hints.writeInt(value.length);
+            hints.writeLong(outputOffset);
+            hints.write(keyBytes);
+            final Location copy = new Location(output.id, outputOffset, recordSize,
+                    keyBytes.length, value.length, recordSequence);
+            output.liveBytes.addAndGet(recordSize);
+            if (!index.replace(key, location, copy)) {
+                output.liveBytes.addAndGet(-recordSize);
+            }
+        }
+
+        void finish() throws IOException {
+            if (output == null) {
+                return;
+            }
+            output.channel.force(false);
+            hints.close();
+            final Path hintPath = hintPath(output.id);
+            Files.move(tempPath(hintPath), hintPath, StandardCopyOption.ATOMIC_MOVE);
+            output = null;
+            hints = null;
+        }
+
+        private Path tempPath(Path path) {
+            return path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        }
+
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final FileChannel channel;
+        private final AtomicLong size;
+        private final AtomicLong liveBytes = new AtomicLong();
+
+        private Segment(long id, FileChannel channel, long size) {
+            this.id = id;
+            this.channel = channel;
+            this.size = new AtomicLong(size);
+        }
+
+    }
+
+    private static final class Location {
+
+        private final long segmentId;
+        private final long offset;
+        private final int recordSize;
+        private final int keyLength;
+        private final int valueLength;
+        private final long sequence;
+
+        private Location(long segmentId, long offset, int recordSize,
+                         int keyLength, int valueLength, long sequence) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.recordSize = recordSize;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.sequence = sequence;
+        }
+
+    }
+
+}
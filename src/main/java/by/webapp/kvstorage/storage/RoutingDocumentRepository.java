@@ -0,0 +1,202 @@
+package by.webapp.kvstorage.storage;
+
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.repository.CollectionRepository;
+import by.webapp.kvstorage.repository.IDocumentRepository;
+import by.webapp.kvstorage.util.BloomFilter;
+import by.webapp.kvstorage.util.KeyRange;
+import by.webapp.kvstorage.util.Validator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+@Repository("routingDocumentRepository")
+@Order(3)
+public class RoutingDocumentRepository implements IDocumentRepository<Document> {
+
+    private static final Logger logger = LogManager.getLogger(RoutingDocumentRepository.class);
+    private final CollectionRepository collectionRepository;
+    private final StorageType defaultStorageType;
+    private final Map<StorageType, IDocumentRepository<Document>> repositories =
+            new EnumMap<>(StorageType.class);
+    private final Map<String, StorageType> storages = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> documentName = new ThreadLocal<>();
+
+    @Autowired
+    public RoutingDocumentRepository(
+            CollectionRepository collectionRepository,
+            @Value("${kvstorage.storage:postgres}") String defaultStorage,
+            @Qualifier("postgresDocumentRepository") IDocumentRepository<Document> postgres,
+            @Qualifier("logDocumentRepository") IDocumentRepository<Document> log,
+            @Qualifier("lsmDocumentRepository") IDocumentRepository<Document> lsm) {
+        this.collectionRepository = collectionRepository;
+        this.defaultStorageType = StorageType.of(defaultStorage);
+        repositories.put(StorageType.POSTGRES, postgres);
+        repositories.put(StorageType.LOG, log);
+        repositories.put(StorageType.LSM, lsm);
+    }
+
+    @PostConstruct
+    private void init() {
+        collectionRepository.getStorages().forEach((name, storage) ->
+                storages.put(name, StorageType.of(storage, defaultStorageType)));
+        logger.debug("RoutingDocumentRepository initialized, default storage is "
+                + defaultStorageType.getName());
+    }
+
+    @Override
+    public Document save(Document document) {
+        return current().save(document);
+    }
+
+    @Override
+    public Document upsert(Document document) {
+        return current().upsert(document);
+    }
+
+    @Override
+    public Document findById(String id) {
+        return current().findById(id);
+    }
+
+    @Override
+    public int update(String key, Document document) {
+        return current().update(key, document);
+    }
+
+    @Override
+    public int delete(String key) {
+        return current().delete(key);
+    }
+
+    @Override
+    public List<Document> findAll() {
+        return current().findAll();
+    }
+
+    @Override
+    public List<Document> findPage(String afterKey, int offset, int limit) {
+        return current().findPage(afterKey, offset, limit);
+    }
+
+    @Override
+    public List<Document> findRange(KeyRange range, String afterKey, int limit) {
+        return current().findRange(range, afterKey, limit);
+    }
+
+    @Override
+    public void forEachDocument(Consumer<Document> consumer) {
+        current().forEachDocument(consumer);
+    }
+
+    @Override
+    public List<Document> findByQuery(Query query) {
+        return current().findByQuery(query);
+    }
+
+    @Override
+    public int saveAll(List<Document> documents) {
+        return current().saveAll(documents);
+    }
+
+    @Override
+    public int upsertAll(List<Document> documents) {
+        return current().upsertAll(documents);
+    }
+
+    @Override
+    public int deleteAll(List<String> keys) {
+        return current().deleteAll(keys);
+    }
+
+    @Override
+    public Set<String> findExistingKeys(List<String> keys) {
+        return current().findExistingKeys(keys);
+    }
+
+    @Override
+    public boolean isExist(String key) {
+        return current().isExist(key);
+    }
+
+    @Override
+    public void createTable() {
+        current().createTable();
+    }
+
+    @Override
+    public void setDocumentName(String documentName) {
+        final String validName = Validator.getValidInput(documentName);
+        this.documentName.set(validName);
+        route(validName).setDocumentName(validName);
+    }
+
+    @Override
+    public void setCollection(Collection collection) {
+        final StorageType storageType = StorageType.of(collection.getStorage(), defaultStorageType);
+        collection.setStorage(storageType.getName());
+        storages.put(collection.getName(), storageType);
+        repositories.get(storageType).setCollection(collection);
+    }
+
+    @Override
+    public Map<Collection, List<Document>> getPreparedDocuments() {
+        Map<Collection, List<Document>> documents = new HashMap<>();
+        repositories.values().forEach(repository ->
+                documents.putAll(repository.getPreparedDocuments()));
+        return documents;
+    }
+
+    @Override
+    public void removeCollection(String collectionName) {
+        final String validName = Validator.getValidInput(collectionName);
+        route(validName).removeCollection(validName);
+        storages.remove(validName);
+    }
+
+    @Override
+    public void removeCollections() {
+        repositories.values().forEach(IDocumentRepository::removeCollections);
+        storages.clear();
+    }
+
+    @Override
+    public Map<String, BloomFilter> getFilters() {
+        return repositories.get(StorageType.POSTGRES).getFilters();
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new HashMap<>();
+        repositories.values().forEach(repository -> stats.putAll(repository.getStats()));
+        return stats;
+    }
+
+    public StorageType getStorageType(String collectionName) {
+        return storages.getOrDefault(collectionName, defaultStorageType);
+    }
+
+    private IDocumentRepository<Document> current() {
+        return route(Validator.getValidInput(documentName.get()));
+    }
+
+    private IDocumentRepository<Document> route(String collectionName) {
+        return repositories.get(getStorageType(collectionName));
+    }
+
+}
@@ -0,0 +1,37 @@
+package by.webapp.kvstorage.storage;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+
+import java.util.Arrays;
+
+public enum StorageType {
+
+    POSTGRES("postgres"), LOG("log"), LSM("lsm");
+
+    private final String name;
+
+    StorageType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static StorageType of(String storageName) {
+        if (storageName != null) {
+            for (StorageType type : values()) {
+                if (type.name.equalsIgnoreCase(storageName)) {
+                    return type;
+                }
+            }
+        }
+        throw new BadRequestException("Error: storage might be one of " +
+                Arrays.toString(Arrays.stream(values()).map(StorageType::getName).toArray()) + '.');
+    }
+
+    public static StorageType of(String storageName, StorageType defaultType) {
+        return storageName == null ? defaultType : of(storageName);
+    }
+
+}
@@ -0,0 +1,46 @@
+package by.webapp.kvstorage.storage.lsm;
+
+import by.webapp.kvstorage.repository.CollectionRepository;
+import by.webapp.kvstorage.storage.EmbeddedDocumentRepository;
+import by.webapp.kvstorage.storage.StorageType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledExecutorService;
+
+@Repository("lsmDocumentRepository")
+@Order(2)
+public class LsmDocumentRepository extends EmbeddedDocumentRepository<LsmStore> {
+
+    private final long memTableBytes;
+    private final long tableBytes;
+    private final boolean syncOnWrite;
+
+    @Autowired
+    public LsmDocumentRepository(
+            CollectionRepository collectionRepository,
+            @Value("${kvstorage.storage:postgres}") String defaultStorage,
+            @Value("${kvstorage.storage.dir:data}") String dataDirectory,
+            @Value("${kvstorage.storage.lsm.memtable-bytes:4194304}") long memTableBytes,
+            @Value("${kvstorage.storage.lsm.table-bytes:2097152}") long tableBytes,
+            @Value("${kvstorage.storage.sync:true}") boolean syncOnWrite,
+            @Value("${kvstorage.storage.compaction-interval:60}") long compactionInterval) {
+        super(collectionRepository, StorageType.LSM, defaultStorage,
+                Paths.get(dataDirectory, StorageType.LSM.getName()), compactionInterval);
+        this.memTableBytes = memTableBytes;
+        this.tableBytes = tableBytes;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    @Override
+    protected LsmStore openStore(Path directory, ScheduledExecutorService executor)
+            throws IOException {
+        return new LsmStore(directory, memTableBytes, tableBytes, syncOnWrite, executor);
+    }
+
+}
@@ -0,0 +1,712 @@
+package by.webapp.kvstorage.storage.lsm;
+
+import by.webapp.kvstorage.storage.KeyValueStore;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class LsmStore implements KeyValueStore {
+
+    private static final Logger logger = LogManager.getLogger(LsmStore.class);
+    private static final String TABLE_SUFFIX = ".sst";
+    private static final String LOG_SUFFIX = ".log";
+    private static final int LEVEL_COUNT = 7;
+    private static final int LEVEL0_COMPACTION_TRIGGER = 4;
+    private static final int LEVEL_MULTIPLIER = 10;
+    private static final int MAX_IMMUTABLE_MEMTABLES = 2;
+    private final Path directory;
+    private final long memTableBytes;
+    private final long tableBytes;
+    private final boolean syncOnWrite;
+    private final ScheduledExecutorService executor;
+    private final Object writeLock = new Object();
+    private final Object maintenanceLock = new Object();
+    private final Object versionLock = new Object();
+    private final AtomicLong nextFileId;
+    private final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+    private final Set<SSTable> obsoleteTables = ConcurrentHashMap.newKeySet();
+    private final String[] compactionPointers = new String[LEVEL_COUNT];
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private volatile Version version;
+    private volatile boolean closed;
+
+    public LsmStore(Path directory, long memTableBytes, long tableBytes, boolean syncOnWrite,
+                    ScheduledExecutorService executor) throws IOException {
+        this.directory = directory;
+        this.memTableBytes = memTableBytes;
+        this.tableBytes = tableBytes;
+        this.syncOnWrite = syncOnWrite;
+        this.executor = executor;
+        Files.createDirectories(directory);
+        final Manifest manifest = Manifest.read(directory, LEVEL_COUNT);
+        final Set<Long> liveTables = new HashSet<>();
+        final List<List<SSTable>> levels = new ArrayList<>();
+        for (List<Long> ids : manifest.getLevels()) {
+            final List<SSTable> tables = new ArrayList<>();
+            for (Long id : ids) {
+                tables.add(SSTable.open(id, tablePath(id)));
+                liveTables.add(id);
+            }
+            levels.add(tables);
+        }
+        levels.get(0).sort(Comparator.comparingLong(SSTable::getId).reversed());
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            levels.get(level).sort(Comparator.comparing(SSTable::getFirstKey));
+        }
+        long maxFileId = manifest.getNextFileId() - 1;
+        final TreeMap<Long, Path> logs = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                final String name = path.getFileName().toString();
+                if (name.endsWith(TABLE_SUFFIX)) {
+                    final long id = parseId(name, TABLE_SUFFIX);
+                    maxFileId = Math.max(maxFileId, id);
+                    if (!liveTables.contains(id)) {
+                        Files.delete(path);
+                    }
+                } else if (name.endsWith(LOG_SUFFIX)) {
+                    final long id = parseId(name, LOG_SUFFIX);
+                    maxFileId = Math.max(maxFileId, id);
+                    logs.put(id, path);
+                }
+            }
+        }
+        this.nextFileId = new AtomicLong(maxFileId + 1);
+        this.version = new Version(null, Collections.emptyList(), levels);
+        for (Map.Entry<Long, Path> log : logs.entrySet()) {
+            final MemTable recovered = MemTable.recover(log.getKey(), log.getValue());
+            installVersion(v -> v.withImmutable(recovered));
+            flush(recovered);
+        }
+        final MemTable memTable = createMemTable();
+        installVersion(v -> v.withMemTable(memTable));
+        writeManifest();
+        scheduleMaintenance();
+    }
+
+    @Override
+    public String get(String key) throws IOException {
+        checkOpen();
+        final Version current = acquireVersion();
+        try {
+            final String value = find(current, key);
+            return value == null || MemTable.isTombstone(value) ? null : value;
+        } finally {
+            releaseVersion(current);
+        }
+    }
+
+    @Override
+    public boolean contains(String key) throws IOException {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, String value) throws IOException {
+        synchronized (writeLock) {
+            if (get(key) != null) {
+                return false;
+            }
+            write(key, value);
+            return true;
+        }
+    }
+
+    @Override
+    public String put(String key, String value) throws IOException {
+        synchronized (writeLock) {
+            final String previous = get(key);
+            write(key, value);
+            return previous;
+        }
+    }
+
+    @Override
+    public boolean replace(String key, String value) throws IOException {
+        synchronized (writeLock) {
+            if (get(key) == null) {
+                return false;
+            }
+            write(key, value);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean remove(String key) throws IOException {
+        synchronized (writeLock) {
+            if (get(key) == null) {
+                return false;
+            }
+            write(key, MemTable.TOMBSTONE);
+            return true;
+        }
+    }
+
+    @Override
+    public int putAllIfAbsent(Map<String, String> entries) throws IOException {
+        synchronized (writeLock) {
+            final Map<String, String> batch = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                if (!batch.containsKey(entry.getKey()) && get(entry.getKey()) == null) {
+                    batch.put(entry.getKey(), entry.getValue());
+                }
+            }
+            writeAll(batch);
+            return batch.size();
+        }
+    }
+
+    @Override
+    public int removeAll(Collection<String> keys) throws IOException {
+        synchronized (writeLock) {
+            final Map<String, String> batch = new LinkedHashMap<>();
+            for (String key : keys) {
+                if (!batch.containsKey(key) && get(key) != null) {
+                    batch.put(key, MemTable.TOMBSTONE);
+                }
+            }
+            writeAll(batch);
+            return batch.size();
+        }
+    }
+
+    @Override
+    public List<Map.Entry<String, String>> scan(String afterKey, int offset, int limit)
+            throws IOException {
+        checkOpen();
+        final List<Map.Entry<String, String>> entries = new ArrayList<>();
+        final Version current = acquireVersion();
+        try {
+            final Iterator<Map.Entry<String, String>> iterator = iterator(current, afterKey);
+            for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            while (entries.size() < limit && iterator.hasNext()) {
+                entries.add(iterator.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            releaseVersion(current);
+        }
+        return entries;
+    }
+
+    @Override
+    public boolean compact() throws IOException {
+        return runMaintenance();
+    }
+
+    private static Iterator<Map.Entry<String, String>> iterator(Version current, String afterKey) {
+        final List<Iterator<Map.Entry<String, String>>> sources = new ArrayList<>();
+        sources.add(tail(current.memTable, afterKey));
+        for (MemTable memTable : current.immutables) {
+            sources.add(tail(memTable, afterKey));
+        }
+        for (SSTable table : current.levels.get(0)) {
+            sources.add(table.iterator(afterKey));
+        }
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            if (!current.levels.get(level).isEmpty()) {
+                sources.add(levelIterator(current.levels.get(level), afterKey));
+            }
+        }
+        return new MergingIterator(sources, true);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        final Version current = version;
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memTableBytes", current.memTable == null ? 0 : current.memTable.bytes());
+        stats.put("immutableMemTables", current.immutables.size());
+        final List<Map<String, Object>> levels = new ArrayList<>();
+        for (List<SSTable> tables : current.levels) {
+            final Map<String, Object> level = new HashMap<>();
+            level.put("tables", tables.size());
+            level.put("bytes", levelBytes(tables));
+            level.put("entries", tables.stream().mapToLong(SSTable::getEntryCount).sum());
+            levels.add(level);
+        }
+        stats.put("levels", levels);
+        stats.put("flushes", flushes.get());
+        stats.put("compactions", compactions.get());
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            synchronized (maintenanceLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                final Version current = version;
+                current.memTable.close();
+                for (MemTable memTable : current.immutables) {
+                    memTable.close();
+                }
+                for (List<SSTable> tables : current.levels) {
+                    for (SSTable table : tables) {
+                        table.close();
+                    }
+                }
+                for (SSTable table : obsoleteTables) {
+                    table.delete();
+                }
+                obsoleteTables.clear();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void write(String key, String value) throws IOException {
+        checkOpen();
+        version.memTable.put(key, value, syncOnWrite);
+        afterWrite();
+    }
+
+    private void writeAll(Map<String, String> batch) throws IOException {
+        checkOpen();
+        version.memTable.putAll(batch, syncOnWrite);
+        afterWrite();
+    }
+
+    private void afterWrite() throws IOException {
+        final Version current = version;
+        if (current.memTable.bytes() < memTableBytes) {
+            return;
+        }
+        final MemTable memTable = createMemTable();
+        installVersion(v -> v.withMemTable(memTable));
+        if (current.immutables.size() >= MAX_IMMUTABLE_MEMTABLES) {
+            runMaintenance();
+        } else {
+            scheduleMaintenance();
+        }
+    }
+
+    private void scheduleMaintenance() {
+        if (!maintenanceScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                maintenanceScheduled.set(false);
+                try {
+                    runMaintenance();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Exception while LSM maintenance in " + directory, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            maintenanceScheduled.set(false);
+        }
+    }
+
+    private boolean runMaintenance() throws IOException {
+        synchronized (maintenanceLock) {
+            if (closed) {
+                return false;
+            }
+            boolean worked = false;
+            final List<MemTable> immutables = version.immutables;
+            for (int i = immutables.size() - 1; i >= 0; i--) {
+                flush(immutables.get(i));
+                worked = true;
+            }
+            try {
+                while (compactOnce()) {
+                    worked = true;
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return worked;
+        }
+    }
+
+    private void flush(MemTable memTable) throws IOException {
+        final List<SSTable> tables = writeTables(memTable.entries().entrySet().iterator(),
+                memTable.entries().size(), false, Long.MAX_VALUE);
+        installVersion(v -> v.withFlushed(memTable, tables));
+        writeManifest();
+        memTable.deleteLog();
+        flushes.incrementAndGet();
+    }
+
+    private boolean compactOnce() throws IOException {
+        final Version current = version;
+        final List<SSTable> level0 = current.levels.get(0);
+        if (level0.size() >= LEVEL0_COMPACTION_TRIGGER) {
+            compact(current, 0, level0);
+            return true;
+        }
+        for (int level = 1; level < LEVEL_COUNT - 1; level++) {
+            final List<SSTable> tables = current.levels.get(level);
+            if (levelBytes(tables) > maxBytesForLevel(level)) {
+                compact(current, level, Collections.singletonList(pickTable(level, tables)));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void compact(Version current, int level, List<SSTable> inputs) throws IOException {
+        String from = inputs.get(0).getFirstKey();
+        String to = inputs.get(0).getLastKey();
+        for (SSTable table : inputs) {
+            from = table.getFirstKey().compareTo(from) < 0 ? table.getFirstKey() : from;
+            to = table.getLastKey().compareTo(to) > 0 ? table.getLastKey() : to;
+        }
+        final List<SSTable> overlapping = new ArrayList<>();
+        for (SSTable table : current.levels.get(level + 1)) {
+            if (table.overlaps(from, to)) {
+                overlapping.add(table);
+            }
+        }
+        boolean bottom = true;
+        for (int deeper = level + 2; deeper < LEVEL_COUNT; deeper++) {
+            bottom &= current.levels.get(deeper).isEmpty();
+        }
+        final List<Iterator<Map.Entry<String, String>>> sources = new ArrayList<>();
+        long expectedEntries = 0;
+        for (SSTable table : inputs) {
+            sources.add(table.iterator(null));
+            expectedEntries += table.getEntryCount();
+        }
+        if (!overlapping.isEmpty()) {
+            sources.add(levelIterator(overlapping, null));
+            for (SSTable table : overlapping) {
+                expectedEntries += table.getEntryCount();
+            }
+        }
+        final List<SSTable> outputs = writeTables(new MergingIterator(sources, false),
+                expectedEntries, bottom, tableBytes);
+        compactionPointers[level] = to;
+        final Set<SSTable> removed = new HashSet<>(inputs);
+        removed.addAll(overlapping);
+        obsoleteTables.addAll(removed);
+        installVersion(v -> v.withCompacted(level, removed, outputs));
+        writeManifest();
+        compactions.incrementAndGet();
+        logger.debug("Compacted " + removed.size() + " tables of level " + level
+                + " into " + outputs.size() + " tables in " + directory);
+    }
+
+    private List<SSTable> writeTables(Iterator<Map.Entry<String, String>> entries,
+                                      long expectedEntries, boolean dropTombstones, long maxBytes)
+            throws IOException {
+        final List<SSTable> tables = new ArrayList<>();
+        SSTable.Writer writer = null;
+        long writerId = 0;
+        try {
+            while (entries.hasNext()) {
+                final Map.Entry<String, String> entry = entries.next();
+                if (dropTombstones && MemTable.isTombstone(entry.getValue())) {
+                    continue;
+                }
+                if (writer == null) {
+                    writerId = nextFileId.getAndIncrement();
+                    writer = new SSTable.Writer(tablePath(writerId),
+                            Math.min(expectedEntries, Math.max(maxBytes / 64, 1)));
+                }
+                writer.add(entry.getKey(), entry.getValue());
+                if (writer.size() >= maxBytes) {
+                    tables.add(writer.finish(writerId));
+                    writer = null;
+                }
+            }
+            if (writer != null) {
+                tables.add(writer.finish(writerId));
+            }
+            return tables;
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) {
+                writer.abort();
+            }
+            for (SSTable table : tables) {
+                table.delete();
+            }
+            throw e;
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        final List<List<Long>> levels = new ArrayList<>();
+        for (List<SSTable> tables : version.levels) {
+            levels.add(tables.stream().map(SSTable::getId).collect(Collectors.toList()));
+        }
+        new Manifest(nextFileId.get(), levels).write(directory);
+    }
+
+    private void installVersion(UnaryOperator<Version> change) {
+        final Version previous;
+        synchronized (versionLock) {
+            previous = version;
+            version = change.apply(previous);
+        }
+        releaseVersion(previous);
+    }
+
+    private Version acquireVersion() {
+        while (true) {
+            final Version current = version;
+            if (current.retain()) {
+                return current;
+            }
+        }
+    }
+
+    private void releaseVersion(Version released) {
+        if (!released.release()) {
+            return;
+        }
+        for (List<SSTable> tables : released.levels) {
+            for (SSTable table : tables) {
+                if (table.release() && obsoleteTables.remove(table)) {
+                    try {
+                        table.delete();
+                    } catch (IOException e) {
+                        logger.error("Exception while deleting table of " + directory, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private MemTable createMemTable() throws IOException {
+        final long id = nextFileId.getAndIncrement();
+        return MemTable.create(id, directory.resolve(String.format("%020d%s", id, LOG_SUFFIX)));
+    }
+
+    private SSTable pickTable(int level, List<SSTable> tables) {
+        final String pointer = compactionPointers[level];
+        for (SSTable table : tables) {
+            if (pointer == null || table.getFirstKey().compareTo(pointer) > 0) {
+                return table;
+            }
+        }
+        return tables.get(0);
+    }
+
+    private long maxBytesForLevel(int level) {
+        long bytes = memTableBytes * LEVEL0_COMPACTION_TRIGGER;
+        for (int i = 1; i < level; i++) {
+            bytes *= LEVEL_MULTIPLIER;
+        }
+        return bytes;
+    }
+
+    private Path tablePath(long id) {
+        return directory.resolve(String.format("%020d%s", id, TABLE_SUFFIX));
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Store " + directory + " is closed");
+        }
+    }
+
+    private static String find(Version current, String key) throws IOException {
+        String value = current.memTable.get(key);
+        if (value != null) {
+            return value;
+        }
+        for (MemTable memTable : current.immutables) {
+            value = memTable.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        for (SSTable table : current.levels.get(0)) {
+            value = table.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            final SSTable table = findTable(current.levels.get(level), key);
+            if (table != null) {
+                value = table.get(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static SSTable findTable(List<SSTable> tables, String key) {
+        int low = 0;
+        int high = tables.size() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final SSTable table = tables.get(middle);
+            if (table.getLastKey().compareTo(key) < 0) {
+                low = middle + 1;
+            } else if (table.getFirstKey().compareTo(key) > 0) {
+                high = middle - 1;
+            } else {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    private static Iterator<Map.Entry<String, String>> tail(MemTable memTable, String afterKey) {
+        return (afterKey == null ? memTable.entries() : memTable.entries().tailMap(afterKey, false))
+                .entrySet().iterator();
+    }
+
+    private static Iterator<Map.Entry<String, String>> levelIterator(List<SSTable> tables,
+                                                                    String afterKey) {
+        final Iterator<SSTable> remaining = tables.stream()
+                .filter(table -> afterKey == null || table.getLastKey().compareTo(afterKey) > 0)
+                .iterator();
+        return new Iterator<Map.Entry<String, String>>() {
+            private Iterator<Map.Entry<String, String>> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && remaining.hasNext()) {
+                    current = remaining.next().iterator(afterKey);
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private static long levelBytes(List<SSTable> tables) {
+        return tables.stream().mapToLong(SSTable::getFileSize).sum();
+    }
+
+    private static long parseId(String name, String suffix) throws IOException {
+        try {
+            return Long.parseLong(name.substring(0, name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file " + name, e);
+        }
+    }
+
+    private static final class Version {
+
+        private final MemTable memTable;
+        private final List<MemTable> immutables;
+        private final List<List<SSTable>> levels;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Version(MemTable memTable, List<MemTable> immutables, List<List<SSTable>> levels) {
+            this.memTable = memTable;
+            this.immutables = immutables;
+            this.levels = levels;
+            for (List<SSTable> tables : levels) {
+                for (SSTable table : tables) {
+                    table.retain();
+                }
+            }
+        }
+
+        private boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private boolean release() {
+            return references.decrementAndGet() == 0;
+        }
+
+        private Version withImmutable(MemTable recovered) {
+            final List<MemTable> newImmutables = new ArrayList<>();
+            newImmutables.add(recovered);
+            newImmutables.addAll(immutables);
+            return new Version(memTable, newImmutables, levels);
+        }
+
+        private Version withMemTable(MemTable next) {
+            final List<MemTable> newImmutables = new ArrayList<>();
+            if (memTable != null) {
+                newImmutables.add(memTable);
+            }
+            newImmutables.addAll(immutables);
+            return new Version(next, newImmutables, levels);
+        }
+
+        private Version withFlushed(MemTable flushed, List<SSTable> tables) {
+            final List<MemTable> newImmutables = new ArrayList<>(immutables);
+            newImmutables.remove(flushed);
+            final List<List<SSTable>> newLevels = new ArrayList<>(levels);
+            final List<SSTable> level0 = new ArrayList<>(tables);
+            level0.addAll(levels.get(0));
+            newLevels.set(0, level0);
+            return new Version(memTable, newImmutables, newLevels);
+        }
+
+        private Version withCompacted(int level, Set<SSTable> removed, List<SSTable> outputs) {
+            final List<List<SSTable>> newLevels = new ArrayList<>(levels);
+            final List<SSTable> source = new ArrayList<>(levels.get(level));
+            source.removeAll(removed);
+            final List<SSTable> target = new ArrayList<>(levels.get(level + 1));
+            target.removeAll(removed);
+            target.addAll(outputs);
+            target.sort(Comparator.comparing(SSTable::getFirstKey));
+            newLevels.set(level, source);
+            newLevels.set(level + 1, target);
+            return new Version(memTable, immutables, newLevels);
+        }
+
+    }
+
+}
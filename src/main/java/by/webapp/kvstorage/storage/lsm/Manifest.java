@@ -0,0 +1,83 @@
+package by.webapp.kvstorage.storage.lsm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+final class Manifest {
+
+    private static final String FILE_NAME = "MANIFEST";
+    private static final String TEMP_FILE_NAME = "MANIFEST.tmp";
+    private final long nextFileId;
+    private final List<List<Long>> levels;
+
+    Manifest(long nextFileId, List<List<Long>> levels) {
+        this.nextFileId = nextFileId;
+        this.levels = levels;
+    }
+
+    long getNextFileId() {
+        return nextFileId;
+    }
+
+    List<List<Long>> getLevels() {
+        return levels;
+    }
+
+    static Manifest read(Path directory, int levelCount) throws IOException {
+        final List<List<Long>> levels = new ArrayList<>();
+        for (int i = 0; i < levelCount; i++) {
+            levels.add(new ArrayList<>());
+        }
+        final Path path = directory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return new Manifest(1, levels);
+        }
+        long nextFileId = 1;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            final String[] parts = line.trim().split(" ");
+            if (parts.length != 2) {
+                continue;
+            }
+            if ("next".equals(parts[0])) {
+                nextFileId = Long.parseLong(parts[1]);
+            } else {
+                final int level = Integer.parseInt(parts[0]);
+                if (level < 0 || level >= levelCount) {
+                    throw new IOException("Manifest of " + directory + " has invalid level " + level);
+                }
+                levels.get(level).add(Long.parseLong(parts[1]));
+            }
+        }
+        return new Manifest(nextFileId, levels);
+    }
+
+    void write(Path directory) throws IOException {
+        final StringBuilder content = new StringBuilder("next ").append(nextFileId).append('\n');
+        for (int level = 0; level < levels.size(); level++) {
+            for (Long id : levels.get(level)) {
+                content.append(level).append(' ').append(id).append('\n');
+            }
+        }
+        final Path temp = directory.resolve(TEMP_FILE_NAME);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(
+                    content.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(FILE_NAME),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
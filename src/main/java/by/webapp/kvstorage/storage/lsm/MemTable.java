@@ -0,0 +1,198 @@
+package by.webapp.kvstorage.storage.lsm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+final class MemTable implements Closeable {
+
+    // Deleted keys are kept as this marker until compaction reaches the last level.
+    static final String TOMBSTONE = new String(new char[]{'\u0000'});
+
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_OVERHEAD = 64;
+    private final long id;
+    private final Path logPath;
+    private final FileChannel log;
+    private final ConcurrentSkipListMap<String, String> entries = new ConcurrentSkipListMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private MemTable(long id, Path logPath, FileChannel log) {
+        this.id = id;
+        this.logPath = logPath;
+        this.log = log;
+    }
+
+    static MemTable create(long id, Path logPath) throws IOException {
+        return new MemTable(id, logPath, FileChannel.open(logPath,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
+
+    static MemTable recover(long id, Path logPath) throws IOException {
+        final MemTable memTable = new MemTable(id, logPath,
+                FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        final long validLength = memTable.replay();
+        memTable.log.truncate(validLength);
+        memTable.log.position(validLength);
+        return memTable;
+    }
+
+    static boolean isTombstone(String value) {
+        return value == TOMBSTONE;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String get(String key) {
+        return entries.get(key);
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    ConcurrentNavigableMap<String, String> entries() {
+        return entries;
+    }
+
+    void put(String key, String value, boolean sync) throws IOException {
+        final ByteBuffer record = encode(key, value);
+        record.flip();
+        append(record, sync);
+        apply(key, value);
+    }
+
+    void putAll(Map<String, String> batch, boolean sync) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(0);
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            final ByteBuffer record = encode(entry.getKey(), entry.getValue());
+            record.flip();
+            if (buffer.remaining() < record.remaining()) {
+                final ByteBuffer grown = ByteBuffer.allocate(
+                        Math.max(buffer.capacity() * 2, buffer.position() + record.remaining()));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            buffer.put(record);
+        }
+        buffer.flip();
+        append(buffer, sync);
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            apply(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    void deleteLog() throws IOException {
+        close();
+        Files.deleteIfExists(logPath);
+    }
+
+    private void apply(String key, String value) {
+        final String previous = entries.put(key, value);
+        long delta = weigh(key, value);
+        if (previous != null) {
+            delta -= weigh(key, previous);
+        }
+        bytes.addAndGet(delta);
+    }
+
+    private synchronized void append(ByteBuffer records, boolean sync) throws IOException {
+        while (records.hasRemaining()) {
+            log.write(records);
+        }
+        if (sync) {
+            log.force(false);
+        }
+    }
+
+    private long replay() throws IOException {
+        final long size = log.size();
+        long position = 0;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            final int crc = header.getInt();
+            final int keyLength = header.getInt();
+            final int valueLength = header.getInt();
+            if (keyLength <= 0 || valueLength < -1) {
+                break;
+            }
+            final long recordEnd = position + HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            if (recordEnd > size) {
+                break;
+            }
+            final ByteBuffer body = ByteBuffer.allocate((int) (recordEnd - position - 4));
+            readFully(body, position + 4);
+            final CRC32 checksum = new CRC32();
+            checksum.update(body.array());
+            if ((int) checksum.getValue() != crc) {
+                break;
+            }
+            final byte[] array = body.array();
+            final String key = new String(array, 8, keyLength, StandardCharsets.UTF_8);
+            final String value = valueLength < 0 ? TOMBSTONE
+                    : new String(array, 8 + keyLength, valueLength, StandardCharsets.UTF_8);
+            apply(key, value);
+            position = recordEnd;
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + logPath);
+            }
+        }
+    }
+
+    private static ByteBuffer encode(String key, String value) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] valueBytes = isTombstone(value) ? null : value.getBytes(StandardCharsets.UTF_8);
+        final int valueLength = valueBytes == null ? 0 : valueBytes.length;
+        final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + valueLength);
+        record.putInt(0);
+        record.putInt(keyBytes.length);
+        record.putInt(valueBytes == null ? -1 : valueBytes.length);
+        record.put(keyBytes);
+        if (valueBytes != null) {
+            record.put(valueBytes);
+        }
+        final CRC32 checksum = new CRC32();
+        checksum.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) checksum.getValue());
+        return record;
+    }
+
+    private static long weigh(String key, String value) {
+        return ENTRY_OVERHEAD + 2L * (key.length() + value.length());
+    }
+
+}
@@ -0,0 +1,80 @@
+package by.webapp.kvstorage.storage.lsm;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+final class MergingIterator implements Iterator<Map.Entry<String, String>> {
+
+    private final List<Iterator<Map.Entry<String, String>>> sources;
+    private final PriorityQueue<Head> heads = new PriorityQueue<>();
+    private final boolean skipTombstones;
+    private Map.Entry<String, String> next;
+
+    // Sources are ordered from newest to oldest: for equal keys the newest one wins.
+    MergingIterator(List<Iterator<Map.Entry<String, String>>> sources, boolean skipTombstones) {
+        this.sources = sources;
+        this.skipTombstones = skipTombstones;
+        for (int i = 0; i < sources.size(); i++) {
+            pull(i);
+        }
+        next = advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, String> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        final Map.Entry<String, String> current = next;
+        next = advance();
+        return current;
+    }
+
+    private Map.Entry<String, String> advance() {
+        while (!heads.isEmpty()) {
+            final Head head = heads.poll();
+            pull(head.source);
+            while (!heads.isEmpty() && heads.peek().entry.getKey().equals(head.entry.getKey())) {
+                pull(heads.poll().source);
+            }
+            if (!skipTombstones || !MemTable.isTombstone(head.entry.getValue())) {
+                return head.entry;
+            }
+        }
+        return null;
+    }
+
+    private void pull(int source) {
+        final Iterator<Map.Entry<String, String>> iterator = sources.get(source);
+        if (iterator.hasNext()) {
+            heads.add(new Head(iterator.next(), source));
+        }
+    }
+
+    private static final class Head implements Comparable<Head> {
+
+        private final Map.Entry<String, String> entry;
+        private final int source;
+
+        private Head(Map.Entry<String, String> entry, int source) {
+            this.entry = entry;
+            this.source = source;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            final int comparison = entry.getKey().compareTo(other.entry.getKey());
+            return comparison != 0 ? comparison : Integer.compare(source, other.source);
+        }
+
+    }
+
+}
@@ -0,0 +1,375 @@
+package by.webapp.kvstorage.storage.lsm;
+
+import by.webapp.kvstorage.util.BloomFilter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class SSTable implements Closeable {
+
+    static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long MAGIC = 0x4B56535354424C31L;
+    private static final int FOOTER_SIZE = 40;
+    private static final int BLOCK_SIZE = 4096;
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final List<String> blockKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final BloomFilter bloomFilter;
+    private final String firstKey;
+    private final String lastKey;
+    private final long entryCount;
+    private final long fileSize;
+    private final AtomicInteger references = new AtomicInteger();
+
+    private SSTable(long id, Path path, FileChannel channel, List<String> blockKeys,
+                    long[] blockOffsets, int[] blockLengths, BloomFilter bloomFilter,
+                    String lastKey, long entryCount, long fileSize) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.blockKeys = blockKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.bloomFilter = bloomFilter;
+        this.firstKey = blockKeys.get(0);
+        this.lastKey = lastKey;
+        this.entryCount = entryCount;
+        this.fileSize = fileSize;
+    }
+
+    static SSTable open(long id, Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size < FOOTER_SIZE) {
+                throw new IOException("Table " + path + " is truncated");
+            }
+            final ByteBuffer footer = read(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            final long indexOffset = footer.getLong();
+            final int indexLength = footer.getInt();
+            final long bloomOffset = footer.getLong();
+            final int bloomLength = footer.getInt();
+            final long entryCount = footer.getLong();
+            if (footer.getLong() != MAGIC) {
+                throw new IOException("Table " + path + " has no valid footer");
+            }
+            final DataInputStream index = new DataInputStream(new ByteArrayInputStream(
+                    read(channel, indexOffset, indexLength).array()));
+            final int blockCount = index.readInt();
+            if (blockCount <= 0) {
+                throw new IOException("Table " + path + " has no blocks");
+            }
+            final List<String> blockKeys = new ArrayList<>(blockCount);
+            final long[] blockOffsets = new long[blockCount];
+            final int[] blockLengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockKeys.add(index.readUTF());
+                blockOffsets[i] = index.readLong();
+                blockLengths[i] = index.readInt();
+            }
+            final String lastKey = index.readUTF();
+            final BloomFilter bloomFilter = BloomFilter.readFrom(new DataInputStream(
+                    new ByteArrayInputStream(read(channel, bloomOffset, bloomLength).array())));
+            return new SSTable(id, path, channel, blockKeys, blockOffsets, blockLengths,
+                    bloomFilter, lastKey, entryCount, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getFirstKey() {
+        return firstKey;
+    }
+
+    String getLastKey() {
+        return lastKey;
+    }
+
+    long getEntryCount() {
+        return entryCount;
+    }
+
+    long getFileSize() {
+        return fileSize;
+    }
+
+    boolean overlaps(String from, String to) {
+        return firstKey.compareTo(to) <= 0 && lastKey.compareTo(from) >= 0;
+    }
+
+    String get(String key) throws IOException {
+        if (key.compareTo(firstKey) < 0 || key.compareTo(lastKey) > 0
+                || !bloomFilter.mightContain(key)) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : readBlock(findBlock(key))) {
+            final int comparison = entry.getKey().compareTo(key);
+            if (comparison == 0) {
+                return entry.getValue();
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        bloomFilter.recordFalsePositive();
+        return null;
+    }
+
+    Iterator<Map.Entry<String, String>> iterator(String afterKey) {
+        final int startBlock = afterKey == null ? 0 : Math.max(findBlock(afterKey), 0);
+        return new Iterator<Map.Entry<String, String>>() {
+            private int block = startBlock;
+            private Iterator<Map.Entry<String, String>> entries = Collections.emptyIterator();
+            private Map.Entry<String, String> next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Map.Entry<String, String> current = next;
+                next = advance();
+                return current;
+            }
+
+            private Map.Entry<String, String> advance() {
+                while (true) {
+                    while (entries.hasNext()) {
+                        final Map.Entry<String, String> entry = entries.next();
+                        if (afterKey == null || entry.getKey().compareTo(afterKey) > 0) {
+                            return entry;
+                        }
+                    }
+                    if (block >= blockKeys.size()) {
+                        return null;
+                    }
+                    try {
+                        entries = readBlock(block++).iterator();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    void retain() {
+        references.incrementAndGet();
+    }
+
+    boolean release() {
+        return references.decrementAndGet() == 0;
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    private int findBlock(String key) {
+        int low = 0;
+        int high = blockKeys.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (blockKeys.get(middle).compareTo(key) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private List<Map.Entry<String, String>> readBlock(int block) throws IOException {
+        final ByteBuffer buffer = read(channel, blockOffsets[block], blockLengths[block]);
+        final List<Map.Entry<String, String>> entries = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            final byte[] key = new byte[buffer.getInt()];
+            final int valueLength = buffer.getInt();
+            buffer.get(key);
+            String value = MemTable.TOMBSTONE;
+            if (valueLength >= 0) {
+                final byte[] valueBytes = new byte[valueLength];
+                buffer.get(valueBytes);
+                value = new String(valueBytes, StandardCharsets.UTF_8);
+            }
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(
+                    new String(key, StandardCharsets.UTF_8), value));
+        }
+        return entries;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of table");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static final class Writer implements Closeable {
+
+        private final Path path;
+        private final DataOutputStream output;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+        private final DataOutputStream blockOutput = new DataOutputStream(block);
+        private final List<String> blockKeys = new ArrayList<>();
+        private final List<Long> blockOffsets = new ArrayList<>();
+        private final List<Integer> blockLengths = new ArrayList<>();
+        private final BloomFilter bloomFilter;
+        private String blockKey;
+        private String lastKey;
+        private long entryCount;
+        private long position;
+
+        Writer(Path path, long expectedEntries) throws IOException {
+            this.path = path;
+            this.output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(path, StandardOpenOption.CREATE_NEW,
+                            StandardOpenOption.WRITE), 64 * 1024));
+            this.bloomFilter = new BloomFilter(Math.max(expectedEntries, 1), FALSE_POSITIVE_RATE);
+        }
+
+        void add(String key, String value) throws IOException {
+            if (lastKey != null && key.compareTo(lastKey) <= 0) {
+                throw new IllegalStateException("Keys must be added in ascending order");
+            }
+            if (blockKey == null) {
+                blockKey = key;
+            }
+            final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            blockOutput.writeInt(keyBytes.length);
+            if (MemTable.isTombstone(value)) {
+                blockOutput.writeInt(-1);
+                blockOutput.write(keyBytes);
+            } else {
+                final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+                blockOutput.writeInt(valueBytes.length);
+                blockOutput.write(keyBytes);
+                blockOutput.write(valueBytes);
+            }
+            bloomFilter.put(key);
+            lastKey = key;
+            entryCount++;
+            if (block.size() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        long size() {
+            return position + block.size();
+        }
+
+        boolean isEmpty() {
+            return entryCount == 0;
+        }
+
+        SSTable finish(long id) throws IOException {
+            flushBlock();
+            final ByteArrayOutputStream index = new ByteArrayOutputStream();
+            final DataOutputStream indexOutput = new DataOutputStream(index);
+            indexOutput.writeInt(blockKeys.size());
+            for (int i = 0; i < blockKeys.size(); i++) {
+                indexOutput.writeUTF(blockKeys.get(i));
+                indexOutput.writeLong(blockOffsets.get(i));
+                indexOutput.writeInt(blockLengths.get(i));
+            }
+            indexOutput.writeUTF(lastKey);
+            final long indexOffset = write(index);
+            final ByteArrayOutputStream bloom = new ByteArrayOutputStream();
+            bloomFilter.writeTo(new DataOutputStream(bloom));
+            final long bloomOffset = write(bloom);
+            output.writeLong(indexOffset);
+            output.writeInt(index.size());
+            output.writeLong(bloomOffset);
+            output.writeInt(bloom.size());
+            output.writeLong(entryCount);
+            output.writeLong(MAGIC);
+            output.flush();
+            sync();
+            output.close();
+            return open(id, path);
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+
+        void abort() throws IOException {
+            close();
+            Files.deleteIfExists(path);
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.size() == 0) {
+                return;
+            }
+            blockKeys.add(blockKey);
+            blockLengths.add(block.size());
+            blockOffsets.add(write(block));
+            block.reset();
+            blockKey = null;
+        }
+
+        private long write(ByteArrayOutputStream bytes) throws IOException {
+            final long offset = position;
+            bytes.writeTo((OutputStream) output);
+            position += bytes.size();
+            return offset;
+        }
+
+        private void sync() throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,626 @@
+package by.webapp.kvstorage.storage.wal;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.DataBaseException;
+import by.webapp.kvstorage.exception.FailedException;
+import by.webapp.kvstorage.exception.ResourceNotFoundException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.repository.IDocumentRepository;
+import by.webapp.kvstorage.util.BloomFilter;
+import by.webapp.kvstorage.util.KeyRange;
+import by.webapp.kvstorage.util.Validator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+@Repository("documentRepository")
+@Primary
+@Order(4)
+public class WriteAheadDocumentRepository implements IDocumentRepository<Document> {
+
+    private static final Logger logger = LogManager.getLogger(WriteAheadDocumentRepository.class);
+    private static final int LOCK_STRIPES = 256;
+    private static final int CHECKPOINT_INTERVAL = 1024;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+    private static final long BARRIER_TIMEOUT_MILLIS = 30000;
+    private final IDocumentRepository<Document> delegate;
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int groupSize;
+    private final long groupMicros;
+    private final int applyBatchSize;
+    private final Map<String, Map<String, Mutation>> pending = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Mutation>> failed = new ConcurrentHashMap<>();
+    private final BlockingQueue<Mutation> applyQueue;
+    private final AtomicReference<Mutation> lastRejected = new AtomicReference<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicLongArray stripeWrites = new AtomicLongArray(LOCK_STRIPES);
+    private final Object appliedMonitor = new Object();
+    private final ThreadLocal<String> documentName = new ThreadLocal<>();
+    private WriteAheadLog log;
+    private WriteAheadLog rejected;
+    private Thread applier;
+    private volatile long appliedSequence;
+    private volatile boolean closed;
+
+    @Autowired
+    public WriteAheadDocumentRepository(
+            @Qualifier("routingDocumentRepository") IDocumentRepository<Document> delegate,
+            @Value("${kvstorage.wal.enabled:true}") boolean enabled,
+            @Value("${kvstorage.storage.dir:data}") String dataDirectory,
+            @Value("${kvstorage.wal.segment-bytes:67108864}") long segmentBytes,
+            @Value("${kvstorage.wal.group-size:256}") int groupSize,
+            @Value("${kvstorage.wal.group-micros:200}") long groupMicros,
+            @Value("${kvstorage.wal.apply-queue-capacity:10000}") int applyQueueCapacity,
+            @Value("${kvstorage.wal.apply-batch-size:500}") int applyBatchSize) {
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.directory = Paths.get(dataDirectory, "wal");
+        this.segmentBytes = segmentBytes;
+        this.groupSize = groupSize;
+        this.groupMicros = groupMicros;
+        this.applyQueue = new LinkedBlockingQueue<>(applyQueueCapacity);
+        this.applyBatchSize = applyBatchSize;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    private void init() {
+        if (!enabled) {
+            logger.debug("Write-ahead log is disabled");
+            return;
+        }
+        try {
+            rejected = new WriteAheadLog(directory.resolve("rejected"), segmentBytes, 1, 0,
+                    mutations -> {
+                    });
+            final int rejectedCount = rejected.replay().size();
+            if (rejectedCount > 0) {
+                logger.warn(rejectedCount + " rejected mutations are kept in " +
+                        directory.resolve("rejected"));
+            }
+            log = new WriteAheadLog(directory, segmentBytes, groupSize, groupMicros,
+                    this::onDurable);
+            appliedSequence = log.getCheckpoint();
+            applier = new Thread(this::applyLoop, "wal-applier");
+            applier.setDaemon(true);
+            applier.start();
+            final List<Mutation> replayed = log.replay();
+            onDurable(replayed);
+            if (!replayed.isEmpty()) {
+                logger.info(replayed.size() + " unapplied write-ahead log entries recovered.");
+            }
+            logger.debug("WriteAheadDocumentRepository initialized in " + directory);
+        } catch (IOException e) {
+            final String message = "Exception while write-ahead log initializing.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    @PreDestroy
+    private void close() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+            awaitApplied();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Exception while closing write-ahead log.", e);
+        }
+        closed = true;
+        applier.interrupt();
+        try {
+            rejected.close();
+        } catch (IOException e) {
+            logger.error("Exception while closing rejected mutations log.", e);
+        }
+    }
+
+    @Override
+    public Document save(Document document) {
+        if (log == null) {
+            return delegate.save(document);
+        }
+        final String validKey = Validator.getValidInput(document.getKey());
+        final String value = Validator.getValidValue(document.getValue());
+        final String collection = getDocumentName();
+        final int stripe = stripeFor(collection, validKey);
+        final long writes = stripeWrites.get(stripe);
+        final Document read = read(collection, validKey);
+        synchronized (locks[stripe]) {
+            if (find(collection, validKey, stripe, writes, read) != null) {
+                return null;
+            }
+            write(stripe, new Mutation(Mutation.Type.PUT, collection, validKey, value));
+        }
+        return toDocument(validKey, value);
+    }
+
+    @Override
+    public Document upsert(Document document) {
+        if (log == null) {
+            return delegate.upsert(document);
+        }
+        final String validKey = Validator.getValidInput(document.getKey());
+        final String value = Validator.getValidValue(document.getValue());
+        final String collection = getDocumentName();
+        final int stripe = stripeFor(collection, validKey);
+        final long writes = stripeWrites.get(stripe);
+        final Document read = read(collection, validKey);
+        final Document previous;
+        synchronized (locks[stripe]) {
+            previous = find(collection, validKey, stripe, writes, read);
+            write(stripe, new Mutation(Mutation.Type.PUT, collection, validKey, value));
+        }
+        return previous;
+    }
+
+    @Override
+    public Document findById(String id) {
+        final String validKey = Validator.getValidInput(id);
+        final Mutation mutation = getUnapplied(getDocumentName(), validKey);
+        if (mutation != null) {
+            return mutation.isDelete() ? null : toDocument(validKey, mutation.getValue());
+        }
+        return delegate.findById(validKey);
+    }
+
+    @Override
+    public int update(String key, Document document) {
+        if (log == null) {
+            return delegate.update(key, document);
+        }
+        final String validKey = Validator.getValidInput(key);
+        final String value = Validator.getValidValue(document.getValue());
+        final String collection = getDocumentName();
+        final int stripe = stripeFor(collection, validKey);
+        final long writes = stripeWrites.get(stripe);
+        final Document read = read(collection, validKey);
+        synchronized (locks[stripe]) {
+            if (find(collection, validKey, stripe, writes, read) == null) {
+                return 0;
+            }
+            write(stripe, new Mutation(Mutation.Type.PUT, collection, validKey, value));
+        }
+        return 1;
+    }
+
+    @Override
+    public int delete(String key) {
+        if (log == null) {
+            return delegate.delete(key);
+        }
+        final String validKey = Validator.getValidInput(key);
+        final String collection = getDocumentName();
+        final int stripe = stripeFor(collection, validKey);
+        final long writes = stripeWrites.get(stripe);
+        final Document read = read(collection, validKey);
+        synchronized (locks[stripe]) {
+            if (find(collection, validKey, stripe, writes, read) == null) {
+                return 0;
+            }
+            write(stripe, new Mutation(Mutation.Type.DELETE, collection, validKey, null));
+        }
+        return 1;
+    }
+
+    @Override
+    public List<Document> findAll() {
+        awaitApplied();
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Document> findPage(String afterKey, int offset, int limit) {
+        awaitApplied();
+        return delegate.findPage(afterKey, offset, limit);
+    }
+
+    @Override
+    public List<Document> findRange(KeyRange range, String afterKey, int limit) {
+        awaitApplied();
+        return delegate.findRange(range, afterKey, limit);
+    }
+
+    @Override
+    public void forEachDocument(Consumer<Document> consumer) {
+        awaitApplied();
+        delegate.forEachDocument(consumer);
+    }
+
+    @Override
+    public List<Document> findByQuery(Query query) {
+        awaitApplied();
+        return delegate.findByQuery(query);
+    }
+
+    @Override
+    public int saveAll(List<Document> documents) {
+        awaitApplied();
+        return delegate.saveAll(documents);
+    }
+
+    @Override
+    public int deleteAll(List<String> keys) {
+        awaitApplied();
+        return delegate.deleteAll(keys);
+    }
+
+    @Override
+    public Set<String> findExistingKeys(List<String> keys) {
+        final String collection = getDocumentName();
+        if (getPending(collection).isEmpty() && getFailed(collection).isEmpty()) {
+            return delegate.findExistingKeys(keys);
+        }
+        Set<String> existingKeys = new HashSet<>(delegate.findExistingKeys(keys));
+        for (String key : keys) {
+            final Mutation mutation = getUnapplied(collection, key);
+            if (mutation != null) {
+                if (mutation.isDelete()) {
+                    existingKeys.remove(key);
+                } else {
+                    existingKeys.add(key);
+                }
+            }
+        }
+        return existingKeys;
+    }
+
+    @Override
+    public boolean isExist(String key) {
+        final String validKey = Validator.getValidInput(key);
+        final Mutation mutation = getUnapplied(getDocumentName(), validKey);
+        if (mutation != null) {
+            return !mutation.isDelete();
+        }
+        return delegate.isExist(validKey);
+    }
+
+    @Override
+    public void createTable() {
+        delegate.createTable();
+    }
+
+    @Override
+    public void setDocumentName(String documentName) {
+        final String validName = Validator.getValidInput(documentName);
+        this.documentName.set(validName);
+        delegate.setDocumentName(validName);
+    }
+
+    @Override
+    public void setCollection(Collection collection) {
+        delegate.setCollection(collection);
+    }
+
+    @Override
+    public Map<Collection, List<Document>> getPreparedDocuments() {
+        return delegate.getPreparedDocuments();
+    }
+
+    @Override
+    public void removeCollection(String collectionName) {
+        awaitApplied();
+        delegate.removeCollection(collectionName);
+    }
+
+    @Override
+    public void removeCollections() {
+        awaitApplied();
+        delegate.removeCollections();
+    }
+
+    @Override
+    public Map<String, BloomFilter> getFilters() {
+        return delegate.getFilters();
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getStats() {
+        return delegate.getStats();
+    }
+
+    public Map<String, Object> getLogStats() {
+        if (log == null) {
+            return Collections.singletonMap("enabled", false);
+        }
+        Map<String, Object> stats = log.getStats();
+        stats.put("pending", applyQueue.size());
+        stats.put("rejected", rejected.getLastSequence());
+        stats.put("failedKeys", failed.values().stream().mapToInt(Map::size).sum());
+        final Mutation mutation = lastRejected.get();
+        if (mutation != null) {
+            stats.put("lastRejected", mutation.toString());
+        }
+        return stats;
+    }
+
+    private void write(int stripe, Mutation mutation) {
+        try {
+            log.append(mutation);
+            stripeWrites.incrementAndGet(stripe);
+        } catch (IOException e) {
+            final String message = "Exception while writing to write-ahead log.";
+            logger.error(message);
+            throw new DataBaseException(message, e);
+        }
+    }
+
+    private void onDurable(List<Mutation> mutations) {
+        boolean interrupted = false;
+        for (Mutation mutation : mutations) {
+            pending.computeIfAbsent(mutation.getCollection(), name -> new ConcurrentHashMap<>())
+                    .put(mutation.getKey(), mutation);
+            while (true) {
+                try {
+                    applyQueue.put(mutation);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void applyLoop() {
+        final List<Mutation> batch = new ArrayList<>(applyBatchSize);
+        long applied = 0;
+        while (!closed) {
+            try {
+                Mutation first = applyQueue.poll();
+                if (first == null) {
+                    checkpoint(applied);
+                    first = applyQueue.take();
+                }
+                batch.add(first);
+                applyQueue.drainTo(batch, applyBatchSize - 1);
+                try {
+                    applyBatch(batch);
+                } catch (RuntimeException e) {
+                    logger.warn("Exception while applying a batch of " + batch.size() +
+                            " mutations, applying them one by one: " + e.getMessage());
+                    for (Mutation mutation : batch) {
+                        applyWithRetry(mutation);
+                    }
+                }
+                final long last = batch.get(batch.size() - 1).getSequence();
+                release(batch, last);
+                if (last / CHECKPOINT_INTERVAL > applied / CHECKPOINT_INTERVAL) {
+                    checkpoint(last);
+                }
+                applied = last;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(List<Mutation> batch) {
+        final Map<String, Map<String, Mutation>> latest = new LinkedHashMap<>();
+        for (Mutation mutation : batch) {
+            latest.computeIfAbsent(mutation.getCollection(), name -> new LinkedHashMap<>())
+                    .put(mutation.getKey(), mutation);
+        }
+        for (Map.Entry<String, Map<String, Mutation>> entry : latest.entrySet()) {
+            final List<Document> documents = new ArrayList<>();
+            final List<String> deletedKeys = new ArrayList<>();
+            for (Mutation mutation : entry.getValue().values()) {
+                if (mutation.isDelete()) {
+                    deletedKeys.add(mutation.getKey());
+                } else {
+                    documents.add(toDocument(mutation.getKey(), mutation.getValue()));
+                }
+            }
+            delegate.setDocumentName(entry.getKey());
+            if (!deletedKeys.isEmpty()) {
+                delegate.deleteAll(deletedKeys);
+            }
+            if (!documents.isEmpty()) {
+                delegate.upsertAll(documents);
+            }
+        }
+    }
+
+    private void applyWithRetry(Mutation mutation) throws InterruptedException {
+        long retryDelay = 0;
+        while (true) {
+            try {
+                apply(mutation);
+                return;
+            } catch (RuntimeException e) {
+                if (isPermanent(e) && reject(mutation, e)) {
+                    return;
+                }
+                retryDelay = Math.min(Math.max(retryDelay * 2, 100), MAX_RETRY_DELAY_MILLIS);
+                logger.error("Exception while applying " + mutation + ", retrying in "
+                        + retryDelay + " ms", e);
+                Thread.sleep(retryDelay);
+            }
+        }
+    }
+
+    private void apply(Mutation mutation) {
+        delegate.setDocumentName(mutation.getCollection());
+        if (mutation.isDelete()) {
+            delegate.delete(mutation.getKey());
+        } else {
+            delegate.upsert(toDocument(mutation.getKey(), mutation.getValue()));
+        }
+    }
+
+    private boolean reject(Mutation mutation, RuntimeException cause) {
+        try {
+            rejected.append(new Mutation(mutation.getType(), mutation.getCollection(),
+                    mutation.getKey(), mutation.getValue()));
+        } catch (IOException e) {
+            logger.error("Exception while writing " + mutation + " to rejected mutations log.", e);
+            return false;
+        }
+        logger.error("Giving up on " + mutation + ", moving it to " +
+                directory.resolve("rejected"), cause);
+        lastRejected.set(mutation);
+        failed.computeIfAbsent(mutation.getCollection(), name -> new ConcurrentHashMap<>())
+                .put(mutation.getKey(), mutation);
+        return true;
+    }
+
+    private static boolean isPermanent(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BadRequestException ||
+                    cause instanceof ResourceNotFoundException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                final String state = ((SQLException) cause).getSQLState();
+                return state != null && (state.startsWith("22") || state.startsWith("23") ||
+                        state.equals("42P01"));
+            }
+        }
+        return false;
+    }
+
+    private void release(List<Mutation> batch, long last) {
+        for (Mutation mutation : batch) {
+            final Map<String, Mutation> collectionFailed = failed.get(mutation.getCollection());
+            if (collectionFailed != null) {
+                collectionFailed.computeIfPresent(mutation.getKey(), (key, rejectedMutation) ->
+                        rejectedMutation.getSequence() < mutation.getSequence() ?
+                                null : rejectedMutation);
+            }
+            final Map<String, Mutation> collectionPending = pending.get(mutation.getCollection());
+            if (collectionPending != null) {
+                collectionPending.remove(mutation.getKey(), mutation);
+            }
+        }
+        synchronized (appliedMonitor) {
+            appliedSequence = last;
+            appliedMonitor.notifyAll();
+        }
+    }
+
+    private void checkpoint(long sequence) {
+        try {
+            log.checkpoint(sequence);
+        } catch (IOException e) {
+            logger.error("Exception while write-ahead log checkpointing.", e);
+        }
+    }
+
+    private void awaitApplied() {
+        if (log == null) {
+            return;
+        }
+        final long sequence = log.getLastSequence();
+        final long deadline = System.currentTimeMillis() + BARRIER_TIMEOUT_MILLIS;
+        synchronized (appliedMonitor) {
+            while (appliedSequence < sequence) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    final String message = "Error: pending writes were not applied in time.";
+                    logger.error(message);
+                    throw new FailedException(message);
+                }
+                try {
+                    appliedMonitor.wait(Math.min(remaining, 100));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new FailedException(
+                            "Error: interrupted while awaiting pending writes.", e);
+                }
+            }
+        }
+    }
+
+    private Document read(String collection, String key) {
+        final Mutation mutation = getUnapplied(collection, key);
+        if (mutation != null) {
+            return mutation.isDelete() ? null : toDocument(key, mutation.getValue());
+        }
+        final BloomFilter filter = delegate.getFilters().get(collection);
+        if (filter != null && !filter.mightContain(key)) {
+            return null;
+        }
+        return delegate.findById(key);
+    }
+
+    private Document find(String collection, String key, int stripe, long writes, Document read) {
+        final Mutation mutation = getUnapplied(collection, key);
+        if (mutation != null) {
+            return mutation.isDelete() ? null : toDocument(key, mutation.getValue());
+        }
+        if (stripeWrites.get(stripe) == writes) {
+            return read;
+        }
+        return delegate.findById(key);
+    }
+
+    private Map<String, Mutation> getPending(String collectionName) {
+        final Map<String, Mutation> collectionPending = pending.get(collectionName);
+        return collectionPending == null ? Collections.emptyMap() : collectionPending;
+    }
+
+    private Map<String, Mutation> getFailed(String collectionName) {
+        final Map<String, Mutation> collectionFailed = failed.get(collectionName);
+        return collectionFailed == null ? Collections.emptyMap() : collectionFailed;
+    }
+
+    private Mutation getUnapplied(String collection, String key) {
+        final Mutation mutation = getPending(collection).get(key);
+        return mutation != null ? mutation : getFailed(collection).get(key);
+    }
+
+    private static int stripeFor(String collection, String key) {
+        return ((collection.hashCode() * 31 + key.hashCode()) & 0x7fffffff) % LOCK_STRIPES;
+    }
+
+    private String getDocumentName() {
+        return Validator.getValidInput(documentName.get());
+    }
+
+    private static Document toDocument(String key, String value) {
+        Document document = new Document();
+        document.setKey(key);
+        document.setValue(value);
+        return document;
+    }
+
+}
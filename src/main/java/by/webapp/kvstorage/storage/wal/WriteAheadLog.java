@@ -0,0 +1,517 @@
+package by.webapp.kvstorage.storage.wal;
+
+import by.webapp.kvstorage.model.Mutation;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(WriteAheadLog.class);
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOCK_FILE = "lock";
+    private static final int HEADER_SIZE = 25;
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final int MAX_READ_POSITIONS = 64;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int groupSize;
+    private final long groupNanos;
+    private final Consumer<List<Mutation>> onDurable;
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentSkipListMap<Long, Long> segmentLastSequences =
+            new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, long[]> readPositions =
+            new ConcurrentSkipListMap<>();
+    private final List<Mutation> unapplied = new ArrayList<>();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final FileLock lock;
+    private final Thread writer;
+    private FileChannel segment;
+    private volatile long segmentId;
+    private long segmentSize;
+    private volatile long lastSequence;
+    private volatile long checkpoint;
+    private volatile boolean closed;
+
+    public WriteAheadLog(Path directory, long segmentBytes, int groupSize, long groupMicros,
+                         Consumer<List<Mutation>> onDurable) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.groupSize = groupSize;
+        this.groupNanos = TimeUnit.MICROSECONDS.toNanos(groupMicros);
+        this.onDurable = onDurable;
+        Files.createDirectories(directory);
+        lock = lock(directory);
+        try {
+            final Path checkpointPath = directory.resolve(CHECKPOINT_FILE);
+            if (Files.exists(checkpointPath)) {
+                checkpoint = Long.parseLong(new String(Files.readAllBytes(checkpointPath),
+                        StandardCharsets.UTF_8).trim());
+            }
+            lastSequence = checkpoint;
+            final List<Path> segments;
+            try (Stream<Path> paths = Files.list(directory)) {
+                segments = paths.filter(path ->
+                        path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted().collect(Collectors.toList());
+            }
+            for (Path path : segments) {
+                final long id = parseId(path);
+                final long last = recover(path);
+                segmentLastSequences.put(id, last);
+                segmentId = id;
+            }
+            openSegment(segmentId + 1);
+        } catch (IOException | RuntimeException e) {
+            lock.channel().close();
+            throw e;
+        }
+        writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public long append(Mutation mutation) throws IOException {
+        if (closed) {
+            throw new IOException("Write-ahead log " + directory + " is closed");
+        }
+        final Append append = new Append(mutation);
+        queue.add(append);
+        try {
+            return append.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for log commit");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Log commit failed", e.getCause());
+        }
+    }
+
+    public long appendAll(List<Mutation> mutations) throws IOException {
+        if (closed) {
+            throw new IOException("Write-ahead log " + directory + " is closed");
+        }
+        final List<Append> appends = new ArrayList<>(mutations.size());
+        for (Mutation mutation : mutations) {
+            final Append append = new Append(mutation);
+            appends.add(append);
+            queue.add(append);
+        }
+        long sequence = lastSequence;
+        for (Append append : appends) {
+            try {
+                sequence = Math.max(sequence, append.future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for log commit");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Log commit failed", e.getCause());
+            }
+        }
+        return sequence;
+    }
+
+    public List<Mutation> read(long afterSequence, int limit) throws IOException {
+        final List<Mutation> mutations = new ArrayList<>();
+        final long last = lastSequence;
+        final long[] start = readPositions.get(afterSequence);
+        for (Map.Entry<Long, Long> entry : segmentLastSequences.entrySet()) {
+            final long id = entry.getKey();
+            if (entry.getValue() <= afterSequence || start != null && id < start[0]) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(id),
+                    StandardOpenOption.READ)) {
+                final long size = channel.size();
+                long position = start != null && id == start[0] ? start[1] : 0;
+                Record record;
+                while ((record = readRecord(channel, position, size)) != null) {
+                    final long sequence = record.mutation.getSequence();
+                    if (sequence > last) {
+                        return mutations;
+                    }
+                    position += record.length;
+                    if (sequence > afterSequence) {
+                        mutations.add(record.mutation);
+                        if (mutations.size() == limit) {
+                            markRead(sequence, id, position);
+                            return mutations;
+                        }
+                    }
+                }
+                if (!mutations.isEmpty()) {
+                    markRead(mutations.get(mutations.size() - 1).getSequence(), id, position);
+                }
+            } catch (NoSuchFileException e) {
+                logger.debug("Segment " + id + " is removed by a checkpoint.");
+            }
+        }
+        return mutations;
+    }
+
+    public synchronized List<Mutation> replay() {
+        final List<Mutation> mutations = new ArrayList<>(unapplied);
+        unapplied.clear();
+        return mutations;
+    }
+
+    public void checkpoint(long sequence) throws IOException {
+        if (sequence <= checkpoint) {
+            return;
+        }
+        final Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(
+                    Long.toString(sequence).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+        checkpoint = sequence;
+        readPositions.headMap(sequence).clear();
+        for (Map.Entry<Long, Long> entry : segmentLastSequences.headMap(segmentId).entrySet()) {
+            if (entry.getValue() <= sequence) {
+                Files.deleteIfExists(segmentPath(entry.getKey()));
+                segmentLastSequences.remove(entry.getKey());
+            }
+        }
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        final long groupCount = groups.get();
+        stats.put("records", records.get());
+        stats.put("groupCommits", groupCount);
+        stats.put("averageGroupSize", groupCount == 0 ? 0.0 : (double) records.get() / groupCount);
+        stats.put("lastSequence", lastSequence);
+        stats.put("checkpoint", checkpoint);
+        stats.put("segments", segmentLastSequences.size());
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            segment.close();
+        } finally {
+            lock.channel().close();
+        }
+    }
+
+    private void writeLoop() {
+        final List<Append> group = new ArrayList<>(groupSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                final Append first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                final long deadline = System.nanoTime() + groupNanos;
+                while (group.size() < groupSize) {
+                    final long remaining = deadline - System.nanoTime();
+                    final Append next = remaining > 0 ?
+                            queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                group.forEach(append -> append.future.completeExceptionally(
+                        new InterruptedIOException("Log writer interrupted")));
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Append> group) {
+        final List<Mutation> mutations = new ArrayList<>(group.size());
+        final long committedSize = segmentSize;
+        long sequence = lastSequence;
+        try {
+            for (Append append : group) {
+                append.mutation.setSequence(++sequence);
+                mutations.add(append.mutation);
+                final ByteBuffer buffer = encode(append.mutation);
+                while (buffer.hasRemaining()) {
+                    segmentSize += segment.write(buffer);
+                }
+            }
+            segment.force(false);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Exception while committing write-ahead log group.", e);
+            truncate(committedSize);
+            group.forEach(append -> append.future.completeExceptionally(e));
+            return;
+        }
+        lastSequence = sequence;
+        segmentLastSequences.put(segmentId, sequence);
+        groups.incrementAndGet();
+        records.addAndGet(group.size());
+        try {
+            onDurable.accept(mutations);
+            group.forEach(append -> append.future.complete(append.mutation.getSequence()));
+        } catch (RuntimeException e) {
+            logger.error("Exception while handing over committed mutations, they are applied " +
+                    "on the next replay.", e);
+            final IOException failure = new IOException(
+                    "Committed mutations could not be handed over", e);
+            group.forEach(append -> append.future.completeExceptionally(failure));
+        }
+        if (segmentSize >= segmentBytes) {
+            try {
+                segment.close();
+                openSegment(segmentId + 1);
+            } catch (IOException e) {
+                logger.error("Exception while rolling write-ahead log segment.", e);
+            }
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Directory " + directory + " can't be synced: " + e.getMessage());
+        }
+    }
+
+    private void markRead(long sequence, long id, long position) {
+        readPositions.put(sequence, new long[]{id, position});
+        while (readPositions.size() > MAX_READ_POSITIONS) {
+            readPositions.pollFirstEntry();
+        }
+    }
+
+    private void truncate(long size) {
+        try {
+            segment.truncate(size);
+            segment.position(size);
+            segmentSize = size;
+        } catch (IOException e) {
+            logger.error("Exception while truncating write-ahead log segment.", e);
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        segmentId = id;
+        segment = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        segmentSize = 0;
+        segmentLastSequences.put(id, lastSequence);
+    }
+
+    private long recover(Path path) throws IOException {
+        long last = lastSequence;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long size = channel.size();
+            long position = 0;
+            Record record;
+            while ((record = readRecord(channel, position, size)) != null) {
+                final long sequence = record.mutation.getSequence();
+                if (sequence > checkpoint) {
+                    unapplied.add(record.mutation);
+                }
+                last = Math.max(last, sequence);
+                position += record.length;
+            }
+            if (position < size) {
+                logger.warn("Truncating torn tail of " + path + " at " + position);
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+        lastSequence = last;
+        return last;
+    }
+
+    private static FileLock lock(Path directory) throws IOException {
+        final FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            logger.debug("Write-ahead log " + directory + " is already open in this process.");
+        } finally {
+            if (lock == null) {
+                channel.close();
+            }
+        }
+        if (lock == null) {
+            throw new IOException("Write-ahead log " + directory +
+                    " is locked by another process using the same data directory");
+        }
+        return lock;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+
+    private static ByteBuffer encode(Mutation mutation) {
+        final byte[] collection = mutation.getCollection().getBytes(StandardCharsets.UTF_8);
+        final byte[] key = mutation.getKey().getBytes(StandardCharsets.UTF_8);
+        final byte[] value = mutation.getValue() == null ?
+                null : mutation.getValue().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + collection.length + key.length
+                + (value == null ? 0 : value.length));
+        buffer.putInt(0);
+        buffer.putLong(mutation.getSequence());
+        buffer.put((byte) mutation.getType().ordinal());
+        buffer.putInt(collection.length);
+        buffer.putInt(key.length);
+        buffer.putInt(value == null ? -1 : value.length);
+        buffer.put(collection);
+        buffer.put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+        final CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 4, buffer.capacity() - 4);
+        buffer.putInt(0, (int) checksum.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static Record readRecord(FileChannel channel, long position, long size)
+            throws IOException {
+        if (position + HEADER_SIZE > size) {
+            return null;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, position);
+        header.flip();
+        final int crc = header.getInt();
+        final long sequence = header.getLong();
+        final byte type = header.get();
+        final int collectionLength = header.getInt();
+        final int keyLength = header.getInt();
+        final int valueLength = header.getInt();
+        if (type < 0 || type >= Mutation.Type.values().length
+                || collectionLength <= 0 || keyLength <= 0 || valueLength < -1) {
+            return null;
+        }
+        final int bodyLength = collectionLength + keyLength + Math.max(valueLength, 0);
+        if (position + HEADER_SIZE + bodyLength > size) {
+            return null;
+        }
+        final ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        readFully(channel, body, position + HEADER_SIZE);
+        final CRC32 checksum = new CRC32();
+        checksum.update(header.array(), 4, HEADER_SIZE - 4);
+        checksum.update(body.array());
+        if ((int) checksum.getValue() != crc) {
+            return null;
+        }
+        final byte[] bytes = body.array();
+        final Mutation mutation = new Mutation(Mutation.Type.values()[type],
+                new String(bytes, 0, collectionLength, StandardCharsets.UTF_8),
+                new String(bytes, collectionLength, keyLength, StandardCharsets.UTF_8),
+                valueLength < 0 ? null : new String(bytes, collectionLength + keyLength,
+                        valueLength, StandardCharsets.UTF_8));
+        mutation.setSequence(sequence);
+        return new Record(mutation, HEADER_SIZE + bodyLength);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of write-ahead log");
+            }
+        }
+    }
+
+    private static long parseId(Path path) throws IOException {
+        final String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file " + path, e);
+        }
+    }
+
+    private static final class Record {
+
+        private final Mutation mutation;
+        private final int length;
+
+        private Record(Mutation mutation, int length) {
+            this.mutation = mutation;
+            this.length = length;
+        }
+
+    }
+
+    private static final class Append {
+
+        private final Mutation mutation;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private Append(Mutation mutation) {
+            this.mutation = mutation;
+        }
+
+    }
+
+}
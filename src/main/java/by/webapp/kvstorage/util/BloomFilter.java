@@ -0,0 +1,203 @@
+package by.webapp.kvstorage.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class BloomFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+    private final List<Layer> layers = new CopyOnWriteArrayList<>();
+    private final AtomicLong negatives = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(
+                    "Wrong input data: 'expectedInsertions' or 'falsePositiveRate' is illegal");
+        }
+        layers.add(new Layer(expectedInsertions, falsePositiveRate * (1 - TIGHTENING_RATIO)));
+    }
+
+    private BloomFilter() {
+    }
+
+    public void put(String key) {
+        final long[] hash = Hashing.murmur3(key.getBytes(StandardCharsets.UTF_8), 0);
+        Layer layer = layers.get(layers.size() - 1);
+        if (layer.insertions.get() >= layer.capacity) {
+            layer = grow(layer);
+        }
+        layer.put(hash);
+    }
+
+    public boolean mightContain(String key) {
+        final long[] hash = Hashing.murmur3(key.getBytes(StandardCharsets.UTF_8), 0);
+        for (Layer layer : layers) {
+            if (layer.mightContain(hash)) {
+                return true;
+            }
+        }
+        negatives.incrementAndGet();
+        return false;
+    }
+
+    public void recordFalsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    public long getInsertions() {
+        long insertions = 0;
+        for (Layer layer : layers) {
+            insertions += layer.insertions.get();
+        }
+        return insertions;
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        double trueNegativeRate = 1;
+        for (Layer layer : layers) {
+            trueNegativeRate *= 1 - layer.getFalsePositiveRate();
+        }
+        return 1 - trueNegativeRate;
+    }
+
+    public double getObservedFalsePositiveRate() {
+        final long falsePositive = falsePositives.get();
+        final long checked = falsePositive + negatives.get();
+        return checked == 0 ? 0 : (double) falsePositive / checked;
+    }
+
+    public Map<String, Object> getStats() {
+        long bits = 0;
+        for (Layer layer : layers) {
+            bits += layer.bitCount;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("layers", layers.size());
+        stats.put("bits", bits);
+        stats.put("insertions", getInsertions());
+        stats.put("negatives", negatives.get());
+        stats.put("falsePositives", falsePositives.get());
+        stats.put("expectedFalsePositiveRate", getExpectedFalsePositiveRate());
+        stats.put("observedFalsePositiveRate", getObservedFalsePositiveRate());
+        return stats;
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(layers.size());
+        for (Layer layer : layers) {
+            output.writeLong(layer.capacity);
+            output.writeDouble(layer.falsePositiveRate);
+            output.writeLong(layer.insertions.get());
+            output.writeInt(layer.bits.length());
+            for (int i = 0; i < layer.bits.length(); i++) {
+                output.writeLong(layer.bits.get(i));
+            }
+        }
+    }
+
+    public static BloomFilter readFrom(DataInput input) throws IOException {
+        final BloomFilter filter = new BloomFilter();
+        final int layerCount = input.readInt();
+        for (int i = 0; i < layerCount; i++) {
+            final Layer layer = new Layer(input.readLong(), input.readDouble());
+            layer.insertions.set(input.readLong());
+            final int words = input.readInt();
+            if (words != layer.bits.length()) {
+                throw new IOException("Corrupted bloom filter layer: " + words + " words");
+            }
+            for (int word = 0; word < words; word++) {
+                layer.bits.set(word, input.readLong());
+            }
+            filter.layers.add(layer);
+        }
+        if (filter.layers.isEmpty()) {
+            throw new IOException("Corrupted bloom filter: no layers");
+        }
+        return filter;
+    }
+
+    private synchronized Layer grow(Layer full) {
+        final Layer last = layers.get(layers.size() - 1);
+        if (last != full) {
+            return last;
+        }
+        final Layer next = new Layer(full.capacity * GROWTH_FACTOR,
+                full.falsePositiveRate * TIGHTENING_RATIO);
+        layers.add(next);
+        return next;
+    }
+
+    private static class Layer {
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final AtomicLong insertions = new AtomicLong();
+
+        Layer(long capacity, double falsePositiveRate) {
+            final long optimalBits = (long) (-capacity * Math.log(falsePositiveRate) /
+                    (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+            this.bitCount = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round(
+                    (double) bitCount / capacity * Math.log(2)));
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+        }
+
+        void put(long[] hash) {
+            long combined = hash[0];
+            for (int i = 0; i < hashCount; i++) {
+                setBit((combined & Long.MAX_VALUE) % bitCount);
+                combined += hash[1];
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(long[] hash) {
+            long combined = hash[0];
+            for (int i = 0; i < hashCount; i++) {
+                if (!getBit((combined & Long.MAX_VALUE) % bitCount)) {
+                    return false;
+                }
+                combined += hash[1];
+            }
+            return true;
+        }
+
+        double getFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-hashCount * (double) insertions.get() / bitCount),
+                    hashCount);
+        }
+
+        private void setBit(long index) {
+            final int word = (int) (index >>> 6);
+            final long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    return;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+
+        private boolean getBit(long index) {
+            return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package by.webapp.kvstorage.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+@Component
+public class GzipRequestFilter extends OncePerRequestFilter {
+
+    private final long maxInflatedBytes;
+
+    @Autowired
+    public GzipRequestFilter(
+            @Value("${kvstorage.replication.max-inflated-bytes:67108864}") long maxInflatedBytes) {
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            filterChain.doFilter(new GzipRequest(request, maxInflatedBytes), response);
+        } else {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private static class GzipRequest extends HttpServletRequestWrapper {
+
+        private final ServletInputStream inputStream;
+
+        GzipRequest(HttpServletRequest request, long maxInflatedBytes) throws IOException {
+            super(request);
+            final InputStream gzip = new GZIPInputStream(request.getInputStream());
+            inputStream = new ServletInputStream() {
+                private boolean finished;
+                private long inflatedBytes;
+
+                @Override
+                public int read() throws IOException {
+                    final int read = gzip.read();
+                    finished = read < 0;
+                    count(finished ? 0 : 1);
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    final int read = gzip.read(buffer, offset, length);
+                    finished = read < 0;
+                    count(Math.max(read, 0));
+                    return read;
+                }
+
+                private void count(int read) throws IOException {
+                    inflatedBytes += read;
+                    if (inflatedBytes > maxInflatedBytes) {
+                        throw new IOException("Error: gzip request body exceeds "
+                                + maxInflatedBytes + " bytes after decompression.");
+                    }
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return finished;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException(
+                            "Gzip request body can only be read with blocking I/O");
+                }
+            };
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+    }
+
+}
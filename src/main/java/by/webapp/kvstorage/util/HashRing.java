@@ -0,0 +1,58 @@
+package by.webapp.kvstorage.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class HashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+    private final long[] tokens;
+    private final int[] groups;
+
+    public HashRing(Map<Integer, Integer> groupToVirtualNodes) {
+        if (groupToVirtualNodes.isEmpty()) {
+            throw new IllegalArgumentException("Hash ring needs at least one group.");
+        }
+        final TreeMap<Long, Integer> ring = new TreeMap<>();
+        groupToVirtualNodes.forEach((group, virtualNodes) -> {
+            if (virtualNodes <= 0) {
+                throw new IllegalArgumentException(
+                        "Group " + group + " needs a positive number of virtual nodes.");
+            }
+            for (int i = 0; i < virtualNodes; i++) {
+                long token = Hashing.hash64("group" + group + "#" + i);
+                while (ring.containsKey(token)) {
+                    token++;
+                }
+                ring.put(token, group);
+            }
+        });
+        tokens = new long[ring.size()];
+        groups = new int[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : ring.entrySet()) {
+            tokens[i] = entry.getKey();
+            groups[i++] = entry.getValue();
+        }
+    }
+
+    public int getGroup(String key) {
+        return getGroup(Hashing.hash64(key));
+    }
+
+    int getGroup(long hash) {
+        final int index = Arrays.binarySearch(tokens, hash);
+        final int position = index >= 0 ? index : -index - 1;
+        return groups[position == tokens.length ? 0 : position];
+    }
+
+    long[] getTokens() {
+        return tokens;
+    }
+
+    public int size() {
+        return tokens.length;
+    }
+
+}
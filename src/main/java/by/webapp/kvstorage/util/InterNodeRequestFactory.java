@@ -0,0 +1,228 @@
+package by.webapp.kvstorage.util;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InterNodeRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final long totalTimeout;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private final ThreadLocal<HttpUriRequest> created = new ThreadLocal<>();
+    private final AtomicLong expired = new AtomicLong();
+
+    public InterNodeRequestFactory(int maxConnections, int maxConnectionsPerPeer,
+                                   int connectTimeout, int readTimeout, int poolTimeout,
+                                   long totalTimeout, long keepAlive) {
+        this(createConnectionManager(maxConnections, maxConnectionsPerPeer, keepAlive),
+                RequestConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(readTimeout)
+                        .setConnectionRequestTimeout(poolTimeout)
+                        .build(),
+                totalTimeout, keepAlive);
+    }
+
+    private InterNodeRequestFactory(PoolingHttpClientConnectionManager connectionManager,
+                                    RequestConfig requestConfig, long totalTimeout,
+                                    long keepAlive) {
+        super(HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    final long offered = DefaultConnectionKeepAliveStrategy.INSTANCE
+                            .getKeepAliveDuration(response, context);
+                    return offered > 0 ? Math.min(offered, keepAlive) : keepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+                .disableCookieManagement()
+                .build());
+        this.connectionManager = connectionManager;
+        this.totalTimeout = totalTimeout;
+        this.deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "http-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        try {
+            final ClientHttpRequest request = super.createRequest(uri, httpMethod);
+            return totalTimeout <= 0 ? request : new DeadlineRequest(request, created.get());
+        } finally {
+            created.remove();
+        }
+    }
+
+    @Override
+    protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+        final HttpUriRequest request = super.createHttpUriRequest(httpMethod, uri);
+        created.set(request);
+        return request;
+    }
+
+    public Map<String, Object> getStats() {
+        final Map<String, Object> peers = new TreeMap<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            peers.put(route.getTargetHost().toURI(), toMap(connectionManager.getStats(route)));
+        }
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", toMap(connectionManager.getTotalStats()));
+        stats.put("peers", peers);
+        stats.put("expiredRequests", expired.get());
+        return stats;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        deadlines.shutdownNow();
+        super.destroy();
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager(
+            int maxConnections, int maxConnectionsPerPeer, long keepAlive) {
+        final PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(keepAlive, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerPeer);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        return connectionManager;
+    }
+
+    private static Map<String, Object> toMap(PoolStats poolStats) {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leased", poolStats.getLeased());
+        stats.put("available", poolStats.getAvailable());
+        stats.put("pending", poolStats.getPending());
+        stats.put("max", poolStats.getMax());
+        return stats;
+    }
+
+    private static boolean isStreaming(HttpHeaders headers) {
+        return NDJSON.includes(headers.getContentType()) ||
+                headers.getAccept().stream().anyMatch(NDJSON::includes);
+    }
+
+    private final class DeadlineRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest delegate;
+        private final HttpUriRequest httpRequest;
+
+        private DeadlineRequest(ClientHttpRequest delegate, HttpUriRequest httpRequest) {
+            this.delegate = delegate;
+            this.httpRequest = httpRequest;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            if (isStreaming(getHeaders())) {
+                return delegate.execute();
+            }
+            final ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+                expired.incrementAndGet();
+                httpRequest.abort();
+            }, totalTimeout, TimeUnit.MILLISECONDS);
+            try {
+                return new DeadlineResponse(delegate.execute(), deadline);
+            } catch (IOException | RuntimeException e) {
+                deadline.cancel(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public String getMethodValue() {
+            return delegate.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+    }
+
+    private static final class DeadlineResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final ScheduledFuture<?> deadline;
+
+        private DeadlineResponse(ClientHttpResponse delegate, ScheduledFuture<?> deadline) {
+            this.delegate = delegate;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            deadline.cancel(false);
+            delegate.close();
+        }
+
+    }
+
+}
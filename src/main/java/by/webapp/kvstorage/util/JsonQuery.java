@@ -0,0 +1,187 @@
+package by.webapp.kvstorage.util;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Predicate;
+import by.webapp.kvstorage.model.Query;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class JsonQuery {
+
+    private static final Logger logger = LogManager.getLogger(JsonQuery.class);
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 10_000;
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Map<String, String> OPERATORS = new HashMap<>();
+    private static final Pattern PATH = Pattern.compile("^[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*$");
+
+    static {
+        OPERATORS.put("eq", "=");
+        OPERATORS.put("lt", "<");
+        OPERATORS.put("lte", "<=");
+        OPERATORS.put("gt", ">");
+        OPERATORS.put("gte", ">=");
+    }
+
+    public static List<String> parsePaths(String indexedPaths) {
+        if (indexedPaths == null || indexedPaths.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> paths = Arrays.asList(indexedPaths.split(",", -1));
+        for (String path : paths) {
+            if (!PATH.matcher(path).matches()) {
+                throw badRequest("Error: indexed path [" + path +
+                        "] must be a dotted list of letters, digits and underscores.");
+            }
+        }
+        return paths;
+    }
+
+    public static void validate(Query query, Collection collection) {
+        final List<String> paths = parsePaths(collection.getIndexedPaths());
+        if (query.getPredicates() == null) {
+            query.setPredicates(new ArrayList<>());
+        }
+        for (Predicate predicate : query.getPredicates()) {
+            if (!paths.contains(predicate.getPath())) {
+                throw badRequest("Error: path [" + predicate.getPath() +
+                        "] is not indexed in collection " + collection.getName() + '.');
+            }
+            if (predicate.getOp() == null || !OPERATORS.containsKey(predicate.getOp())) {
+                throw badRequest("Error: unknown operator [" + predicate.getOp() +
+                        "], expected one of " + OPERATORS.keySet() + '.');
+            }
+            final Object value = predicate.getValue();
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+                throw badRequest("Error: predicate value must be a string, number or boolean.");
+            }
+            if (value instanceof Boolean && !"eq".equals(predicate.getOp())) {
+                throw badRequest("Error: boolean values support only the eq operator.");
+            }
+        }
+        if (query.getLimit() == null) {
+            query.setLimit(DEFAULT_LIMIT);
+        } else if (query.getLimit() <= 0 || query.getLimit() > MAX_LIMIT) {
+            throw badRequest("Error: query limit must be between 1 and " + MAX_LIMIT + '.');
+        }
+    }
+
+    public static String getSqlOperator(String op) {
+        return OPERATORS.get(op);
+    }
+
+    public static String[] splitPath(String path) {
+        return path.split("\\.");
+    }
+
+    public static String toPathArray(String path) {
+        if (path == null || !PATH.matcher(path).matches()) {
+            throw badRequest("Error: path [" + path +
+                    "] must be a dotted list of letters, digits and underscores.");
+        }
+        return '{' + String.join(",", splitPath(path)) + '}';
+    }
+
+    public static String toJson(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw badRequest("Error: predicate value can't be serialized.");
+        }
+    }
+
+    public static List<Document> filter(List<Document> documents, Query query) {
+        final List<Document> matched = new ArrayList<>();
+        final String afterKey = query.getAfterKey();
+        for (Document document : documents) {
+            if ((afterKey == null || document.getKey().compareTo(afterKey) > 0)
+                    && matches(document.getValue(), query.getPredicates())) {
+                matched.add(document);
+            }
+        }
+        return page(matched, query);
+    }
+
+    public static List<Document> page(List<Document> documents, Query query) {
+        final List<Document> sorted = new ArrayList<>(documents);
+        sorted.sort(Comparator.comparing(Document::getKey));
+        return sorted.size() <= query.getLimit() ?
+                sorted : new ArrayList<>(sorted.subList(0, query.getLimit()));
+    }
+
+    public static boolean matches(String value, List<Predicate> predicates) {
+        if (predicates.isEmpty()) {
+            return true;
+        }
+        final JsonNode root;
+        try {
+            root = mapper.readTree(value);
+        } catch (IOException e) {
+            logger.warn("Stored value is not a valid json: " + e.getMessage());
+            return false;
+        }
+        for (Predicate predicate : predicates) {
+            JsonNode node = root;
+            for (String field : splitPath(predicate.getPath())) {
+                node = node.path(field);
+            }
+            final Integer comparison = compare(node, predicate.getValue());
+            if (comparison == null || !satisfies(predicate.getOp(), comparison)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Integer compare(JsonNode node, Object value) {
+        if (node.isNumber() && value instanceof Number) {
+            return node.decimalValue().compareTo(new BigDecimal(value.toString()));
+        }
+        if (node.isTextual() && value instanceof String) {
+            return node.textValue().compareTo((String) value);
+        }
+        if (node.isBoolean() && value instanceof Boolean) {
+            return Boolean.compare(node.booleanValue(), (Boolean) value);
+        }
+        return null;
+    }
+
+    private static boolean satisfies(String op, int comparison) {
+        switch (op) {
+            case "eq":
+                return comparison == 0;
+            case "lt":
+                return comparison < 0;
+            case "lte":
+                return comparison <= 0;
+            case "gt":
+                return comparison > 0;
+            case "gte":
+                return comparison >= 0;
+            default:
+                return false;
+        }
+    }
+
+    private static BadRequestException badRequest(String message) {
+        logger.error(message);
+        return new BadRequestException(message);
+    }
+
+}
@@ -0,0 +1,113 @@
+package by.webapp.kvstorage.util;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.model.Document;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public final class KeyRange {
+
+    private static final Logger logger = LogManager.getLogger(KeyRange.class);
+    private final String from;
+    private final String to;
+
+    private KeyRange(String from, String to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public static KeyRange of(String prefix, String from, String to) {
+        if (prefix != null && (from != null || to != null)) {
+            final String message = "Error: prefix can't be combined with from or to.";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+        if (prefix != null) {
+            return new KeyRange(prefix, prefixEnd(prefix));
+        }
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            final String message = "Error: range start [" + from +
+                    "] is after its end [" + to + "].";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+        return new KeyRange(from, to);
+    }
+
+    public static String prefixEnd(String prefix) {
+        final StringBuilder end = new StringBuilder(prefix);
+        while (end.length() > 0) {
+            final char last = end.charAt(end.length() - 1);
+            if (last != Character.MAX_VALUE) {
+                end.setCharAt(end.length() - 1, (char) (last + 1));
+                return end.toString();
+            }
+            end.setLength(end.length() - 1);
+        }
+        return null;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public boolean isAfterEnd(String key) {
+        return to != null && key.compareTo(to) >= 0;
+    }
+
+    public boolean contains(String key) {
+        return (from == null || key.compareTo(from) >= 0) && !isAfterEnd(key);
+    }
+
+    public static List<Document> merge(List<List<Document>> sources, int limit) {
+        final PriorityQueue<Head> heads = new PriorityQueue<>(
+                Math.max(1, sources.size()), Comparator.comparing(head -> head.document.getKey()));
+        for (List<Document> source : sources) {
+            final Iterator<Document> iterator = source.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+        final List<Document> merged = new ArrayList<>(Math.min(limit, 1024));
+        String lastKey = null;
+        while (merged.size() < limit && !heads.isEmpty()) {
+            final Head head = heads.poll();
+            if (!head.document.getKey().equals(lastKey)) {
+                merged.add(head.document);
+                lastKey = head.document.getKey();
+            }
+            if (head.iterator.hasNext()) {
+                heads.add(new Head(head.iterator.next(), head.iterator));
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + from + ", " + to + ')';
+    }
+
+    private static class Head {
+
+        private final Document document;
+        private final Iterator<Document> iterator;
+
+        Head(Document document, Iterator<Document> iterator) {
+            this.document = document;
+            this.iterator = iterator;
+        }
+
+    }
+
+}
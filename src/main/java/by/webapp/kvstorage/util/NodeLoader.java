@@ -3,44 +3,33 @@ package by.webapp.kvstorage.util;
 import by.webapp.kvstorage.model.Node;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
+import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 public class NodeLoader {
 
     private static final Logger logger = LogManager.getLogger(NodeLoader.class);
     public static Map<Integer, List<Node>> groupToNodesMap = new HashMap<>();
+    public static Topology topology;
     private static Map<String, Node> nodeMap = new HashMap<>();
     public static Node thisNode;
 
     static {
-        try {
-            JSONObject nodesGroup = (JSONObject) new JSONParser()
-                    .parse(new InputStreamReader(NodeLoader.class
-                            .getResourceAsStream("/nodesGroup.json")));
-            JSONArray groups = (JSONArray) nodesGroup.get("groups");
-            for (Object groupItem : groups) {
-                JSONObject item = (JSONObject) groupItem;
-                Integer group = Integer.valueOf((String) item.get("id"));
-                JSONArray nodesList = (JSONArray) item.get("list");
-                List<Node> nodes = new ArrayList<>();
-                for (Object nodeObject : nodesList) {
-                    JSONObject nodeItem = (JSONObject) nodeObject;
-                    String name = (String) nodeItem.get("name");
-                    String url = (String) nodeItem.get("url");
-                    Node node = new Node(name, url, group);
-                    nodes.add(node);
-                    nodeMap.put(name, node);
-                }
-                groupToNodesMap.put(group, nodes);
-            }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                NodeLoader.class.getResourceAsStream("/nodesGroup.json"),
+                StandardCharsets.UTF_8))) {
+            topology = Topology.parse(reader.lines().collect(Collectors.joining("\n")));
+            groupToNodesMap = topology.getGroups();
+            groupToNodesMap.values().forEach(nodes ->
+                    nodes.forEach(node -> nodeMap.put(node.getName(), node)));
         } catch (Exception e) {
             e.printStackTrace();
             final String message = "Error: NodeLoader failed.";
@@ -63,6 +52,11 @@ public class NodeLoader {
             System.setProperty("spring.datasource.url", (String) property.get("url"));
             System.setProperty("spring.datasource.username", (String) property.get("username"));
             System.setProperty("spring.datasource.password", (String) property.get("password"));
+            if (property.get("storage") != null) {
+                System.setProperty("kvstorage.storage", (String) property.get("storage"));
+            }
+            System.setProperty("kvstorage.storage.dir", property.get("dataDir") != null ?
+                    (String) property.get("dataDir") : "data/" + nodeName);
         } catch (Exception e) {
             e.printStackTrace();
             final String message = "Error: NodeLoader failed in setNode().";
@@ -0,0 +1,43 @@
+package by.webapp.kvstorage.util;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public final class PageCursor {
+
+    private static final Logger logger = LogManager.getLogger(PageCursor.class);
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private PageCursor() {
+    }
+
+    public static String encode(String lastKey) {
+        if (lastKey == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(lastKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            final String message = "Error: invalid page cursor [" + cursor + "].";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+    }
+
+    public static int getOffset(int page, int pageSize) {
+        return page <= 1 ? 0 : (int) Math.min(Integer.MAX_VALUE, (long) (page - 1) * pageSize);
+    }
+
+}
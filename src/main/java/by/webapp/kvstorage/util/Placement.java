@@ -0,0 +1,133 @@
+package by.webapp.kvstorage.util;
+
+import by.webapp.kvstorage.model.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public final class Placement {
+
+    private final Topology current;
+    private final Topology target;
+    private final Set<String> moves;
+    private final Set<String> doneMoves;
+    private final Map<Integer, List<Node>> groups;
+
+    public Placement(Topology current) {
+        this(current, null, Collections.emptySet(), Collections.emptySet());
+    }
+
+    private Placement(Topology current, Topology target, Set<String> moves,
+                      Set<String> doneMoves) {
+        this.current = current;
+        this.target = target;
+        this.moves = moves;
+        this.doneMoves = doneMoves;
+        final Map<Integer, List<Node>> union = new LinkedHashMap<>(current.getGroups());
+        if (target != null) {
+            union.putAll(target.getGroups());
+        }
+        this.groups = Collections.unmodifiableMap(union);
+    }
+
+    public Placement startMoving(Topology target) {
+        final Set<String> moves = new LinkedHashSet<>();
+        final TreeSet<Long> tokens = new TreeSet<>();
+        for (long token : current.getRing().getTokens()) {
+            tokens.add(token);
+        }
+        for (long token : target.getRing().getTokens()) {
+            tokens.add(token);
+        }
+        for (long token : tokens) {
+            final int from = current.getRing().getGroup(token);
+            final int to = target.getRing().getGroup(token);
+            if (from != to) {
+                moves.add(moveId(from, to));
+            }
+        }
+        return new Placement(current, target, Collections.unmodifiableSet(moves),
+                Collections.emptySet());
+    }
+
+    public Placement completeMove(int from, int to) {
+        final String move = moveId(from, to);
+        if (target == null || !moves.contains(move)) {
+            return this;
+        }
+        final Set<String> done = new HashSet<>(doneMoves);
+        done.add(move);
+        return done.containsAll(moves) ? new Placement(target) :
+                new Placement(current, target, moves, Collections.unmodifiableSet(done));
+    }
+
+    public boolean isMoving() {
+        return target != null;
+    }
+
+    public int getOwner(String id) {
+        final int from = current.getRing().getGroup(id);
+        if (target == null) {
+            return from;
+        }
+        final int to = target.getRing().getGroup(id);
+        return from == to || doneMoves.contains(moveId(from, to)) ? to : from;
+    }
+
+    public Integer getPendingOwner(String id) {
+        if (target == null) {
+            return null;
+        }
+        final int from = current.getRing().getGroup(id);
+        final int to = target.getRing().getGroup(id);
+        return from == to || doneMoves.contains(moveId(from, to)) ? null : to;
+    }
+
+    public Integer getPendingOwner(String id, int from) {
+        final Integer to = getPendingOwner(id);
+        return to != null && current.getRing().getGroup(id) == from ? to : null;
+    }
+
+    public Topology getCurrent() {
+        return current;
+    }
+
+    public Topology getTarget() {
+        return target;
+    }
+
+    public Map<Integer, List<Node>> getGroups() {
+        return groups;
+    }
+
+    public List<Node> getNodes() {
+        final List<Node> nodes = new ArrayList<>();
+        groups.values().forEach(nodes::addAll);
+        return nodes;
+    }
+
+    public List<int[]> getMoves() {
+        final List<int[]> result = new ArrayList<>();
+        for (String move : moves) {
+            final String[] groupIds = move.split("->");
+            result.add(new int[]{Integer.parseInt(groupIds[0]), Integer.parseInt(groupIds[1])});
+        }
+        return result;
+    }
+
+    public boolean isDone(int from, int to) {
+        return doneMoves.contains(moveId(from, to));
+    }
+
+    private static String moveId(int from, int to) {
+        return from + "->" + to;
+    }
+
+}
@@ -1,18 +1,33 @@
 package by.webapp.kvstorage.util;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestTemplateConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(30000);
-        return new RestTemplate(factory);
+    public InterNodeRequestFactory interNodeRequestFactory(
+            @Value("${kvstorage.http.max-connections:256}") int maxConnections,
+            @Value("${kvstorage.http.max-connections-per-peer:32}") int maxConnectionsPerPeer,
+            @Value("${kvstorage.http.connect-timeout-ms:2000}") int connectTimeout,
+            @Value("${kvstorage.http.read-timeout-ms:10000}") int readTimeout,
+            @Value("${kvstorage.http.pool-timeout-ms:1000}") int poolTimeout,
+            @Value("${kvstorage.http.total-timeout-ms:30000}") long totalTimeout,
+            @Value("${kvstorage.http.keep-alive-ms:15000}") long keepAlive) {
+        return new InterNodeRequestFactory(maxConnections, maxConnectionsPerPeer,
+                connectTimeout, readTimeout, poolTimeout, totalTimeout, keepAlive);
     }
 
-}
\ No newline at end of file
+    @Bean
+    public RestTemplate restTemplate(
+            InterNodeRequestFactory interNodeRequestFactory,
+            @Value("${kvstorage.replication.compression-min-bytes:1024}") int compressionMinBytes) {
+        RestTemplate restTemplate = new RestTemplate(interNodeRequestFactory);
+        restTemplate.getInterceptors().add(new GzipRequestInterceptor(compressionMinBytes));
+        return restTemplate;
+    }
+
+}
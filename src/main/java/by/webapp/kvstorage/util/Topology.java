@@ -0,0 +1,81 @@
+package by.webapp.kvstorage.util;
+
+import by.webapp.kvstorage.model.Node;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class Topology {
+
+    private final String layout;
+    private final Map<Integer, List<Node>> groups;
+    private final HashRing ring;
+
+    private Topology(String layout, Map<Integer, List<Node>> groups, HashRing ring) {
+        this.layout = layout;
+        this.groups = groups;
+        this.ring = ring;
+    }
+
+    public static Topology parse(String layout) throws ParseException {
+        JSONObject nodesGroup = (JSONObject) new JSONParser().parse(layout);
+        JSONArray groupList = (JSONArray) nodesGroup.get("groups");
+        Map<Integer, List<Node>> groups = new LinkedHashMap<>();
+        Map<Integer, Integer> groupToVirtualNodes = new HashMap<>();
+        for (Object groupItem : groupList) {
+            JSONObject item = (JSONObject) groupItem;
+            Integer group = Integer.valueOf((String) item.get("id"));
+            JSONArray nodesList = (JSONArray) item.get("list");
+            List<Node> nodes = new ArrayList<>();
+            for (Object nodeObject : nodesList) {
+                JSONObject nodeItem = (JSONObject) nodeObject;
+                String name = (String) nodeItem.get("name");
+                String url = (String) nodeItem.get("url");
+                String rpcAddress = (String) nodeItem.get("rpc");
+                nodes.add(new Node(name, url, group, rpcAddress));
+            }
+            if (nodes.isEmpty()) {
+                throw new IllegalArgumentException("Group " + group + " has no nodes.");
+            }
+            groups.put(group, Collections.unmodifiableList(nodes));
+            Object virtualNodes = item.get("vnodes");
+            groupToVirtualNodes.put(group, virtualNodes == null ?
+                    HashRing.DEFAULT_VIRTUAL_NODES :
+                    Integer.valueOf(String.valueOf(virtualNodes)));
+        }
+        return new Topology(layout, Collections.unmodifiableMap(groups),
+                new HashRing(groupToVirtualNodes));
+    }
+
+    public String getLayout() {
+        return layout;
+    }
+
+    public Map<Integer, List<Node>> getGroups() {
+        return groups;
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    public Node findNode(String name) {
+        for (List<Node> nodes : groups.values()) {
+            for (Node node : nodes) {
+                if (node.getName().equals(name)) {
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+}
@@ -2,21 +2,18 @@ package by.webapp.kvstorage.util;
 
 import by.webapp.kvstorage.exception.BadRequestException;
 import by.webapp.kvstorage.model.Collection;
-import by.webapp.kvstorage.model.Document;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.everit.json.schema.Schema;
 import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.owasp.esapi.ESAPI;
 import org.owasp.esapi.errors.ValidationException;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Validator {
 
@@ -24,6 +21,7 @@ public class Validator {
 
     private final static int MAX_LENGTH = 250;
     private static final int VALUE_FACTOR = 10;
+    private static final Map<String, CompiledSchema> schemas = new ConcurrentHashMap<>();
 
     public static String getValidInput(String input) {
         String resultInput;
@@ -54,69 +52,53 @@ public class Validator {
         return resultValue;
     }
 
-    public static List<Collection> getCollectionSubList(
-            List<Collection> list, int offSet, int size) {
-        List<Collection> result = Collections.emptyList();
-        int length = list.size();
-        if (offSet < 0 || size < 0 || length == 0) {
-            return result;
-        }
-        offSet = offSet == 0 ? 1 : offSet;
-        list.sort(Comparator.comparing(Collection::getName));
-        int start = (offSet - 1) * size;
-        if (start >= length) {
-            return result;
-        }
-        if (offSet * size > length) {
-            result = list.subList(start, length);
-        } else {
-            result = list.subList(start, start + size);
-        }
-        return result;
-    }
-
-    public static List<Document> getDocumentSubList(
-            List<Document> list, int offSet, int size) {
-        List<Document> result = Collections.emptyList();
-        int length = list.size();
-        if (offSet < 0 || size < 0 || length == 0) {
-            return result;
-        }
-        offSet = offSet == 0 ? 1 : offSet;
-        list.sort(Comparator.comparing(Document::getKey));
-        int start = (offSet - 1) * size;
-        if (start >= length) {
-            return result;
-        }
-        if (offSet * size > length) {
-            result = list.subList(start, length);
-        } else {
-            result = list.subList(start, start + size);
-        }
-        return result;
-    }
-
-    public static boolean isInvalidToJsonSchema(String value, String schema) {
+    public static boolean isInvalidToJsonSchema(String value, Collection collection) {
+        final Schema schema = getSchema(collection);
         try {
-            InputStream schemaInputStream = new ByteArrayInputStream(
-                    schema.getBytes(StandardCharsets.UTF_8));
-            InputStream objectInputStream =
-                    new ByteArrayInputStream(value.replaceAll("\\s", "")
-                            .getBytes(StandardCharsets.UTF_8));
-            JSONObject jsonSchema = new JSONObject(
-                    new JSONTokener(schemaInputStream));
-            JSONObject jsonObject = new JSONObject(
-                    new JSONTokener(objectInputStream));
-            SchemaLoader.load(jsonSchema).validate(jsonObject);
+            schema.validate(new JSONObject(value));
         } catch (org.everit.json.schema.ValidationException e) {
-            System.err.println("Validation exception: " + e.getMessage());
+            logger.error("Validation exception: " + e.getMessage());
             e.getCausingExceptions().stream()
                     .map(org.everit.json.schema.ValidationException::getMessage)
-                    .forEach(System.out::println);
+                    .forEach(logger::error);
+            throw new BadRequestException(
+                    "Validation error: [" + value + "]," + e.getMessage());
+        } catch (JSONException e) {
             throw new BadRequestException(
                     "Validation error: [" + value + "]," + e.getMessage());
         }
         return false;
     }
 
+    public static void evictSchema(String collectionName) {
+        schemas.remove(collectionName);
+    }
+
+    public static void clearSchemas() {
+        schemas.clear();
+    }
+
+    private static Schema getSchema(Collection collection) {
+        final String source = collection.getJsonSchema();
+        CompiledSchema compiled = schemas.get(collection.getName());
+        if (compiled == null || !compiled.source.equals(source)) {
+            compiled = new CompiledSchema(source,
+                    SchemaLoader.load(new JSONObject(new JSONTokener(source))));
+            schemas.put(collection.getName(), compiled);
+        }
+        return compiled.schema;
+    }
+
+    private static class CompiledSchema {
+
+        private final String source;
+        private final Schema schema;
+
+        CompiledSchema(String source, Schema schema) {
+            this.source = source;
+            this.schema = schema;
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package by.webapp.kvstorage.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class ValueCompressor {
+
+    public static final int MAX_DICTIONARY_BYTES = 32 * 1024;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 9;
+    private static final int MIN_SEGMENT_LENGTH = 3;
+    private static final int MAX_SEGMENT_LENGTH = 64;
+    private static final int WHOLE_SAMPLES = 4;
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private volatile Integer threshold;
+    private volatile int dictionaryId;
+
+    public Integer getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Integer threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    public boolean hasDictionary() {
+        return dictionaryId != 0;
+    }
+
+    public void addDictionary(int id, byte[] dictionary) {
+        dictionaries.put(id, dictionary);
+        if (id > dictionaryId) {
+            dictionaryId = id;
+        }
+    }
+
+    public boolean shouldCompress(String value) {
+        final Integer limit = threshold;
+        return limit != null && value.length() >= limit;
+    }
+
+    public byte[] compress(String value) {
+        final byte[] input = value.getBytes(StandardCharsets.UTF_8);
+        final int id = dictionaryId;
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            if (id != 0) {
+                deflater.setDictionary(dictionaries.get(id));
+            }
+            deflater.setInput(input);
+            deflater.finish();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 3 + 64);
+            output.write(ByteBuffer.allocate(HEADER_SIZE).put(FORMAT_VERSION).putInt(id)
+                    .putInt(input.length).array(), 0, HEADER_SIZE);
+            final byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public String decompress(byte[] compressed) {
+        if (compressed.length < HEADER_SIZE || compressed[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown compressed value format");
+        }
+        final ByteBuffer header = ByteBuffer.wrap(compressed, 1, HEADER_SIZE - 1);
+        final int id = header.getInt();
+        final byte[] output = new byte[header.getInt()];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE);
+            int length = inflater.inflate(output);
+            if (inflater.needsDictionary()) {
+                final byte[] dictionary = dictionaries.get(id);
+                if (dictionary == null) {
+                    throw new IllegalStateException("Missing compression dictionary " + id);
+                }
+                inflater.setDictionary(dictionary);
+                length += inflater.inflate(output, length, output.length - length);
+            }
+            if (length != output.length || !inflater.finished()) {
+                throw new IllegalArgumentException("Corrupted compressed value");
+            }
+            return new String(output, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted compressed value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public static byte[] trainDictionary(List<String> samples, int maxBytes) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (String sample : samples) {
+            int start = 0;
+            for (int i = 0; i <= sample.length(); i++) {
+                if (i == sample.length() || isDelimiter(sample.charAt(i))) {
+                    final int end = Math.min(i + 1, sample.length());
+                    if (end - start >= MIN_SEGMENT_LENGTH && end - start <= MAX_SEGMENT_LENGTH) {
+                        counts.merge(sample.substring(start, end), 1, Integer::sum);
+                    }
+                    start = end;
+                }
+            }
+        }
+        final List<Map.Entry<String, Integer>> segments = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                segments.add(entry);
+            }
+        }
+        segments.sort(Comparator.comparingLong((Map.Entry<String, Integer> entry) ->
+                (long) entry.getValue() * entry.getKey().length()).reversed());
+        final List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        for (int i = 0; i < Math.min(WHOLE_SAMPLES, samples.size()); i++) {
+            final byte[] bytes = samples.get(i).getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length <= maxBytes / 4) {
+                chosen.add(bytes);
+                size += bytes.length;
+            }
+        }
+        for (Map.Entry<String, Integer> segment : segments) {
+            final byte[] bytes = segment.getKey().getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length > maxBytes) {
+                continue;
+            }
+            chosen.add(bytes);
+            size += bytes.length;
+        }
+        // Deflate reaches the end of its dictionary with the shortest distances.
+        final ByteBuffer dictionary = ByteBuffer.allocate(size);
+        for (int i = chosen.size() - 1; i >= 0; i--) {
+            dictionary.put(chosen.get(i));
+        }
+        return dictionary.array();
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ',' || c == '{' || c == '}' || c == '[' || c == ']' || c == ':';
+    }
+
+}
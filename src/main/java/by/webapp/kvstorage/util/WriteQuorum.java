@@ -0,0 +1,50 @@
+package by.webapp.kvstorage.util;
+
+import java.util.concurrent.TimeUnit;
+
+public final class WriteQuorum {
+
+    private final int required;
+    private final int replicas;
+    private int acknowledged;
+    private int failed;
+
+    public WriteQuorum(int required, int replicas) {
+        if (required < 0 || required > replicas) {
+            throw new IllegalArgumentException("Quorum of " + required +
+                    " can't be reached with " + replicas + " replicas.");
+        }
+        this.required = required;
+        this.replicas = replicas;
+    }
+
+    public static int getRequiredReplicas(Integer writeQuorum, int replicas) {
+        if (writeQuorum == null) {
+            return replicas;
+        }
+        return Math.max(0, Math.min(writeQuorum, replicas + 1) - 1);
+    }
+
+    public synchronized void acknowledge() {
+        acknowledged++;
+        notifyAll();
+    }
+
+    public synchronized void fail() {
+        failed++;
+        notifyAll();
+    }
+
+    public synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (acknowledged < required && replicas - failed >= required) {
+            final long leftNanos = deadline - System.nanoTime();
+            if (leftNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, leftNanos);
+        }
+        return acknowledged >= required;
+    }
+
+}
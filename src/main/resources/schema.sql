@@ -1 +1,9 @@
-create table if not exists collections (name varchar(255) not null primary key, algorithm varchar(255) not null, cache_limit integer not null, json_schema text not null);
\ No newline at end of file
+create table if not exists collections (name varchar(255) not null primary key, algorithm varchar(255) not null, cache_limit integer not null, cache_bytes bigint, compression_threshold integer, storage varchar(16), indexed_paths text, write_quorum integer, replication varchar(16), json_schema text not null);
+alter table collections add column if not exists cache_bytes bigint;
+alter table collections add column if not exists compression_threshold integer;
+alter table collections add column if not exists storage varchar(16);
+alter table collections add column if not exists indexed_paths text;
+alter table collections add column if not exists write_quorum integer;
+alter table collections add column if not exists replication varchar(16);
+create index if not exists collections_name_c_idx on collections (name collate "C");
+create table if not exists dictionaries (collection_name varchar(255) not null, id integer not null, data bytea not null, primary key (collection_name, id));
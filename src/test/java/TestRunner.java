@@ -11,7 +11,32 @@ public class TestRunner {
                 CollectionServiceMockTest.class,
                 DocumentServiceMockTest.class,
                 CollectionServiceTest.class,
-                DocumentServiceTest.class);
+                DocumentServiceTest.class,
+                CacheRegistryTest.class,
+                JsonSchemaCacheTest.class,
+                DocumentReadPathTest.class,
+                ConcurrentLRUCacheTest.class,
+                WTinyLFUCacheTest.class,
+                WeightedCacheTest.class,
+                OffHeapCacheTest.class,
+                BloomFilterTest.class,
+                PageCursorTest.class,
+                LogStructuredStoreTest.class,
+                LsmStoreTest.class,
+                WriteAheadLogTest.class,
+                ReplicationServiceTest.class,
+                ValueCompressorTest.class,
+                JsonQueryTest.class,
+                QueryPlanTest.class,
+                KeyRangeTest.class,
+                CopyLoaderTest.class,
+                HashRingTest.class,
+                PlacementTest.class,
+                WriteQuorumTest.class,
+                BatchWriteTest.class,
+                NdjsonTransferTest.class,
+                InterNodeRequestFactoryTest.class,
+                RpcTest.class);
         for (Failure failure : result.getFailures()) {
             System.out.println(failure.toString());
         }
@@ -0,0 +1,211 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.controller.DocumentController;
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.FailedException;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.Node;
+import by.webapp.kvstorage.rpc.RpcClient;
+import by.webapp.kvstorage.service.DistributedService;
+import by.webapp.kvstorage.service.DocumentService;
+import by.webapp.kvstorage.service.ReplicationService;
+import by.webapp.kvstorage.util.NodeLoader;
+import by.webapp.kvstorage.util.Placement;
+import by.webapp.kvstorage.util.Topology;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BatchWriteTest {
+
+    private static final String LAYOUT = "{\"groups\":[{\"id\":\"0\",\"list\":[" +
+            "{\"name\":\"node0\",\"url\":\"http://localhost:10000\"}," +
+            "{\"name\":\"node1\",\"url\":\"http://localhost:10001\"}," +
+            "{\"name\":\"node2\",\"url\":\"http://localhost:10002\"}]}," +
+            "{\"id\":\"1\",\"list\":[{\"name\":\"node3\",\"url\":\"http://localhost:10003\"}]}]}";
+    private Node thisNode;
+    private RestTemplate restTemplate;
+    private DistributedService distributedService;
+    private DocumentService documentService;
+    private DistributedService distributedServiceMock;
+    private ReplicationService replicationService;
+    private DocumentController documentController;
+
+    @Before
+    public void setUp() throws Exception {
+        thisNode = NodeLoader.thisNode;
+        Topology topology = Topology.parse(LAYOUT);
+        NodeLoader.thisNode = topology.findNode("node0");
+        restTemplate = mock(RestTemplate.class);
+        distributedService = new DistributedService(restTemplate, mock(RpcClient.class), 2,
+                1000, 1);
+        distributedService.setPlacement(new Placement(topology));
+        documentService = mock(DocumentService.class);
+        distributedServiceMock = mock(DistributedService.class);
+        replicationService = mock(ReplicationService.class);
+        documentController = new DocumentController(documentService, distributedServiceMock,
+                replicationService, new ObjectMapper());
+    }
+
+    @After
+    public void tearDown() {
+        distributedService.close();
+        NodeLoader.thisNode = thisNode;
+    }
+
+    @Test
+    public void testSendBatchReachesEveryReplica() {
+        distributedService.sendBatch(documents("cat1", "cat2"), "cats");
+        verify(restTemplate).postForEntity(eq("http://localhost:10001/collections/cats/batch"),
+                any(HttpEntity.class), eq(Object.class));
+        verify(restTemplate).postForEntity(eq("http://localhost:10002/collections/cats/batch"),
+                any(HttpEntity.class), eq(Object.class));
+        verifyNoMoreInteractions(restTemplate);
+    }
+
+    @Test
+    public void testSendBatchCompensatesOnAnyReplicaError() {
+        when(restTemplate.postForEntity(eq("http://localhost:10002/collections/cats/batch"),
+                any(HttpEntity.class), eq(Object.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+        try {
+            distributedService.sendBatch(documents("cat1", "cat2"), "cats");
+            fail("A replica error must fail the batch");
+        } catch (ResourceAccessException e) {
+            assertTrue(e.getMessage().contains("sendBatch"));
+        }
+        for (String url : Arrays.asList("http://localhost:10001/collections/cats/batch/delete",
+                "http://localhost:10002/collections/cats/batch/delete")) {
+            verify(restTemplate).postForEntity(eq(url), argThat((HttpEntity<?> entity) ->
+                    Arrays.asList("cat1", "cat2").equals(entity.getBody())), eq(Object.class));
+        }
+    }
+
+    @Test
+    public void testBatchDeleteReachesEveryReplica() {
+        distributedService.deleteBatchFromReplicas(Arrays.asList("cat1", "cat2"), "cats");
+        for (String url : Arrays.asList("http://localhost:10001/collections/cats/batch/delete",
+                "http://localhost:10002/collections/cats/batch/delete")) {
+            verify(restTemplate).postForEntity(eq(url), argThat((HttpEntity<?> entity) ->
+                    Arrays.asList("cat1", "cat2").equals(entity.getBody())), eq(Object.class));
+        }
+        verifyNoMoreInteractions(restTemplate);
+    }
+
+    @Test
+    public void testReplicaBatchIsOnlyStored() {
+        List<Document> documents = documents("cat1", "cat2");
+        when(documentService.createAll(documents)).thenReturn(2);
+        assertEquals(2, documentController.createAll("cats", documents, true, false));
+        verify(documentService).createAll(documents);
+        verifyNoMoreInteractions(distributedServiceMock);
+    }
+
+    @Test
+    public void testBatchIsSplitByOwner() {
+        List<Document> local = documents("cat1");
+        List<Document> remote = documents("cat2", "cat3");
+        Map<Integer, List<Document>> groups = new HashMap<>();
+        groups.put(0, local);
+        groups.put(1, remote);
+        when(distributedServiceMock.groupByOwner(eq("cats"), anyList())).thenReturn(groups);
+        when(documentService.createAll(local)).thenReturn(1);
+        when(distributedServiceMock.redirectBatch(remote, "cats")).thenReturn(2);
+        assertEquals(3, documentController.createAll("cats", documents("cat1", "cat2", "cat3"),
+                false, false));
+        verify(distributedServiceMock).sendBatch(local, "cats");
+        verify(distributedServiceMock).redirectBatch(remote, "cats");
+        verify(documentService, never()).deleteAll(anyList());
+    }
+
+    @Test
+    public void testFailedReplicationRollsBackLocalBatch() {
+        List<Document> local = documents("cat1", "cat2");
+        when(distributedServiceMock.groupByOwner(eq("cats"), anyList()))
+                .thenReturn(new HashMap<>(Collections.singletonMap(0, local)));
+        doThrow(new ResourceAccessException("replica is down"))
+                .when(distributedServiceMock).sendBatch(local, "cats");
+        try {
+            documentController.createAll("cats", local, false, false);
+            fail("A failed replication must fail the batch");
+        } catch (FailedException e) {
+            verify(documentService).deleteAll(Arrays.asList("cat1", "cat2"));
+            verify(distributedServiceMock, never()).deleteBatchFromReplicas(anyList(), any());
+        }
+    }
+
+    @Test
+    public void testFailedMirrorRollsBackReplicas() {
+        List<Document> local = documents("cat1", "cat2");
+        when(distributedServiceMock.groupByOwner(eq("cats"), anyList()))
+                .thenReturn(new HashMap<>(Collections.singletonMap(0, local)));
+        doThrow(new ResourceAccessException("pending group is down"))
+                .when(distributedServiceMock).mirrorBatch(local, "cats");
+        try {
+            documentController.createAll("cats", local, false, false);
+            fail("A failed mirror must fail the batch");
+        } catch (FailedException e) {
+            verify(documentService).deleteAll(Arrays.asList("cat1", "cat2"));
+            verify(distributedServiceMock)
+                    .deleteBatchFromReplicas(Arrays.asList("cat1", "cat2"), "cats");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedMirrorLogsDeletesForAsyncReplicas() throws Exception {
+        List<Document> local = documents("cat1", "cat2");
+        when(documentService.isAsyncReplication()).thenReturn(true);
+        when(distributedServiceMock.groupByOwner(eq("cats"), anyList()))
+                .thenReturn(new HashMap<>(Collections.singletonMap(0, local)));
+        doThrow(new ResourceAccessException("pending group is down"))
+                .when(distributedServiceMock).mirrorBatch(local, "cats");
+        try {
+            documentController.createAll("cats", local, false, false);
+            fail("A failed mirror must fail the batch");
+        } catch (FailedException e) {
+            ArgumentCaptor<List<Mutation>> logged = ArgumentCaptor.forClass(List.class);
+            verify(replicationService, times(2)).appendAll(logged.capture());
+            List<Mutation> restore = logged.getAllValues().get(1);
+            assertEquals(2, restore.size());
+            for (int i = 0; i < restore.size(); i++) {
+                assertTrue(restore.get(i).isDelete());
+                assertEquals(local.get(i).getKey(), restore.get(i).getKey());
+            }
+            verify(distributedServiceMock, never()).deleteBatchFromReplicas(anyList(), any());
+        }
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testBatchDeleteIsForReplicasOnly() {
+        documentController.deleteAll("cats", Collections.singletonList("cat1"), false);
+    }
+
+    private static List<Document> documents(String... keys) {
+        Document[] documents = new Document[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            documents[i] = new Document();
+            documents[i].setKey(keys[i]);
+            documents[i].setValue("{\"name\":\"" + keys[i] + "\"}");
+        }
+        return Arrays.asList(documents);
+    }
+
+}
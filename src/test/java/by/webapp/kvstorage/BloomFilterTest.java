@@ -0,0 +1,60 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.util.BloomFilter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("key" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("key" + i));
+        }
+        assertEquals(10_000, filter.getInsertions());
+    }
+
+    @Test
+    public void testSerialization() throws IOException {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.put("key" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        BloomFilter restored = BloomFilter.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(filter.getInsertions(), restored.getInsertions());
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(restored.mightContain("key" + i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysBounded() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 20_000; i++) {
+            filter.put("key" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 2_000);
+        assertTrue(filter.getExpectedFalsePositiveRate() < 0.02);
+    }
+
+}
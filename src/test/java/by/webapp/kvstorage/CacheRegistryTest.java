@@ -0,0 +1,82 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.cache.CacheRegistry;
+import by.webapp.kvstorage.cache.ICache;
+import by.webapp.kvstorage.model.Collection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CacheRegistryTest {
+
+    private CacheRegistry<String> registry;
+
+    @Before
+    public void setUp() {
+        registry = new CacheRegistry<>();
+    }
+
+    @Test
+    public void testCacheSurvivesAcrossRequests() {
+        ICache<String, String> cache = registry.getCache(collection("cats", "LRU", 10));
+        cache.put("cat1", "Moorka");
+        ICache<String, String> again = registry.getCache(collection("Cats", "lru", 10));
+        assertSame(cache, again);
+        assertEquals("Moorka", again.get("cat1"));
+        assertNotSame(cache, registry.getCache(collection("dogs", "LRU", 10)));
+    }
+
+    @Test
+    public void testChangedSettingsRebuildTheCache() {
+        ICache<String, String> cache = registry.getCache(collection("cats", "LRU", 10));
+        cache.put("cat1", "Moorka");
+        ICache<String, String> resized = registry.getCache(collection("cats", "LRU", 20));
+        assertNotSame(cache, resized);
+        assertNull(resized.get("cat1"));
+        assertEquals(0, cache.size());
+        ICache<String, String> replaced = registry.getCache(collection("cats", "LFU", 20));
+        assertNotSame(resized, replaced);
+        assertSame(replaced, registry.getCache(collection("cats", "LFU", 20)));
+    }
+
+    @Test
+    public void testEvictAndClearDropCaches() {
+        ICache<String, String> cats = registry.getCache(collection("cats", "LRU", 10));
+        ICache<String, String> dogs = registry.getCache(collection("dogs", "LRU", 10));
+        registry.evict("CATS");
+        assertNotSame(cats, registry.getCache(collection("cats", "LRU", 10)));
+        assertSame(dogs, registry.getCache(collection("dogs", "LRU", 10)));
+        registry.clear();
+        assertNotSame(dogs, registry.getCache(collection("dogs", "LRU", 10)));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneCache() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ICache<String, String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(() -> registry.getCache(collection("cats", "LRU", 10))));
+        }
+        ICache<String, String> cache = futures.get(0).get();
+        for (Future<ICache<String, String>> future : futures) {
+            assertSame(cache, future.get());
+        }
+        executor.shutdown();
+    }
+
+    private static Collection collection(String name, String algorithm, int cacheLimit) {
+        Collection collection = new Collection();
+        collection.setName(name);
+        collection.setAlgorithm(algorithm);
+        collection.setCacheLimit(cacheLimit);
+        return collection;
+    }
+
+}
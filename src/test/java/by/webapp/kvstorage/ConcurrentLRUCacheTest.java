@@ -0,0 +1,72 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.cache.ConcurrentLRUCache;
+import by.webapp.kvstorage.cache.ICache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLRUCacheTest {
+
+    private ICache<String, String> cache;
+
+    @Before
+    public void setUp() {
+        cache = new ConcurrentLRUCache<>(64, 4);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        cache.put("cat1", "Moorka");
+        cache.put("cat2", "Barsik");
+        assertEquals("Moorka", cache.get("cat1"));
+        assertEquals("Barsik", cache.get("cat2"));
+        assertNull(cache.get("cat3"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        cache.put("cat1", "Moorka");
+        assertEquals("Moorka", cache.remove("cat1"));
+        assertFalse(cache.contains("cat1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCapacityIsBounded() {
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        assertTrue(cache.size() <= 64);
+        assertTrue(cache.contains("key999"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int offset = t * 1000;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    String key = "key" + (offset + i);
+                    cache.put(key, key);
+                    cache.get("key" + (i % 32));
+                    if (i % 3 == 0) {
+                        cache.remove(key);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(cache.size() <= 64);
+    }
+
+}
@@ -0,0 +1,26 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.repository.CopyLoader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CopyLoaderTest {
+
+    @Test
+    public void testPlainValueRow() {
+        StringBuilder rows = new StringBuilder();
+        CopyLoader.appendRow(rows, "cat_1", "{\"name\":\"Tom, the \"\"cat\"\"\"}", null);
+        assertEquals("\"cat_1\",\"{\"\"name\"\":\"\"Tom, the \"\"\"\"cat\"\"\"\"\"\"}\",\n",
+                rows.toString());
+    }
+
+    @Test
+    public void testCompressedValueRow() {
+        StringBuilder rows = new StringBuilder();
+        CopyLoader.appendRow(rows, "cat_2", null, new byte[]{0x01, (byte) 0xAB, 0x7F});
+        CopyLoader.appendRow(rows, "cat_3", "", null);
+        assertEquals("\"cat_2\",,\\x01ab7f\n\"cat_3\",\"\",\n", rows.toString());
+    }
+
+}
@@ -0,0 +1,108 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.exception.ResourceNotFoundException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.service.CollectionService;
+import by.webapp.kvstorage.service.DocumentService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.Invocation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mockingDetails;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+public class DocumentReadPathTest {
+
+    @Autowired
+    CollectionService collectionService;
+    @Autowired
+    DocumentService documentService;
+    @SpyBean
+    JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        collectionService.clean();
+        Collection collection = new Collection();
+        collection.setName("readCats");
+        collection.setAlgorithm("LRU");
+        collection.setCacheLimit(1);
+        collection.setJsonSchema("{\"type\": \"object\"}");
+        collectionService.create(collection);
+        documentService.setDocumentName(collection.getName());
+        documentService.create(document("cat1", "{\"name\":\"Moorka\"}"));
+        documentService.create(document("cat2", "{\"name\":\"Barsik\"}"));
+    }
+
+    @After
+    public void tearDown() {
+        collectionService.delete("readCats");
+    }
+
+    @Test
+    public void testCacheHitSkipsDatabase() {
+        clearInvocations(jdbcTemplate);
+        assertEquals("{\"name\":\"Barsik\"}", documentService.get("cat2").getValue());
+        assertTrue(statements().isEmpty());
+    }
+
+    @Test
+    public void testCacheMissRunsAtMostOneSelect() {
+        clearInvocations(jdbcTemplate);
+        assertEquals("{\"name\":\"Moorka\"}", documentService.get("cat1").getValue());
+        List<String> statements = statements();
+        assertTrue(statements.toString(), statements.size() <= 1);
+        assertTrue(statements.stream().allMatch(statement ->
+                statement.startsWith("SELECT") && !statement.contains("COUNT")));
+        clearInvocations(jdbcTemplate);
+        assertEquals("{\"name\":\"Moorka\"}", documentService.get("cat1").getValue());
+        assertTrue(statements().isEmpty());
+    }
+
+    @Test
+    public void testMissingDocumentRunsAtMostOneSelect() {
+        clearInvocations(jdbcTemplate);
+        try {
+            documentService.get("cat3");
+            fail("A missing document must be reported as not found");
+        } catch (ResourceNotFoundException e) {
+            List<String> statements = statements();
+            assertTrue(statements.toString(), statements.size() <= 1);
+            assertTrue(statements.stream().noneMatch(statement -> statement.contains("COUNT")));
+        }
+    }
+
+    private List<String> statements() {
+        return mockingDetails(jdbcTemplate).getInvocations().stream()
+                .map(Invocation::getArguments)
+                .flatMap(Arrays::stream)
+                .filter(argument -> argument instanceof String)
+                .map(argument -> ((String) argument).toUpperCase(Locale.ROOT))
+                .filter(statement -> statement.contains("READCATS"))
+                .collect(Collectors.toList());
+    }
+
+    private static Document document(String key, String value) {
+        Document document = new Document();
+        document.setKey(key);
+        document.setValue(value);
+        return document;
+    }
+
+}
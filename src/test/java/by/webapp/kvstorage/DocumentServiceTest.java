@@ -5,6 +5,7 @@ import by.webapp.kvstorage.model.Collection;
 import by.webapp.kvstorage.model.Document;
 import by.webapp.kvstorage.service.CollectionService;
 import by.webapp.kvstorage.service.DocumentService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,6 +43,11 @@ public class DocumentServiceTest {
         documentService.create(document);
     }
 
+    @After
+    public void tearDown() {
+        collectionService.delete("cats");
+    }
+
     @Test
     public void testCreate() {
         Document document = new Document();
@@ -50,6 +56,26 @@ public class DocumentServiceTest {
         assertNotNull(documentService.create(document));
     }
 
+    @Test(expected = BadRequestException.class)
+    public void testCreateExisting() {
+        Document document = new Document();
+        document.setKey("cat1");
+        document.setValue("{\n\"name\":\"Tom\",\n\"age\":15\n}");
+        documentService.create(document);
+    }
+
+    @Test
+    public void testUpsert() {
+        Document document = new Document();
+        document.setKey("cat3");
+        document.setValue("{\n\"name\":\"Tom\",\n\"age\":15\n}");
+        assertNull(documentService.upsert(document));
+        document.setValue("{\n\"name\":\"Tom\",\n\"age\":16\n}");
+        assertTrue(documentService.upsert(document).getValue().contains("15"));
+        assertTrue(documentService.get("cat3").getValue().contains("16"));
+        assertEquals(1, documentService.delete("cat3"));
+    }
+
     @Test
     public void testGet() {
         assertTrue((documentService.get("cat2")).getValue().contains("Barsik"));
@@ -0,0 +1,82 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.util.HashRing;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    public void testPlacementIsStable() {
+        HashRing first = new HashRing(groups(3));
+        HashRing second = new HashRing(groups(3));
+        assertEquals(3 * HashRing.DEFAULT_VIRTUAL_NODES, first.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(first.getGroup(key(i)), second.getGroup(key(i)));
+        }
+    }
+
+    @Test
+    public void testKeysAreBalanced() {
+        HashRing ring = new HashRing(groups(4));
+        int[] counts = new int[4];
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.getGroup(key(i))]++;
+        }
+        for (int count : counts) {
+            assertTrue("unbalanced group: " + count,
+                    Math.abs(count - KEYS / 4) < KEYS / 4 * 0.2);
+        }
+    }
+
+    @Test
+    public void testAddingGroupMovesItsShareOnly() {
+        HashRing before = new HashRing(groups(3));
+        HashRing after = new HashRing(groups(4));
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            int group = after.getGroup(key(i));
+            if (group != before.getGroup(key(i))) {
+                assertEquals(3, group);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, Math.abs(moved - KEYS / 4) < KEYS / 4 * 0.2);
+    }
+
+    @Test
+    public void testVirtualNodesWeightGroups() {
+        Map<Integer, Integer> weighted = groups(2);
+        weighted.put(1, 3 * HashRing.DEFAULT_VIRTUAL_NODES);
+        HashRing ring = new HashRing(weighted);
+        int heavy = 0;
+        for (int i = 0; i < KEYS; i++) {
+            heavy += ring.getGroup(key(i));
+        }
+        assertTrue("heavy group got " + heavy, heavy > KEYS * 0.65 && heavy < KEYS * 0.85);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyRing() {
+        new HashRing(new HashMap<>());
+    }
+
+    private static Map<Integer, Integer> groups(int count) {
+        Map<Integer, Integer> groups = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            groups.put(i, HashRing.DEFAULT_VIRTUAL_NODES);
+        }
+        return groups;
+    }
+
+    private static String key(int i) {
+        return "cats/cat_" + i;
+    }
+
+}
@@ -0,0 +1,115 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.util.InterNodeRequestFactory;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InterNodeRequestFactoryTest {
+
+    private static final long TOTAL_TIMEOUT = 300;
+    private static final long SLOW_RESPONSE = 1000;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+    private HttpServer server;
+    private InterNodeRequestFactory requestFactory;
+    private RestTemplate restTemplate;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            final boolean slow = exchange.getRequestURI().getPath().startsWith("/slow");
+            if (slow) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(SLOW_RESPONSE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final byte[] body = "{\"name\":\"Moorka\"}\n".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE,
+                    slow ? "application/x-ndjson" : MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+        requestFactory = new InterNodeRequestFactory(8, 2, 1000, 10_000, 1000,
+                TOTAL_TIMEOUT, 30_000);
+        restTemplate = new RestTemplate(requestFactory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        requestFactory.destroy();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConnectionIsReusedAcrossRequests() {
+        for (int i = 0; i < 20; i++) {
+            assertEquals("{\"name\":\"Moorka\"}\n",
+                    restTemplate.getForObject(url + "/collections/cats/cat" + i, String.class));
+        }
+        assertEquals(1, clientPorts.size());
+        Map<String, Object> total = (Map<String, Object>) requestFactory.getStats().get("total");
+        assertEquals(0, total.get("leased"));
+        assertEquals(1, total.get("available"));
+    }
+
+    @Test
+    public void testSlowPeerIsAbortedAtTotalDeadline() {
+        final long started = System.nanoTime();
+        try {
+            restTemplate.getForObject(url + "/slow/cats/cat1", String.class);
+            fail("A response slower than the total timeout must be aborted");
+        } catch (ResourceAccessException e) {
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            assertTrue(elapsed + " ms", elapsed < SLOW_RESPONSE);
+        }
+        assertEquals(1L, requestFactory.getStats().get("expiredRequests"));
+        assertEquals("{\"name\":\"Moorka\"}\n",
+                restTemplate.getForObject(url + "/collections/cats/cat1", String.class));
+    }
+
+    @Test
+    public void testStreamingRequestHasNoTotalDeadline() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(
+                MediaType.parseMediaType("application/x-ndjson")));
+        assertEquals("{\"name\":\"Moorka\"}\n", restTemplate.exchange(url + "/slow/cats/export",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class).getBody());
+        assertEquals(0L, requestFactory.getStats().get("expiredRequests"));
+    }
+
+}
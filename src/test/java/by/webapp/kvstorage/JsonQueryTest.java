@@ -0,0 +1,114 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Predicate;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.util.JsonQuery;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class JsonQueryTest {
+
+    @Test
+    public void testEqualityAndRangePredicates() {
+        Query query = query(new Predicate("owner.city", "eq", "Minsk"),
+                new Predicate("age", "gte", 3), new Predicate("age", "lt", 7.5));
+        JsonQuery.validate(query, collection());
+        List<Document> result = JsonQuery.filter(cats(), query);
+        assertEquals(Arrays.asList("cat03", "cat05", "cat07"), keys(result));
+    }
+
+    @Test
+    public void testTypesAreNotMixed() {
+        List<Document> documents = new ArrayList<>(cats());
+        documents.add(document("dog", "{\"age\":\"5\",\"owner\":{\"city\":\"Minsk\"}}"));
+        Query query = query(new Predicate("age", "gt", 8));
+        JsonQuery.validate(query, collection());
+        assertEquals(Arrays.asList("cat09", "cat10", "cat11"),
+                keys(JsonQuery.filter(documents, query)));
+        query = query(new Predicate("age", "eq", "5"));
+        JsonQuery.validate(query, collection());
+        assertEquals(Collections.singletonList("dog"), keys(JsonQuery.filter(documents, query)));
+    }
+
+    @Test
+    public void testPagingAndMerge() {
+        Query query = query(new Predicate("owner.city", "eq", "Minsk"));
+        query.setAfterKey("cat03");
+        query.setLimit(2);
+        JsonQuery.validate(query, collection());
+        assertEquals(Arrays.asList("cat05", "cat07"), keys(JsonQuery.filter(cats(), query)));
+        List<Document> merged = new ArrayList<>(Arrays.asList(
+                document("b", "{}"), document("d", "{}"), document("a", "{}")));
+        assertEquals(Arrays.asList("a", "b"), keys(JsonQuery.page(merged, query)));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testPathMustBeIndexed() {
+        JsonQuery.validate(query(new Predicate("breed", "eq", "Siberian")), collection());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testUnknownOperator() {
+        JsonQuery.validate(query(new Predicate("age", "like", "1%")), collection());
+    }
+
+    @Test
+    public void testIndexedPathsAreValidated() {
+        assertEquals(Arrays.asList("age", "owner.city"), JsonQuery.parsePaths("age,owner.city"));
+        assertEquals("{owner,city}", JsonQuery.toPathArray("owner.city"));
+        for (String paths : Arrays.asList("age}'); DROP TABLE cats; --", "owner..city", "age,",
+                "owner.city ", "age\u0300")) {
+            try {
+                JsonQuery.parsePaths(paths);
+                fail("Path " + paths + " must be rejected");
+            } catch (BadRequestException e) {
+                assertTrue(e.getMessage().contains("indexed path"));
+            }
+        }
+    }
+
+    private static Collection collection() {
+        Collection collection = new Collection();
+        collection.setName("cats");
+        collection.setIndexedPaths("age,owner.city");
+        return collection;
+    }
+
+    private static Query query(Predicate... predicates) {
+        Query query = new Query();
+        query.setPredicates(new ArrayList<>(Arrays.asList(predicates)));
+        return query;
+    }
+
+    private static List<Document> cats() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 11; i >= 0; i--) {
+            documents.add(document(String.format("cat%02d", i), "{\"age\":" + i +
+                    ",\"breed\":\"Siberian\",\"owner\":{\"city\":\"" +
+                    (i % 2 == 1 ? "Minsk" : "Brest") + "\"}}"));
+        }
+        return documents;
+    }
+
+    private static Document document(String key, String value) {
+        Document document = new Document();
+        document.setKey(key);
+        document.setValue(value);
+        return document;
+    }
+
+    private static List<String> keys(List<Document> documents) {
+        return documents.stream().map(Document::getKey).collect(Collectors.toList());
+    }
+
+}
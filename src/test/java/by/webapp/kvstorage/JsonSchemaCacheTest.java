@@ -0,0 +1,84 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.util.Validator;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JsonSchemaCacheTest {
+
+    private static final String AGE_SCHEMA = "{\"type\": \"object\", \"properties\": " +
+            "{\"age\": {\"type\": \"integer\"}}, \"required\": [\"age\"]}";
+    private static final String NAME_SCHEMA = "{\"type\": \"object\", \"properties\": " +
+            "{\"name\": {\"type\": \"string\"}}, \"required\": [\"name\"]}";
+
+    @After
+    public void tearDown() {
+        Validator.clearSchemas();
+    }
+
+    @Test
+    public void testValueIsCheckedAgainstSchema() {
+        Collection cats = collection("cats", AGE_SCHEMA);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(Validator.isInvalidToJsonSchema("{\"age\": " + i + "}", cats));
+        }
+        assertInvalid("{\"age\": \"three\"}", cats);
+        assertInvalid("{\"name\": \"Moorka\"}", cats);
+    }
+
+    @Test
+    public void testStringValuesKeepTheirSpaces() {
+        Collection cats = collection("cats", NAME_SCHEMA);
+        assertFalse(Validator.isInvalidToJsonSchema(
+                "{ \"name\" : \"Moorka the cat\" }", cats));
+    }
+
+    @Test
+    public void testMalformedValueIsBadRequest() {
+        assertInvalid("{\"age\": ", collection("cats", AGE_SCHEMA));
+    }
+
+    @Test
+    public void testChangedSchemaIsRecompiled() {
+        assertFalse(Validator.isInvalidToJsonSchema("{\"age\": 3}",
+                collection("cats", AGE_SCHEMA)));
+        Collection updated = collection("cats", NAME_SCHEMA);
+        assertInvalid("{\"age\": 3}", updated);
+        assertFalse(Validator.isInvalidToJsonSchema("{\"name\": \"Moorka\"}", updated));
+    }
+
+    @Test
+    public void testSchemasAreKeptPerCollection() {
+        Collection cats = collection("cats", AGE_SCHEMA);
+        Collection dogs = collection("dogs", NAME_SCHEMA);
+        assertFalse(Validator.isInvalidToJsonSchema("{\"age\": 3}", cats));
+        assertFalse(Validator.isInvalidToJsonSchema("{\"name\": \"Rex\"}", dogs));
+        assertInvalid("{\"name\": \"Rex\"}", cats);
+        Validator.evictSchema("cats");
+        assertFalse(Validator.isInvalidToJsonSchema("{\"age\": 4}", cats));
+        assertInvalid("{\"age\": 4}", dogs);
+    }
+
+    private static void assertInvalid(String value, Collection collection) {
+        try {
+            Validator.isInvalidToJsonSchema(value, collection);
+            fail("Value " + value + " must not pass the schema of " + collection.getName());
+        } catch (BadRequestException e) {
+            assertTrue(e.getMessage().startsWith("Validation error:"));
+        }
+    }
+
+    private static Collection collection(String name, String jsonSchema) {
+        Collection collection = new Collection();
+        collection.setName(name);
+        collection.setAlgorithm("LRU");
+        collection.setCacheLimit(10);
+        collection.setJsonSchema(jsonSchema);
+        return collection;
+    }
+
+}
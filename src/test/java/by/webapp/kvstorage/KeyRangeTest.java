@@ -0,0 +1,81 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.util.KeyRange;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class KeyRangeTest {
+
+    @Test
+    public void testPrefixRange() {
+        KeyRange range = KeyRange.of("tenant_42_", null, null);
+        assertEquals("tenant_42_", range.getFrom());
+        assertEquals("tenant_42`", range.getTo());
+        assertTrue(range.contains("tenant_42_"));
+        assertTrue(range.contains("tenant_42_order_7"));
+        assertFalse(range.contains("tenant_42"));
+        assertFalse(range.contains("tenant_420_order_1"));
+        assertFalse(range.contains("tenant_43_order_1"));
+        assertNull(KeyRange.prefixEnd("" + Character.MAX_VALUE));
+        assertEquals("b", KeyRange.prefixEnd("a" + Character.MAX_VALUE));
+    }
+
+    @Test
+    public void testBoundedRange() {
+        KeyRange range = KeyRange.of(null, "b", "d");
+        assertFalse(range.contains("a"));
+        assertTrue(range.contains("b"));
+        assertTrue(range.contains("c_1"));
+        assertFalse(range.contains("d"));
+        assertTrue(range.isAfterEnd("d"));
+        assertTrue(KeyRange.of(null, null, "b").contains("a"));
+        assertTrue(KeyRange.of(null, "b", null).contains("z"));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testPrefixWithBounds() {
+        KeyRange.of("a", "b", null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testReversedBounds() {
+        KeyRange.of(null, "d", "b");
+    }
+
+    @Test
+    public void testMergeKeepsKeyOrder() {
+        List<List<Document>> sources = new ArrayList<>();
+        sources.add(documents("a", "d", "g"));
+        sources.add(Collections.emptyList());
+        sources.add(documents("b", "c", "h", "i"));
+        sources.add(documents("e", "f"));
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), keys(KeyRange.merge(sources, 5)));
+        assertEquals(9, KeyRange.merge(sources, 100).size());
+        assertTrue(KeyRange.merge(Collections.emptyList(), 10).isEmpty());
+    }
+
+    private static List<Document> documents(String... keys) {
+        List<Document> documents = new ArrayList<>();
+        for (String key : keys) {
+            Document document = new Document();
+            document.setKey(key);
+            document.setValue("{}");
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    private static List<String> keys(List<Document> documents) {
+        return documents.stream().map(Document::getKey).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,160 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.storage.LogStructuredStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class LogStructuredStoreTest {
+
+    private static final long SEGMENT_BYTES = 4096;
+    private Path directory;
+    private LogStructuredStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("log-store");
+        store = new LogStructuredStore(directory, SEGMENT_BYTES, false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.destroy();
+    }
+
+    @Test
+    public void testPutGetRemove() throws IOException {
+        assertTrue(store.putIfAbsent("cat1", "{\"name\":\"Moorka\"}"));
+        assertFalse(store.putIfAbsent("cat1", "{\"name\":\"Tom\"}"));
+        assertEquals("{\"name\":\"Moorka\"}", store.get("cat1"));
+        assertEquals("{\"name\":\"Moorka\"}", store.put("cat1", "{\"name\":\"Tom\"}"));
+        assertTrue(store.replace("cat1", "{\"name\":\"Barsik\"}"));
+        assertFalse(store.replace("cat2", "{}"));
+        assertEquals("{\"name\":\"Barsik\"}", store.get("cat1"));
+        assertTrue(store.remove("cat1"));
+        assertFalse(store.remove("cat1"));
+        assertNull(store.get("cat1"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testRecoveryAfterReopen() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            store.put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 500; i += 2) {
+            store.remove("key" + i);
+        }
+        store.put("key1", "updated");
+        store.close();
+        store = new LogStructuredStore(directory, SEGMENT_BYTES, false);
+        assertEquals(250, store.size());
+        assertNull(store.get("key0"));
+        assertEquals("updated", store.get("key1"));
+        assertEquals("value499", store.get("key499"));
+    }
+
+    @Test
+    public void testCompactionKeepsLatestValues() throws IOException {
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                store.put("key" + i, "value" + i + "-" + round);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            store.remove("key" + i);
+        }
+        long before = (Long) store.getStats().get("totalBytes");
+        assertTrue(store.compact());
+        long after = (Long) store.getStats().get("totalBytes");
+        assertTrue(before + " -> " + after, after < before / 2);
+        assertEquals("value99-9", store.get("key99"));
+        assertNull(store.get("key0"));
+        store.close();
+        assertTrue(listFiles().stream().anyMatch(name -> name.endsWith(".hint")));
+        store = new LogStructuredStore(directory, SEGMENT_BYTES, false);
+        assertEquals(50, store.size());
+        assertNull(store.get("key10"));
+        assertEquals("value50-9", store.get("key50"));
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        store.put("first", "value");
+        store.put("second", "value");
+        store.close();
+        List<String> dataFiles = listFiles().stream()
+                .filter(name -> name.endsWith(".data")).sorted().collect(Collectors.toList());
+        Path last = directory.resolve(dataFiles.get(dataFiles.size() - 1));
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        store = new LogStructuredStore(directory, SEGMENT_BYTES, false);
+        assertEquals("value", store.get("first"));
+        assertNull(store.get("second"));
+        store.put("second", "again");
+        assertEquals("again", store.get("second"));
+    }
+
+    @Test
+    public void testPutAllIfAbsent() throws IOException {
+        store.put("existing", "old");
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("existing", "new");
+        entries.put("fresh", "value");
+        assertEquals(1, store.putAllIfAbsent(entries));
+        assertEquals("old", store.get("existing"));
+        assertEquals(2, store.removeAll(entries.keySet()));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testScanPagesInKeyOrder() throws IOException {
+        for (int i = 999; i >= 0; i--) {
+            store.put(String.format("key%04d", i), "value" + i);
+        }
+        store.remove("key0500");
+        List<Map.Entry<String, String>> first = store.scan(null, 10, 5);
+        assertEquals(5, first.size());
+        assertEquals("key0010", first.get(0).getKey());
+        assertEquals("key0014", first.get(4).getKey());
+        int pages = 0;
+        int scanned = 0;
+        String afterKey = null;
+        List<Map.Entry<String, String>> page;
+        do {
+            page = store.scan(afterKey, 0, 100);
+            for (Map.Entry<String, String> entry : page) {
+                assertTrue(afterKey == null || entry.getKey().compareTo(afterKey) > 0);
+                afterKey = entry.getKey();
+            }
+            scanned += page.size();
+            pages++;
+        } while (page.size() == 100);
+        assertEquals(999, scanned);
+        assertEquals(10, pages);
+        assertEquals("key0999", afterKey);
+    }
+
+    private List<String> listFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString())
+                    .sorted(Comparator.naturalOrder()).collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.storage.lsm.LsmStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class LsmStoreTest {
+
+    private static final long MEMTABLE_BYTES = 16 * 1024;
+    private static final long TABLE_BYTES = 8 * 1024;
+    private Path directory;
+    private ScheduledExecutorService executor;
+    private LsmStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("lsm-store");
+        executor = Executors.newSingleThreadScheduledExecutor();
+        store = new LsmStore(directory, MEMTABLE_BYTES, TABLE_BYTES, false, executor);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.destroy();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPutGetRemove() throws IOException {
+        assertTrue(store.putIfAbsent("cat1", "{\"name\":\"Moorka\"}"));
+        assertFalse(store.putIfAbsent("cat1", "{\"name\":\"Tom\"}"));
+        assertEquals("{\"name\":\"Moorka\"}", store.get("cat1"));
+        assertEquals("{\"name\":\"Moorka\"}", store.put("cat1", "{\"name\":\"Tom\"}"));
+        assertTrue(store.replace("cat1", "{\"name\":\"Barsik\"}"));
+        assertFalse(store.replace("cat2", "{}"));
+        assertTrue(store.remove("cat1"));
+        assertFalse(store.remove("cat1"));
+        assertNull(store.get("cat1"));
+    }
+
+    @Test
+    public void testFlushAndCompactionKeepLatestValues() throws IOException {
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 2000; i++) {
+                store.put(key(i), "value" + i + "-" + round);
+            }
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            store.remove(key(i));
+        }
+        store.compact();
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i % 3 == 0 ? null : "value" + i + "-2", store.get(key(i)));
+        }
+        assertTrue((Long) store.getStats().get("compactions") > 0);
+    }
+
+    @Test
+    public void testScanIsOrdered() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 1999; i >= 0; i--) {
+            entries.put(key(i), "value" + i);
+        }
+        assertEquals(2000, store.putAllIfAbsent(entries));
+        store.compact();
+        store.removeAll(Arrays.asList(key(1), key(2)));
+        List<Map.Entry<String, String>> page = store.scan(null, 0, 3);
+        assertEquals(key(0), page.get(0).getKey());
+        assertEquals(key(3), page.get(1).getKey());
+        assertEquals(key(4), page.get(2).getKey());
+        page = store.scan(key(1500), 2, 10);
+        assertEquals(key(1503), page.get(0).getKey());
+        assertEquals(10, page.size());
+        List<String> keys = new ArrayList<>();
+        String cursor = null;
+        do {
+            page = store.scan(cursor, 0, 333);
+            for (Map.Entry<String, String> entry : page) {
+                keys.add(entry.getKey());
+            }
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1).getKey();
+        } while (!page.isEmpty());
+        assertEquals(1998, keys.size());
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void testRecoveryAfterReopen() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            store.put(key(i), "value" + i);
+        }
+        store.compact();
+        store.put("unflushed", "value");
+        store.remove(key(10));
+        store.close();
+        store = new LsmStore(directory, MEMTABLE_BYTES, TABLE_BYTES, false, executor);
+        assertEquals("value", store.get("unflushed"));
+        assertNull(store.get(key(10)));
+        assertEquals("value999", store.get(key(999)));
+        assertEquals(1000, store.scan(null, 0, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompactedTablesAreDeletedWhenUnused() throws IOException {
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 2000; i++) {
+                store.put(key(i), "value" + i + "-" + round);
+            }
+        }
+        store.compact();
+        long liveTables = 0;
+        for (Map<String, Object> level
+                : (List<Map<String, Object>>) store.getStats().get("levels")) {
+            liveTables += (Integer) level.get("tables");
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertEquals(liveTables,
+                    paths.filter(path -> path.toString().endsWith(".sst")).count());
+        }
+        assertEquals("value1999-2", store.get(key(1999)));
+    }
+
+    private static String key(int i) {
+        return String.format("key%05d", i);
+    }
+
+}
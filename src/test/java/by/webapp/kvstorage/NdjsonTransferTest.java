@@ -0,0 +1,178 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.controller.DocumentController;
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Node;
+import by.webapp.kvstorage.repository.CollectionRepository;
+import by.webapp.kvstorage.repository.DocumentRepository;
+import by.webapp.kvstorage.service.DistributedService;
+import by.webapp.kvstorage.service.DocumentService;
+import by.webapp.kvstorage.service.ReplicationService;
+import by.webapp.kvstorage.util.NodeLoader;
+import by.webapp.kvstorage.util.Topology;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class NdjsonTransferTest {
+
+    private static final String LAYOUT = "{\"groups\":[{\"id\":\"0\",\"list\":[" +
+            "{\"name\":\"node0\",\"url\":\"http://localhost:10000\"}]}]}";
+    private Node thisNode;
+    private DocumentService documentService;
+    private DocumentController documentController;
+
+    @Before
+    public void setUp() throws Exception {
+        thisNode = NodeLoader.thisNode;
+        NodeLoader.thisNode = Topology.parse(LAYOUT).findNode("node0");
+        documentService = mock(DocumentService.class);
+        DistributedService distributedService = mock(DistributedService.class);
+        when(distributedService.groupByOwner(eq("cats"), anyList())).thenAnswer(invocation ->
+                new HashMap<>(Collections.singletonMap(0, invocation.getArgument(1))));
+        when(documentService.createAll(anyList())).thenAnswer(invocation ->
+                ((List<?>) invocation.getArgument(0)).size());
+        documentController = new DocumentController(documentService, distributedService,
+                mock(ReplicationService.class), new ObjectMapper());
+    }
+
+    @After
+    public void tearDown() {
+        NodeLoader.thisNode = thisNode;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExportedDocumentsImportBack() throws IOException {
+        List<Document> documents = documents("cat1", "cat2", "cat3");
+        doAnswer(invocation -> {
+            documents.forEach((Consumer<Document>) invocation.getArgument(0));
+            return null;
+        }).when(documentService).export(any());
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        documentController.exportAll("cats", true).getBody().writeTo(exported);
+        String ndjson = new String(exported.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(3, ndjson.split("\n").length);
+        assertTrue(ndjson.endsWith("\n"));
+        assertEquals(3, documentController.importAll("cats",
+                new ByteArrayInputStream(exported.toByteArray())));
+        ArgumentCaptor<List<Document>> imported = ArgumentCaptor.forClass(List.class);
+        verify(documentService).createAll(imported.capture());
+        assertEquals(documents, imported.getValue());
+    }
+
+    @Test
+    public void testInvalidLineStopsImport() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            ndjson.append("{\"key\":\"cat").append(i).append("\",\"value\":\"{}\"}\n");
+        }
+        ndjson.append("{\"key\":\"cat1000\",\"value\":\n");
+        try {
+            documentController.importAll("cats", new ByteArrayInputStream(
+                    ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+            fail("An invalid line must fail the import");
+        } catch (BadRequestException e) {
+            assertTrue(e.getMessage().contains("after 1000 imported documents"));
+        }
+        verify(documentService, times(1)).createAll(anyList());
+    }
+
+    @Test
+    public void testInvalidFirstLineImportsNothing() throws IOException {
+        try {
+            documentController.importAll("cats", new ByteArrayInputStream(
+                    "not json\n".getBytes(StandardCharsets.UTF_8)));
+            fail("An invalid line must fail the import");
+        } catch (BadRequestException e) {
+            assertTrue(e.getMessage().contains("after 0 imported documents"));
+        }
+        verify(documentService, never()).createAll(anyList());
+    }
+
+    @Test
+    public void testForEachDocumentStreamsRows() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement("SELECT key, value, value_z FROM cats",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(statement);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getString("key")).thenReturn("cat1", "cat2");
+        when(resultSet.getString("value")).thenReturn("{\"age\":1}", "{\"age\":2}");
+        doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            assertSame(statement, creator.createPreparedStatement(connection));
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class),
+                any(RowCallbackHandler.class));
+        DocumentRepository repository = repository(jdbcTemplate);
+        List<Document> exported = new ArrayList<>();
+        repository.forEachDocument(exported::add);
+        verify(statement).setFetchSize(intThat(size -> size > 0));
+        assertEquals(2, exported.size());
+        assertEquals("cat1", exported.get(0).getKey());
+        assertEquals("{\"age\":1}", exported.get(0).getValue());
+        assertEquals("cat2", exported.get(1).getKey());
+        assertEquals("{\"age\":2}", exported.get(1).getValue());
+    }
+
+    @Test
+    public void testForEachDocumentKeepsConsumerFailure() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UncheckedIOException failure = new UncheckedIOException(new IOException("closed"));
+        doThrow(failure).when(jdbcTemplate).query(any(PreparedStatementCreator.class),
+                any(RowCallbackHandler.class));
+        try {
+            repository(jdbcTemplate).forEachDocument(document -> { });
+            fail("A failed export stream must be reported as is");
+        } catch (UncheckedIOException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    private static DocumentRepository repository(JdbcTemplate jdbcTemplate) {
+        DocumentRepository repository = new DocumentRepository(jdbcTemplate,
+                mock(CollectionRepository.class), "postgres");
+        repository.setDocumentName("cats");
+        return repository;
+    }
+
+    private static List<Document> documents(String... keys) {
+        Document[] documents = new Document[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            documents[i] = new Document();
+            documents[i].setKey(keys[i]);
+            documents[i].setValue("{\"name\":\"" + keys[i] + "\"}");
+        }
+        return Arrays.asList(documents);
+    }
+
+}
@@ -0,0 +1,113 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.cache.CacheBudget;
+import by.webapp.kvstorage.cache.OffHeapCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffHeapCacheTest {
+
+    private OffHeapCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new OffHeapCache(1000, 2 << 20);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        cache.put("cat1", "{\"name\":\"\u041c\u0443\u0440\u043a\u0430\",\"age\":3}");
+        assertEquals("{\"name\":\"\u041c\u0443\u0440\u043a\u0430\",\"age\":3}", cache.get("cat1"));
+        assertEquals("{\"name\":\"\u041c\u0443\u0440\u043a\u0430\",\"age\":3}", cache.put("cat1", "{}"));
+        assertEquals("{}", cache.get("cat1"));
+        assertNull(cache.get("cat2"));
+    }
+
+    @Test
+    public void testRemove() {
+        cache.put("cat1", "Moorka");
+        assertEquals("Moorka", cache.remove("cat1"));
+        assertFalse(cache.contains("cat1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEntryLimit() {
+        for (int i = 0; i < 5000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        assertEquals(1000, cache.size());
+        assertEquals("value4999", cache.get("key4999"));
+    }
+
+    @Test
+    public void testArenaIsBoundedAndSlabsAreReused() {
+        StringBuilder small = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            small.append('s');
+        }
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            large.append('l');
+        }
+        for (int i = 0; i < 1000; i++) {
+            cache.put("small" + i, small.toString());
+        }
+        for (int i = 0; i < 50; i++) {
+            cache.put("large" + i, large.toString());
+        }
+        assertTrue(cache.allocatedBytes() <= 2 << 20);
+        assertEquals(large.toString(), cache.get("large49"));
+    }
+
+    @Test
+    public void testBudgetUnderOneSlabIsNotRoundedUp() {
+        OffHeapCache small = new OffHeapCache(1000, 100_000);
+        for (int i = 0; i < 5000; i++) {
+            small.put("key" + i, "value" + i);
+        }
+        assertTrue(small.allocatedBytes() <= 100_000);
+        assertEquals("value4999", small.get("key4999"));
+    }
+
+    @Test
+    public void testSlabsAreChargedToTheNodeBudget() {
+        CacheBudget budget = new CacheBudget(1 << 20);
+        OffHeapCache first = new OffHeapCache(1000, 2 << 20, budget);
+        OffHeapCache second = new OffHeapCache(1000, 2 << 20, budget);
+        first.put("cat1", "Moorka");
+        assertEquals(1 << 20, budget.getUsed());
+        second.put("cat2", "Barsik");
+        assertNull(second.get("cat2"));
+        for (int i = 0; i < 20_000; i++) {
+            first.put("key" + i, "value" + i);
+        }
+        assertEquals(1 << 20, budget.getUsed());
+        first.close();
+        assertEquals(0, budget.getUsed());
+        second.put("cat2", "Barsik");
+        assertEquals("Barsik", second.get("cat2"));
+    }
+
+    @Test
+    public void testFreedChunksAreReused() {
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        final long allocated = cache.allocatedBytes();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 1000; i += 2) {
+                cache.remove("key" + i);
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                cache.put("key" + i, "other" + round + i);
+            }
+        }
+        assertEquals(allocated, cache.allocatedBytes());
+        assertEquals("other9998", cache.get("key998"));
+        assertEquals("value999", cache.get("key999"));
+    }
+
+}
@@ -0,0 +1,37 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.util.PageCursor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PageCursorTest {
+
+    @Test
+    public void testCursorRoundTrip() {
+        String cursor = PageCursor.encode("user_42");
+        assertNotEquals("user_42", cursor);
+        assertEquals("user_42", PageCursor.decode(cursor));
+    }
+
+    @Test
+    public void testEmptyCursorStartsFromBeginning() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testInvalidCursor() {
+        PageCursor.decode("not a cursor!");
+    }
+
+    @Test
+    public void testOffset() {
+        assertEquals(0, PageCursor.getOffset(0, 10));
+        assertEquals(0, PageCursor.getOffset(1, 10));
+        assertEquals(20, PageCursor.getOffset(3, 10));
+        assertEquals(Integer.MAX_VALUE, PageCursor.getOffset(Integer.MAX_VALUE, 10));
+    }
+
+}
@@ -0,0 +1,94 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.util.Placement;
+import by.webapp.kvstorage.util.Topology;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlacementTest {
+
+    private static final int KEYS = 10_000;
+
+    @Test
+    public void testAddingGroupMovesKeysToItOnly() throws Exception {
+        Placement placement = new Placement(topology(3)).startMoving(topology(4));
+        List<int[]> moves = placement.getMoves();
+        assertEquals(3, moves.size());
+        for (int[] move : moves) {
+            assertEquals(3, move[1]);
+        }
+        for (int i = 0; i < KEYS; i++) {
+            Integer pending = placement.getPendingOwner(key(i));
+            assertTrue(pending == null || pending == 3);
+            assertNotEquals(3, placement.getOwner(key(i)));
+        }
+    }
+
+    @Test
+    public void testOwnershipSwitchesPerMove() throws Exception {
+        Topology current = topology(3);
+        Topology target = topology(4);
+        Placement placement = new Placement(current).startMoving(target).completeMove(0, 3);
+        assertTrue(placement.isMoving());
+        assertTrue(placement.isDone(0, 3));
+        for (int i = 0; i < KEYS; i++) {
+            int from = current.getRing().getGroup(key(i));
+            int to = target.getRing().getGroup(key(i));
+            if (from == 0 && to == 3) {
+                assertEquals(3, placement.getOwner(key(i)));
+                assertNull(placement.getPendingOwner(key(i)));
+            } else if (from != to) {
+                assertEquals(from, placement.getOwner(key(i)));
+                assertEquals(Integer.valueOf(to), placement.getPendingOwner(key(i), from));
+                assertNull(placement.getPendingOwner(key(i), to));
+            }
+        }
+    }
+
+    @Test
+    public void testCompletingAllMovesSwitchesTopology() throws Exception {
+        Topology target = topology(4);
+        Placement placement = new Placement(topology(3)).startMoving(target);
+        for (int[] move : placement.getMoves()) {
+            placement = placement.completeMove(move[0], move[1]);
+        }
+        assertFalse(placement.isMoving());
+        assertSame(target, placement.getCurrent());
+        assertEquals(4, placement.getGroups().size());
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(target.getRing().getGroup(key(i)), placement.getOwner(key(i)));
+        }
+    }
+
+    @Test
+    public void testRemovingGroupKeepsItReachableUntilDone() throws Exception {
+        Placement placement = new Placement(topology(3)).startMoving(topology(2));
+        assertEquals(3, placement.getGroups().size());
+        for (int[] move : placement.getMoves()) {
+            assertEquals(2, move[0]);
+        }
+        assertEquals(4, placement.getNodes().size());
+    }
+
+    private static Topology topology(int groups) throws Exception {
+        StringBuilder layout = new StringBuilder("{\"groups\":[");
+        for (int i = 0; i < groups; i++) {
+            layout.append(i == 0 ? "" : ",").append("{\"id\":\"").append(i)
+                    .append("\",\"list\":[{\"name\":\"node").append(i)
+                    .append("\",\"url\":\"http://localhost:1000").append(i).append("\"}");
+            if (i == 0) {
+                layout.append(",{\"name\":\"node0r\",\"url\":\"http://localhost:11000\"}");
+            }
+            layout.append("]}");
+        }
+        return Topology.parse(layout.append("]}").toString());
+    }
+
+    private static String key(int i) {
+        return "cats/cat_" + i;
+    }
+
+}
@@ -0,0 +1,125 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.model.Collection;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Predicate;
+import by.webapp.kvstorage.model.Query;
+import by.webapp.kvstorage.service.CollectionService;
+import by.webapp.kvstorage.service.DocumentService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+public class QueryPlanTest {
+
+    @Autowired
+    CollectionService collectionService;
+    @Autowired
+    DocumentService documentService;
+    @SpyBean
+    JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        collectionService.clean();
+        Collection collection = new Collection();
+        collection.setName("indexedCats");
+        collection.setAlgorithm("LRU");
+        collection.setCacheLimit(10);
+        collection.setJsonSchema("{\"type\": \"object\"}");
+        collection.setIndexedPaths("age,owner.city");
+        collectionService.create(collection);
+        documentService.setDocumentName(collection.getName());
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Document document = new Document();
+            document.setKey("cat" + i);
+            document.setValue("{\"age\":" + i + ",\"owner\":{\"city\":\"city" + i % 50 + "\"}}");
+            documents.add(document);
+        }
+        documentService.createAll(documents);
+        jdbcTemplate.execute("ANALYZE indexedCats");
+    }
+
+    @After
+    public void tearDown() {
+        collectionService.delete("indexedCats");
+    }
+
+    @Test
+    public void testGenericPlanUsesPathIndex() {
+        assertTrue(explain(new Predicate("owner.city", "eq", "city7"))
+                .contains("indexedcats_path_"));
+        assertTrue(explain(new Predicate("age", "gte", 490)).contains("indexedcats_path_"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private String explain(Predicate predicate) {
+        Query query = new Query();
+        query.setPredicates(new ArrayList<>(Collections.singletonList(predicate)));
+        assertFalse(documentService.query(query).isEmpty());
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> params = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, atLeastOnce()).query(sql.capture(), params.capture(),
+                any(RowMapper.class));
+        int call = sql.getAllValues().size() - 1;
+        while (!sql.getAllValues().get(call).contains("#>")) {
+            call--;
+        }
+        StringBuilder prepared = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.getAllValues().get(call).toCharArray()) {
+            if (c == '?') {
+                prepared.append('$').append(++parameter);
+            } else {
+                prepared.append(c);
+            }
+        }
+        List<String> values = new ArrayList<>();
+        for (Object value : params.getAllValues().get(call)) {
+            values.add(value instanceof Number ? value.toString() :
+                    '\'' + value.toString().replace("'", "''") + '\'');
+        }
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+                statement.execute("SET plan_cache_mode = force_generic_plan");
+                statement.execute("PREPARE cats_query AS " + prepared);
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet resultSet = statement.executeQuery(
+                        "EXPLAIN EXECUTE cats_query(" + String.join(", ", values) + ')')) {
+                    while (resultSet.next()) {
+                        plan.append(resultSet.getString(1)).append('\n');
+                    }
+                }
+                statement.execute("DEALLOCATE cats_query");
+                statement.execute("RESET plan_cache_mode");
+                statement.execute("RESET enable_seqscan");
+                return plan.toString();
+            }
+        });
+    }
+
+}
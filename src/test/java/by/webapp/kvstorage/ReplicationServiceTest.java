@@ -0,0 +1,157 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.exception.DataBaseException;
+import by.webapp.kvstorage.exception.ResourceNotFoundException;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.Node;
+import by.webapp.kvstorage.service.DistributedService;
+import by.webapp.kvstorage.service.DocumentService;
+import by.webapp.kvstorage.service.ReplicationService;
+import by.webapp.kvstorage.util.Topology;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ReplicationServiceTest {
+
+    private static final String LAYOUT = "{\"groups\":[{\"id\":\"0\",\"list\":[" +
+            "{\"name\":\"node0\",\"url\":\"http://localhost:10000\"}," +
+            "{\"name\":\"node1\",\"url\":\"http://localhost:10001\"}," +
+            "{\"name\":\"node2\",\"url\":\"http://localhost:10002\"}]}]}";
+    private Path directory;
+    private Node node1;
+    private Node node2;
+    private DistributedService distributedService;
+    private DocumentService documentService;
+    private ReplicationService replicationService;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("replication");
+        Topology topology = Topology.parse(LAYOUT);
+        node1 = topology.findNode("node1");
+        node2 = topology.findNode("node2");
+        distributedService = mock(DistributedService.class);
+        when(distributedService.getReplicas()).thenReturn(Arrays.asList(node1, node2));
+        documentService = mock(DocumentService.class);
+        replicationService = new ReplicationService(distributedService, documentService,
+                directory.toString(), 4096, 64, 1000, 2, TimeUnit.HOURS.toMillis(1));
+        replicationService.init();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        replicationService.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testShipAdvancesEveryReplica() throws IOException {
+        when(distributedService.shipLog(any(Node.class), anyList()))
+                .thenAnswer(invocation -> lastSequence(invocation.getArgument(1)));
+        assertEquals(5, replicationService.appendAll(mutations(5)));
+        replicationService.ship();
+        verify(distributedService, times(3)).shipLog(eq(node1), anyList());
+        verify(distributedService, times(3)).shipLog(eq(node2), anyList());
+        assertEquals(5L, replica(node1).get("acknowledged"));
+        assertEquals(5L, replica(node2).get("acknowledged"));
+        assertEquals(5L, replicationService.getStatus().get("checkpoint"));
+    }
+
+    @Test
+    public void testUnreachableReplicaPinsCheckpoint() throws IOException {
+        when(distributedService.shipLog(eq(node1), anyList()))
+                .thenAnswer(invocation -> lastSequence(invocation.getArgument(1)));
+        when(distributedService.shipLog(eq(node2), anyList()))
+                .thenThrow(new ResourceAccessException("node2 is down"))
+                .thenAnswer(invocation -> lastSequence(invocation.getArgument(1)));
+        replicationService.appendAll(mutations(4));
+        replicationService.ship();
+        assertEquals(4L, replica(node1).get("acknowledged"));
+        assertEquals(4L, replica(node2).get("pending"));
+        assertEquals(0L, replicationService.getStatus().get("checkpoint"));
+        replicationService.ship();
+        assertEquals(0L, replica(node2).get("pending"));
+        assertEquals(4L, replicationService.getStatus().get("checkpoint"));
+    }
+
+    @Test
+    public void testApplySkipsMutationOfMissingCollection() {
+        doThrow(new ResourceNotFoundException("Error: non-existing collection."))
+                .when(documentService).deleteAll(anyList());
+        List<Mutation> mutations = Arrays.asList(
+                mutation(1, Mutation.Type.PUT, "cats", "cat1"),
+                mutation(2, Mutation.Type.DELETE, "dogs", "dog1"),
+                mutation(3, Mutation.Type.PUT, "cats", "cat2"));
+        assertEquals(3, replicationService.apply(mutations));
+        verify(documentService, times(2)).upsert(any(Document.class));
+        assertEquals(1L, replicationService.getStatus().get("skipped"));
+    }
+
+    @Test
+    public void testApplyAcknowledgesPrefixOnTransientFailure() {
+        when(documentService.upsert(any(Document.class)))
+                .thenReturn(null)
+                .thenThrow(new DataBaseException("Exception while document upserting."));
+        List<Mutation> mutations = Arrays.asList(
+                mutation(7, Mutation.Type.PUT, "cats", "cat1"),
+                mutation(8, Mutation.Type.PUT, "cats", "cat2"),
+                mutation(9, Mutation.Type.PUT, "cats", "cat3"));
+        assertEquals(7, replicationService.apply(mutations));
+        try {
+            replicationService.apply(mutations.subList(1, 3));
+            fail("A transient failure of the first mutation must not be acknowledged");
+        } catch (DataBaseException e) {
+            assertEquals(0L, replicationService.getStatus().get("skipped"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> replica(Node node) {
+        Map<String, Object> replicas =
+                (Map<String, Object>) replicationService.getStatus().get("replicas");
+        return (Map<String, Object>) replicas.get(node.getName());
+    }
+
+    private static long lastSequence(List<Mutation> batch) {
+        return batch.get(batch.size() - 1).getSequence();
+    }
+
+    private static List<Mutation> mutations(int count) {
+        List<Mutation> mutations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            mutations.add(new Mutation(Mutation.Type.PUT, "cats", "cat" + i, "{}"));
+        }
+        return mutations;
+    }
+
+    private static Mutation mutation(long sequence, Mutation.Type type, String collection,
+                                     String key) {
+        Mutation mutation = new Mutation(type, collection, key,
+                type == Mutation.Type.PUT ? "{}" : null);
+        mutation.setSequence(sequence);
+        return mutation;
+    }
+
+}
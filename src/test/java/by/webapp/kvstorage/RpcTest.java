@@ -0,0 +1,263 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.exception.BadRequestException;
+import by.webapp.kvstorage.exception.ResourceNotFoundException;
+import by.webapp.kvstorage.model.Document;
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.model.Node;
+import by.webapp.kvstorage.rpc.RpcClient;
+import by.webapp.kvstorage.rpc.RpcConnection;
+import by.webapp.kvstorage.rpc.RpcFrame;
+import by.webapp.kvstorage.rpc.RpcInput;
+import by.webapp.kvstorage.rpc.RpcOperation;
+import by.webapp.kvstorage.rpc.RpcOutput;
+import by.webapp.kvstorage.rpc.RpcServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RpcTest {
+
+    private static final int MAX_FRAME_BYTES = 1 << 20;
+    private static final int COMPRESSION_MIN_BYTES = 1024;
+    private final AtomicInteger batches = new AtomicInteger();
+    private RpcServer server;
+    private RpcConnection connection;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new RpcServer(new InetSocketAddress("localhost", 0), 8, 64, MAX_FRAME_BYTES,
+                COMPRESSION_MIN_BYTES, (operation, input) -> {
+                    switch (operation) {
+                        case GET:
+                            final String key = input.readString();
+                            if (key.startsWith("missing")) {
+                                throw new ResourceNotFoundException("Error: " + key);
+                            }
+                            TimeUnit.MILLISECONDS.sleep(key.hashCode() & 15);
+                            return new RpcOutput().writeString(key.toUpperCase());
+                        case APPLY:
+                            final List<Mutation> mutations = input.readMutations();
+                            return new RpcOutput()
+                                    .writeLong(mutations.get(mutations.size() - 1).getSequence());
+                        case DELETE:
+                            TimeUnit.SECONDS.sleep(5);
+                            return new RpcOutput();
+                        case FORWARD_BATCH:
+                            input.readString();
+                            batches.incrementAndGet();
+                            return new RpcOutput().writeInt(input.readDocuments().size());
+                        default:
+                            throw new BadRequestException("Error: " + operation);
+                    }
+                });
+        connection = new RpcConnection(
+                new InetSocketAddress("localhost", server.getPort()), 1000, MAX_FRAME_BYTES,
+                COMPRESSION_MIN_BYTES);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        connection.close();
+        server.close();
+    }
+
+    @Test
+    public void testCodecRoundTrip() throws IOException {
+        Document document = new Document();
+        document.setKey("cat");
+        document.setValue("{\"name\":\"\u041c\u0443\u0440\u043a\u0430\"}");
+        Mutation put = new Mutation(Mutation.Type.PUT, "cats", "cat", "{}");
+        put.setSequence(7);
+        Mutation delete = new Mutation(Mutation.Type.DELETE, "cats", "dog", null);
+        ByteBuffer payload = new RpcOutput().writeString(null).writeBoolean(true)
+                .writeDocuments(Arrays.asList(document, document))
+                .writeMutations(Arrays.asList(put, delete)).toByteBuffer();
+        ByteBuffer frame = new RpcFrame(42, RpcOperation.APPLY.getCode(), RpcFrame.OK, payload)
+                .encode(COMPRESSION_MIN_BYTES);
+        assertEquals(frame.remaining() - 4, frame.getInt());
+        RpcFrame decoded = RpcFrame.decode(frame, MAX_FRAME_BYTES);
+        assertEquals(42, decoded.getCorrelationId());
+        assertEquals(RpcOperation.APPLY, RpcOperation.of(decoded.getOperation()));
+        RpcInput input = new RpcInput(decoded.getPayload());
+        assertNull(input.readString());
+        assertTrue(input.readBoolean());
+        assertEquals(Arrays.asList(document, document), input.readDocuments());
+        assertEquals(Arrays.asList(put, delete), input.readMutations());
+    }
+
+    @Test
+    public void testLargePayloadIsCompressed() throws IOException {
+        Document document = new Document();
+        document.setKey("cat");
+        document.setValue(repeat("{\"name\":\"Moorka\",\"age\":3}", 1000));
+        ByteBuffer payload = new RpcOutput().writeDocument(document).toByteBuffer();
+        ByteBuffer frame = new RpcFrame(7, RpcOperation.CREATE.getCode(), RpcFrame.OK, payload)
+                .encode(COMPRESSION_MIN_BYTES);
+        assertTrue(frame.remaining() < payload.remaining() / 10);
+        frame.getInt();
+        RpcFrame decoded = RpcFrame.decode(frame, MAX_FRAME_BYTES);
+        assertEquals(payload, decoded.getPayload());
+        assertEquals(document, new RpcInput(decoded.getPayload()).readDocument());
+        String key = repeat("cat", 2000);
+        assertEquals(key.toUpperCase(), connection.call(RpcOperation.GET,
+                new RpcOutput().writeString(key), 1000).readString());
+    }
+
+    @Test
+    public void testInflatedPayloadIsBounded() {
+        ByteBuffer payload = new RpcOutput().writeString(repeat("0", 100_000)).toByteBuffer();
+        ByteBuffer frame = new RpcFrame(7, RpcOperation.GET.getCode(), RpcFrame.OK, payload)
+                .encode(COMPRESSION_MIN_BYTES);
+        frame.getInt();
+        try {
+            RpcFrame.decode(frame, 10_000);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("exceeds"));
+        }
+    }
+
+    @Test
+    public void testConcurrentCallsAreMultiplexed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final String key = "cat" + i;
+            futures.add(executor.submit(() -> connection.call(RpcOperation.GET,
+                    new RpcOutput().writeString(key), 10000).readString()));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("CAT" + i, futures.get(i).get());
+        }
+        executor.shutdown();
+        assertEquals(0, connection.getPending());
+    }
+
+    @Test
+    public void testErrorsAreMappedToExceptions() throws IOException {
+        try {
+            connection.call(RpcOperation.GET, new RpcOutput().writeString("missing"), 1000);
+            fail();
+        } catch (ResourceNotFoundException e) {
+            assertEquals("Error: missing", e.getMessage());
+        }
+        try {
+            connection.call(RpcOperation.CREATE, new RpcOutput(), 1000);
+            fail();
+        } catch (BadRequestException e) {
+            assertEquals("Error: CREATE", e.getMessage());
+        }
+        Mutation mutation = new Mutation(Mutation.Type.DELETE, "cats", "cat", null);
+        mutation.setSequence(11);
+        assertEquals(11, connection.call(RpcOperation.APPLY,
+                new RpcOutput().writeMutations(Arrays.asList(mutation, mutation)), 1000)
+                .readLong());
+    }
+
+    @Test
+    public void testSlowCallTimesOut() throws IOException {
+        try {
+            connection.call(RpcOperation.DELETE, new RpcOutput(), 100);
+            fail();
+        } catch (SocketTimeoutException e) {
+            assertTrue(connection.isOpen());
+        }
+        assertEquals("CAT", connection.call(RpcOperation.GET,
+                new RpcOutput().writeString("cat"), 1000).readString());
+    }
+
+    @Test
+    public void testOversizedRequestIsRejectedBeforeSending() throws IOException {
+        try {
+            connection.call(RpcOperation.GET,
+                    new RpcOutput().writeString(repeat("cat", MAX_FRAME_BYTES)), 1000);
+            fail();
+        } catch (BadRequestException e) {
+            assertTrue(e.getMessage().contains("exceeds"));
+        }
+        assertTrue(connection.isOpen());
+        assertEquals("CAT", connection.call(RpcOperation.GET,
+                new RpcOutput().writeString("cat"), 1000).readString());
+    }
+
+    @Test
+    public void testOversizedBatchIsSentInParts() {
+        RpcClient client = new RpcClient(true, 1000, 10000, MAX_FRAME_BYTES,
+                COMPRESSION_MIN_BYTES);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Document document = new Document();
+            document.setKey("cat" + i);
+            document.setValue(repeat("{\"name\":\"Moorka\"}", 500));
+            documents.add(document);
+        }
+        try {
+            assertEquals(300, client.forwardBatch(new Node("node0", "http://localhost:10000", 0,
+                    "localhost:" + server.getPort()), "cats", documents));
+            assertTrue(batches.get() > 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testFullQueueStopsReadingUntilWorkersCatchUp() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        RpcServer busy = new RpcServer(new InetSocketAddress("localhost", 0), 1, 1,
+                MAX_FRAME_BYTES, COMPRESSION_MIN_BYTES, (operation, input) -> {
+                    if (operation == RpcOperation.DELETE) {
+                        blocked.await();
+                    }
+                    return new RpcOutput().writeString(input.readString());
+                });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (RpcConnection busyConnection = new RpcConnection(
+                new InetSocketAddress("localhost", busy.getPort()), 1000, MAX_FRAME_BYTES,
+                COMPRESSION_MIN_BYTES)) {
+            Future<String> slow = executor.submit(() -> busyConnection.call(RpcOperation.DELETE,
+                    new RpcOutput().writeString("slow"), 10000).readString());
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final String key = "cat" + i;
+                futures.add(executor.submit(() -> busyConnection.call(RpcOperation.GET,
+                        new RpcOutput().writeString(key), 10000).readString()));
+            }
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertFalse(futures.get(futures.size() - 1).isDone());
+            blocked.countDown();
+            assertEquals("slow", slow.get());
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals("cat" + i, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+            busy.close();
+        }
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,69 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.util.ValueCompressor;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ValueCompressorTest {
+
+    @Test
+    public void testRoundTripWithoutDictionary() {
+        ValueCompressor compressor = new ValueCompressor();
+        String value = cat(1);
+        assertEquals(value, compressor.decompress(compressor.compress(value)));
+        assertEquals("", compressor.decompress(compressor.compress("")));
+    }
+
+    @Test
+    public void testDictionaryImprovesSmallValues() {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            samples.add(cat(i));
+        }
+        ValueCompressor plain = new ValueCompressor();
+        ValueCompressor trained = new ValueCompressor();
+        byte[] dictionary = ValueCompressor.trainDictionary(
+                samples, ValueCompressor.MAX_DICTIONARY_BYTES);
+        assertTrue(dictionary.length > 0);
+        assertTrue(dictionary.length <= ValueCompressor.MAX_DICTIONARY_BYTES);
+        trained.addDictionary(1, dictionary);
+        String value = cat(777);
+        byte[] withDictionary = trained.compress(value);
+        assertEquals(value, trained.decompress(withDictionary));
+        assertTrue(withDictionary.length < plain.compress(value).length);
+        assertTrue(value.getBytes(StandardCharsets.UTF_8).length > 3 * withDictionary.length);
+    }
+
+    @Test
+    public void testThreshold() {
+        ValueCompressor compressor = new ValueCompressor();
+        assertFalse(compressor.shouldCompress(cat(1)));
+        compressor.setThreshold(64);
+        assertTrue(compressor.shouldCompress(cat(1)));
+        assertFalse(compressor.shouldCompress("{\"name\":\"Tom\"}"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingDictionary() {
+        ValueCompressor trained = new ValueCompressor();
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(cat(i));
+        }
+        trained.addDictionary(3, ValueCompressor.trainDictionary(samples, 1024));
+        new ValueCompressor().decompress(trained.compress(cat(5)));
+    }
+
+    private static String cat(int i) {
+        return "{\"name\":\"cat" + i + "\",\"breed\":\"Siberian\",\"color\":\"tabby\"," +
+                "\"owner\":{\"firstName\":\"Ivan\",\"lastName\":\"Petrov\",\"city\":\"Minsk\"}," +
+                "\"vaccinated\":true,\"tags\":[\"indoor\",\"friendly\",\"fluffy\"],\"age\":" +
+                (i % 15) + '}';
+    }
+
+}
@@ -0,0 +1,65 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.cache.ICache;
+import by.webapp.kvstorage.cache.WTinyLFUCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WTinyLFUCacheTest {
+
+    private ICache<String, String> cache;
+
+    @Before
+    public void setUp() {
+        cache = new WTinyLFUCache<>(100);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        cache.put("cat1", "Moorka");
+        assertEquals("Moorka", cache.get("cat1"));
+        assertEquals("Moorka", cache.put("cat1", "Barsik"));
+        assertEquals("Barsik", cache.get("cat1"));
+        assertNull(cache.get("cat2"));
+    }
+
+    @Test
+    public void testRemove() {
+        cache.put("cat1", "Moorka");
+        assertEquals("Moorka", cache.remove("cat1"));
+        assertFalse(cache.contains("cat1"));
+    }
+
+    @Test
+    public void testCapacityIsBounded() {
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void testHotKeysSurviveScan() {
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, "value");
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get("hot" + i);
+            }
+        }
+        for (int i = 0; i < 5_000; i++) {
+            cache.put("cold" + i, "value");
+        }
+        int resident = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.contains("hot" + i)) {
+                resident++;
+            }
+        }
+        assertTrue("hot keys evicted by a scan: " + resident, resident >= 45);
+    }
+
+}
@@ -0,0 +1,85 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.cache.CacheBudget;
+import by.webapp.kvstorage.cache.CacheRegistry;
+import by.webapp.kvstorage.cache.ICache;
+import by.webapp.kvstorage.cache.LFUCache;
+import by.webapp.kvstorage.cache.LRUCache;
+import by.webapp.kvstorage.cache.Weigher;
+import by.webapp.kvstorage.model.Collection;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightedCacheTest {
+
+    private static final Weigher<String, String> WEIGHER = (key, value) -> value.length();
+
+    @Test
+    public void testLRUEvictsByWeight() {
+        LRUCache<String, String> cache = new LRUCache<>(100, 10, WEIGHER, null);
+        cache.put("a", "12345");
+        cache.put("b", "12345");
+        cache.put("c", "123");
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b") && cache.contains("c"));
+        assertEquals(8, cache.weight());
+    }
+
+    @Test
+    public void testLFUEvictsByWeight() {
+        LFUCache<String, String> cache = new LFUCache<>(100, 10, WEIGHER, null);
+        cache.put("a", "12345");
+        cache.get("a");
+        cache.put("b", "12345");
+        cache.put("c", "123");
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertEquals(8, cache.weight());
+    }
+
+    @Test
+    public void testOversizedEntryIsNotCached() {
+        ICache<String, String> cache = new LRUCache<>(100, 4, WEIGHER, null);
+        cache.put("a", "12345");
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    public void testNodeBudgetIsShared() {
+        CacheBudget budget = new CacheBudget(10);
+        ICache<String, String> first = new LRUCache<>(100, 100, WEIGHER, budget);
+        ICache<String, String> second = new LFUCache<>(100, 100, WEIGHER, budget);
+        first.put("a", "123456");
+        second.put("b", "123456");
+        assertFalse(second.contains("b"));
+        assertEquals(6, budget.getUsed());
+        first.clear();
+        assertEquals(0, budget.getUsed());
+        second.put("b", "123456");
+        assertTrue(second.contains("b"));
+        assertEquals("123456", second.remove("b"));
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void testClosedCacheReleasesBudget() {
+        CacheBudget budget = new CacheBudget(100);
+        CacheRegistry<String> registry = new CacheRegistry<>(WEIGHER, budget);
+        for (String algorithm : new String[]{"LRU", "LFU", "CLRU"}) {
+            Collection collection = new Collection();
+            collection.setName("cats");
+            collection.setAlgorithm(algorithm);
+            collection.setCacheLimit(10);
+            ICache<String, String> cache = registry.getCache(collection);
+            cache.put("a", "12345");
+            assertEquals(5, budget.getUsed());
+            registry.evict("Cats");
+            cache.put("b", "12345");
+            assertNull(cache.putIfAbsent("c", "12345"));
+            assertEquals(0, cache.size());
+            assertEquals(0, budget.getUsed());
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.model.Mutation;
+import by.webapp.kvstorage.storage.wal.WriteAheadLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class WriteAheadLogTest {
+
+    private static final long SEGMENT_BYTES = 4096;
+    private Path directory;
+    private List<Mutation> durable;
+    private WriteAheadLog log;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal");
+        durable = Collections.synchronizedList(new ArrayList<>());
+        log = new WriteAheadLog(directory, SEGMENT_BYTES, 64, 1000, durable::addAll);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        log.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentAppendsAreGrouped() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            final Mutation mutation = new Mutation(Mutation.Type.PUT, "cats", "cat" + i, "{}");
+            futures.add(executor.submit(() -> log.append(mutation)));
+        }
+        List<Long> sequences = new ArrayList<>();
+        for (Future<Long> future : futures) {
+            sequences.add(future.get());
+        }
+        executor.shutdown();
+        Collections.sort(sequences);
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i + 1, (long) sequences.get(i));
+        }
+        assertEquals(400, durable.size());
+        for (int i = 1; i < durable.size(); i++) {
+            assertTrue(durable.get(i - 1).getSequence() < durable.get(i).getSequence());
+        }
+        assertTrue((Long) log.getStats().get("groupCommits") < 400);
+    }
+
+    @Test
+    public void testReplayAfterCheckpoint() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            log.append(new Mutation(Mutation.Type.PUT, "cats", "cat" + i, "{\"age\":" + i + '}'));
+        }
+        log.append(new Mutation(Mutation.Type.DELETE, "cats", "cat7", null));
+        log.checkpoint(150);
+        log.close();
+        log = new WriteAheadLog(directory, SEGMENT_BYTES, 64, 1000, durable::addAll);
+        List<Mutation> replayed = log.replay();
+        assertEquals(51, replayed.size());
+        assertEquals(151, replayed.get(0).getSequence());
+        assertEquals("{\"age\":150}", replayed.get(0).getValue());
+        assertTrue(replayed.get(50).isDelete());
+        assertNull(replayed.get(50).getValue());
+        assertEquals(202, log.append(new Mutation(Mutation.Type.PUT, "cats", "cat", "{}")));
+    }
+
+    @Test
+    public void testReadAcrossSegments() throws IOException {
+        List<Mutation> mutations = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            mutations.add(new Mutation(Mutation.Type.PUT, "cats", "cat" + i, "{}"));
+        }
+        assertEquals(300, log.appendAll(mutations));
+        assertTrue((Integer) log.getStats().get("segments") > 1);
+        List<Mutation> read = new ArrayList<>();
+        List<Mutation> batch;
+        while (!(batch = log.read(read.size(), 64)).isEmpty()) {
+            assertTrue(batch.size() <= 64);
+            read.addAll(batch);
+        }
+        assertEquals(300, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(i + 1, read.get(i).getSequence());
+            assertEquals("cat" + i, read.get(i).getKey());
+        }
+        log.checkpoint(250);
+        assertEquals(50, log.read(250, 100).size());
+        assertEquals(251, log.read(250, 1).get(0).getSequence());
+        assertTrue(log.read(300, 100).isEmpty());
+    }
+
+    @Test
+    public void testDirectoryIsLocked() throws IOException {
+        try {
+            new WriteAheadLog(directory, SEGMENT_BYTES, 64, 1000, durable::addAll);
+            fail("A second log must not open a locked directory");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("locked"));
+        }
+        log.close();
+        log = new WriteAheadLog(directory, SEGMENT_BYTES, 64, 1000, durable::addAll);
+        assertEquals(1, log.append(new Mutation(Mutation.Type.PUT, "cats", "cat", "{}")));
+    }
+
+    @Test
+    public void testFailedHandOverFailsAppend() throws IOException {
+        log.close();
+        log = new WriteAheadLog(directory, SEGMENT_BYTES, 64, 1000, mutations -> {
+            throw new IllegalStateException("applier is gone");
+        });
+        try {
+            log.append(new Mutation(Mutation.Type.PUT, "cats", "cat", "{}"));
+            fail("A mutation that was not handed over must not be acknowledged");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        log.close();
+        log = new WriteAheadLog(directory, SEGMENT_BYTES, 64, 1000, durable::addAll);
+        assertEquals(1, log.replay().size());
+    }
+
+}
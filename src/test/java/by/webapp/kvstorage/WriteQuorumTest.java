@@ -0,0 +1,57 @@
+package by.webapp.kvstorage;
+
+import by.webapp.kvstorage.util.WriteQuorum;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WriteQuorumTest {
+
+    @Test
+    public void testQuorumIsReached() throws InterruptedException {
+        WriteQuorum quorum = new WriteQuorum(2, 3);
+        Thread replica = new Thread(() -> {
+            quorum.fail();
+            quorum.acknowledge();
+            quorum.acknowledge();
+        });
+        replica.start();
+        assertTrue(quorum.await(10, TimeUnit.SECONDS));
+        replica.join();
+    }
+
+    @Test
+    public void testQuorumFailsWithoutWaiting() throws InterruptedException {
+        WriteQuorum quorum = new WriteQuorum(2, 3);
+        quorum.acknowledge();
+        quorum.fail();
+        quorum.fail();
+        long startedAt = System.nanoTime();
+        assertFalse(quorum.await(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testQuorumTimesOut() throws InterruptedException {
+        WriteQuorum quorum = new WriteQuorum(1, 2);
+        assertFalse(quorum.await(50, TimeUnit.MILLISECONDS));
+        assertTrue(new WriteQuorum(0, 2).await(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRequiredReplicas() {
+        assertEquals(2, WriteQuorum.getRequiredReplicas(null, 2));
+        assertEquals(0, WriteQuorum.getRequiredReplicas(1, 2));
+        assertEquals(1, WriteQuorum.getRequiredReplicas(2, 2));
+        assertEquals(2, WriteQuorum.getRequiredReplicas(5, 2));
+        assertEquals(0, WriteQuorum.getRequiredReplicas(3, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testImpossibleQuorum() {
+        new WriteQuorum(3, 2);
+    }
+
+}